@@ -33,4 +33,6 @@ public class EWSConstants {
     public static final String EWS_PROP_FILE = "ews.property";
     public static final String HTTP_SCHEME = "http";
     public static final String HTTPS_SCHEME = "https";
+    public static final String ANCHOR_MAILBOX_HEADER = "X-AnchorMailbox";
+    public static final String PREFER_SERVER_AFFINITY_HEADER = "X-PreferServerAffinity";
 }
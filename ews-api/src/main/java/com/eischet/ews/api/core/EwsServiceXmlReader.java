@@ -29,7 +29,9 @@ import com.eischet.ews.api.core.response.IGetObjectInstanceDelegate;
 import com.eischet.ews.api.core.service.ServiceObject;
 import com.eischet.ews.api.util.DateTimeUtils;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -45,6 +47,16 @@ public class EwsServiceXmlReader extends EwsXmlReader {
      */
     private ExchangeService service;
 
+    /**
+     * The handler receiving MIME content, if it should not be loaded into items.
+     */
+    private IMimeContentHandler mimeContentHandler;
+
+    /**
+     * The index of the item being read, passed to the MIME content handler.
+     */
+    private int mimeContentItemIndex;
+
     /**
      * Initializes a new instance of the EwsXmlReader class.
      *
@@ -58,6 +70,29 @@ public class EwsServiceXmlReader extends EwsXmlReader {
         this.service = service;
     }
 
+    /**
+     * Sets the handler receiving the MIME content of the item being read.
+     *
+     * @param mimeContentHandler the handler, or null to load MIME content into the item
+     * @param itemIndex          the index of the item among the requested items
+     */
+    public void setMimeContentHandler(IMimeContentHandler mimeContentHandler, int itemIndex) {
+        this.mimeContentHandler = mimeContentHandler;
+        this.mimeContentItemIndex = itemIndex;
+    }
+
+    /**
+     * Gets the stream the MIME content of the item being read should be written to.
+     *
+     * @param characterSet the character set of the content, or null
+     * @return the stream, or null if the content should be loaded into the item
+     * @throws IOException if the handler cannot provide a stream
+     */
+    public OutputStream getMimeContentOutputStream(String characterSet) throws IOException {
+        final IMimeContentHandler handler = this.mimeContentHandler;
+        return handler != null ? handler.getOutputStream(this.mimeContentItemIndex, characterSet) : null;
+    }
+
     /**
      * Reads the element value as date time.
      *
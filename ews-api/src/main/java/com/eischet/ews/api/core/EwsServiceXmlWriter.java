@@ -32,12 +32,15 @@ import org.w3c.dom.*;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -64,15 +67,31 @@ public class EwsServiceXmlWriter implements IDisposable {
      */
     private final XMLStreamWriter xmlWriter;
 
+    /**
+     * The stream the XML is written to.
+     */
+    private final OutputStream stream;
+
     /**
      * The is time zone header emitted.
      */
     private boolean isTimeZoneHeaderEmitted;
 
     /**
-     * The Buffer size.
+     * Chunk size for streamed base64 encoding: a multiple of the 57 bytes encoded on one 76 character MIME line,
+     * so chunks can be concatenated without padding.
+     */
+    private static final int Base64ChunkSize = 57 * 2048;
+
+    /**
+     * The size from which files are memory-mapped for base64 encoding.
      */
-    private static final int BufferSize = 4096;
+    public static final long MAPPED_FILE_THRESHOLD = 1024L * 1024;
+
+    /**
+     * The size of the window a memory-mapped file is encoded through, a multiple of the chunk size.
+     */
+    private static final long MAPPED_WINDOW_SIZE = 256L * Base64ChunkSize;
 
     /**
      * The  requireWSSecurityUtilityNamespace *
@@ -89,6 +108,7 @@ public class EwsServiceXmlWriter implements IDisposable {
      */
     public EwsServiceXmlWriter(ExchangeServiceBase service, OutputStream stream) throws XMLStreamException {
         this.service = service;
+        this.stream = stream;
         XMLOutputFactory xmlof = XMLOutputFactory.newInstance();
         xmlWriter = xmlof.createXMLStreamWriter(stream, "utf-8");
 
@@ -496,30 +516,113 @@ public class EwsServiceXmlWriter implements IDisposable {
     }
 
     /**
-     * Writes the base64-encoded element value.
+     * Writes the base64-encoded element value. The stream is read and encoded in chunks, so neither the
+     * binary content nor its encoded form is held in memory as a whole.
      *
      * @param stream the stream
+     * @return the number of bytes read from the stream
      * @throws IOException        signals that an I/O exception has occurred
      * @throws XMLStreamException the XML stream exception
      */
-    public void writeBase64ElementValue(InputStream stream) throws IOException,
+    public long writeBase64ElementValue(InputStream stream) throws IOException,
             XMLStreamException {
+        final Base64ChunkWriter chunkWriter = new Base64ChunkWriter();
+        final byte[] buf = chunkWriter.source;
+        long total = 0;
+        int readNum;
+        while ((readNum = stream.readNBytes(buf, 0, buf.length)) > 0) {
+            chunkWriter.write(readNum, total > 0);
+            total += readNum;
+        }
+        return total;
+    }
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        byte[] buf = new byte[BufferSize];
-        try {
-            for (int readNum; (readNum = stream.read(buf)) != -1; ) {
-                bos.write(buf, 0, readNum);
+    /**
+     * Writes the base64-encoded content of a file channel, from its current position to its end. Files of at
+     * least {@link #MAPPED_FILE_THRESHOLD} bytes are memory-mapped instead of read through a buffer.
+     *
+     * @param channel the channel
+     * @return the number of bytes read from the channel
+     * @throws IOException        signals that an I/O exception has occurred
+     * @throws XMLStreamException the XML stream exception
+     */
+    public long writeBase64ElementValue(FileChannel channel) throws IOException,
+            XMLStreamException {
+        final long start = channel.position();
+        final long size = channel.size() - start;
+        if (size < MAPPED_FILE_THRESHOLD) {
+            return writeBase64ElementValue(Channels.newInputStream(channel));
+        }
+        final Base64ChunkWriter chunkWriter = new Base64ChunkWriter();
+        final byte[] buf = chunkWriter.source;
+        long total = 0;
+        while (total < size) {
+            // map a window at a time, a multiple of the chunk size so chunks never straddle windows
+            final long windowSize = Math.min(MAPPED_WINDOW_SIZE, size - total);
+            final MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, start + total, windowSize);
+            while (window.hasRemaining()) {
+                final int length = Math.min(buf.length, window.remaining());
+                window.get(buf, 0, length);
+                chunkWriter.write(length, total > 0);
+                total += length;
             }
-        } catch (IOException ex) {
-            LOG.log(Level.SEVERE, "error writing binary data", ex);
-        } finally {
-            bos.close();
         }
-        byte[] bytes = bos.toByteArray();
-        String strValue = Base64.getMimeEncoder().encodeToString(bytes);
-        this.xmlWriter.writeCharacters(strValue);
+        channel.position(start + total);
+        return total;
+    }
+
+    /**
+     * Encodes chunks of a source buffer into reusable buffers and writes them as characters, so no intermediate
+     * strings are created.
+     */
+    private final class Base64ChunkWriter {
+
+        private final Base64.Encoder encoder = Base64.getMimeEncoder();
+        private final byte[] source = new byte[Base64ChunkSize];
+        private final byte[] encoded = new byte[encodedLength(Base64ChunkSize)];
+        private final char[] characters = new char[encoded.length];
+
+        /**
+         * Writes the first bytes of the source buffer.
+         *
+         * @param length the number of bytes
+         * @param more   whether chunks have been written before, so a line break is needed first
+         */
+        void write(int length, boolean more) throws XMLStreamException {
+            if (more) {
+                // the MIME encoder does not terminate the last line of a chunk
+                xmlWriter.writeCharacters("\r\n");
+            }
+            final int count = encoder.encode(length == source.length ? source : Arrays.copyOf(source, length),
+                    encoded);
+            for (int i = 0; i < count; i++) {
+                characters[i] = (char) encoded[i];
+            }
+            xmlWriter.writeCharacters(characters, 0, count);
+        }
+    }
 
+    private static int encodedLength(int length) {
+        final int characters = (length + 2) / 3 * 4;
+        return characters + (characters / 76) * 2;
+    }
+
+    /**
+     * Writes an XML fragment which has been serialized before, as it is. The fragment must be well-formed, encoded
+     * in UTF-8 and use the same namespace prefixes as this writer.
+     *
+     * @param fragment the fragment
+     * @throws XMLStreamException the XML stream exception
+     */
+    public void writeRawXml(byte[] fragment) throws XMLStreamException {
+        // an empty text closes a pending start tag, so the fragment ends up inside the current element
+        this.xmlWriter.writeCharacters("");
+        this.xmlWriter.flush();
+        try {
+            this.stream.write(fragment);
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        }
     }
 
     /**
@@ -451,6 +451,23 @@ public final class EwsUtilities {
         throw new IllegalArgumentException("No appropriate constructor could be found for this item class.");
     }
 
+    /**
+     * Creates a new item of the given class.
+     *
+     * @param service   the service
+     * @param itemClass the item class, e.g. EmailMessage.class
+     * @return the item
+     * @throws Exception the exception
+     */
+    public static Item createItemFromItemClass(ExchangeService service, Class<?> itemClass) throws Exception {
+        final ICreateServiceObjectWithServiceParam creationDelegate = EwsUtilities.SERVICE_OBJECT_INFO.getMember()
+                .getServiceObjectConstructorsWithServiceParam().get(itemClass);
+        if (creationDelegate == null || !Item.class.isAssignableFrom(itemClass)) {
+            throw new IllegalArgumentException("No appropriate constructor could be found for this item class.");
+        }
+        return (Item) creationDelegate.createServiceObjectWithServiceParam(service);
+    }
+
     /**
      * Creates the item from xml element name.
      *
@@ -29,8 +29,11 @@ import com.eischet.ews.api.misc.OutParam;
 import com.eischet.ews.api.security.XmlNodeType;
 
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
 import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.*;
@@ -573,12 +576,36 @@ public class EwsXmlReader {
             throws Exception {
         this.ensureCurrentNodeIsStartElement();
 
-        byte[] buffer = null;
-        buffer = Base64.getMimeDecoder().decode(this.xmlReader.getElementText());
-        outputStream.write(buffer);
+        this.readBase64Value(outputStream);
         outputStream.flush();
     }
 
+    /**
+     * Reads a base64 value and writes the decoded bytes to a stream as the text arrives, so the value is never
+     * held in memory as a whole. The present event must be the start element or the first text of the value;
+     * afterwards it is the end element.
+     *
+     * @param outputStream the stream receiving the decoded bytes; it is neither flushed nor closed
+     * @return the number of bytes written
+     * @throws Exception the exception
+     */
+    public long readBase64Value(OutputStream outputStream) throws Exception {
+        final Base64StreamDecoder decoder = new Base64StreamDecoder(outputStream);
+        if (this.presentEvent.isStartElement()) {
+            this.read(true);
+        } else if (!this.presentEvent.isCharacters()) {
+            throw new ServiceXmlDeserializationException(
+                    getReadValueErrMsg("Expected is " + XmlNodeType.getString(XmlNodeType.START_ELEMENT)));
+        }
+        while (!this.presentEvent.isEndElement()) {
+            if (this.presentEvent.isCharacters()) {
+                decoder.write(this.presentEvent.asCharacters().getData());
+            }
+            this.read(true);
+        }
+        return decoder.finish();
+    }
+
     /**
      * Reads the start element.
      *
@@ -869,6 +896,38 @@ public class EwsXmlReader {
         return str.toString();
     }
 
+    /**
+     * Copies the current element, including its descendants, into a standalone XML document. The reader is
+     * positioned on the end of the element afterwards.
+     *
+     * @return the UTF-8 encoded document
+     * @throws ServiceXmlDeserializationException the service xml deserialization exception
+     * @throws XMLStreamException                 the XML stream exception
+     */
+    public byte[] readOuterXmlDocument() throws ServiceXmlDeserializationException, XMLStreamException {
+        if (!this.isStartElement()) {
+            throw new ServiceXmlDeserializationException("The current position is not the start of an element.");
+        }
+        final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+        outputFactory.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+        final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final XMLEventWriter writer = outputFactory.createXMLEventWriter(out, StandardCharsets.UTF_8.name());
+        final XMLEvent startEvent = this.presentEvent;
+        XMLEvent event = startEvent;
+        writer.add(eventFactory.createStartDocument(StandardCharsets.UTF_8.name()));
+        writer.add(startEvent);
+        do {
+            event = this.xmlReader.nextEvent();
+            writer.add(event);
+        } while (!checkEndElement(startEvent, event));
+        writer.add(eventFactory.createEndDocument());
+        writer.close();
+        this.prevEvent = this.presentEvent;
+        this.presentEvent = event;
+        return out.toByteArray();
+    }
+
     /**
      * Reads the Inner XML at the given location.
      *
@@ -1123,4 +1182,49 @@ public class EwsXmlReader {
         return "Could not read value from " + XmlNodeType.getString(eventType) + "." + details;
     }
 
+
+    /**
+     * Decodes base64 text handed over in arbitrary pieces. Whitespace is skipped, and full groups of four
+     * characters are decoded as soon as enough of them are buffered.
+     */
+    private static final class Base64StreamDecoder {
+
+        private static final int CHUNK_SIZE = 16 * 1024;
+
+        private final OutputStream out;
+        private final StringBuilder pending = new StringBuilder();
+        private long count;
+
+        private Base64StreamDecoder(OutputStream out) {
+            this.out = out;
+        }
+
+        private void write(String data) throws IOException {
+            for (int i = 0; i < data.length(); i++) {
+                final char c = data.charAt(i);
+                if (!Character.isWhitespace(c)) {
+                    pending.append(c);
+                }
+            }
+            if (pending.length() >= CHUNK_SIZE) {
+                final int length = pending.length() & ~3;
+                decode(pending.substring(0, length));
+                pending.delete(0, length);
+            }
+        }
+
+        private long finish() throws IOException {
+            if (pending.length() > 0) {
+                decode(pending.toString());
+                pending.setLength(0);
+            }
+            return count;
+        }
+
+        private void decode(String text) throws IOException {
+            final byte[] bytes = Base64.getMimeDecoder().decode(text);
+            out.write(bytes);
+            count += bytes.length;
+        }
+    }
 }
@@ -23,6 +23,7 @@
 
 package com.eischet.ews.api.core;
 
+import com.eischet.ews.api.EWSConstants;
 import com.eischet.ews.api.autodiscover.AutodiscoverService;
 import com.eischet.ews.api.autodiscover.IAutodiscoverRedirectionUrl;
 import com.eischet.ews.api.autodiscover.enumeration.UserSettingName;
@@ -32,6 +33,7 @@ import com.eischet.ews.api.autodiscover.response.GetUserSettingsResponse;
 import com.eischet.ews.api.core.enumeration.availability.AvailabilityData;
 import com.eischet.ews.api.core.enumeration.misc.*;
 import com.eischet.ews.api.core.enumeration.notification.EventType;
+import com.eischet.ews.api.core.enumeration.property.BasePropertySet;
 import com.eischet.ews.api.core.enumeration.property.BodyType;
 import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
 import com.eischet.ews.api.core.enumeration.search.ResolveNameSearchLocation;
@@ -51,11 +53,14 @@ import com.eischet.ews.api.core.service.folder.Folder;
 import com.eischet.ews.api.core.service.item.Appointment;
 import com.eischet.ews.api.core.service.item.Conversation;
 import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
 import com.eischet.ews.api.http.ExchangeHttpClient;
 import com.eischet.ews.api.messaging.UnifiedMessaging;
 import com.eischet.ews.api.misc.*;
 import com.eischet.ews.api.misc.availability.AttendeeInfo;
 import com.eischet.ews.api.misc.availability.AvailabilityOptions;
+import com.eischet.ews.api.misc.availability.AvailabilityRequestSplitter;
+import com.eischet.ews.api.misc.availability.FreeBusyCache;
 import com.eischet.ews.api.misc.availability.GetUserAvailabilityResults;
 import com.eischet.ews.api.misc.availability.TimeWindow;
 import com.eischet.ews.api.misc.id.AlternateIdBase;
@@ -72,17 +77,23 @@ import com.eischet.ews.api.search.filter.SearchFilter;
 import com.eischet.ews.api.sync.ChangeCollection;
 import com.eischet.ews.api.sync.FolderChange;
 import com.eischet.ews.api.sync.ItemChange;
+import com.eischet.ews.api.sync.ItemCache;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -97,6 +108,12 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
 
     private static final Logger LOG = Logger.getLogger(ExchangeService.class.getCanonicalName());
 
+    /**
+     * The properties loaded when MIME content is written to a stream.
+     */
+    private static final PropertySet MIME_CONTENT_PROPERTY_SET =
+            new PropertySet(BasePropertySet.IdOnly, ItemSchema.MimeContent);
+
     /**
      * The url.
      */
@@ -116,6 +133,36 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
      * The impersonated user id.
      */
     private ImpersonatedUserId impersonatedUserId;
+
+    /**
+     * The anchor mailbox, sent as X-AnchorMailbox header.
+     */
+    private String anchorMailbox;
+
+    /**
+     * The free/busy cache used by getUserAvailability.
+     */
+    private FreeBusyCache freeBusyCache;
+
+    /**
+     * The maximum number of concurrent requests when a call is split into several requests.
+     */
+    private int maxConcurrentRequests = 4;
+
+    /**
+     * The cache of server time zone definitions.
+     */
+    private ServerTimeZoneCache serverTimeZoneCache = new ServerTimeZoneCache();
+
+    /**
+     * Shares identical concurrent read requests, or null if request coalescing is disabled.
+     */
+    private RequestCoalescer requestCoalescer;
+
+    /**
+     * The cache consulted by bindToItem, or null if items are not cached.
+     */
+    private ItemCache itemCache;
     // private Iterator<ItemId> Iterator;
     /**
      * The file attachment content handler.
@@ -382,6 +429,19 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         EwsUtilities.validateParam(folderId, "folderId");
         EwsUtilities.validateParam(propertySet, "propertySet");
 
+        final RequestCoalescer coalescer = this.requestCoalescer;
+        if (coalescer != null) {
+            return coalescer.execute(RequestCoalescer.keyOf("GetFolder", RequestCoalescer.keyOf(folderId),
+                    propertySet, this.getMailboxContext()), () -> this.internalBindToFolder(folderId, propertySet));
+        }
+        return this.internalBindToFolder(folderId, propertySet);
+    }
+
+    /**
+     * Binds to a folder, without request coalescing.
+     */
+    private Folder internalBindToFolder(FolderId folderId, PropertySet propertySet)
+            throws Exception {
         GetFolderRequest request = new GetFolderRequest(this,
                 ServiceErrorHandling.ThrowOnError);
 
@@ -627,6 +687,36 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
                 ServiceErrorHandling.ReturnErrors);
     }
 
+    /**
+     * Applies the same changes to multiple items in a single EWS call, without loading the items. The updates are
+     * serialized once and repeated for every item.
+     *
+     * @param itemIds                            the ids of the items; their change keys are updated when an item
+     *                                           has been updated
+     * @param changes                            the changes
+     * @param conflictResolution                 the conflict resolution
+     * @param messageDisposition                 the message disposition, required when updating messages
+     * @param sendInvitationsOrCancellationsMode the send invitations or cancellations mode, required when updating
+     *                                           calendar items
+     * @return A ServiceResponseCollection providing update results for each of the specified item ids.
+     * @throws Exception the exception
+     */
+    public ServiceResponseCollection<UpdateItemResponse> updateItems(
+            Collection<ItemId> itemIds,
+            ItemChangeSet changes,
+            ConflictResolutionMode conflictResolution,
+            MessageDisposition messageDisposition,
+            SendInvitationsOrCancellationsMode sendInvitationsOrCancellationsMode) throws Exception {
+        UpdateItemsWithChangeSetRequest request = new UpdateItemsWithChangeSetRequest(this,
+                ServiceErrorHandling.ReturnErrors);
+        request.getItemIds().addAll(itemIds);
+        request.setChangeSet(changes);
+        request.setConflictResolutionMode(conflictResolution);
+        request.setMessageDisposition(messageDisposition);
+        request.setSendInvitationsOrCancellationsMode(sendInvitationsOrCancellationsMode);
+        return request.execute();
+    }
+
     /**
      * Updates an item.
      *
@@ -1247,6 +1337,73 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         return this.internalBindToItems(itemIds, propertySet, ServiceErrorHandling.ReturnErrors);
     }
 
+    /**
+     * Writes the MIME content of an item to a stream. The content is decoded as it arrives instead of being
+     * loaded into the item, so messages of any size are exported with constant memory. Tracing of EwsResponse
+     * reads the whole response into memory first.
+     *
+     * @param itemId the item id
+     * @param stream the stream; it is flushed but not closed
+     * @return the item, without MIME content
+     * @throws Exception the exception
+     */
+    public Item writeMimeContent(ItemId itemId, OutputStream stream) throws Exception {
+        EwsUtilities.validateParam(itemId, "itemId");
+        EwsUtilities.validateParam(stream, "stream");
+        final OutputStream target = new FilterOutputStream(stream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        GetItemRequest request = new GetItemRequest(this, ServiceErrorHandling.ThrowOnError);
+        request.getItemIds().addRange(Arrays.asList(itemId));
+        request.setPropertySet(MIME_CONTENT_PROPERTY_SET);
+        request.setMimeContentHandler((itemIndex, characterSet) -> target);
+        return request.execute().getResponseAtIndex(0).getItem();
+    }
+
+    /**
+     * Writes the MIME content of multiple items to the streams of a handler, in a single call to EWS. The content
+     * is decoded as it arrives instead of being loaded into the items.
+     *
+     * @param itemIds     the item ids
+     * @param propertySet the properties to load; must include ItemSchema.MimeContent
+     * @param handler     the handler providing a stream for each item, by its index in itemIds
+     * @return A ServiceResponseCollection providing results for each of the specified item Ids.
+     * @throws Exception the exception
+     */
+    public ServiceResponseCollection<GetItemResponse> writeMimeContents(
+            Iterable<ItemId> itemIds, PropertySet propertySet, IMimeContentHandler handler) throws Exception {
+        EwsUtilities.validateParamCollection(itemIds.iterator(), "itemIds");
+        EwsUtilities.validateParam(propertySet, "propertySet");
+        EwsUtilities.validateParam(handler, "handler");
+
+        GetItemRequest request = new GetItemRequest(this, ServiceErrorHandling.ReturnErrors);
+        request.getItemIds().addRange(itemIds);
+        request.setPropertySet(propertySet);
+        request.setMimeContentHandler(handler);
+        return request.execute();
+    }
+
+    /**
+     * Writes the MIME content of multiple items to the streams of a handler, in a single call to EWS.
+     *
+     * @param itemIds the item ids
+     * @param handler the handler providing a stream for each item, by its index in itemIds
+     * @return A ServiceResponseCollection providing results for each of the specified item Ids.
+     * @throws Exception the exception
+     */
+    public ServiceResponseCollection<GetItemResponse> writeMimeContents(
+            Iterable<ItemId> itemIds, IMimeContentHandler handler) throws Exception {
+        return this.writeMimeContents(itemIds, MIME_CONTENT_PROPERTY_SET, handler);
+    }
+
     /**
      * Binds to multiple item in a single call to EWS.
      *
@@ -1260,12 +1417,37 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
             throws Exception {
         EwsUtilities.validateParam(itemId, "itemId");
         EwsUtilities.validateParam(propertySet, "propertySet");
-        List<ItemId> itmLst = new ArrayList<ItemId>();
-        itmLst.add(itemId);
-        ServiceResponseCollection<GetItemResponse> responses = this
-                .internalBindToItems(itmLst, propertySet, ServiceErrorHandling.ThrowOnError);
 
-        return responses.getResponseAtIndex(0).getItem();
+        final ItemCache cache = this.itemCache;
+        if (cache != null) {
+            final Item cached = cache.get(this, itemId, propertySet);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        final RequestCoalescer coalescer = this.requestCoalescer;
+        if (coalescer != null && itemId.getUniqueId() != null) {
+            return coalescer.execute(RequestCoalescer.keyOf("GetItem", itemId.getUniqueId(), propertySet,
+                    this.getMailboxContext()), () -> this.internalBindToItem(itemId, propertySet, cache));
+        } else {
+            return this.internalBindToItem(itemId, propertySet, cache);
+        }
+    }
+
+    /**
+     * Binds to an item, without request coalescing, and stores it in the item cache, if any.
+     */
+    private Item internalBindToItem(ItemId itemId, PropertySet propertySet, ItemCache cache)
+            throws Exception {
+        GetItemRequest request = new GetItemRequest(this, ServiceErrorHandling.ThrowOnError);
+        request.getItemIds().addRange(Collections.singletonList(itemId));
+        request.setPropertySet(propertySet);
+        request.setRetainItemXml(cache != null);
+        GetItemResponse response = request.execute().getResponseAtIndex(0);
+        if (cache != null) {
+            cache.put(this, response.getItem(), response.getItemXml(), propertySet);
+        }
+        return response.getItem();
     }
 
     /**
@@ -1427,6 +1609,31 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
 
     }
 
+    /**
+     * Gets multiple attachments in a single call to EWS, writing the content of file attachments to the streams
+     * of a handler as it arrives instead of loading it into the attachments. The handler is used for this call
+     * only; the one set on this service is not affected.
+     *
+     * @param attachments the attachments
+     * @param handler     the handler providing a stream for each file attachment, by its id; when it returns
+     *                    null, the content is loaded into the attachment
+     * @return A ServiceResponseCollection providing results for each of the specified attachments.
+     * @throws Exception the exception
+     */
+    public ServiceResponseCollection<GetAttachmentResponse> writeAttachmentContents(
+            Iterable<? extends Attachment> attachments, IFileAttachmentContentHandler handler) throws Exception {
+        EwsUtilities.validateParamCollection(attachments.iterator(), "attachments");
+        EwsUtilities.validateParam(handler, "handler");
+
+        final ExchangeService view = this.forMailbox(this.getMailboxContext());
+        view.setFileAttachmentContentHandler(handler);
+        final List<Attachment> attachmentList = new ArrayList<Attachment>();
+        for (Attachment attachment : attachments) {
+            attachmentList.add(attachment);
+        }
+        return view.internalGetAttachments(attachmentList, null, null, ServiceErrorHandling.ReturnErrors);
+    }
+
     /**
      * Creates attachments.
      *
@@ -2503,6 +2710,12 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     /**
      * Gets detailed information about the availability of a set of users,
      * rooms, and resources within a specified time window.
+     * <p>
+     * Free/busy queries with more than 100 attendees or a time window longer than
+     * 42 days are split into several requests, which are sent concurrently
+     * (see {@link #setMaxConcurrentRequests(int)}), and their results are merged.
+     * If a free/busy cache is set, cached results are used for free/busy queries.
+     * </p>
      *
      * @param attendees     the attendees
      * @param timeWindow    the time window
@@ -2522,6 +2735,13 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         EwsUtilities.validateParam(timeWindow, "timeWindow");
         EwsUtilities.validateParam(options, "options");
 
+        List<AttendeeInfo> attendeeList = new ArrayList<AttendeeInfo>();
+        attendees.forEach(attendeeList::add);
+        if (AvailabilityRequestSplitter.isApplicable(attendeeList.size(), timeWindow, requestedData, freeBusyCache)) {
+            return AvailabilityRequestSplitter.execute(this, attendeeList, timeWindow, options, freeBusyCache,
+                    maxConcurrentRequests);
+        }
+
         GetUserAvailabilityRequest request = new GetUserAvailabilityRequest(this);
 
         request.setAttendees(attendees);
@@ -2640,7 +2860,7 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
      *                            specified folder. Can be null if tis is then it stops the
      *                            always move action
      * @param errorHandlingMode   The error handling mode.
-     * @throws Exception
+     * @throws Exception the exception
      */
     private ServiceResponseCollection<ServiceResponse> applyConversationAction(
             ConversationActionType actionType,
@@ -2659,9 +2879,9 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
 
         ApplyConversationActionRequest request = new ApplyConversationActionRequest(
                 this, errorHandlingMode);
-        ConversationAction action = new ConversationAction();
 
         for (ConversationId conversationId : conversationIds) {
+            ConversationAction action = new ConversationAction();
             action.setAction(actionType);
             action.setConversationId(conversationId);
             action.setProcessRightAway(processRightAway);
@@ -2732,6 +2952,25 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         return request.execute();
     }
 
+    /**
+     * Applies prepared conversation actions with a single call to EWS. Actions of different types may be mixed.
+     *
+     * @param actions the actions, each with its conversation id set
+     * @return the responses, in the order of the actions
+     * @throws Exception the exception
+     */
+    public ServiceResponseCollection<ServiceResponse> applyConversationActions(
+            Collection<ConversationAction> actions) throws Exception {
+        EwsUtilities.validateParamCollection(actions.iterator(), "actions");
+        EwsUtilities.validateMethodVersion(this,
+                ExchangeVersion.Exchange2010_SP1, "ApplyConversationAction");
+
+        ApplyConversationActionRequest request = new ApplyConversationActionRequest(
+                this, ServiceErrorHandling.ReturnErrors);
+        request.getConversationActions().addAll(actions);
+        return request.execute();
+    }
+
     /**
      * Sets up a conversation so that any item received within that conversation
      * is always categorized. Calling this method results in a call to EWS.
@@ -3263,6 +3502,22 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         EwsUtilities.validateParam(name, "name");
         EwsUtilities.validateParam(parentFolderId, "parentFolderId");
 
+        final RequestCoalescer coalescer = this.requestCoalescer;
+        if (coalescer != null) {
+            return coalescer.execute(RequestCoalescer.keyOf("GetUserConfiguration",
+                            name + "|" + RequestCoalescer.keyOf(parentFolderId) + "|" + properties, null,
+                            this.getMailboxContext()),
+                    () -> this.internalGetUserConfiguration(name, parentFolderId, properties));
+        }
+        return this.internalGetUserConfiguration(name, parentFolderId, properties);
+    }
+
+    /**
+     * Gets a UserConfiguration, without request coalescing.
+     */
+    private UserConfiguration internalGetUserConfiguration(String name, FolderId parentFolderId,
+                                                           UserConfigurationProperties properties)
+            throws Exception {
         GetUserConfigurationRequest request = new GetUserConfigurationRequest(this);
 
         request.setName(name);
@@ -3611,6 +3866,61 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         super(requestedServerVersion, client);
     }
 
+    /**
+     * Initializes a new instance which shares the HTTP client, credentials, headers, trace listener and
+     * all other settings of the given service, but uses its own mailbox context.
+     *
+     * @param service the service to share the settings of
+     * @param context the mailbox context
+     */
+    protected ExchangeService(ExchangeService service, MailboxContext context) {
+        super(service, service.getRequestedServerVersion());
+        this.url = service.url;
+        this.dateTimePrecision = service.dateTimePrecision;
+        this.fileAttachmentContentHandler = service.fileAttachmentContentHandler;
+        this.enableScpLookup = service.enableScpLookup;
+        this.exchange2007CompatibilityMode = service.exchange2007CompatibilityMode;
+        this.setOnSerializeCustomSoapHeaders(service.getOnSerializeCustomSoapHeaders());
+        this.impersonatedUserId = context.getImpersonatedUserId();
+        this.anchorMailbox = context.getAnchorMailbox();
+        this.preferredCulture = context.getPreferredCulture();
+        this.freeBusyCache = service.freeBusyCache;
+        this.maxConcurrentRequests = service.maxConcurrentRequests;
+        this.serverTimeZoneCache = service.serverTimeZoneCache;
+        this.requestCoalescer = service.requestCoalescer;
+        this.itemCache = service.itemCache;
+    }
+
+    /**
+     * Creates a lightweight service for the given mailbox context.
+     * <p>
+     * The returned service shares the HTTP client (and thus its connection pool), the credentials, the HTTP
+     * headers and the trace listener with this service; settings are copied when this method is called, so
+     * later changes to this service are not seen by the returned one. Each returned service has its own
+     * server info and response headers, so different mailboxes can be used from different threads without
+     * changing {@link #setImpersonatedUserId(ImpersonatedUserId)} on a shared instance.
+     * </p>
+     *
+     * @param context the mailbox context
+     * @return a service bound to the given mailbox context
+     */
+    public ExchangeService forMailbox(MailboxContext context) {
+        if (context == null) {
+            throw new IllegalArgumentException("context must not be null");
+        }
+        return new ExchangeService(this, context);
+    }
+
+    /**
+     * Gets the mailbox context of this service, i.e. the current impersonated user, anchor mailbox and
+     * preferred culture.
+     *
+     * @return a snapshot of the mailbox context
+     */
+    public MailboxContext getMailboxContext() {
+        return new MailboxContext(impersonatedUserId, anchorMailbox, preferredCulture);
+    }
+
     // Utilities
 
     /**
@@ -3622,13 +3932,27 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
      */
     public ExchangeHttpClient.Request prepareHttpWebRequest()
             throws ServiceLocalException, URISyntaxException {
+        return prepareHttpWebRequest(resolveAnchorMailbox(null), false);
+    }
+
+    /**
+     * Prepare http web request for an anchor mailbox.
+     *
+     * @param anchorMailbox        the anchor mailbox sent as X-AnchorMailbox header, or null
+     * @param preferServerAffinity true to ask the server for an affinity cookie
+     * @return the http web request
+     * @throws ServiceLocalException       the service local exception
+     * @throws java.net.URISyntaxException the uRI syntax exception
+     */
+    public ExchangeHttpClient.Request prepareHttpWebRequest(String anchorMailbox, boolean preferServerAffinity)
+            throws ServiceLocalException, URISyntaxException {
         try {
             this.url = this.adjustServiceUriFromCredentials(this.getUrl());
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "error preparing HTTP request", e);
         }
         return this.prepareHttpWebRequestForUrl(url, this
-                .getAcceptGzipEncoding(), true);
+                .getAcceptGzipEncoding(), true, getRequestHttpHeaders(anchorMailbox, preferServerAffinity));
     }
 
     /**
@@ -3639,12 +3963,48 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
      * @throws java.net.URISyntaxException the uRI syntax exception
      */
     public ExchangeHttpClient.Request prepareHttpPoolingWebRequest() throws ServiceLocalException, URISyntaxException {
+        return prepareHttpPoolingWebRequest(resolveAnchorMailbox(null), false);
+    }
+
+    /**
+     * Prepares a http web request from a pooling connection manager for an anchor mailbox, used for
+     * subscriptions.
+     *
+     * @param anchorMailbox        the anchor mailbox sent as X-AnchorMailbox header, or null
+     * @param preferServerAffinity true to ask the server for an affinity cookie
+     * @return A http web request
+     * @throws ServiceLocalException       The service local exception
+     * @throws java.net.URISyntaxException the uRI syntax exception
+     */
+    public ExchangeHttpClient.Request prepareHttpPoolingWebRequest(String anchorMailbox, boolean preferServerAffinity)
+            throws ServiceLocalException, URISyntaxException {
         try {
             this.url = this.adjustServiceUriFromCredentials(this.getUrl());
         } catch (Exception e) {
             LOG.log(Level.SEVERE, "error preparing pooling HTTP request", e);
         }
-        return this.prepareHttpPoolingWebRequestForUrl(url, this.getAcceptGzipEncoding(), true);
+        return this.prepareHttpPoolingWebRequestForUrl(url, this.getAcceptGzipEncoding(), true,
+                getRequestHttpHeaders(anchorMailbox, preferServerAffinity));
+    }
+
+    /**
+     * Determines the anchor mailbox for a request: the anchor mailbox set on this service, else the mailbox
+     * the request itself targets, else the impersonated user if impersonating by SMTP address.
+     *
+     * @param requestAnchorMailbox the mailbox targeted by the request, or null
+     * @return the anchor mailbox, or null if there is none
+     */
+    public String resolveAnchorMailbox(String requestAnchorMailbox) {
+        if (anchorMailbox != null && !anchorMailbox.isEmpty()) {
+            return anchorMailbox;
+        }
+        if (requestAnchorMailbox != null && !requestAnchorMailbox.isEmpty()) {
+            return requestAnchorMailbox;
+        }
+        if (impersonatedUserId != null && impersonatedUserId.getIdType() == ConnectingIdType.SmtpAddress) {
+            return impersonatedUserId.getId();
+        }
+        return null;
     }
 
     /**
@@ -3656,6 +4016,38 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
                 TraceFlags.EwsResponseHttpHeaders, TraceFlags.EwsResponse);
     }
 
+    /**
+     * Adds the X-AnchorMailbox header to the shared HTTP headers if there is an anchor mailbox.
+     */
+    @Override
+    protected Map<String, String> getRequestHttpHeaders() {
+        return getRequestHttpHeaders(resolveAnchorMailbox(null), false);
+    }
+
+    /**
+     * Gets the HTTP headers for a request to an anchor mailbox: the shared headers, X-AnchorMailbox and,
+     * if known, the backend affinity cookie of that mailbox.
+     *
+     * @param anchorMailbox        the anchor mailbox, or null
+     * @param preferServerAffinity true to send X-PreferServerAffinity
+     * @return the headers for the request
+     */
+    protected Map<String, String> getRequestHttpHeaders(String anchorMailbox, boolean preferServerAffinity) {
+        if (anchorMailbox == null || anchorMailbox.isEmpty()) {
+            return super.getRequestHttpHeaders();
+        }
+        Map<String, String> headers = new HashMap<>(super.getRequestHttpHeaders());
+        headers.put(EWSConstants.ANCHOR_MAILBOX_HEADER, anchorMailbox);
+        if (preferServerAffinity) {
+            headers.put(EWSConstants.PREFER_SERVER_AFFINITY_HEADER, "true");
+        }
+        String affinityCookie = getAffinityCookies().getCookieHeader(anchorMailbox);
+        if (affinityCookie != null && !headers.containsKey("Cookie")) {
+            headers.put("Cookie", affinityCookie);
+        }
+        return headers;
+    }
+
     // Properties
 
     /**
@@ -3694,6 +4086,140 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
         this.impersonatedUserId = impersonatedUserId;
     }
 
+    /**
+     * Gets the anchor mailbox.
+     *
+     * @return the SMTP address sent as X-AnchorMailbox header, or null
+     */
+    public String getAnchorMailbox() {
+        return anchorMailbox;
+    }
+
+    /**
+     * Sets the anchor mailbox. Exchange uses the X-AnchorMailbox header to route a request directly to the
+     * server hosting that mailbox.
+     *
+     * @param anchorMailbox the SMTP address of the anchor mailbox, or null for none
+     */
+    public void setAnchorMailbox(String anchorMailbox) {
+        this.anchorMailbox = anchorMailbox;
+    }
+
+    /**
+     * Gets the free/busy cache.
+     *
+     * @return the free/busy cache, or null if free/busy information is not cached
+     */
+    public FreeBusyCache getFreeBusyCache() {
+        return freeBusyCache;
+    }
+
+    /**
+     * Sets the free/busy cache used by getUserAvailability for free/busy queries.
+     *
+     * @param freeBusyCache the free/busy cache, or null to disable caching
+     */
+    public void setFreeBusyCache(FreeBusyCache freeBusyCache) {
+        this.freeBusyCache = freeBusyCache;
+    }
+
+    /**
+     * Gets the cache of server time zone definitions.
+     *
+     * @return the cache, or null if server time zones are fetched on every call
+     */
+    public ServerTimeZoneCache getServerTimeZoneCache() {
+        return serverTimeZoneCache;
+    }
+
+    /**
+     * Sets the cache of server time zone definitions used by getServerTimeZones. By default, each service
+     * has its own cache, shared with the services created by {@link #forMailbox(MailboxContext)}; several
+     * services may also share one.
+     *
+     * @param serverTimeZoneCache the cache, or null to fetch server time zones on every call
+     */
+    public void setServerTimeZoneCache(ServerTimeZoneCache serverTimeZoneCache) {
+        this.serverTimeZoneCache = serverTimeZoneCache;
+    }
+
+    /**
+     * Gets whether identical concurrent reads share one request.
+     *
+     * @return true if request coalescing is enabled
+     */
+    public boolean isRequestCoalescingEnabled() {
+        return requestCoalescer != null;
+    }
+
+    /**
+     * Enables or disables request coalescing. When enabled, concurrent calls of bindToItem, bindToFolder and
+     * getUserConfiguration for the same id, property set and mailbox context share one request and receive the
+     * same result object, which should then be treated as read-only. Services created by
+     * {@link #forMailbox(MailboxContext)} afterwards share the coalescing with this service.
+     *
+     * @param enabled true to enable request coalescing
+     */
+    public void setRequestCoalescingEnabled(boolean enabled) {
+        if (enabled && requestCoalescer == null) {
+            requestCoalescer = new RequestCoalescer();
+        } else if (!enabled) {
+            requestCoalescer = null;
+        }
+    }
+
+    /**
+     * Gets the request coalescer, e.g. to read its statistics.
+     *
+     * @return the request coalescer, or null if request coalescing is disabled
+     */
+    public RequestCoalescer getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    /**
+     * Gets the item cache consulted by {@link #bindToItem(ItemId, PropertySet)}.
+     *
+     * @return the item cache, or null if items are not cached
+     */
+    public ItemCache getItemCache() {
+        return itemCache;
+    }
+
+    /**
+     * Sets the item cache consulted by {@link #bindToItem(ItemId, PropertySet)}. Every hit is a new item instance
+     * bound to this service. Services created by {@link #forMailbox(MailboxContext)} afterwards share the cache with
+     * this service, but only see the items loaded in their own mailbox context.
+     *
+     * @param itemCache the item cache, or null to always load items
+     */
+    public void setItemCache(ItemCache itemCache) {
+        this.itemCache = itemCache;
+    }
+
+    /**
+     * Gets the maximum number of requests sent at the same time when a call has to be split
+     * into several requests.
+     *
+     * @return the maximum number of concurrent requests
+     */
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests sent at the same time when a call has to be split
+     * into several requests. A value of 1 sends them one after another.
+     *
+     * @param maxConcurrentRequests the maximum number of concurrent requests
+     */
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("maxConcurrentRequests must be at least 1");
+        }
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
     /**
      * Gets the preferred culture.
      *
@@ -3812,7 +4338,8 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     }
 
     /**
-     * Retrieves the definitions of the specified server-side time zones.
+     * Retrieves the definitions of the specified server-side time zones. The definitions are served from the
+     * server time zone cache, if one is set.
      *
      * @param timeZoneIds the time zone ids
      * @return A Collection containing the definitions of the specified time
@@ -3821,15 +4348,7 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
      */
     public Collection<TimeZoneDefinition> getServerTimeZones(
             Iterable<String> timeZoneIds) throws Exception {
-        Map<String, TimeZoneDefinition> timeZoneMap = new HashMap<String, TimeZoneDefinition>();
-
-        GetServerTimeZonesRequest request = new GetServerTimeZonesRequest(this);
-        ServiceResponseCollection<GetServerTimeZonesResponse> responses = request.execute();
-        for (GetServerTimeZonesResponse response : responses) {
-            for (TimeZoneDefinition tzd : response.getTimeZones()) {
-                timeZoneMap.put(tzd.getId(), tzd);
-            }
-        }
+        Map<String, TimeZoneDefinition> timeZoneMap = this.getServerTimeZoneMap();
 
         Collection<TimeZoneDefinition> timeZoneList = new ArrayList<TimeZoneDefinition>();
 
@@ -3841,13 +4360,41 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
     }
 
     /**
-     * Retrieves the definitions of all server-side time zones.
+     * Retrieves the definitions of all server-side time zones. The definitions are served from the
+     * server time zone cache, if one is set.
      *
      * @return A Collection containing the definitions of the specified time
      * zones.
      * @throws Exception
      */
     public Collection<TimeZoneDefinition> getServerTimeZones() throws Exception {
+        return new ArrayList<TimeZoneDefinition>(this.getServerTimeZoneMap().values());
+    }
+
+    /**
+     * Gets the definition of a server-side time zone.
+     *
+     * @param timeZoneId the time zone id, e.g. "W. Europe Standard Time"
+     * @return the definition, or null if the server does not know the time zone
+     * @throws Exception
+     */
+    public TimeZoneDefinition getServerTimeZone(String timeZoneId) throws Exception {
+        return this.getServerTimeZoneMap().get(timeZoneId);
+    }
+
+    /**
+     * Gets all server-side time zones indexed by id, from the cache if possible.
+     */
+    private Map<String, TimeZoneDefinition> getServerTimeZoneMap() throws Exception {
+        final ServerTimeZoneCache cache = this.serverTimeZoneCache;
+        final String server = this.getUrl() + "|" + this.getRequestedServerVersion();
+        if (cache != null) {
+            final Map<String, TimeZoneDefinition> cached = cache.get(server);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
         GetServerTimeZonesRequest request = new GetServerTimeZonesRequest(this);
         Collection<TimeZoneDefinition> timeZoneList = new ArrayList<TimeZoneDefinition>();
         ServiceResponseCollection<GetServerTimeZonesResponse> responses = request.execute();
@@ -3855,7 +4402,14 @@ public class ExchangeService extends ExchangeServiceBase implements IAutodiscove
             timeZoneList.addAll(response.getTimeZones());
         }
 
-        return timeZoneList;
+        if (cache != null) {
+            return cache.put(server, timeZoneList);
+        }
+        Map<String, TimeZoneDefinition> timeZoneMap = new LinkedHashMap<String, TimeZoneDefinition>();
+        for (TimeZoneDefinition tzd : timeZoneList) {
+            timeZoneMap.put(tzd.getId(), tzd);
+        }
+        return timeZoneMap;
     }
 
     /*
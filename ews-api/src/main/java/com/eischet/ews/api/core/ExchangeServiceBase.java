@@ -31,6 +31,7 @@ import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
 import com.eischet.ews.api.core.exception.service.remote.AccountIsLockedException;
 import com.eischet.ews.api.credential.ExchangeCredentials;
 import com.eischet.ews.api.http.ExchangeHttpClient;
+import com.eischet.ews.api.http.MailboxAffinityCookies;
 import com.eischet.ews.api.misc.EwsTraceListener;
 import com.eischet.ews.api.misc.ITraceListener;
 
@@ -72,6 +73,7 @@ public abstract class ExchangeServiceBase implements Closeable {
     private ExchangeServerInfo serverInfo;
     private Map<String, String> httpHeaders = new HashMap<>();
     private final Map<String, String> httpResponseHeaders = new HashMap<String, String>();
+    private MailboxAffinityCookies affinityCookies = new MailboxAffinityCookies();
 
     protected ExchangeHttpClient httpClient;
 
@@ -117,6 +119,7 @@ public abstract class ExchangeServiceBase implements Closeable {
         this.userAgent = service.getUserAgent();
         this.acceptGzipEncoding = service.getAcceptGzipEncoding();
         this.httpHeaders = service.getHttpHeaders();
+        this.affinityCookies = service.getAffinityCookies();
     }
 
 
@@ -156,6 +159,24 @@ public abstract class ExchangeServiceBase implements Closeable {
      */
     protected ExchangeHttpClient.Request prepareHttpWebRequestForUrl(URI url, boolean acceptGzipEncoding,
                                                          boolean allowAutoRedirect) throws ServiceLocalException, URISyntaxException {
+        return prepareHttpWebRequestForUrl(url, acceptGzipEncoding, allowAutoRedirect, getRequestHttpHeaders());
+    }
+
+    /**
+     * Creates an HttpWebRequest instance and initialises it with the
+     * appropriate parameters and the given HTTP headers.
+     *
+     * @param url                The URL that the HttpWebRequest should target.
+     * @param acceptGzipEncoding If true, ask server for GZip compressed content.
+     * @param allowAutoRedirect  If true, redirection response will be automatically followed.
+     * @param headers            The HTTP headers to send.
+     * @return An initialised instance of HttpWebRequest.
+     * @throws ServiceLocalException       the service local exception
+     * @throws java.net.URISyntaxException the uRI syntax exception
+     */
+    protected ExchangeHttpClient.Request prepareHttpWebRequestForUrl(URI url, boolean acceptGzipEncoding,
+                                                         boolean allowAutoRedirect, Map<String, String> headers)
+            throws ServiceLocalException, URISyntaxException {
         // Verify that the protocol is something that we can handle
         String scheme = url.getScheme();
         if (!scheme.equalsIgnoreCase(EWSConstants.HTTP_SCHEME)
@@ -166,7 +187,7 @@ public abstract class ExchangeServiceBase implements Closeable {
 
         final ExchangeHttpClient.Request request = httpClient.createRequest();
         // HttpClientWebRequest request = new HttpClientWebRequest(httpClient, httpContext);
-        prepareHttpWebRequestForUrl(url, acceptGzipEncoding, allowAutoRedirect, request);
+        prepareHttpWebRequestForUrl(url, acceptGzipEncoding, allowAutoRedirect, headers, request);
 
         return request;
     }
@@ -187,6 +208,24 @@ public abstract class ExchangeServiceBase implements Closeable {
      */
     protected ExchangeHttpClient.Request prepareHttpPoolingWebRequestForUrl(URI url, boolean acceptGzipEncoding,
                                                                             boolean allowAutoRedirect) throws ServiceLocalException, URISyntaxException {
+        return prepareHttpPoolingWebRequestForUrl(url, acceptGzipEncoding, allowAutoRedirect, getRequestHttpHeaders());
+    }
+
+    /**
+     * Creates an HttpWebRequest instance from a pooling connection manager and initialises it with
+     * the appropriate parameters and the given HTTP headers.
+     *
+     * @param url                The URL that the HttpWebRequest should target.
+     * @param acceptGzipEncoding If true, ask server for GZip compressed content.
+     * @param allowAutoRedirect  If true, redirection response will be automatically followed.
+     * @param headers            The HTTP headers to send.
+     * @return An initialised instance of HttpWebRequest.
+     * @throws ServiceLocalException       the service local exception
+     * @throws java.net.URISyntaxException the uRI syntax exception
+     */
+    protected ExchangeHttpClient.Request prepareHttpPoolingWebRequestForUrl(URI url, boolean acceptGzipEncoding,
+                                                                            boolean allowAutoRedirect, Map<String, String> headers)
+            throws ServiceLocalException, URISyntaxException {
         // Verify that the protocol is something that we can handle
         String scheme = url.getScheme();
         if (!scheme.equalsIgnoreCase(EWSConstants.HTTP_SCHEME)
@@ -196,13 +235,14 @@ public abstract class ExchangeServiceBase implements Closeable {
         }
 
         final ExchangeHttpClient.Request request = httpClient.createPoolingRequest();
-        prepareHttpWebRequestForUrl(url, acceptGzipEncoding, allowAutoRedirect, request);
+        prepareHttpWebRequestForUrl(url, acceptGzipEncoding, allowAutoRedirect, headers, request);
 
         return request;
     }
 
     private void prepareHttpWebRequestForUrl(URI url, boolean acceptGzipEncoding, boolean allowAutoRedirect,
-                                             ExchangeHttpClient.Request request) throws ServiceLocalException, URISyntaxException {
+                                             Map<String, String> headers, ExchangeHttpClient.Request request)
+            throws ServiceLocalException, URISyntaxException {
         try {
             request.setUrl(url.toURL());
         } catch (MalformedURLException e) {
@@ -217,7 +257,7 @@ public abstract class ExchangeServiceBase implements Closeable {
         request.setUserAgent(userAgent);
         request.setAllowAutoRedirect(allowAutoRedirect);
         request.setAcceptGzipEncoding(acceptGzipEncoding);
-        request.setHeaders(getHttpHeaders());
+        request.setHeaders(headers);
         prepareCredentials(request);
 
         request.prepareConnection();
@@ -658,6 +698,27 @@ public abstract class ExchangeServiceBase implements Closeable {
         return this.httpHeaders;
     }
 
+    /**
+     * Gets the backend affinity cookies received per anchor mailbox. The instance is shared with services
+     * created from this one.
+     *
+     * @return the affinity cookies
+     */
+    public MailboxAffinityCookies getAffinityCookies() {
+        return affinityCookies;
+    }
+
+    /**
+     * Gets the HTTP headers to send with the next request. Subclasses may add headers which depend on
+     * their own state; the map returned by {@link #getHttpHeaders()} must not be modified for that, as it
+     * may be shared with other services.
+     *
+     * @return the headers for the next request
+     */
+    protected Map<String, String> getRequestHttpHeaders() {
+        return getHttpHeaders();
+    }
+
     // Events
 
     /**
@@ -0,0 +1,46 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Provides streams to which the MIME content of items is written while a GetItem response is read, instead of
+ * loading it into the MimeContent property. The content is decoded as it arrives, so even large messages are never
+ * held in memory. Use {@link java.nio.channels.Channels#newOutputStream} to write to a channel.
+ */
+public interface IMimeContentHandler {
+
+    /**
+     * Provides a stream to which the MIME content of an item should be written. The stream is closed once the
+     * content has been written.
+     *
+     * @param itemIndex    the index of the item among the requested item ids
+     * @param characterSet the character set reported by the server, or null
+     * @return a stream, or null to load the content into the MimeContent property
+     * @throws IOException if the stream cannot be opened
+     */
+    OutputStream getOutputStream(int itemIndex, String characterSet) throws IOException;
+}
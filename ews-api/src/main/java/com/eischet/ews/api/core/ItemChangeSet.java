@@ -0,0 +1,339 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.property.PropertyDefinitionFlags;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.ComplexProperty;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.definition.ComplexPropertyDefinitionBase;
+import com.eischet.ews.api.property.definition.ExtendedPropertyDefinition;
+import com.eischet.ews.api.property.definition.PropertyDefinition;
+import com.eischet.ews.api.property.definition.PropertyDefinitionBase;
+import com.eischet.ews.api.security.XmlNodeType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A set of property changes which can be applied to many items at once, without loading or building an Item for
+ * each of them; see {@link ExchangeService#updateItems(java.util.Collection, ItemChangeSet,
+ * com.eischet.ews.api.core.enumeration.service.ConflictResolutionMode,
+ * com.eischet.ews.api.core.enumeration.service.MessageDisposition,
+ * com.eischet.ews.api.core.enumeration.service.SendInvitationsOrCancellationsMode)}.
+ * <p>
+ * The updates are serialized once per server version and repeated for every item of a request. Change sets with
+ * the same item class and the same changes are equal, so they can be used to group items needing the same update.
+ * The values are copied when they are set, so changing e.g. a StringList afterwards does not change the change set.
+ * A change set must not be changed while it is used by a request; once built, it can be shared between threads.
+ * </p>
+ */
+public final class ItemChangeSet {
+
+    /**
+     * The id of the item the changes are recorded on; it is never sent.
+     */
+    private static final String TEMPLATE_ID = "ItemChangeSet";
+
+    /**
+     * The element complex values are written in when they are copied.
+     */
+    private static final String SNAPSHOT_ELEMENT = "ItemChangeSetValue";
+
+    /**
+     * The service complex values are copied with; it targets the newest version, so no element is left out.
+     */
+    private static final ExchangeService SNAPSHOT_SERVICE = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+
+    private final Class<? extends Item> itemClass;
+
+    /**
+     * The changes by property; a null value deletes the property.
+     */
+    private final Map<PropertyDefinitionBase, Object> changes = new LinkedHashMap<>();
+
+    /**
+     * The values of the changes with value semantics, which are compared by equals().
+     */
+    private final Map<PropertyDefinitionBase, Object> valueKeys = new LinkedHashMap<>();
+
+    private final Map<ExchangeVersion, byte[]> serializedUpdates = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes a new instance for changes to properties of all items.
+     */
+    public ItemChangeSet() {
+        this(Item.class);
+    }
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param itemClass the class of the items to change, e.g. EmailMessage.class to change message properties such
+     *                  as IsRead; it determines the element the new values are written in
+     */
+    public ItemChangeSet(Class<? extends Item> itemClass) {
+        if (itemClass == null) {
+            throw new IllegalArgumentException("itemClass must not be null");
+        }
+        this.itemClass = itemClass;
+    }
+
+    /**
+     * Sets a property. The value is copied, so changing it afterwards does not change this change set.
+     *
+     * @param property the property
+     * @param value    the new value
+     * @return this change set
+     * @throws IllegalArgumentException if the property can't be updated or the value can't be copied
+     */
+    public ItemChangeSet set(PropertyDefinition property, Object value) {
+        if (property == null || value == null) {
+            throw new IllegalArgumentException("property and value must not be null, use delete() to remove a property");
+        }
+        if (!property.hasFlag(PropertyDefinitionFlags.CanUpdate)) {
+            throw new IllegalArgumentException(property.getName() + " can't be updated");
+        }
+        return change(property, value);
+    }
+
+    /**
+     * Sets an extended property. The value is copied, so changing it afterwards does not change this change set.
+     *
+     * @param property the extended property
+     * @param value    the new value
+     * @return this change set
+     */
+    public ItemChangeSet set(ExtendedPropertyDefinition property, Object value) {
+        if (property == null || value == null) {
+            throw new IllegalArgumentException("property and value must not be null, use delete() to remove a property");
+        }
+        return change(property, value);
+    }
+
+    /**
+     * Deletes a property or an extended property.
+     *
+     * @param property the property
+     * @return this change set
+     */
+    public ItemChangeSet delete(PropertyDefinitionBase property) {
+        if (property instanceof PropertyDefinition) {
+            if (!((PropertyDefinition) property).hasFlag(PropertyDefinitionFlags.CanDelete)) {
+                throw new IllegalArgumentException(((PropertyDefinition) property).getName() + " can't be deleted");
+            }
+        } else if (!(property instanceof ExtendedPropertyDefinition)) {
+            throw new IllegalArgumentException("property must be a property or an extended property");
+        }
+        return change(property, null);
+    }
+
+    /**
+     * Gets the class of the items to change.
+     *
+     * @return the item class
+     */
+    public Class<? extends Item> getItemClass() {
+        return itemClass;
+    }
+
+    /**
+     * Gets the changes, in the order they were made.
+     *
+     * @return the new values by property; a null value means the property is deleted
+     */
+    public Map<PropertyDefinitionBase, Object> getChanges() {
+        return Collections.unmodifiableMap(changes);
+    }
+
+    /**
+     * Checks whether there are no changes.
+     *
+     * @return true if there are no changes
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * Writes the Updates element of an ItemChange.
+     *
+     * @param writer the writer
+     * @throws Exception if a change cannot be serialized
+     */
+    public void writeUpdatesToXml(EwsServiceXmlWriter writer) throws Exception {
+        final ExchangeService service = (ExchangeService) writer.getService();
+        byte[] updates = serializedUpdates.get(service.getRequestedServerVersion());
+        if (updates == null) {
+            updates = serializeUpdates(service);
+            serializedUpdates.put(service.getRequestedServerVersion(), updates);
+        }
+        writer.writeRawXml(updates);
+    }
+
+    private ItemChangeSet change(PropertyDefinitionBase property, Object value) {
+        Object copy = value;
+        Object key = value;
+        if (value instanceof ComplexProperty) {
+            final String xml = writeSnapshot((ComplexProperty) value);
+            copy = readSnapshot((ComplexPropertyDefinitionBase) property, xml);
+            if (!xml.equals(writeSnapshot((ComplexProperty) copy))) {
+                throw new IllegalArgumentException("the value of " + property.getPrintableName() + " can't be copied");
+            }
+            key = xml;
+        } else if (value instanceof byte[]) {
+            copy = ((byte[]) value).clone();
+            key = ByteBuffer.wrap((byte[]) copy);
+        } else if (value instanceof Object[]) {
+            copy = ((Object[]) value).clone();
+            key = List.of((Object[]) copy);
+        } else if (value instanceof Date) {
+            copy = new Date(((Date) value).getTime());
+        }
+        changes.remove(property);
+        changes.put(property, copy);
+        valueKeys.remove(property);
+        valueKeys.put(property, key);
+        serializedUpdates.clear();
+        return this;
+    }
+
+    /**
+     * Writes a complex value the way it is sent to the server, which also serves as its value for equality.
+     */
+    private static String writeSnapshot(ComplexProperty value) {
+        try {
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            final EwsServiceXmlWriter writer = new EwsServiceXmlWriter(SNAPSHOT_SERVICE, stream);
+            writer.writeStartElement(XmlNamespace.Types, SNAPSHOT_ELEMENT);
+            writer.writeAttributeValue("xmlns", EwsUtilities.EwsTypesNamespacePrefix,
+                    EwsUtilities.EwsTypesNamespace);
+            writer.writeAttributeValue("xmlns", EwsUtilities.EwsMessagesNamespacePrefix,
+                    EwsUtilities.EwsMessagesNamespace);
+            value.writeToXml(writer, SNAPSHOT_ELEMENT);
+            writer.writeEndElement();
+            writer.flush();
+            return new String(stream.toByteArray(), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("the value can't be copied: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a new instance of a complex value from its snapshot.
+     */
+    private static ComplexProperty readSnapshot(ComplexPropertyDefinitionBase property, String xml) {
+        try {
+            final ComplexProperty copy = property.createPropertyInstance(null);
+            final EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                    new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), SNAPSHOT_SERVICE);
+            reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+            reader.readStartElement(XmlNamespace.Types, SNAPSHOT_ELEMENT);
+            reader.readStartElement(copy.getNamespace(), SNAPSHOT_ELEMENT);
+            copy.loadFromXml(reader, SNAPSHOT_ELEMENT);
+            return copy;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("the value of " + property.getPrintableName() + " can't be copied: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Records the changes on an item which looks like an existing one, so the property bag applies the same rules
+     * and writes the same updates as for a real item.
+     */
+    private byte[] serializeUpdates(ExchangeService service) throws Exception {
+        final Item template = EwsUtilities.createItemFromItemClass(service, itemClass);
+        template.getPropertyBag().getProperties().put(ItemSchema.Id, new ItemId(TEMPLATE_ID));
+        final List<ExtendedPropertyDefinition> deletedExtendedProperties = new ArrayList<>();
+        for (Map.Entry<PropertyDefinitionBase, Object> change : changes.entrySet()) {
+            if (change.getKey() instanceof ExtendedPropertyDefinition) {
+                if (change.getValue() != null) {
+                    template.setExtendedProperty((ExtendedPropertyDefinition) change.getKey(), change.getValue());
+                } else {
+                    deletedExtendedProperties.add((ExtendedPropertyDefinition) change.getKey());
+                }
+            } else {
+                template.getPropertyBag().setObjectFromPropertyDefinition((PropertyDefinition) change.getKey(),
+                        change.getValue());
+            }
+        }
+
+        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        final EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, stream);
+        writer.writeStartElement(XmlNamespace.Types, XmlElementNames.Updates);
+        template.getPropertyBag().writeUpdatesToXml(writer);
+        // the extended properties of the template were never loaded, so deleting them is not tracked by the bag
+        for (ExtendedPropertyDefinition property : deletedExtendedProperties) {
+            writer.writeStartElement(XmlNamespace.Types, template.getDeleteFieldXmlElementName());
+            property.writeToXml(writer);
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.flush();
+        return stream.toByteArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ItemChangeSet)) {
+            return false;
+        }
+        final ItemChangeSet that = (ItemChangeSet) o;
+        return itemClass == that.itemClass && valueKeys.equals(that.valueKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(itemClass, valueKeys);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder result = new StringBuilder(itemClass.getSimpleName()).append('{');
+        for (Map.Entry<PropertyDefinitionBase, Object> change : changes.entrySet()) {
+            if (result.charAt(result.length() - 1) != '{') {
+                result.append(", ");
+            }
+            result.append(change.getKey().getPrintableName()).append('=')
+                    .append(change.getValue() != null ? valueKeys.get(change.getKey()) : "(deleted)");
+        }
+        return result.append('}').toString();
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.core.enumeration.misc.ConnectingIdType;
+import com.eischet.ews.api.misc.ImpersonatedUserId;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * The per-mailbox part of an ExchangeService configuration: the impersonated user, the anchor mailbox and the
+ * preferred culture.
+ * <p>
+ * Instances are immutable and can be shared between threads. Use {@link ExchangeService#forMailbox(MailboxContext)}
+ * to obtain a service that sends its requests in this context, while sharing the HTTP client, credentials and
+ * all other settings of the service it was created from.
+ * </p>
+ */
+public final class MailboxContext {
+
+    private final ConnectingIdType impersonatedIdType;
+    private final String impersonatedId;
+    private final String anchorMailbox;
+    private final Locale preferredCulture;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param impersonatedUserId the user to impersonate, or null to act as the authenticated user
+     * @param anchorMailbox      the SMTP address to send as X-AnchorMailbox header, or null for none
+     * @param preferredCulture   the preferred culture, or null for the server default
+     */
+    public MailboxContext(ImpersonatedUserId impersonatedUserId, String anchorMailbox, Locale preferredCulture) {
+        this.impersonatedIdType = impersonatedUserId != null ? impersonatedUserId.getIdType() : null;
+        this.impersonatedId = impersonatedUserId != null ? impersonatedUserId.getId() : null;
+        this.anchorMailbox = anchorMailbox;
+        this.preferredCulture = preferredCulture;
+    }
+
+    /**
+     * Creates a context which impersonates the given SMTP address and uses it as anchor mailbox.
+     *
+     * @param smtpAddress the SMTP address of the mailbox
+     * @return a new context
+     */
+    public static MailboxContext forSmtpAddress(String smtpAddress) {
+        return new MailboxContext(new ImpersonatedUserId(ConnectingIdType.SmtpAddress, smtpAddress), smtpAddress, null);
+    }
+
+    /**
+     * Gets the impersonated user id. A new instance is returned on each call, so changing it does not affect
+     * this context.
+     *
+     * @return the impersonated user id, or null
+     */
+    public ImpersonatedUserId getImpersonatedUserId() {
+        if (impersonatedId == null) {
+            return null;
+        }
+        return new ImpersonatedUserId(impersonatedIdType, impersonatedId);
+    }
+
+    /**
+     * Gets the anchor mailbox.
+     *
+     * @return the SMTP address sent as X-AnchorMailbox header, or null
+     */
+    public String getAnchorMailbox() {
+        return anchorMailbox;
+    }
+
+    /**
+     * Gets the preferred culture.
+     *
+     * @return the preferred culture, or null
+     */
+    public Locale getPreferredCulture() {
+        return preferredCulture;
+    }
+
+    /**
+     * Returns a copy of this context with a different anchor mailbox.
+     *
+     * @param anchorMailbox the SMTP address of the anchor mailbox
+     * @return a new context
+     */
+    public MailboxContext withAnchorMailbox(String anchorMailbox) {
+        return new MailboxContext(getImpersonatedUserId(), anchorMailbox, preferredCulture);
+    }
+
+    /**
+     * Returns a copy of this context with a different preferred culture.
+     *
+     * @param preferredCulture the preferred culture
+     * @return a new context
+     */
+    public MailboxContext withPreferredCulture(Locale preferredCulture) {
+        return new MailboxContext(getImpersonatedUserId(), anchorMailbox, preferredCulture);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MailboxContext)) {
+            return false;
+        }
+        MailboxContext that = (MailboxContext) o;
+        return impersonatedIdType == that.impersonatedIdType
+                && Objects.equals(impersonatedId, that.impersonatedId)
+                && Objects.equals(anchorMailbox, that.anchorMailbox)
+                && Objects.equals(preferredCulture, that.preferredCulture);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(impersonatedIdType, impersonatedId, anchorMailbox, preferredCulture);
+    }
+
+    @Override
+    public String toString() {
+        return "MailboxContext{" + impersonatedIdType + "=" + impersonatedId + ", anchor=" + anchorMailbox + "}";
+    }
+}
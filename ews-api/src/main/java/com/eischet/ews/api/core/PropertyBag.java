@@ -564,7 +564,19 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
         this.getOwner().getId().writeToXml(writer);
 
         writer.writeStartElement(XmlNamespace.Types, XmlElementNames.Updates);
+        this.writeUpdatesToXml(writer);
+        writer.writeEndElement();
+        writer.writeEndElement();
+    }
 
+    /**
+     * Writes the set and delete updates for the changes in the bag, without the
+     * surrounding ItemChange/FolderChange and Updates elements.
+     *
+     * @param writer the writer
+     * @throws Exception the exception
+     */
+    public void writeUpdatesToXml(EwsServiceXmlWriter writer) throws Exception {
         for (PropertyDefinition propertyDefinition : this.addedProperties) {
             this.writeSetUpdateToXml(writer, propertyDefinition);
         }
@@ -580,9 +592,6 @@ public class PropertyBag implements IComplexPropertyChanged, IComplexPropertyCha
             this.writeDeleteUpdateToXml(writer, property.getKey(), property
                     .getValue());
         }
-
-        writer.writeEndElement();
-        writer.writeEndElement();
     }
 
     /**
@@ -38,7 +38,9 @@ import com.eischet.ews.api.property.definition.PropertyDefinition;
 import com.eischet.ews.api.property.definition.PropertyDefinitionBase;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayOutputStream;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Represents a set of item or folder property. Property sets are used to
@@ -133,6 +135,11 @@ public final class PropertySet implements ISelfValidate,
      */
     private boolean isReadOnly;
 
+    /**
+     * The serialized shapes of a read-only property set, by service object type and requested server version.
+     */
+    private AtomicReferenceArray<byte[]> serializedShapes;
+
     /**
      * Initializes a new instance of PropertySet.
      *
@@ -275,10 +282,48 @@ public final class PropertySet implements ISelfValidate,
     private static PropertySet createReadonlyPropertySet(
             BasePropertySet basePropertySet) {
         PropertySet propertySet = new PropertySet(basePropertySet);
-        propertySet.isReadOnly = true;
+        propertySet.makeReadOnly();
         return propertySet;
     }
 
+    /**
+     * Returns a read-only copy of this property set, or the property set itself if it is read-only already.
+     * <p>
+     * A read-only property set is serialized only once for each service object type and requested server
+     * version; later requests reuse the serialized shape. Keep read-only property sets in static fields or
+     * other long-lived places when the same properties are requested often. The property definitions must not
+     * be changed afterwards.
+     * </p>
+     *
+     * @return a read-only property set
+     */
+    public PropertySet freeze() {
+        if (this.isReadOnly) {
+            return this;
+        }
+        PropertySet propertySet = new PropertySet(this.basePropertySet, this.additionalProperties.iterator());
+        propertySet.requestedBodyType = this.requestedBodyType;
+        propertySet.filterHtml = this.filterHtml;
+        propertySet.convertHtmlCodePageToUTF8 = this.convertHtmlCodePageToUTF8;
+        propertySet.makeReadOnly();
+        return propertySet;
+    }
+
+    /**
+     * Gets a value indicating whether this property set is read-only.
+     *
+     * @return true if the property set cannot be modified
+     */
+    public boolean isReadOnly() {
+        return this.isReadOnly;
+    }
+
+    private void makeReadOnly() {
+        this.isReadOnly = true;
+        this.serializedShapes = new AtomicReferenceArray<>(
+                ServiceObjectType.values().length * ExchangeVersion.values().length);
+    }
+
     /**
      * Throws if readonly property set.
      */
@@ -532,6 +577,35 @@ public final class PropertySet implements ISelfValidate,
      * @throws ServiceXmlSerializationException the service xml serialization exception
      */
     public void writeToXml(EwsServiceXmlWriter writer, ServiceObjectType serviceObjectType) throws XMLStreamException, ServiceXmlSerializationException {
+        if (this.isReadOnly && writer.getService() != null) {
+            writer.writeRawXml(getSerializedShape(writer.getService(), serviceObjectType));
+        } else {
+            writeShapeToXml(writer, serviceObjectType);
+        }
+    }
+
+    /**
+     * Gets the serialized shape of this read-only property set, serializing it on first use. Properties such as
+     * StartTimeZone are written differently depending on the server version, so the version is part of the key.
+     */
+    private byte[] getSerializedShape(ExchangeServiceBase service, ServiceObjectType serviceObjectType)
+            throws XMLStreamException, ServiceXmlSerializationException {
+        final int index = serviceObjectType.ordinal() * ExchangeVersion.values().length
+                + service.getRequestedServerVersion().ordinal();
+        byte[] shape = this.serializedShapes.get(index);
+        if (shape == null) {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            EwsServiceXmlWriter shapeWriter = new EwsServiceXmlWriter(service, stream);
+            writeShapeToXml(shapeWriter, serviceObjectType);
+            shapeWriter.flush();
+            shape = stream.toByteArray();
+            this.serializedShapes.set(index, shape);
+        }
+        return shape;
+    }
+
+    private void writeShapeToXml(EwsServiceXmlWriter writer, ServiceObjectType serviceObjectType)
+            throws XMLStreamException, ServiceXmlSerializationException {
         writer
                 .writeStartElement(
                         XmlNamespace.Messages,
@@ -571,6 +645,29 @@ public final class PropertySet implements ISelfValidate,
         writer.writeEndElement(); // Item/FolderShape
     }
 
+    /**
+     * Gets a key describing the properties requested by this property set. Property sets requesting the same
+     * properties in the same order have equal keys, so the key can be used to match cached or in-flight
+     * requests.
+     *
+     * @return the key
+     */
+    public String getCacheKey() {
+        final StringBuilder key = new StringBuilder();
+        key.append(this.basePropertySet).append('|').append(this.requestedBodyType)
+                .append('|').append(this.filterHtml)
+                .append('|').append(this.convertHtmlCodePageToUTF8);
+        for (PropertyDefinitionBase property : this.additionalProperties) {
+            key.append('|');
+            if (property instanceof PropertyDefinition) {
+                key.append(((PropertyDefinition) property).getUri());
+            } else {
+                key.append(property.getPrintableName());
+            }
+        }
+        return key.toString();
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.property.complex.FolderId;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent identical read requests share one request to the server ("single flight").
+ * <p>
+ * When a request is started while an identical one is in flight, the caller waits for the running request and
+ * receives its result, or its exception, instead of sending another request. Requests are only shared while
+ * they are running; nothing is cached afterwards. Enable it with
+ * {@link ExchangeService#setRequestCoalescingEnabled(boolean)}.
+ * </p>
+ * <p>
+ * Callers which share a request receive the same result object, so results of coalesced requests should be
+ * treated as read-only.
+ * </p>
+ */
+public final class RequestCoalescer {
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Runs a request, or waits for an identical request which is already running.
+     *
+     * @param key     the key identifying the request; equal keys mean identical requests
+     * @param request the request
+     * @param <T>     the result type
+     * @return the result of the request
+     * @throws Exception the exception thrown by the request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Callable<T> request) throws Exception {
+        final CompletableFuture<Object> future = new CompletableFuture<Object>();
+        final CompletableFuture<Object> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            try {
+                return (T) running.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+        try {
+            final T result = request.call();
+            future.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Gets the number of requests which were not sent because an identical request was running.
+     *
+     * @return the number of coalesced requests
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * Gets the number of requests currently running.
+     *
+     * @return the number of running requests
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Builds the key of a request.
+     *
+     * @param operation   the name of the operation
+     * @param target      the id or name of the object requested
+     * @param propertySet the requested properties, or null
+     * @param context     the mailbox context the request is sent in
+     * @return the key
+     */
+    static Object keyOf(String operation, Object target, PropertySet propertySet, MailboxContext context) {
+        return Arrays.asList(operation, target, propertySet != null ? propertySet.getCacheKey() : null, context);
+    }
+
+    /**
+     * Gets a key for a folder id, which may be a well-known folder name.
+     *
+     * @param folderId the folder id
+     * @return the key
+     */
+    static String keyOf(FolderId folderId) {
+        if (folderId.getUniqueId() != null) {
+            return folderId.getUniqueId();
+        }
+        final String mailbox = folderId.getMailbox() != null ? folderId.getMailbox().getAddress() : null;
+        return folderId.getFolderName() + (mailbox != null ? "@" + mailbox : "");
+    }
+}
@@ -4329,6 +4329,27 @@ public class XmlElementNames {
      */
     public static final String ConnectionStatus = "ConnectionStatus";
 
+    /**
+     * The Constant SendNotification.
+     */
+    public static final String SendNotification = "SendNotification";
+
+    /**
+     * The Constant SendNotificationResponseMessage.
+     */
+    public static final String SendNotificationResponseMessage =
+            "SendNotificationResponseMessage";
+
+    /**
+     * The Constant SendNotificationResult.
+     */
+    public static final String SendNotificationResult = "SendNotificationResult";
+
+    /**
+     * The Constant SubscriptionStatus.
+     */
+    public static final String SubscriptionStatus = "SubscriptionStatus";
+
     /**
      * The Constant ErrorSubscriptionIds.
      */
@@ -24,6 +24,7 @@
 package com.eischet.ews.api.core.request;
 
 import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.IMimeContentHandler;
 import com.eischet.ews.api.core.enumeration.service.error.ServiceErrorHandling;
 import com.eischet.ews.api.core.response.GetItemResponse;
 
@@ -32,6 +33,16 @@ import com.eischet.ews.api.core.response.GetItemResponse;
  */
 public final class GetItemRequest extends GetItemRequestBase<GetItemResponse> {
 
+    /**
+     * The handler receiving MIME content, or null.
+     */
+    private IMimeContentHandler mimeContentHandler;
+
+    /**
+     * Whether the responses keep the XML of their items.
+     */
+    private boolean retainItemXml;
+
     /**
      * Initializes a new instance of the class.
      *
@@ -53,8 +64,46 @@ public final class GetItemRequest extends GetItemRequestBase<GetItemResponse> {
      */
     protected GetItemResponse createServiceResponse(ExchangeService service,
                                                     int responseIndex) {
-        return new GetItemResponse(this.getItemIds().getItemIdWrapperList(
-                responseIndex), this.getPropertySet());
+        final GetItemResponse response = new GetItemResponse(this.getItemIds().getItemIdWrapperList(
+                responseIndex), this.getPropertySet(), this.mimeContentHandler, responseIndex);
+        response.setRetainItemXml(this.retainItemXml);
+        return response;
+    }
+
+    /**
+     * Gets the handler receiving the MIME content of the items.
+     *
+     * @return the handler, or null if MIME content is loaded into the items
+     */
+    public IMimeContentHandler getMimeContentHandler() {
+        return this.mimeContentHandler;
+    }
+
+    /**
+     * Sets the handler receiving the MIME content of the items, instead of loading it into the items.
+     *
+     * @param mimeContentHandler the handler, or null to load MIME content into the items
+     */
+    public void setMimeContentHandler(IMimeContentHandler mimeContentHandler) {
+        this.mimeContentHandler = mimeContentHandler;
+    }
+
+    /**
+     * Gets whether the responses keep the XML of their items, see {@link GetItemResponse#getItemXml()}.
+     *
+     * @return true if the XML is kept
+     */
+    public boolean getRetainItemXml() {
+        return this.retainItemXml;
+    }
+
+    /**
+     * Sets whether the responses keep the XML of their items. Not supported together with a MIME content handler.
+     *
+     * @param retainItemXml true to keep the XML
+     */
+    public void setRetainItemXml(boolean retainItemXml) {
+        this.retainItemXml = retainItemXml;
     }
 
 }
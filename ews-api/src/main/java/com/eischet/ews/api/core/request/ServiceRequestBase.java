@@ -64,6 +64,11 @@ public abstract class ServiceRequestBase<T> {
      */
     private final ExchangeService service;
 
+    /**
+     * The anchor mailbox the current HTTP request was sent for.
+     */
+    private String requestAnchorMailbox;
+
     // Methods for subclasses to override
 
     /**
@@ -114,6 +119,25 @@ public abstract class ServiceRequestBase<T> {
         this.service.validate();
     }
 
+    /**
+     * Gets the mailbox this request targets, used as X-AnchorMailbox header unless the service
+     * specifies an anchor mailbox itself.
+     *
+     * @return the SMTP address of the mailbox, or null if the request doesn't target a specific mailbox
+     */
+    protected String getAnchorMailbox() {
+        return null;
+    }
+
+    /**
+     * Gets whether the server should return an affinity cookie for the anchor mailbox.
+     *
+     * @return true to send X-PreferServerAffinity
+     */
+    protected boolean getPreferServerAffinity() {
+        return false;
+    }
+
     /**
      * Writes XML body.
      *
@@ -662,7 +686,9 @@ public abstract class ServiceRequestBase<T> {
      * @throws Exception on error
      */
     protected ExchangeHttpClient.Request buildEwsHttpWebRequest() throws Exception {
-        ExchangeHttpClient.Request request = service.prepareHttpWebRequest();
+        requestAnchorMailbox = service.resolveAnchorMailbox(getAnchorMailbox());
+        ExchangeHttpClient.Request request = service.prepareHttpWebRequest(requestAnchorMailbox,
+                getPreferServerAffinity());
         return buildEwsHttpWebRequest(request);
     }
 
@@ -677,7 +703,9 @@ public abstract class ServiceRequestBase<T> {
      * @throws Exception on error
      */
     protected ExchangeHttpClient.Request buildEwsHttpPoolingWebRequest() throws Exception {
-        ExchangeHttpClient.Request request = service.prepareHttpPoolingWebRequest();
+        requestAnchorMailbox = service.resolveAnchorMailbox(getAnchorMailbox());
+        ExchangeHttpClient.Request request = service.prepareHttpPoolingWebRequest(requestAnchorMailbox,
+                getPreferServerAffinity());
         return buildEwsHttpWebRequest(request);
     }
 
@@ -720,6 +748,10 @@ public abstract class ServiceRequestBase<T> {
         try {
             request.executeRequest();
 
+            if (requestAnchorMailbox != null) {
+                service.getAffinityCookies().update(requestAnchorMailbox, request.getResponseHeaders());
+            }
+
             if (request.getResponseCode() >= 400) {
                 throw new HttpErrorException(
                         "The remote server returned an error: (" + request.getResponseCode() + ")" +
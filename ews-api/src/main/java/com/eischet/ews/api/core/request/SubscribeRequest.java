@@ -31,8 +31,10 @@ import com.eischet.ews.api.core.exception.service.local.ServiceValidationExcepti
 import com.eischet.ews.api.core.exception.service.local.ServiceXmlSerializationException;
 import com.eischet.ews.api.core.response.SubscribeResponse;
 import com.eischet.ews.api.http.ExchangeHttpClient;
+import com.eischet.ews.api.misc.AbstractFolderIdWrapper;
 import com.eischet.ews.api.misc.FolderIdWrapperList;
 import com.eischet.ews.api.notification.SubscriptionBase;
+import com.eischet.ews.api.property.complex.FolderId;
 
 import javax.xml.stream.XMLStreamException;
 import java.util.ArrayList;
@@ -101,6 +103,20 @@ abstract class SubscribeRequest<TSubscription extends SubscriptionBase> extends
      */
     protected abstract String getSubscriptionXmlElementName();
 
+    /**
+     * Uses the mailbox of the first folder that specifies one as anchor mailbox.
+     */
+    @Override
+    protected String getAnchorMailbox() {
+        for (AbstractFolderIdWrapper wrapper : this.getFolderIds()) {
+            FolderId folderId = wrapper.getFolderId();
+            if (folderId != null && folderId.getMailbox() != null && folderId.getMailbox().isValid()) {
+                return folderId.getMailbox().getAddress();
+            }
+        }
+        return null;
+    }
+
     /**
      * Gets the expected response message count.
      *
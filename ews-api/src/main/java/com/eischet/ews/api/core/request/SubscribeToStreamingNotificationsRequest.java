@@ -65,6 +65,17 @@ public class SubscribeToStreamingNotificationsRequest extends
     }
 
 
+    /**
+     * Streaming subscriptions grouped on one connection must live on the same backend server, so ask
+     * for an affinity cookie for the anchor mailbox.
+     *
+     * @return true
+     */
+    @Override
+    protected boolean getPreferServerAffinity() {
+        return true;
+    }
+
     /**
      * Gets the name of the subscription XML element.
      *
@@ -0,0 +1,223 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core.request;
+
+import com.eischet.ews.api.core.EwsServiceXmlWriter;
+import com.eischet.ews.api.core.EwsUtilities;
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.ItemChangeSet;
+import com.eischet.ews.api.core.XmlAttributeNames;
+import com.eischet.ews.api.core.XmlElementNames;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.service.ConflictResolutionMode;
+import com.eischet.ews.api.core.enumeration.service.MessageDisposition;
+import com.eischet.ews.api.core.enumeration.service.SendInvitationsOrCancellationsMode;
+import com.eischet.ews.api.core.enumeration.service.error.ServiceErrorHandling;
+import com.eischet.ews.api.core.exception.misc.ArgumentException;
+import com.eischet.ews.api.core.exception.service.local.ServiceXmlSerializationException;
+import com.eischet.ews.api.core.response.UpdateItemResponse;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.ItemId;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An UpdateItem request applying the same {@link ItemChangeSet} to a list of items, given by their ids.
+ */
+public final class UpdateItemsWithChangeSetRequest extends MultiResponseServiceRequest<UpdateItemResponse> {
+
+    private final List<ItemId> itemIds = new ArrayList<>();
+    private ItemChangeSet changeSet;
+    private ConflictResolutionMode conflictResolutionMode;
+    private MessageDisposition messageDisposition;
+    private SendInvitationsOrCancellationsMode sendInvitationsOrCancellationsMode;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service           the service
+     * @param errorHandlingMode the error handling mode
+     * @throws Exception on errors
+     */
+    public UpdateItemsWithChangeSetRequest(ExchangeService service, ServiceErrorHandling errorHandlingMode)
+            throws Exception {
+        super(service, errorHandlingMode);
+    }
+
+    @Override
+    protected void validate() throws Exception {
+        super.validate();
+        EwsUtilities.validateParamCollection(this.itemIds.iterator(), "ItemIds");
+        EwsUtilities.validateParam(this.changeSet, "ChangeSet");
+        if (this.changeSet.isEmpty()) {
+            throw new ArgumentException("The change set doesn't contain any changes.");
+        }
+    }
+
+    /**
+     * Creates the response for an item. The response updates the change key of the item id once the item has
+     * been updated.
+     */
+    @Override
+    protected UpdateItemResponse createServiceResponse(ExchangeService service, int responseIndex)
+            throws Exception {
+        final Item item = new Item(service);
+        item.getPropertyBag().getProperties().put(ItemSchema.Id, this.itemIds.get(responseIndex));
+        return new UpdateItemResponse(item);
+    }
+
+    @Override
+    public String getXmlElementName() {
+        return XmlElementNames.UpdateItem;
+    }
+
+    @Override
+    protected String getResponseXmlElementName() {
+        return XmlElementNames.UpdateItemResponse;
+    }
+
+    @Override
+    protected String getResponseMessageXmlElementName() {
+        return XmlElementNames.UpdateItemResponseMessage;
+    }
+
+    @Override
+    protected int getExpectedResponseMessageCount() {
+        return this.itemIds.size();
+    }
+
+    @Override
+    protected void writeAttributesToXml(EwsServiceXmlWriter writer) throws ServiceXmlSerializationException {
+        super.writeAttributesToXml(writer);
+        if (this.messageDisposition != null) {
+            writer.writeAttributeValue(XmlAttributeNames.MessageDisposition, this.messageDisposition);
+        }
+        writer.writeAttributeValue(XmlAttributeNames.ConflictResolution, this.conflictResolutionMode);
+        if (this.sendInvitationsOrCancellationsMode != null) {
+            writer.writeAttributeValue(XmlAttributeNames.SendMeetingInvitationsOrCancellations,
+                    this.sendInvitationsOrCancellationsMode);
+        }
+    }
+
+    @Override
+    protected void writeElementsToXml(EwsServiceXmlWriter writer) throws Exception {
+        writer.writeStartElement(XmlNamespace.Messages, XmlElementNames.ItemChanges);
+        for (ItemId itemId : this.itemIds) {
+            writer.writeStartElement(XmlNamespace.Types, XmlElementNames.ItemChange);
+            itemId.writeToXml(writer);
+            this.changeSet.writeUpdatesToXml(writer);
+            writer.writeEndElement();
+        }
+        writer.writeEndElement();
+    }
+
+    @Override
+    protected ExchangeVersion getMinimumRequiredServerVersion() {
+        return ExchangeVersion.Exchange2007_SP1;
+    }
+
+    /**
+     * Gets the ids of the items to update.
+     *
+     * @return the item ids
+     */
+    public List<ItemId> getItemIds() {
+        return this.itemIds;
+    }
+
+    /**
+     * Gets the changes to apply to each item.
+     *
+     * @return the change set
+     */
+    public ItemChangeSet getChangeSet() {
+        return this.changeSet;
+    }
+
+    /**
+     * Sets the changes to apply to each item.
+     *
+     * @param changeSet the change set
+     */
+    public void setChangeSet(ItemChangeSet changeSet) {
+        this.changeSet = changeSet;
+    }
+
+    /**
+     * Gets the conflict resolution mode.
+     *
+     * @return the conflict resolution mode
+     */
+    public ConflictResolutionMode getConflictResolutionMode() {
+        return this.conflictResolutionMode;
+    }
+
+    /**
+     * Sets the conflict resolution mode.
+     *
+     * @param conflictResolutionMode the conflict resolution mode
+     */
+    public void setConflictResolutionMode(ConflictResolutionMode conflictResolutionMode) {
+        this.conflictResolutionMode = conflictResolutionMode;
+    }
+
+    /**
+     * Gets the message disposition.
+     *
+     * @return the message disposition
+     */
+    public MessageDisposition getMessageDisposition() {
+        return this.messageDisposition;
+    }
+
+    /**
+     * Sets the message disposition.
+     *
+     * @param messageDisposition the message disposition
+     */
+    public void setMessageDisposition(MessageDisposition messageDisposition) {
+        this.messageDisposition = messageDisposition;
+    }
+
+    /**
+     * Gets the send invitations or cancellations mode.
+     *
+     * @return the send invitations or cancellations mode
+     */
+    public SendInvitationsOrCancellationsMode getSendInvitationsOrCancellationsMode() {
+        return this.sendInvitationsOrCancellationsMode;
+    }
+
+    /**
+     * Sets the send invitations or cancellations mode.
+     *
+     * @param sendInvitationsOrCancellationsMode the send invitations or cancellations mode
+     */
+    public void setSendInvitationsOrCancellationsMode(
+            SendInvitationsOrCancellationsMode sendInvitationsOrCancellationsMode) {
+        this.sendInvitationsOrCancellationsMode = sendInvitationsOrCancellationsMode;
+    }
+}
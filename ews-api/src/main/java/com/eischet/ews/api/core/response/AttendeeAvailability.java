@@ -28,11 +28,17 @@ import com.eischet.ews.api.core.XmlElementNames;
 import com.eischet.ews.api.core.enumeration.availability.FreeBusyViewType;
 import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
 import com.eischet.ews.api.core.enumeration.property.LegacyFreeBusyStatus;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
 import com.eischet.ews.api.property.complex.availability.CalendarEvent;
 import com.eischet.ews.api.property.complex.availability.WorkingHours;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * Represents the availability of an individual attendee.
@@ -68,6 +74,78 @@ public final class AttendeeAvailability extends ServiceResponse {
         super();
     }
 
+    /**
+     * Initializes a new instance with the result, view type and working hours of another instance.
+     *
+     * @param other the instance to copy from
+     */
+    private AttendeeAvailability(AttendeeAvailability other) {
+        super(other);
+        this.viewType = other.viewType;
+        this.workingHours = other.workingHours;
+    }
+
+    /**
+     * Creates a copy whose calendar events and merged free/busy status can be changed without affecting this
+     * instance. The calendar events themselves cannot be changed and are shared.
+     *
+     * @return a new instance
+     */
+    public AttendeeAvailability copy() {
+        final AttendeeAvailability copy = new AttendeeAvailability(this);
+        copy.calendarEvents.addAll(this.calendarEvents);
+        copy.mergedFreeBusyStatus.addAll(this.mergedFreeBusyStatus);
+        return copy;
+    }
+
+    /**
+     * Combines the availability of one attendee for consecutive time windows into one instance.
+     * A calendar event spanning the boundary of two windows is returned by both requests, so an event of
+     * a window is left out if the previous window returned the same event; each event of the previous window
+     * is matched at most once, so distinct events with the same times and status are kept. Merged free/busy
+     * status is concatenated, so every window but the last must be a multiple of the merged free/busy interval.
+     * If a part is not successful, that part is returned instead.
+     *
+     * @param parts the availability for each time window, in chronological order
+     * @return a new instance, or the first part that was not successful
+     */
+    public static AttendeeAvailability merge(List<AttendeeAvailability> parts) {
+        for (AttendeeAvailability part : parts) {
+            if (part.getResult() == ServiceResult.Error) {
+                return part;
+            }
+        }
+        final AttendeeAvailability merged = new AttendeeAvailability(parts.get(0));
+        Map<List<String>, Integer> previous = Collections.emptyMap();
+        for (AttendeeAvailability part : parts) {
+            final Map<List<String>, Integer> current = new HashMap<List<String>, Integer>();
+            for (CalendarEvent event : part.calendarEvents) {
+                final List<String> key = eventKey(event);
+                current.merge(key, 1, Integer::sum);
+                final Integer unmatched = previous.get(key);
+                if (unmatched != null && unmatched > 0) {
+                    // the same event, crossing the boundary to the previous window
+                    previous.put(key, unmatched - 1);
+                } else {
+                    merged.calendarEvents.add(event);
+                }
+            }
+            previous = current;
+            merged.mergedFreeBusyStatus.addAll(part.mergedFreeBusyStatus);
+            if (merged.workingHours == null) {
+                merged.workingHours = part.workingHours;
+            }
+        }
+        return merged;
+    }
+
+    private static List<String> eventKey(CalendarEvent event) {
+        final String detail = event.getDetails() == null ? null
+                : Objects.toString(event.getDetails().getStoreId(), event.getDetails().getSubject());
+        return List.of(Objects.toString(event.getStartTime()), Objects.toString(event.getEndTime()),
+                Objects.toString(event.getFreeBusyStatus()), Objects.toString(detail));
+    }
+
     /**
      * Loads the free busy view from XML.
      *
@@ -51,6 +51,16 @@ public final class ConvertIdResponse extends ServiceResponse {
         super();
     }
 
+    /**
+     * Initializes a new instance holding an id which was not read from the server, e.g. in tests.
+     *
+     * @param convertedId the converted id
+     */
+    ConvertIdResponse(AlternateIdBase convertedId) {
+        super();
+        this.convertedId = convertedId;
+    }
+
     /**
      * Reads response elements from XML.
      *
@@ -24,9 +24,12 @@
 package com.eischet.ews.api.core.response;
 
 import com.eischet.ews.api.core.*;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
 import com.eischet.ews.api.core.service.ServiceObject;
 import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.security.XmlNodeType;
 
+import java.io.ByteArrayInputStream;
 import java.util.List;
 
 /**
@@ -45,6 +48,26 @@ public final class GetItemResponse extends ServiceResponse implements
      */
     private final PropertySet propertySet;
 
+    /**
+     * The handler receiving the MIME content, or null.
+     */
+    private final IMimeContentHandler mimeContentHandler;
+
+    /**
+     * The index of the item among the requested items.
+     */
+    private final int itemIndex;
+
+    /**
+     * Whether the XML of the item is kept.
+     */
+    private boolean retainItemXml;
+
+    /**
+     * The XML of the item, if kept.
+     */
+    private byte[] itemXml;
+
     /**
      * Initializes a new instance of the class.
      *
@@ -52,9 +75,24 @@ public final class GetItemResponse extends ServiceResponse implements
      * @param propertySet the property set
      */
     public GetItemResponse(Item item, PropertySet propertySet) {
+        this(item, propertySet, null, -1);
+    }
+
+    /**
+     * Initializes a new instance of the class which passes the MIME content of the item to a handler.
+     *
+     * @param item               the item
+     * @param propertySet        the property set
+     * @param mimeContentHandler the handler receiving the MIME content, or null
+     * @param itemIndex          the index of the item among the requested items
+     */
+    public GetItemResponse(Item item, PropertySet propertySet, IMimeContentHandler mimeContentHandler,
+                           int itemIndex) {
         super();
         this.item = item;
         this.propertySet = propertySet;
+        this.mimeContentHandler = mimeContentHandler;
+        this.itemIndex = itemIndex;
         EwsUtilities.ewsAssert(this.propertySet != null, "GetItemResponse.ctor", "PropertySet should not be null");
     }
 
@@ -70,15 +108,85 @@ public final class GetItemResponse extends ServiceResponse implements
             throws InstantiationException, IllegalAccessException, Exception {
         super.readElementsFromXml(reader);
 
-        List<Item> items = reader.readServiceObjectsCollectionFromXml(
+        if (this.retainItemXml) {
+            reader.readStartElement(XmlNamespace.Messages, XmlElementNames.Items);
+            this.itemXml = reader.readOuterXmlDocument();
+            this.readItems(newItemXmlReader(this.itemXml, reader.getService()));
+            return;
+        }
+        reader.setMimeContentHandler(this.mimeContentHandler, this.itemIndex);
+        try {
+            this.readItems(reader);
+        } finally {
+            reader.setMimeContentHandler(null, -1);
+        }
+    }
+
+    /**
+     * Reads the item from the Items element.
+     */
+    private void readItems(EwsServiceXmlReader reader) throws Exception {
+        final List<Item> items = reader.readServiceObjectsCollectionFromXml(
                 XmlElementNames.Items, this,
                 true, /* clearPropertyBag */
                 this.propertySet, /* requestedPropertySet */
                 false); /* summaryPropertiesOnly */
-
         this.item = items.get(0);
     }
 
+    /**
+     * Creates a reader positioned before the Items element of a document returned by {@link #getItemXml()}.
+     */
+    private static EwsServiceXmlReader newItemXmlReader(byte[] itemXml, ExchangeService service) throws Exception {
+        final EwsServiceXmlReader reader = new EwsServiceXmlReader(new ByteArrayInputStream(itemXml), service);
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        return reader;
+    }
+
+    /**
+     * Reads a new item instance from a document returned by {@link #getItemXml()}.
+     *
+     * @param service     the service the item is bound to
+     * @param itemXml     the document
+     * @param propertySet the property set the item was requested with
+     * @return the item
+     * @throws Exception if the document cannot be read
+     */
+    public static Item readItemXml(ExchangeService service, byte[] itemXml, PropertySet propertySet)
+            throws Exception {
+        final GetItemResponse response = new GetItemResponse(null, propertySet);
+        response.readItems(newItemXmlReader(itemXml, service));
+        return response.getItem();
+    }
+
+    /**
+     * Gets whether the XML of the item is kept, so that {@link #readItemXml(ExchangeService, byte[], PropertySet)}
+     * can create further instances of it later.
+     *
+     * @return true if the XML is kept
+     */
+    public boolean getRetainItemXml() {
+        return this.retainItemXml;
+    }
+
+    /**
+     * Sets whether the XML of the item is kept. Not supported together with a MIME content handler.
+     *
+     * @param retainItemXml true to keep the XML
+     */
+    public void setRetainItemXml(boolean retainItemXml) {
+        this.retainItemXml = retainItemXml;
+    }
+
+    /**
+     * Gets the XML of the item, if it was kept.
+     *
+     * @return the Items element as a standalone document, or null
+     */
+    public byte[] getItemXml() {
+        return this.itemXml;
+    }
+
     /**
      * Gets Item instance.
      *
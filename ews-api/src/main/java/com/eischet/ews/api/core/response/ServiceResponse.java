@@ -78,6 +78,18 @@ public class ServiceResponse {
     public ServiceResponse() {
     }
 
+    /**
+     * Initializes a new instance with the result and error information of another response.
+     *
+     * @param other the response to copy the result from
+     */
+    protected ServiceResponse(ServiceResponse other) {
+        this.result = other.result;
+        this.errorCode = other.errorCode;
+        this.errorMessage = other.errorMessage;
+        this.errorDetails = new HashMap<String, String>(other.errorDetails);
+    }
+
     /**
      * Initializes a new instance.
      *
@@ -290,6 +302,22 @@ public class ServiceResponse {
                 && (this.errorCode == ServiceError.ErrorBatchProcessingStopped);
     }
 
+    /**
+     * Sets the result and error information of a response which was not read from the server, e.g. in tests.
+     *
+     * @param result       the result
+     * @param errorCode    the error code, or null
+     * @param errorMessage the error message, or null
+     * @param errorDetails the error details
+     */
+    void setOutcome(ServiceResult result, ServiceError errorCode, String errorMessage,
+                    Map<String, String> errorDetails) {
+        this.result = result;
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+        this.errorDetails = new HashMap<String, String>(errorDetails);
+    }
+
     /**
      * Gets the result associated with this response.
      *
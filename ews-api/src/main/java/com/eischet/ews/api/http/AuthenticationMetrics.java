@@ -0,0 +1,81 @@
+package com.eischet.ews.api.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters that show how often an ExchangeHttpClient had to authenticate.
+ *
+ * With connection-based schemes such as NTLM, every new or re-authenticated connection costs extra round trips,
+ * so a handshake count close to the request count means that authenticated connections are not being reused.
+ * All counters are thread-safe.
+ */
+public class AuthenticationMetrics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong challenges = new AtomicLong();
+    private final AtomicLong preemptiveAuthentications = new AtomicLong();
+
+    /**
+     * Records a request executed by the client. Requests resent during a handshake are not counted again.
+     */
+    public void requestSent() {
+        requests.incrementAndGet();
+    }
+
+    /**
+     * Records an authentication challenge (HTTP 401) answered by the client.
+     */
+    public void challengeReceived() {
+        challenges.incrementAndGet();
+    }
+
+    /**
+     * Records a request which carried credentials without being challenged first.
+     */
+    public void preemptiveAuthenticationSent() {
+        preemptiveAuthentications.incrementAndGet();
+    }
+
+    /**
+     * Gets the number of requests executed.
+     *
+     * @return the request count
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of authentication challenges answered, i.e. handshake round trips. An NTLM handshake
+     * on a fresh connection takes two of these, Basic authentication without preemption takes one.
+     *
+     * @return the handshake count
+     */
+    public long getHandshakeCount() {
+        return challenges.get();
+    }
+
+    /**
+     * Gets the number of requests which were authenticated preemptively.
+     *
+     * @return the preemptive authentication count
+     */
+    public long getPreemptiveAuthenticationCount() {
+        return preemptiveAuthentications.get();
+    }
+
+    /**
+     * Resets all counters to zero.
+     */
+    public void reset() {
+        requests.set(0);
+        challenges.set(0);
+        preemptiveAuthentications.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "requests=" + getRequestCount() + ", handshakes=" + getHandshakeCount()
+                + ", preemptive=" + getPreemptiveAuthenticationCount();
+    }
+}
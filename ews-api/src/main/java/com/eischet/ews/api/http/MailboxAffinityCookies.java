@@ -0,0 +1,172 @@
+package com.eischet.ews.api.http;
+
+import com.eischet.ews.api.misc.ExpiringLruCache;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps track of the backend server affinity cookie Exchange returns for each anchor mailbox.
+ *
+ * Exchange Online and hybrid deployments route requests through front end servers. When a request carries an
+ * X-AnchorMailbox header (and, for streaming subscriptions, X-PreferServerAffinity), the server answers with an
+ * X-BackEndOverrideCookie which must be sent back with later requests for the same anchor to reach the same
+ * backend. A single HTTP cookie store cannot do that, because the cookie has the same name and domain for all
+ * mailboxes; this class stores it per anchor mailbox instead.
+ *
+ * Instances are thread-safe and are usually shared by all services using the same HTTP client. The number of
+ * remembered cookies is bounded, and cookies are forgotten after a while; a request without a cookie is simply
+ * routed anew and the server sends a fresh one.
+ */
+public class MailboxAffinityCookies {
+
+    public static final String BACK_END_OVERRIDE_COOKIE = "X-BackEndOverrideCookie";
+
+    /**
+     * How long a cookie is remembered when no time is given.
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(1);
+
+    /**
+     * The maximum number of anchor mailboxes with a remembered cookie when no size is given.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    private static final String SET_COOKIE_HEADER = "Set-Cookie";
+
+    private final ExpiringLruCache<String, String> cookies;
+
+    /**
+     * Initializes a new instance with the default time to live and size.
+     */
+    public MailboxAffinityCookies() {
+        this(DEFAULT_TIME_TO_LIVE, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param timeToLive  how long a cookie is remembered after it was received
+     * @param maximumSize the maximum number of anchor mailboxes with a remembered cookie; when it is exceeded, the
+     *                    least recently used cookie is forgotten
+     */
+    public MailboxAffinityCookies(final Duration timeToLive, final int maximumSize) {
+        this.cookies = new ExpiringLruCache<>(timeToLive, maximumSize);
+    }
+
+    /**
+     * Gets the affinity cookie for an anchor mailbox.
+     *
+     * @param anchorMailbox the SMTP address of the anchor mailbox
+     * @return the cookie value, or null if none has been received yet
+     */
+    public String getCookie(final String anchorMailbox) {
+        if (anchorMailbox == null) {
+            return null;
+        }
+        return cookies.get(key(anchorMailbox));
+    }
+
+    /**
+     * Gets the affinity cookie for an anchor mailbox, formatted as value of a Cookie request header.
+     *
+     * @param anchorMailbox the SMTP address of the anchor mailbox
+     * @return the Cookie header value, or null if no cookie has been received yet
+     */
+    public String getCookieHeader(final String anchorMailbox) {
+        final String cookie = getCookie(anchorMailbox);
+        return cookie != null ? BACK_END_OVERRIDE_COOKIE + "=" + cookie : null;
+    }
+
+    /**
+     * Remembers the affinity cookie, if the response headers contain one.
+     *
+     * @param anchorMailbox   the SMTP address of the anchor mailbox the request was sent for
+     * @param responseHeaders the response headers; multiple Set-Cookie headers may be joined by commas
+     */
+    public void update(final String anchorMailbox, final Map<String, String> responseHeaders) {
+        if (anchorMailbox == null || responseHeaders == null) {
+            return;
+        }
+        for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+            if (SET_COOKIE_HEADER.equalsIgnoreCase(header.getKey())) {
+                final String cookie = parseBackEndOverrideCookie(header.getValue());
+                if (cookie != null) {
+                    if (cookie.isEmpty()) {
+                        cookies.remove(key(anchorMailbox));
+                    } else {
+                        cookies.put(key(anchorMailbox), cookie);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Forgets the affinity cookie of an anchor mailbox, e.g. after its backend went away.
+     *
+     * @param anchorMailbox the SMTP address of the anchor mailbox
+     */
+    public void remove(final String anchorMailbox) {
+        if (anchorMailbox != null) {
+            cookies.remove(key(anchorMailbox));
+        }
+    }
+
+    /**
+     * Forgets all affinity cookies.
+     */
+    public void clear() {
+        cookies.clear();
+    }
+
+    /**
+     * Gets the number of anchor mailboxes with a known affinity cookie, including expired cookies not yet removed.
+     *
+     * @return the number of cookies
+     */
+    public int size() {
+        return cookies.size();
+    }
+
+    /**
+     * Extracts the value of the X-BackEndOverrideCookie from a Set-Cookie header.
+     *
+     * @param setCookie the header value, possibly containing several cookies joined by commas
+     * @return the cookie value, an empty string if the cookie is being cleared, or null if it is not present
+     */
+    static String parseBackEndOverrideCookie(final String setCookie) {
+        if (setCookie == null) {
+            return null;
+        }
+        final String prefix = BACK_END_OVERRIDE_COOKIE.toLowerCase(Locale.ROOT) + "=";
+        final String lower = setCookie.toLowerCase(Locale.ROOT);
+        int start = -1;
+        int from = 0;
+        while (from < lower.length()) {
+            final int found = lower.indexOf(prefix, from);
+            if (found < 0) {
+                break;
+            }
+            // the name must start a cookie, not be part of another cookie's value
+            if (found == 0 || lower.charAt(found - 1) == ',' || lower.charAt(found - 1) == ' ') {
+                start = found + prefix.length();
+                break;
+            }
+            from = found + prefix.length();
+        }
+        if (start < 0) {
+            return null;
+        }
+        int end = start;
+        while (end < setCookie.length() && setCookie.charAt(end) != ';' && setCookie.charAt(end) != ',') {
+            end++;
+        }
+        return setCookie.substring(start, end).trim();
+    }
+
+    private static String key(final String anchorMailbox) {
+        return anchorMailbox.toLowerCase(Locale.ROOT);
+    }
+}
@@ -38,6 +38,7 @@ public abstract class RequestFields implements ExchangeHttpClient.Request {
     private int responseCode;
     private String responseContentType;
     private String responseText;
+    private final Map<String, String> responseHeaders = new HashMap<>();
 
     @Override
     public URL getUrl() {
@@ -161,12 +162,28 @@ public abstract class RequestFields implements ExchangeHttpClient.Request {
 
     @Override
     public String getResponseHeaderField(final String headerName) throws EWSHttpException {
-        return httpHeaders.get(headerName);
+        for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(headerName)) {
+                return header.getValue();
+            }
+        }
+        return null;
     }
 
     @Override
     public Map<String, String> getResponseHeaders() throws EWSHttpException {
-        return new HashMap<>(httpHeaders);
+        return new HashMap<>(responseHeaders);
+    }
+
+    /**
+     * Sets a response header. Multiple values for the same header should be joined by commas, as
+     * the Apache client does for Set-Cookie.
+     *
+     * @param headerName  the header name
+     * @param headerValue the header value
+     */
+    public void setResponseHeader(final String headerName, final String headerValue) {
+        responseHeaders.put(headerName, headerValue);
     }
 
     @Override
@@ -27,6 +27,7 @@ import com.eischet.ews.api.core.EwsServiceXmlWriter;
 import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
 import com.eischet.ews.api.core.exception.service.local.ServiceVersionException;
 import com.eischet.ews.api.core.service.folder.Folder;
+import com.eischet.ews.api.property.complex.FolderId;
 
 /**
  * Represents the abstraction of a folder Id.
@@ -42,6 +43,15 @@ public abstract class AbstractFolderIdWrapper {
         return null;
     }
 
+    /**
+     * Obtains the FolderId object associated with the wrapper, if it wraps an id.
+     *
+     * @return The FolderId object associated with the wrapper, or null.
+     */
+    public FolderId getFolderId() {
+        return null;
+    }
+
     /**
      * Initializes a new instance of AbstractFolderIdWrapper.
      */
@@ -0,0 +1,568 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.IFileAttachmentContentHandler;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.core.exception.service.local.ServiceVersionException;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.response.GetAttachmentResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.property.complex.FileAttachment;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Downloads the content of many file attachments, possibly of different items, concurrently.
+ * <p>
+ * Small attachments are fetched together with multi-id GetAttachment requests; attachments larger than
+ * {@link #getSmallAttachmentSize()} get a request of their own. Either way the content is written to the streams
+ * of an {@link IFileAttachmentContentHandler} as it is decoded, instead of being loaded into the attachments.
+ * The total size of the attachments of all requests running at the same time is kept below
+ * {@link #getMaxInFlightBytes()}, so memory use stays bounded however many attachments are downloaded; a single
+ * attachment larger than the budget is downloaded on its own.
+ * </p>
+ * <p>
+ * The sizes are taken from {@link FileAttachment#getSize()}, so the attachments should come from items loaded
+ * from Exchange 2010 or later. Attachments of unknown size are fetched one per request.
+ * </p>
+ */
+public class AttachmentDownloader {
+
+    private static final Logger LOG = Logger.getLogger(AttachmentDownloader.class.getCanonicalName());
+
+    /**
+     * The size up to which attachments are fetched together when none is given.
+     */
+    public static final long DEFAULT_SMALL_ATTACHMENT_SIZE = 256L * 1024;
+
+    /**
+     * The maximum number of attachments fetched with one GetAttachment request when none is given.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 20;
+
+    /**
+     * The maximum total size of the attachments fetched with one GetAttachment request when none is given.
+     */
+    public static final long DEFAULT_MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+    /**
+     * The maximum total size of the attachments of all running requests when none is given.
+     */
+    public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+
+    private final ExchangeService service;
+    private final AtomicLong downloadedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final Object budgetLock = new Object();
+    private long inFlightBytes;
+    private volatile long smallAttachmentSize = DEFAULT_SMALL_ATTACHMENT_SIZE;
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private volatile long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES;
+    private volatile int concurrency;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service the service to download with
+     */
+    public AttachmentDownloader(ExchangeService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("service must not be null");
+        }
+        this.service = service;
+        this.concurrency = Math.max(1, service.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Gets the size up to which attachments are fetched together with others.
+     *
+     * @return the size in bytes
+     */
+    public long getSmallAttachmentSize() {
+        return smallAttachmentSize;
+    }
+
+    /**
+     * Sets the size up to which attachments are fetched together with others.
+     *
+     * @param smallAttachmentSize the size in bytes, 0 to fetch every attachment with a request of its own
+     */
+    public void setSmallAttachmentSize(long smallAttachmentSize) {
+        if (smallAttachmentSize < 0) {
+            throw new IllegalArgumentException("smallAttachmentSize must not be negative");
+        }
+        this.smallAttachmentSize = smallAttachmentSize;
+    }
+
+    /**
+     * Gets the maximum number of small attachments fetched with one GetAttachment request.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of small attachments fetched with one GetAttachment request.
+     *
+     * @param maxBatchSize the maximum batch size, at least 1
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Gets the maximum total size of the small attachments fetched with one GetAttachment request.
+     *
+     * @return the maximum batch size in bytes
+     */
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the small attachments fetched with one GetAttachment request.
+     *
+     * @param maxBatchBytes the maximum batch size in bytes, at least 1
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("maxBatchBytes must be at least 1");
+        }
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Gets the maximum total size of the attachments of all running requests.
+     *
+     * @return the budget in bytes
+     */
+    public long getMaxInFlightBytes() {
+        return maxInFlightBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the attachments of all running requests. Requests wait until enough of the
+     * budget is released by others.
+     *
+     * @param maxInFlightBytes the budget in bytes, at least 1
+     */
+    public void setMaxInFlightBytes(long maxInFlightBytes) {
+        if (maxInFlightBytes < 1) {
+            throw new IllegalArgumentException("maxInFlightBytes must be at least 1");
+        }
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    /**
+     * Gets the maximum number of GetAttachment requests running at the same time.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the maximum number of GetAttachment requests running at the same time. The default is the maximum
+     * number of concurrent requests of the service.
+     *
+     * @param concurrency the concurrency, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Downloads attachments to the streams of a handler. Each stream is closed once its request has completed.
+     *
+     * @param attachments the attachments; their ids must be unique
+     * @param handler     the handler providing a stream for each attachment, by its id; when it returns null,
+     *                    the content is loaded into the attachment
+     * @return the outcome for each attachment, in the order of the attachments
+     * @throws Exception if the downloading thread is interrupted
+     */
+    public List<DownloadResult> download(Collection<FileAttachment> attachments,
+                                         IFileAttachmentContentHandler handler) throws Exception {
+        if (attachments == null || handler == null) {
+            throw new IllegalArgumentException("attachments and handler must not be null");
+        }
+        return downloadBatches(attachments, batch -> new BatchHandler() {
+            private final List<OutputStream> streams = new ArrayList<>();
+
+            @Override
+            public OutputStream getOutputStream(String attachmentId) {
+                final OutputStream stream = handler.getOutputStream(attachmentId);
+                if (stream != null) {
+                    streams.add(stream);
+                }
+                return stream;
+            }
+
+            @Override
+            public void completed(FileAttachment attachment, boolean success) {
+            }
+
+            @Override
+            public void close() throws IOException {
+                closeAll(streams);
+            }
+        });
+    }
+
+    /**
+     * Downloads attachments to files. Each attachment is written to a temporary file next to its target, which is
+     * renamed once the attachment has been received completely, so a file either holds a complete attachment or
+     * does not exist.
+     *
+     * @param attachments the attachments; their ids must be unique
+     * @param target      gives the file for each attachment; its directory must exist
+     * @return the outcome for each attachment, in the order of the attachments
+     * @throws Exception if the downloading thread is interrupted
+     */
+    public List<DownloadResult> downloadToFiles(Collection<FileAttachment> attachments,
+                                                Function<FileAttachment, Path> target) throws Exception {
+        if (attachments == null || target == null) {
+            throw new IllegalArgumentException("attachments and target must not be null");
+        }
+        return downloadBatches(attachments, batch -> new BatchHandler() {
+            private final Map<String, FileAttachment> byId = new HashMap<>();
+            private final Map<FileAttachment, Path> temporaryFiles = new HashMap<>();
+            private final List<OutputStream> streams = new ArrayList<>();
+
+            {
+                for (FileAttachment attachment : batch) {
+                    byId.put(attachment.getId(), attachment);
+                }
+            }
+
+            @Override
+            public OutputStream getOutputStream(String attachmentId) {
+                final FileAttachment attachment = byId.get(attachmentId);
+                if (attachment == null) {
+                    return null;
+                }
+                try {
+                    final Path file = target.apply(attachment);
+                    final Path temporary = Files.createTempFile(file.toAbsolutePath().getParent(), ".download-",
+                            ".tmp");
+                    temporaryFiles.put(attachment, temporary);
+                    final OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temporary));
+                    streams.add(stream);
+                    return stream;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public void completed(FileAttachment attachment, boolean success) throws IOException {
+                final Path temporary = temporaryFiles.remove(attachment);
+                if (temporary != null && success) {
+                    closeAll(streams);
+                    move(temporary, target.apply(attachment));
+                } else if (temporary != null) {
+                    closeAll(streams);
+                    Files.deleteIfExists(temporary);
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                closeAll(streams);
+                for (Path temporary : temporaryFiles.values()) {
+                    Files.deleteIfExists(temporary);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the number of attachments downloaded since this instance was created.
+     *
+     * @return the downloaded count
+     */
+    public long getDownloadedCount() {
+        return downloadedCount.get();
+    }
+
+    /**
+     * Gets the number of attachments which could not be downloaded since this instance was created.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Gets the total size of the attachments of the requests running right now.
+     *
+     * @return the size in bytes
+     */
+    public long getInFlightBytes() {
+        synchronized (budgetLock) {
+            return inFlightBytes;
+        }
+    }
+
+    private List<DownloadResult> downloadBatches(Collection<FileAttachment> attachments,
+                                                 Function<List<FileAttachment>, BatchHandler> handlers)
+            throws Exception {
+        final List<Callable<List<DownloadResult>>> tasks = new ArrayList<>();
+        List<FileAttachment> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (FileAttachment attachment : attachments) {
+            final long size = sizeOf(attachment);
+            if (size < 0 || size > smallAttachmentSize) {
+                tasks.add(newTask(List.of(attachment), size < 0 ? smallAttachmentSize : size, handlers));
+                continue;
+            }
+            if (!batch.isEmpty() && (batch.size() >= maxBatchSize || batchBytes + size > maxBatchBytes)) {
+                tasks.add(newTask(batch, batchBytes, handlers));
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(attachment);
+            batchBytes += size;
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(newTask(batch, batchBytes, handlers));
+        }
+        final Map<FileAttachment, DownloadResult> byAttachment = new HashMap<>();
+        for (List<DownloadResult> results : ParallelExecution.invokeAll(tasks, concurrency)) {
+            for (DownloadResult result : results) {
+                byAttachment.put(result.getAttachment(), result);
+            }
+        }
+        final List<DownloadResult> results = new ArrayList<>(attachments.size());
+        for (FileAttachment attachment : attachments) {
+            results.add(byAttachment.get(attachment));
+        }
+        return results;
+    }
+
+    private Callable<List<DownloadResult>> newTask(List<FileAttachment> batch, long bytes,
+                                                   Function<List<FileAttachment>, BatchHandler> handlers) {
+        return () -> {
+            final long acquired = acquire(bytes);
+            try {
+                return downloadBatch(batch, handlers.apply(batch));
+            } finally {
+                release(acquired);
+            }
+        };
+    }
+
+    private List<DownloadResult> downloadBatch(List<FileAttachment> batch, BatchHandler handler) throws Exception {
+        final List<DownloadResult> results = new ArrayList<>(batch.size());
+        try (BatchHandler batchHandler = handler) {
+            final ServiceResponseCollection<GetAttachmentResponse> responses;
+            try {
+                responses = service.writeAttachmentContents(batch, batchHandler);
+            } catch (ServiceResponseException e) {
+                return failAll(batch, batchHandler, e.getErrorCode(), e.getMessage());
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "cannot download batch of " + batch.size() + " attachments", e);
+                return failAll(batch, batchHandler, null, e.toString());
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                final FileAttachment attachment = batch.get(i);
+                final GetAttachmentResponse response = responses.getResponseAtIndex(i);
+                final boolean success = response.getResult() != ServiceResult.Error;
+                batchHandler.completed(attachment, success);
+                results.add(record(success ? new DownloadResult(attachment, null, null)
+                        : new DownloadResult(attachment, response.getErrorCode(), response.getErrorMessage())));
+            }
+        }
+        return results;
+    }
+
+    private List<DownloadResult> failAll(List<FileAttachment> batch, BatchHandler handler, ServiceError errorCode,
+                                         String message) throws IOException {
+        final List<DownloadResult> results = new ArrayList<>(batch.size());
+        for (FileAttachment attachment : batch) {
+            handler.completed(attachment, false);
+            results.add(record(new DownloadResult(attachment, errorCode,
+                    message != null ? message : String.valueOf(errorCode))));
+        }
+        return results;
+    }
+
+    private DownloadResult record(DownloadResult result) {
+        if (result.isSuccess()) {
+            downloadedCount.incrementAndGet();
+        } else {
+            failedCount.incrementAndGet();
+            LOG.warning("cannot download attachment " + result.getAttachment().getId() + ": "
+                    + result.getErrorCode() + " " + result.getErrorMessage());
+        }
+        return result;
+    }
+
+    private long acquire(long bytes) throws InterruptedException {
+        synchronized (budgetLock) {
+            final long amount = Math.min(Math.max(bytes, 1), maxInFlightBytes);
+            while (inFlightBytes > 0 && inFlightBytes + amount > maxInFlightBytes) {
+                budgetLock.wait();
+            }
+            inFlightBytes += amount;
+            return amount;
+        }
+    }
+
+    private void release(long amount) {
+        synchronized (budgetLock) {
+            inFlightBytes -= amount;
+            budgetLock.notifyAll();
+        }
+    }
+
+    private static long sizeOf(FileAttachment attachment) {
+        try {
+            final int size = attachment.getOwner() != null ? attachment.getSize() : 0;
+            return size > 0 ? size : -1;
+        } catch (ServiceVersionException e) {
+            return -1;
+        }
+    }
+
+    private static void closeAll(List<OutputStream> streams) throws IOException {
+        IOException failure = null;
+        for (OutputStream stream : streams) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        streams.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A content handler for one request, told about the outcome of each attachment.
+     */
+    private interface BatchHandler extends IFileAttachmentContentHandler, AutoCloseable {
+
+        void completed(FileAttachment attachment, boolean success) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    /**
+     * The outcome of downloading one attachment.
+     */
+    public static final class DownloadResult {
+
+        private final FileAttachment attachment;
+        private final ServiceError errorCode;
+        private final String errorMessage;
+
+        DownloadResult(FileAttachment attachment, ServiceError errorCode, String errorMessage) {
+            this.attachment = attachment;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * Gets the attachment.
+         *
+         * @return the attachment
+         */
+        public FileAttachment getAttachment() {
+            return attachment;
+        }
+
+        /**
+         * Gets the error reported by the server.
+         *
+         * @return the error code, or null if the download succeeded or failed locally
+         */
+        public ServiceError getErrorCode() {
+            return errorCode;
+        }
+
+        /**
+         * Gets the error message.
+         *
+         * @return the message, or null if the download succeeded
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * Checks whether the attachment was downloaded.
+         *
+         * @return true on success
+         */
+        public boolean isSuccess() {
+            return errorCode == null && errorMessage == null;
+        }
+
+        @Override
+        public String toString() {
+            return attachment.getId() + (isSuccess() ? ": OK" : ": " + errorCode + " " + errorMessage);
+        }
+    }
+}
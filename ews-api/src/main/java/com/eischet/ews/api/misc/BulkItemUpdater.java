@@ -0,0 +1,391 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.ItemChangeSet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.ConflictResolutionMode;
+import com.eischet.ews.api.core.enumeration.service.MessageDisposition;
+import com.eischet.ews.api.core.enumeration.service.SendInvitationsOrCancellationsMode;
+import com.eischet.ews.api.core.response.UpdateItemResponse;
+import com.eischet.ews.api.property.complex.ItemId;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Applies property changes to many items, given by their ids, with concurrent UpdateItem requests.
+ * <p>
+ * Items needing equal {@link ItemChangeSet}s are grouped, and each group is split into batches of at most
+ * {@link #getMaxBatchSize()} items. The updates of a change set are serialized once and repeated for every item
+ * of a batch, so no Item has to be loaded or built per item. Batches run concurrently on per-thread views of the
+ * service.
+ * </p>
+ * <p>
+ * When the server reports that it is busy, all batches pause for the back off time it asks for (or an
+ * exponentially growing delay if it gives none), and the affected items are retried. The outcome of every item is
+ * returned as an {@link UpdateResult}.
+ * </p>
+ */
+public class BulkItemUpdater {
+
+    private static final Logger LOG = Logger.getLogger(BulkItemUpdater.class.getCanonicalName());
+
+    /**
+     * The maximum number of items updated with one UpdateItem request when none is given.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * The number of times items are retried after the server reported that it is busy, when none is given.
+     */
+    public static final int DEFAULT_MAX_RETRIES = ServerBusyRetrier.DEFAULT_MAX_RETRIES;
+
+    private final ExchangeService service;
+    private final AtomicLong updatedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final ServerBusyRetrier retrier = new ServerBusyRetrier("UpdateItem");
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile int concurrency;
+    private volatile ConflictResolutionMode conflictResolution = ConflictResolutionMode.AlwaysOverwrite;
+    private volatile MessageDisposition messageDisposition = MessageDisposition.SaveOnly;
+    private volatile SendInvitationsOrCancellationsMode sendInvitationsOrCancellationsMode;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service the service to update items with
+     */
+    public BulkItemUpdater(ExchangeService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("service must not be null");
+        }
+        this.service = service;
+        this.concurrency = Math.max(1, service.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Gets the maximum number of items updated with one UpdateItem request.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of items updated with one UpdateItem request.
+     *
+     * @param maxBatchSize the maximum batch size, at least 1
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Gets the number of times items are retried after the server reported that it is busy.
+     *
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries() {
+        return retrier.getMaxRetries();
+    }
+
+    /**
+     * Sets the number of times items are retried after the server reported that it is busy.
+     *
+     * @param maxRetries the maximum number of retries, 0 to fail right away
+     */
+    public void setMaxRetries(int maxRetries) {
+        retrier.setMaxRetries(maxRetries);
+    }
+
+    /**
+     * Gets the maximum number of UpdateItem requests running at the same time.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the maximum number of UpdateItem requests running at the same time. The default is the maximum number
+     * of concurrent requests of the service.
+     *
+     * @param concurrency the concurrency, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Gets the conflict resolution mode.
+     *
+     * @return the conflict resolution mode; AlwaysOverwrite by default
+     */
+    public ConflictResolutionMode getConflictResolution() {
+        return conflictResolution;
+    }
+
+    /**
+     * Sets the conflict resolution mode. With AutoResolve or NeverOverwrite, the item ids should carry change keys.
+     *
+     * @param conflictResolution the conflict resolution mode
+     */
+    public void setConflictResolution(ConflictResolutionMode conflictResolution) {
+        if (conflictResolution == null) {
+            throw new IllegalArgumentException("conflictResolution must not be null");
+        }
+        this.conflictResolution = conflictResolution;
+    }
+
+    /**
+     * Gets the message disposition.
+     *
+     * @return the message disposition; SaveOnly by default
+     */
+    public MessageDisposition getMessageDisposition() {
+        return messageDisposition;
+    }
+
+    /**
+     * Sets the message disposition, which the server requires when messages are updated.
+     *
+     * @param messageDisposition the message disposition, or null to send none
+     */
+    public void setMessageDisposition(MessageDisposition messageDisposition) {
+        this.messageDisposition = messageDisposition;
+    }
+
+    /**
+     * Gets the send invitations or cancellations mode.
+     *
+     * @return the mode, or null if none is sent
+     */
+    public SendInvitationsOrCancellationsMode getSendInvitationsOrCancellationsMode() {
+        return sendInvitationsOrCancellationsMode;
+    }
+
+    /**
+     * Sets the send invitations or cancellations mode, which the server requires when calendar items are updated.
+     *
+     * @param sendInvitationsOrCancellationsMode the mode, or null to send none
+     */
+    public void setSendInvitationsOrCancellationsMode(
+            SendInvitationsOrCancellationsMode sendInvitationsOrCancellationsMode) {
+        this.sendInvitationsOrCancellationsMode = sendInvitationsOrCancellationsMode;
+    }
+
+    /**
+     * Applies the same changes to items.
+     *
+     * @param itemIds the ids of the items; their change keys are updated as the items are updated
+     * @param changes the changes
+     * @return the outcome for each item, in the order of the ids
+     * @throws Exception if the updating thread is interrupted
+     */
+    public List<UpdateResult> update(Collection<ItemId> itemIds, ItemChangeSet changes) throws Exception {
+        if (itemIds == null || changes == null || changes.isEmpty()) {
+            throw new IllegalArgumentException("itemIds and changes must not be null or empty");
+        }
+        final Map<ItemChangeSet, List<ItemId>> groups = new LinkedHashMap<>();
+        groups.put(changes, new ArrayList<>(itemIds));
+        return collect(itemIds, updateGroups(groups));
+    }
+
+    /**
+     * Applies changes to items. Items with equal change sets are updated together.
+     *
+     * @param changes the changes by item id
+     * @return the outcome for each item, in the order of the map
+     * @throws Exception if the updating thread is interrupted
+     */
+    public List<UpdateResult> update(Map<ItemId, ItemChangeSet> changes) throws Exception {
+        if (changes == null) {
+            throw new IllegalArgumentException("changes must not be null");
+        }
+        final Map<ItemChangeSet, List<ItemId>> groups = new LinkedHashMap<>();
+        for (Map.Entry<ItemId, ItemChangeSet> change : changes.entrySet()) {
+            if (change.getValue() == null || change.getValue().isEmpty()) {
+                throw new IllegalArgumentException("change sets must not be null or empty");
+            }
+            groups.computeIfAbsent(change.getValue(), key -> new ArrayList<>()).add(change.getKey());
+        }
+        return collect(changes.keySet(), updateGroups(groups));
+    }
+
+    /**
+     * Gets the number of items updated since this instance was created.
+     *
+     * @return the updated count
+     */
+    public long getUpdatedCount() {
+        return updatedCount.get();
+    }
+
+    /**
+     * Gets the number of items which could not be updated since this instance was created.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private Map<ItemId, UpdateResult> updateGroups(Map<ItemChangeSet, List<ItemId>> groups) throws Exception {
+        final List<Callable<List<UpdateResult>>> tasks = new ArrayList<>();
+        for (Map.Entry<ItemChangeSet, List<ItemId>> group : groups.entrySet()) {
+            final List<ItemId> itemIds = group.getValue();
+            for (int from = 0; from < itemIds.size(); from += maxBatchSize) {
+                final List<ItemId> batch = itemIds.subList(from, Math.min(itemIds.size(), from + maxBatchSize));
+                if (batch.contains(null)) {
+                    throw new IllegalArgumentException("item ids must not be null");
+                }
+                tasks.add(() -> updateBatch(service.forMailbox(service.getMailboxContext()), batch, group.getKey()));
+            }
+        }
+        // by instance, as ItemId compares by unique id only and the ids of a collection need not be unique
+        final Map<ItemId, UpdateResult> byItem = new IdentityHashMap<>();
+        for (List<UpdateResult> results : ParallelExecution.invokeAll(tasks, concurrency)) {
+            for (UpdateResult result : results) {
+                byItem.put(result.getItemId(), result);
+            }
+        }
+        return byItem;
+    }
+
+    private static List<UpdateResult> collect(Collection<ItemId> itemIds, Map<ItemId, UpdateResult> byItem) {
+        final List<UpdateResult> results = new ArrayList<>(itemIds.size());
+        for (ItemId itemId : itemIds) {
+            results.add(byItem.get(itemId));
+        }
+        return results;
+    }
+
+    private List<UpdateResult> updateBatch(ExchangeService view, List<ItemId> batch, ItemChangeSet changes)
+            throws Exception {
+        final List<UpdateResult> results = retrier.execute(batch,
+                itemIds -> view.updateItems(itemIds, changes, conflictResolution, messageDisposition,
+                        sendInvitationsOrCancellationsMode),
+                (itemId, position, response, errorCode, errorMessage) -> new UpdateResult(itemId, response,
+                        errorCode, errorMessage));
+        for (UpdateResult result : results) {
+            record(result);
+        }
+        return results;
+    }
+
+    private UpdateResult record(UpdateResult result) {
+        if (result.isSuccess()) {
+            updatedCount.incrementAndGet();
+        } else {
+            failedCount.incrementAndGet();
+            LOG.warning("cannot update item " + result.getItemId().getUniqueId() + ": " + result.getErrorCode()
+                    + " " + result.getErrorMessage());
+        }
+        return result;
+    }
+
+    /**
+     * The outcome of updating one item.
+     */
+    public static final class UpdateResult {
+
+        private final ItemId itemId;
+        private final UpdateItemResponse response;
+        private final ServiceError errorCode;
+        private final String errorMessage;
+
+        UpdateResult(ItemId itemId, UpdateItemResponse response, ServiceError errorCode, String errorMessage) {
+            this.itemId = itemId;
+            this.response = response;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * Gets the id of the item.
+         *
+         * @return the item id
+         */
+        public ItemId getItemId() {
+            return itemId;
+        }
+
+        /**
+         * Gets the response of the server for the item.
+         *
+         * @return the response, or null if the request failed as a whole
+         */
+        public UpdateItemResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * Gets the error reported by the server.
+         *
+         * @return the error code, or null if the update succeeded or failed locally
+         */
+        public ServiceError getErrorCode() {
+            return errorCode;
+        }
+
+        /**
+         * Gets the error message.
+         *
+         * @return the message, or null if the update succeeded
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * Checks whether the item was updated.
+         *
+         * @return true on success
+         */
+        public boolean isSuccess() {
+            return errorCode == null && errorMessage == null;
+        }
+
+        @Override
+        public String toString() {
+            return itemId.getUniqueId() + (isSuccess() ? ": OK" : ": " + errorCode + " " + errorMessage);
+        }
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.ConversationActionType;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.DeleteMode;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.property.complex.ConversationId;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.property.complex.StringList;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.logging.Logger;
+
+/**
+ * Applies conversation actions to many conversations, e.g. all conversations found by paging through
+ * {@link ExchangeService#findConversation}, with concurrent ApplyConversationAction requests.
+ * <p>
+ * The conversations are split into batches of at most {@link #getMaxBatchSize()} actions, which run concurrently
+ * on per-thread views of the service. When the server reports that it is busy, all batches pause for the back off
+ * time it asks for (or an exponentially growing delay if it gives none), and the affected conversations are
+ * retried. The outcome of every conversation is returned as a {@link ConversationActionResult}.
+ * </p>
+ * <p>
+ * For the always-* actions, {@link #isProcessRightAway()} decides whether the server applies the rule to the
+ * existing items before it answers. It is off by default, so that the mailbox assistant does that work in the
+ * background and each request returns quickly.
+ * </p>
+ */
+public class ConversationActionExecutor {
+
+    private static final Logger LOG = Logger.getLogger(ConversationActionExecutor.class.getCanonicalName());
+
+    /**
+     * The maximum number of conversation actions sent with one request when none is given. Each action may touch
+     * many items, so this is lower than the batch sizes used for items.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    /**
+     * The number of times conversations are retried after the server reported that it is busy, when none is given.
+     */
+    public static final int DEFAULT_MAX_RETRIES = ServerBusyRetrier.DEFAULT_MAX_RETRIES;
+
+    private final ExchangeService service;
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final ServerBusyRetrier retrier = new ServerBusyRetrier("ApplyConversationAction");
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile int concurrency;
+    private volatile boolean processRightAway;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service the service to apply conversation actions with
+     */
+    public ConversationActionExecutor(ExchangeService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("service must not be null");
+        }
+        this.service = service;
+        this.concurrency = Math.max(1, service.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Gets the maximum number of conversation actions sent with one request.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of conversation actions sent with one request.
+     *
+     * @param maxBatchSize the maximum batch size, at least 1
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Gets the number of times conversations are retried after the server reported that it is busy.
+     *
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries() {
+        return retrier.getMaxRetries();
+    }
+
+    /**
+     * Sets the number of times conversations are retried after the server reported that it is busy.
+     *
+     * @param maxRetries the maximum number of retries, 0 to fail right away
+     */
+    public void setMaxRetries(int maxRetries) {
+        retrier.setMaxRetries(maxRetries);
+    }
+
+    /**
+     * Gets the maximum number of ApplyConversationAction requests running at the same time.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the maximum number of ApplyConversationAction requests running at the same time. The default is the
+     * maximum number of concurrent requests of the service.
+     *
+     * @param concurrency the concurrency, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Checks whether always-* actions are applied to the existing items before the server answers.
+     *
+     * @return true to process synchronously; false by default
+     */
+    public boolean isProcessRightAway() {
+        return processRightAway;
+    }
+
+    /**
+     * Sets whether always-* actions are applied to the existing items before the server answers. Processing right
+     * away makes each request slower, but its response tells whether the existing items were processed.
+     *
+     * @param processRightAway true to process synchronously
+     */
+    public void setProcessRightAway(boolean processRightAway) {
+        this.processRightAway = processRightAway;
+    }
+
+    /**
+     * Moves the items of conversations to a folder.
+     *
+     * @param idLastSyncTimes     the conversation ids, each with the time it was last synced (items received after
+     *                            that time are not moved), or with null to move all items
+     * @param contextFolderId     the folder containing the conversations, or null for all folders
+     * @param destinationFolderId the destination folder
+     * @return the outcome for each conversation, in the order of the map
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> moveItems(Map<ConversationId, LocalDateTime> idLastSyncTimes,
+                                                    FolderId contextFolderId, FolderId destinationFolderId)
+            throws Exception {
+        if (destinationFolderId == null) {
+            throw new IllegalArgumentException("destinationFolderId must not be null");
+        }
+        return applyOneTime(ConversationActionType.Move, idLastSyncTimes, contextFolderId, destinationFolderId,
+                null, null);
+    }
+
+    /**
+     * Copies the items of conversations to a folder.
+     *
+     * @param idLastSyncTimes     the conversation ids, each with the time it was last synced (items received after
+     *                            that time are not copied), or with null to copy all items
+     * @param contextFolderId     the folder containing the conversations, or null for all folders
+     * @param destinationFolderId the destination folder
+     * @return the outcome for each conversation, in the order of the map
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> copyItems(Map<ConversationId, LocalDateTime> idLastSyncTimes,
+                                                    FolderId contextFolderId, FolderId destinationFolderId)
+            throws Exception {
+        if (destinationFolderId == null) {
+            throw new IllegalArgumentException("destinationFolderId must not be null");
+        }
+        return applyOneTime(ConversationActionType.Copy, idLastSyncTimes, contextFolderId, destinationFolderId,
+                null, null);
+    }
+
+    /**
+     * Deletes the items of conversations.
+     *
+     * @param idLastSyncTimes the conversation ids, each with the time it was last synced (items received after
+     *                        that time are not deleted), or with null to delete all items
+     * @param contextFolderId the folder containing the conversations, or null for all folders
+     * @param deleteMode      the delete mode
+     * @return the outcome for each conversation, in the order of the map
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> deleteItems(Map<ConversationId, LocalDateTime> idLastSyncTimes,
+                                                      FolderId contextFolderId, DeleteMode deleteMode)
+            throws Exception {
+        if (deleteMode == null) {
+            throw new IllegalArgumentException("deleteMode must not be null");
+        }
+        return applyOneTime(ConversationActionType.Delete, idLastSyncTimes, contextFolderId, null, deleteMode,
+                null);
+    }
+
+    /**
+     * Sets the read state of the items of conversations.
+     *
+     * @param idLastSyncTimes the conversation ids, each with the time it was last synced (items received after
+     *                        that time are not changed), or with null to change all items
+     * @param contextFolderId the folder containing the conversations, or null for all folders
+     * @param isRead          true to mark the items as read, false to mark them as unread
+     * @return the outcome for each conversation, in the order of the map
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> setReadState(Map<ConversationId, LocalDateTime> idLastSyncTimes,
+                                                       FolderId contextFolderId, boolean isRead) throws Exception {
+        return applyOneTime(ConversationActionType.SetReadState, idLastSyncTimes, contextFolderId, null, null,
+                isRead);
+    }
+
+    /**
+     * Sets up conversations so that their current and future items are always categorized.
+     *
+     * @param conversationIds the conversation ids
+     * @param categories      the categories to stamp on the items
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> enableAlwaysCategorize(Collection<ConversationId> conversationIds,
+                                                                 Iterable<String> categories) throws Exception {
+        if (categories == null || !categories.iterator().hasNext()) {
+            throw new IllegalArgumentException("categories must not be null or empty");
+        }
+        final StringList categoryList = new StringList(categories);
+        return applyAlways(ConversationActionType.AlwaysCategorize, conversationIds,
+                action -> action.setCategories(categoryList));
+    }
+
+    /**
+     * Stops categorizing the items of conversations.
+     *
+     * @param conversationIds the conversation ids
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> disableAlwaysCategorize(Collection<ConversationId> conversationIds)
+            throws Exception {
+        return applyAlways(ConversationActionType.AlwaysCategorize, conversationIds, action -> {
+        });
+    }
+
+    /**
+     * Sets up conversations so that their current and future items are always moved to the Deleted Items folder.
+     *
+     * @param conversationIds the conversation ids
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> enableAlwaysDelete(Collection<ConversationId> conversationIds)
+            throws Exception {
+        return applyAlways(ConversationActionType.AlwaysDelete, conversationIds,
+                action -> action.setEnableAlwaysDelete(true));
+    }
+
+    /**
+     * Stops moving the items of conversations to the Deleted Items folder.
+     *
+     * @param conversationIds the conversation ids
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> disableAlwaysDelete(Collection<ConversationId> conversationIds)
+            throws Exception {
+        return applyAlways(ConversationActionType.AlwaysDelete, conversationIds,
+                action -> action.setEnableAlwaysDelete(false));
+    }
+
+    /**
+     * Sets up conversations so that their current and future items are always moved to a folder.
+     *
+     * @param conversationIds     the conversation ids
+     * @param destinationFolderId the destination folder
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> enableAlwaysMove(Collection<ConversationId> conversationIds,
+                                                           FolderId destinationFolderId) throws Exception {
+        if (destinationFolderId == null) {
+            throw new IllegalArgumentException("destinationFolderId must not be null");
+        }
+        return applyAlways(ConversationActionType.AlwaysMove, conversationIds,
+                action -> action.setDestinationFolderId(new FolderIdWrapper(destinationFolderId)));
+    }
+
+    /**
+     * Stops moving the items of conversations to a folder.
+     *
+     * @param conversationIds the conversation ids
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> disableAlwaysMove(Collection<ConversationId> conversationIds)
+            throws Exception {
+        return applyAlways(ConversationActionType.AlwaysMove, conversationIds, action -> {
+        });
+    }
+
+    /**
+     * Applies actions built by a factory, e.g. to mix action types or to use per-conversation settings. The
+     * conversation id of each action is set by this method; everything else, including ProcessRightAway, is
+     * left to the factory.
+     *
+     * @param conversationIds the conversation ids
+     * @param factory         creates the action for a conversation
+     * @return the outcome for each conversation, in the order of the ids
+     * @throws Exception if the applying thread is interrupted
+     */
+    public List<ConversationActionResult> apply(Collection<ConversationId> conversationIds,
+                                                Function<ConversationId, ConversationAction> factory)
+            throws Exception {
+        if (conversationIds == null || factory == null) {
+            throw new IllegalArgumentException("conversationIds and factory must not be null");
+        }
+        final List<ConversationId> ids = new ArrayList<>(conversationIds);
+        final List<ConversationAction> actions = new ArrayList<>(ids.size());
+        for (ConversationId conversationId : ids) {
+            if (conversationId == null) {
+                throw new IllegalArgumentException("conversation ids must not be null");
+            }
+            final ConversationAction action = factory.apply(conversationId);
+            if (action == null) {
+                throw new IllegalArgumentException("factory returned no action for " + conversationId);
+            }
+            action.setConversationId(conversationId);
+            actions.add(action);
+        }
+        return applyAll(ids, actions);
+    }
+
+    /**
+     * Gets the number of conversations the actions were applied to since this instance was created.
+     *
+     * @return the applied count
+     */
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+
+    /**
+     * Gets the number of conversations the actions could not be applied to since this instance was created.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private List<ConversationActionResult> applyOneTime(ConversationActionType type,
+                                                        Map<ConversationId, LocalDateTime> idLastSyncTimes,
+                                                        FolderId contextFolderId, FolderId destinationFolderId,
+                                                        DeleteMode deleteMode, Boolean isRead) throws Exception {
+        if (idLastSyncTimes == null) {
+            throw new IllegalArgumentException("idLastSyncTimes must not be null");
+        }
+        return apply(idLastSyncTimes.keySet(), conversationId -> {
+            final ConversationAction action = new ConversationAction();
+            action.setAction(type);
+            action.setConversationLastSyncTime(idLastSyncTimes.get(conversationId));
+            action.setContextFolderId(contextFolderId != null ? new FolderIdWrapper(contextFolderId) : null);
+            action.setDestinationFolderId(
+                    destinationFolderId != null ? new FolderIdWrapper(destinationFolderId) : null);
+            action.setDeleteType(deleteMode);
+            action.setIsRead(isRead);
+            return action;
+        });
+    }
+
+    private List<ConversationActionResult> applyAlways(ConversationActionType type,
+                                                       Collection<ConversationId> conversationIds,
+                                                       Consumer<ConversationAction> settings)
+            throws Exception {
+        final boolean rightAway = processRightAway;
+        return apply(conversationIds, conversationId -> {
+            final ConversationAction action = new ConversationAction();
+            action.setAction(type);
+            action.setProcessRightAway(rightAway);
+            settings.accept(action);
+            return action;
+        });
+    }
+
+    private List<ConversationActionResult> applyAll(List<ConversationId> ids, List<ConversationAction> actions)
+            throws Exception {
+        final List<Callable<List<ConversationActionResult>>> tasks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += maxBatchSize) {
+            final int to = Math.min(ids.size(), from + maxBatchSize);
+            final List<ConversationAction> batchActions = actions.subList(from, to);
+            tasks.add(() -> applyBatch(service.forMailbox(service.getMailboxContext()), batchActions));
+        }
+        final List<ConversationActionResult> results = new ArrayList<>(ids.size());
+        for (List<ConversationActionResult> batchResults : ParallelExecution.invokeAll(tasks, concurrency)) {
+            results.addAll(batchResults);
+        }
+        return results;
+    }
+
+    private List<ConversationActionResult> applyBatch(ExchangeService view, List<ConversationAction> batchActions)
+            throws Exception {
+        final List<ConversationActionResult> results = retrier.execute(batchActions,
+                view::applyConversationActions,
+                (action, position, response, errorCode, errorMessage) -> new ConversationActionResult(
+                        action.getConversationId(), response, errorCode, errorMessage));
+        for (ConversationActionResult result : results) {
+            record(result);
+        }
+        return results;
+    }
+
+    private ConversationActionResult record(ConversationActionResult result) {
+        if (result.isSuccess()) {
+            appliedCount.incrementAndGet();
+        } else {
+            failedCount.incrementAndGet();
+            LOG.warning("cannot apply action to conversation " + result.getConversationId().getUniqueId() + ": "
+                    + result.getErrorCode() + " " + result.getErrorMessage());
+        }
+        return result;
+    }
+
+    /**
+     * The outcome of applying an action to one conversation.
+     */
+    public static final class ConversationActionResult {
+
+        private final ConversationId conversationId;
+        private final ServiceResponse response;
+        private final ServiceError errorCode;
+        private final String errorMessage;
+
+        ConversationActionResult(ConversationId conversationId, ServiceResponse response, ServiceError errorCode,
+                                 String errorMessage) {
+            this.conversationId = conversationId;
+            this.response = response;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * Gets the id of the conversation.
+         *
+         * @return the conversation id
+         */
+        public ConversationId getConversationId() {
+            return conversationId;
+        }
+
+        /**
+         * Gets the response of the server for the conversation.
+         *
+         * @return the response, or null if the request failed as a whole
+         */
+        public ServiceResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * Gets the error reported by the server.
+         *
+         * @return the error code, or null if the action succeeded or failed locally
+         */
+        public ServiceError getErrorCode() {
+            return errorCode;
+        }
+
+        /**
+         * Gets the error message.
+         *
+         * @return the message, or null if the action succeeded
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * Checks whether the action was applied.
+         *
+         * @return true on success
+         */
+        public boolean isSuccess() {
+            return errorCode == null && errorMessage == null;
+        }
+
+        @Override
+        public String toString() {
+            return conversationId.getUniqueId() + (isSuccess() ? ": OK" : ": " + errorCode + " " + errorMessage);
+        }
+    }
+}
@@ -122,6 +122,24 @@ public final class ExpandGroupResults implements Iterable<EmailAddress> {
      *
      * @return an Iterator.
      */
+    /**
+     * Creates a copy of these results with copies of the members.
+     *
+     * @return the copy
+     */
+    public ExpandGroupResults copy() {
+        final ExpandGroupResults copy = new ExpandGroupResults();
+        copy.includesAllMembers = this.includesAllMembers;
+        for (EmailAddress member : this.members) {
+            final EmailAddress address = new EmailAddress(member.getName(), member.getAddress(),
+                    member.getRoutingType());
+            address.setMailboxType(member.getMailboxType());
+            address.setId(member.getId());
+            copy.members.add(address);
+        }
+        return copy;
+    }
+
     @Override
     public Iterator<EmailAddress> iterator() {
 
@@ -0,0 +1,181 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+
+/**
+ * A thread-safe, size-bounded cache whose entries expire a fixed time after they were added.
+ * When the cache is full, the least recently used entry is evicted.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class ExpiringLruCache<K, V> {
+
+    private final long timeToLiveNanos;
+    private final int maximumSize;
+    private final LinkedHashMap<K, CacheEntry<V>> entries;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param timeToLive  how long entries stay valid
+     * @param maximumSize the maximum number of entries
+     */
+    public ExpiringLruCache(Duration timeToLive, int maximumSize) {
+        if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("timeToLive must be positive");
+        }
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1");
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > ExpiringLruCache.this.maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Gets a value.
+     *
+     * @param key the key
+     * @return the value, or null if there is none or it has expired
+     */
+    public synchronized V get(K key) {
+        final CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.created >= timeToLiveNanos) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Adds or replaces a value.
+     *
+     * @param key   the key
+     * @param value the value, not null
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new CacheEntry<V>(value, System.nanoTime()));
+    }
+
+    /**
+     * Removes a value.
+     *
+     * @param key the key
+     * @return the removed value, or null
+     */
+    public synchronized V remove(K key) {
+        final CacheEntry<V> entry = entries.remove(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Removes all values matching a predicate.
+     *
+     * @param predicate the predicate, called with each key
+     */
+    public synchronized void removeIf(Predicate<? super K> predicate) {
+        entries.keySet().removeIf(predicate);
+    }
+
+    /**
+     * Removes all values for which a predicate holds.
+     *
+     * @param predicate the predicate, called with each key and its value
+     */
+    public synchronized void removeEntriesIf(BiPredicate<? super K, ? super V> predicate) {
+        entries.entrySet().removeIf(entry -> predicate.test(entry.getKey(), entry.getValue().value));
+    }
+
+    /**
+     * Removes all values.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Removes expired values.
+     */
+    public synchronized void purgeExpired() {
+        final long now = System.nanoTime();
+        for (Iterator<CacheEntry<V>> it = entries.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().created >= timeToLiveNanos) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values, including expired ones not yet removed.
+     *
+     * @return the number of values
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the time to live of the entries.
+     *
+     * @return the time to live
+     */
+    public Duration getTimeToLive() {
+        return Duration.ofNanos(timeToLiveNanos);
+    }
+
+    /**
+     * Gets the maximum number of entries.
+     *
+     * @return the maximum size
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    private static final class CacheEntry<V> {
+        private final V value;
+        private final long created;
+
+        private CacheEntry(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
@@ -49,6 +49,16 @@ public class FolderIdWrapper extends AbstractFolderIdWrapper {
         this.folderId = folderId;
     }
 
+    /**
+     * Obtains the FolderId object associated with the wrapper.
+     *
+     * @return The FolderId object associated with the wrapper.
+     */
+    @Override
+    public FolderId getFolderId() {
+        return this.folderId;
+    }
+
     /**
      * Writes the Id encapsulated in the wrapper to XML.
      *
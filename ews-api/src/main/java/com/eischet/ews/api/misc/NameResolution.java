@@ -107,4 +107,21 @@ public final class NameResolution {
     public Contact getContact() {
         return this.contact;
     }
+
+    /**
+     * Creates a copy of this resolution for another collection. The mailbox is copied, the contact is shared.
+     *
+     * @param owner the collection of the copy
+     * @return the copy
+     */
+    NameResolution copyFor(NameResolutionCollection owner) {
+        final NameResolution copy = new NameResolution(owner);
+        copy.mailbox.setName(this.mailbox.getName());
+        copy.mailbox.setAddress(this.mailbox.getAddress());
+        copy.mailbox.setRoutingType(this.mailbox.getRoutingType());
+        copy.mailbox.setMailboxType(this.mailbox.getMailboxType());
+        copy.mailbox.setId(this.mailbox.getId());
+        copy.contact = this.contact;
+        return copy;
+    }
 }
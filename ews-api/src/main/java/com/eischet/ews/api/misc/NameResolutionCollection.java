@@ -133,6 +133,21 @@ public final class NameResolutionCollection implements
         return this.items.get(index);
     }
 
+    /**
+     * Creates a copy of this collection, with copies of the resolved mailboxes. Contacts are shared with the
+     * copy.
+     *
+     * @return the copy
+     */
+    public NameResolutionCollection copy() {
+        final NameResolutionCollection copy = new NameResolutionCollection(this.service);
+        copy.includesAllResolutions = this.includesAllResolutions;
+        for (NameResolution item : this.items) {
+            copy.items.add(item.copyFor(copy));
+        }
+        return copy;
+    }
+
     /*
      * (non-Javadoc)
      *
@@ -0,0 +1,367 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.property.MailboxType;
+import com.eischet.ews.api.core.enumeration.search.ResolveNameSearchLocation;
+import com.eischet.ews.api.property.complex.EmailAddress;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Resolves names and expands distribution lists with caching and bulk operations.
+ * <p>
+ * ExchangeService.resolveName and expandGroup send one request per call. Applications which resolve the same
+ * recipients over and over can use a NameResolver instead: results are kept for a configurable time, bulk calls
+ * send one request per distinct name (case-insensitive) with up to
+ * {@link ExchangeService#getMaxConcurrentRequests()} requests at a time, and nested distribution lists can be
+ * expanded recursively, fetching every sub-group only once. A name or group which is already being looked up
+ * by another thread is not requested again; the caller waits for that lookup instead.
+ * </p>
+ * <p>
+ * Instances are thread-safe. Every caller gets its own copy of the cached results, so they can be modified;
+ * only the contacts returned with {@link #setReturnContactDetails(boolean)} are shared.
+ * </p>
+ */
+public class NameResolver {
+
+    private final ExchangeService service;
+    private final ExpiringLruCache<String, NameResolutionCollection> resolutions;
+    private final ExpiringLruCache<String, ExpandGroupResults> groups;
+    private final Map<String, CompletableFuture<NameResolutionCollection>> pendingResolutions =
+            new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<ExpandGroupResults>> pendingGroups = new ConcurrentHashMap<>();
+    private volatile ResolveNameSearchLocation searchLocation = ResolveNameSearchLocation.ContactsThenDirectory;
+    private volatile boolean returnContactDetails;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service     the service used to send the requests
+     * @param timeToLive  how long resolutions and group members are reused
+     * @param maximumSize the maximum number of names, and of groups, kept
+     */
+    public NameResolver(ExchangeService service, Duration timeToLive, int maximumSize) {
+        if (service == null) {
+            throw new IllegalArgumentException("service must not be null");
+        }
+        this.service = service;
+        this.resolutions = new ExpiringLruCache<>(timeToLive, maximumSize);
+        this.groups = new ExpiringLruCache<>(timeToLive, maximumSize);
+    }
+
+    /**
+     * Gets where names are searched.
+     *
+     * @return the search location
+     */
+    public ResolveNameSearchLocation getSearchLocation() {
+        return searchLocation;
+    }
+
+    /**
+     * Sets where names are searched. Clears the cached resolutions.
+     *
+     * @param searchLocation the search location
+     */
+    public void setSearchLocation(ResolveNameSearchLocation searchLocation) {
+        this.searchLocation = searchLocation;
+        resolutions.clear();
+    }
+
+    /**
+     * Gets whether the full contact data is returned with each resolution.
+     *
+     * @return true if contact details are returned
+     */
+    public boolean isReturnContactDetails() {
+        return returnContactDetails;
+    }
+
+    /**
+     * Sets whether the full contact data is returned with each resolution. Clears the cached resolutions.
+     *
+     * @param returnContactDetails true to return contact details
+     */
+    public void setReturnContactDetails(boolean returnContactDetails) {
+        this.returnContactDetails = returnContactDetails;
+        resolutions.clear();
+    }
+
+    /**
+     * Resolves a name, using the cache if possible.
+     *
+     * @param name the name to resolve
+     * @return the resolutions, which may be empty
+     * @throws Exception on error
+     */
+    public NameResolutionCollection resolveName(String name) throws Exception {
+        return resolveName(service, name);
+    }
+
+    /**
+     * Resolves several names. Duplicates are resolved once, and names which are not cached are resolved
+     * concurrently.
+     *
+     * @param names the names to resolve
+     * @return the resolutions of each distinct name, in the order of the names
+     * @throws Exception the exception of the first failing request
+     */
+    public Map<String, NameResolutionCollection> resolveNames(Collection<String> names) throws Exception {
+        final Map<String, NameResolutionCollection> result = new LinkedHashMap<String, NameResolutionCollection>();
+        final Map<String, String> missing = new LinkedHashMap<String, String>();
+        for (String name : names) {
+            final String key = key(name);
+            final NameResolutionCollection cached = resolutions.get(key);
+            result.put(name, cached != null ? cached.copy() : null);
+            if (cached == null && !missing.containsKey(key)) {
+                missing.put(key, name);
+            }
+        }
+
+        final boolean concurrent = missing.size() > 1 && service.getMaxConcurrentRequests() > 1;
+        final List<Callable<NameResolutionCollection>> tasks = new ArrayList<Callable<NameResolutionCollection>>();
+        for (final String name : missing.values()) {
+            tasks.add(() -> resolveName(concurrent ? service.forMailbox(service.getMailboxContext()) : service,
+                    name));
+        }
+        final List<NameResolutionCollection> resolved =
+                ParallelExecution.invokeAll(tasks, service.getMaxConcurrentRequests());
+
+        final Map<String, NameResolutionCollection> byKey = new LinkedHashMap<String, NameResolutionCollection>();
+        int i = 0;
+        for (String key : missing.keySet()) {
+            byKey.put(key, resolved.get(i++));
+        }
+        for (Map.Entry<String, NameResolutionCollection> entry : result.entrySet()) {
+            if (entry.getValue() == null) {
+                entry.setValue(byKey.get(key(entry.getKey())));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Gets the members of a distribution list, using the cache if possible.
+     *
+     * @param group the group; public groups are identified by address, contact groups by item id
+     * @return the members
+     * @throws Exception on error
+     */
+    public ExpandGroupResults expandGroup(EmailAddress group) throws Exception {
+        return expandGroup(service, group);
+    }
+
+    /**
+     * Gets the members of a distribution list, using the cache if possible.
+     *
+     * @param smtpAddress the SMTP address of the group
+     * @return the members
+     * @throws Exception on error
+     */
+    public ExpandGroupResults expandGroup(String smtpAddress) throws Exception {
+        return expandGroup(new EmailAddress(smtpAddress));
+    }
+
+    /**
+     * Gets the members of several distribution lists. Duplicates are expanded once, and groups which are not
+     * cached are expanded concurrently.
+     *
+     * @param groups the groups
+     * @return the members of each distinct group, keyed by group, in the order of the groups
+     * @throws Exception the exception of the first failing request
+     */
+    public Map<EmailAddress, ExpandGroupResults> expandGroups(Collection<EmailAddress> groups) throws Exception {
+        final Map<String, EmailAddress> distinct = new LinkedHashMap<String, EmailAddress>();
+        for (EmailAddress group : groups) {
+            final String key = groupKey(group);
+            if (!distinct.containsKey(key)) {
+                distinct.put(key, group);
+            }
+        }
+
+        final boolean concurrent = distinct.size() > 1 && service.getMaxConcurrentRequests() > 1;
+        final List<Callable<ExpandGroupResults>> tasks = new ArrayList<Callable<ExpandGroupResults>>();
+        for (final EmailAddress group : distinct.values()) {
+            final ExpandGroupResults cached = this.groups.get(groupKey(group));
+            if (cached != null) {
+                tasks.add(cached::copy);
+            } else {
+                tasks.add(() -> expandGroup(concurrent ? service.forMailbox(service.getMailboxContext()) : service,
+                        group));
+            }
+        }
+        final List<ExpandGroupResults> expanded = ParallelExecution.invokeAll(tasks,
+                service.getMaxConcurrentRequests());
+
+        final Map<EmailAddress, ExpandGroupResults> result = new LinkedHashMap<EmailAddress, ExpandGroupResults>();
+        int i = 0;
+        for (EmailAddress group : distinct.values()) {
+            result.put(group, expanded.get(i++));
+        }
+        return result;
+    }
+
+    /**
+     * Expands a distribution list and all distribution lists nested in it. Each level of nesting is expanded
+     * with one bulk call, every group is expanded only once, and groups which contain themselves, directly or
+     * indirectly, do not cause a loop.
+     *
+     * @param group the group
+     * @return the members which are not groups themselves, each address once, in the order they were found
+     * @throws Exception the exception of the first failing request
+     */
+    public List<EmailAddress> expandGroupRecursively(EmailAddress group) throws Exception {
+        final Map<String, EmailAddress> members = new LinkedHashMap<String, EmailAddress>();
+        final Set<String> visited = new HashSet<String>();
+        visited.add(groupKey(group));
+        List<EmailAddress> level = new ArrayList<EmailAddress>();
+        level.add(group);
+        while (!level.isEmpty()) {
+            final List<EmailAddress> next = new ArrayList<EmailAddress>();
+            for (ExpandGroupResults results : expandGroups(level).values()) {
+                for (EmailAddress member : results) {
+                    if (isGroup(member)) {
+                        if (visited.add(groupKey(member))) {
+                            next.add(member);
+                        }
+                    } else {
+                        final String key = member.getAddress() != null ? key(member.getAddress()) : groupKey(member);
+                        if (!members.containsKey(key)) {
+                            members.put(key, member);
+                        }
+                    }
+                }
+            }
+            level = next;
+        }
+        return new ArrayList<EmailAddress>(members.values());
+    }
+
+    /**
+     * Expands a distribution list and all distribution lists nested in it.
+     *
+     * @param smtpAddress the SMTP address of the group
+     * @return the members which are not groups themselves
+     * @throws Exception the exception of the first failing request
+     * @see #expandGroupRecursively(EmailAddress)
+     */
+    public List<EmailAddress> expandGroupRecursively(String smtpAddress) throws Exception {
+        return expandGroupRecursively(new EmailAddress(smtpAddress));
+    }
+
+    /**
+     * Removes a name or group from the cache, e.g. after it was changed.
+     *
+     * @param nameOrAddress the resolved name, or the SMTP address of a group
+     */
+    public void invalidate(String nameOrAddress) {
+        resolutions.remove(key(nameOrAddress));
+        groups.remove(key(nameOrAddress));
+    }
+
+    /**
+     * Removes all cached resolutions and group members.
+     */
+    public void clear() {
+        resolutions.clear();
+        groups.clear();
+    }
+
+    private NameResolutionCollection resolveName(ExchangeService service, String name) throws Exception {
+        return lookUp(resolutions, pendingResolutions, key(name),
+                () -> service.resolveName(name, searchLocation, returnContactDetails)).copy();
+    }
+
+    private ExpandGroupResults expandGroup(ExchangeService service, EmailAddress group) throws Exception {
+        return lookUp(groups, pendingGroups, groupKey(group), () -> service.expandGroup(group)).copy();
+    }
+
+    /**
+     * Gets a cached value, or loads it. Only one thread loads a key at a time; others wait for its result.
+     */
+    private static <T> T lookUp(ExpiringLruCache<String, T> cache, Map<String, CompletableFuture<T>> pending,
+                                String key, Callable<T> loader) throws Exception {
+        T result = cache.get(key);
+        if (result != null) {
+            return result;
+        }
+        final CompletableFuture<T> loading = new CompletableFuture<>();
+        final CompletableFuture<T> running = pending.putIfAbsent(key, loading);
+        if (running != null) {
+            try {
+                return running.get();
+            } catch (ExecutionException e) {
+                throw ParallelExecution.unwrap(e);
+            }
+        }
+        try {
+            // another thread may have finished loading between the cache lookup and registering this one
+            result = cache.get(key);
+            if (result == null) {
+                result = loader.call();
+                cache.put(key, result);
+            }
+            loading.complete(result);
+            return result;
+        } catch (Exception | Error e) {
+            loading.completeExceptionally(e);
+            throw e;
+        } finally {
+            pending.remove(key, loading);
+        }
+    }
+
+    private static boolean isGroup(EmailAddress address) {
+        return address.getMailboxType() == MailboxType.PublicGroup
+                || address.getMailboxType() == MailboxType.ContactGroup;
+    }
+
+    private static String groupKey(EmailAddress group) {
+        if (group.getId() != null && group.getId().getUniqueId() != null) {
+            return "id:" + group.getId().getUniqueId();
+        }
+        if (group.getAddress() == null) {
+            throw new IllegalArgumentException("The group has neither an address nor an id.");
+        }
+        return key(group.getAddress());
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a list of independent requests with a bounded number of threads.
+ * <p>
+ * Used by the operations that split one large call into several server-legal requests. A single task, or a
+ * concurrency of one, runs in the calling thread. Otherwise the tasks run on a shared pool of daemon threads,
+ * which is not limited itself; each call keeps at most the given number of its tasks running. Idle threads end
+ * after a minute.
+ * </p>
+ */
+public final class ParallelExecution {
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private static final ExecutorService SHARED_EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), ParallelExecution::newThread);
+
+    private ParallelExecution() {
+    }
+
+    /**
+     * Runs all tasks and returns their results. If a task fails, the remaining tasks are cancelled and the
+     * exception of the failed task is thrown.
+     *
+     * @param tasks          the tasks
+     * @param maxConcurrency the maximum number of tasks running at the same time
+     * @param <T>            the result type
+     * @return the results, in the order of the tasks
+     * @throws Exception the exception thrown by the first failing task
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> tasks, int maxConcurrency) throws Exception {
+        final List<T> results = new ArrayList<T>(tasks.size());
+        if (tasks.size() <= 1 || maxConcurrency <= 1) {
+            for (Callable<T> task : tasks) {
+                results.add(task.call());
+            }
+            return results;
+        }
+        final CompletionService<T> completion = newCompletionService();
+        final Map<Future<T>, Integer> running = new HashMap<Future<T>, Integer>();
+        final Object[] values = new Object[tasks.size()];
+        int next = 0;
+        try {
+            for (; next < Math.min(tasks.size(), maxConcurrency); next++) {
+                running.put(completion.submit(tasks.get(next)), next);
+            }
+            for (int done = 0; done < tasks.size(); done++) {
+                final Future<T> future = completion.take();
+                final int index = running.remove(future);
+                try {
+                    values[index] = future.get();
+                } catch (ExecutionException e) {
+                    throw unwrap(e);
+                }
+                if (next < tasks.size()) {
+                    running.put(completion.submit(tasks.get(next)), next);
+                    next++;
+                }
+            }
+        } finally {
+            for (Future<T> future : running.keySet()) {
+                future.cancel(true);
+            }
+        }
+        for (Object value : values) {
+            @SuppressWarnings("unchecked") final T result = (T) value;
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Creates a completion service running its tasks on the shared pool. The pool does not limit the number of
+     * running tasks, so the caller must bound it and cancel the tasks whose results it no longer needs.
+     *
+     * @param <T> the result type
+     * @return a new completion service
+     */
+    public static <T> CompletionService<T> newCompletionService() {
+        return new ExecutorCompletionService<T>(SHARED_EXECUTOR);
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        final Thread thread = new Thread(runnable, "ews-parallel-" + THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    static Exception unwrap(ExecutionException e) {
+        final Throwable cause = e.getCause();
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return e;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the batches of a bulk operation and retries the elements the server was too busy to process.
+ * <p>
+ * Used by the operations that send many elements with multi-response requests from several threads, like
+ * {@link BulkItemUpdater}. Each batch is sent with one call; elements answered with ErrorServerBusy, or the whole
+ * batch if the request itself fails with it, are sent again after a pause. The pause is the back off time the
+ * server asks for, or an exponentially growing delay if it gives none, and applies to all batches run by the same
+ * instance, since the server throttles the account rather than the request. Every other outcome is final and
+ * turned into a result by the caller.
+ * </p>
+ */
+public class ServerBusyRetrier {
+
+    private static final Logger LOG = Logger.getLogger(ServerBusyRetrier.class.getCanonicalName());
+
+    /**
+     * The number of times elements are retried after the server reported that it is busy, when none is given.
+     */
+    public static final int DEFAULT_MAX_RETRIES = 5;
+
+    private static final String BACK_OFF_MILLISECONDS = "BackOffMilliseconds";
+    private static final long INITIAL_BACK_OFF_MILLIS = 1000;
+    private static final long MAX_BACK_OFF_MILLIS = 5 * 60 * 1000;
+
+    /**
+     * Sends the elements of a batch still pending with one request.
+     *
+     * @param <E> the type of the elements
+     * @param <S> the type of the responses
+     */
+    public interface IBatchCall<E, S extends ServiceResponse> {
+        /**
+         * Sends elements to the server.
+         *
+         * @param elements the elements
+         * @return one response per element, in the order of the elements
+         * @throws Exception if the request fails as a whole
+         */
+        ServiceResponseCollection<S> call(List<E> elements) throws Exception;
+    }
+
+    /**
+     * Creates the result for an element.
+     *
+     * @param <E> the type of the elements
+     * @param <S> the type of the responses
+     * @param <R> the type of the results
+     */
+    public interface IResultFactory<E, S extends ServiceResponse, R> {
+        /**
+         * Creates the result for an element.
+         *
+         * @param element      the element
+         * @param position     the position of the element among those passed to the last call
+         * @param response     the response for the element, or null if the request failed as a whole
+         * @param errorCode    the error reported by the server, or null on success or if the request failed locally
+         * @param errorMessage the error message, or null on success
+         * @return the result
+         * @throws Exception if the result cannot be created
+         */
+        R create(E element, int position, S response, ServiceError errorCode, String errorMessage) throws Exception;
+    }
+
+    private final String operation;
+    private volatile int maxRetries = DEFAULT_MAX_RETRIES;
+    private volatile long pausedUntil;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param operation the name of the operation, used in log messages, e.g. "UpdateItem"
+     */
+    public ServerBusyRetrier(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Gets the number of times elements are retried after the server reported that it is busy.
+     *
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets the number of times elements are retried after the server reported that it is busy.
+     *
+     * @param maxRetries the maximum number of retries, 0 to fail right away
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative");
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Runs a batch until every element has a final outcome.
+     *
+     * @param batch   the elements
+     * @param call    sends the elements still pending
+     * @param results creates the result of each element
+     * @param <E>     the type of the elements
+     * @param <S>     the type of the responses
+     * @param <R>     the type of the results
+     * @return the results, in the order of the elements
+     * @throws Exception if the thread is interrupted while pausing, or a result cannot be created
+     */
+    public <E, S extends ServiceResponse, R> List<R> execute(List<E> batch, IBatchCall<E, S> call,
+                                                             IResultFactory<E, S, R> results)
+            throws Exception {
+        final List<R> outcomes = new ArrayList<>(Collections.<R>nCopies(batch.size(), null));
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            pending.add(i);
+        }
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            awaitPause();
+            final List<E> elements = new ArrayList<>(pending.size());
+            for (int index : pending) {
+                elements.add(batch.get(index));
+            }
+            final boolean retry = attempt < maxRetries;
+            final List<Integer> busy = new ArrayList<>();
+            long backOff = -1;
+            ServiceResponseCollection<S> responses = null;
+            try {
+                responses = call.call(elements);
+            } catch (ServiceResponseException e) {
+                if (e.getErrorCode() == ServiceError.ErrorServerBusy && retry) {
+                    busy.addAll(pending);
+                    backOff = getBackOff(e.getResponse(), attempt);
+                } else {
+                    fail(elements, pending, outcomes, results, e.getErrorCode(), e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, operation + " batch of " + pending.size() + " elements failed", e);
+                fail(elements, pending, outcomes, results, null, e.toString());
+            }
+            // results are created outside the try block, so their exceptions are not taken for a failed request
+            for (int i = 0; responses != null && i < pending.size(); i++) {
+                final int index = pending.get(i);
+                final S response = responses.getResponseAtIndex(i);
+                if (response.getResult() != ServiceResult.Error) {
+                    outcomes.set(index, results.create(elements.get(i), i, response, null, null));
+                } else if (response.getErrorCode() == ServiceError.ErrorServerBusy && retry) {
+                    busy.add(index);
+                    backOff = Math.max(backOff, getBackOff(response, attempt));
+                } else {
+                    outcomes.set(index, results.create(elements.get(i), i, response, response.getErrorCode(),
+                            response.getErrorMessage()));
+                }
+            }
+            if (!busy.isEmpty()) {
+                pause(backOff);
+            }
+            pending = busy;
+        }
+        return outcomes;
+    }
+
+    private static <E, S extends ServiceResponse, R> void fail(List<E> elements, List<Integer> pending,
+                                                               List<R> outcomes, IResultFactory<E, S, R> results,
+                                                               ServiceError errorCode, String message)
+            throws Exception {
+        for (int i = 0; i < pending.size(); i++) {
+            outcomes.set(pending.get(i), results.create(elements.get(i), i, null, errorCode,
+                    message != null ? message : String.valueOf(errorCode)));
+        }
+    }
+
+    /**
+     * Gets the time to wait before retrying.
+     *
+     * @param response the busy response, or null
+     * @param attempt  the number of attempts made so far, starting at 0
+     * @return the back off time asked for by the server, or an exponential back off, in milliseconds
+     */
+    static long getBackOff(ServiceResponse response, int attempt) {
+        if (response != null) {
+            final String value = response.getErrorDetails().get(BACK_OFF_MILLISECONDS);
+            if (value != null) {
+                try {
+                    return Math.min(MAX_BACK_OFF_MILLIS, Long.parseLong(value.trim()));
+                } catch (NumberFormatException e) {
+                    // fall back to exponential back off
+                }
+            }
+        }
+        return Math.min(MAX_BACK_OFF_MILLIS, INITIAL_BACK_OFF_MILLIS << Math.min(attempt, 20));
+    }
+
+    private synchronized void pause(long millis) {
+        pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + millis);
+    }
+
+    private void awaitPause() throws InterruptedException {
+        long wait;
+        while ((wait = pausedUntil - System.currentTimeMillis()) > 0) {
+            Thread.sleep(wait);
+        }
+    }
+}
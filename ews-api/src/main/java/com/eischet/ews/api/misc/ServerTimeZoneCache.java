@@ -0,0 +1,139 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.property.complex.time.TimeZoneDefinition;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the time zone definitions returned by GetServerTimeZones, per server.
+ * <p>
+ * The list of time zones a server knows only changes with operating system updates, but fetching and parsing it
+ * takes a noticeable amount of time. The cache is shared by an ExchangeService and the services created from it
+ * with {@link com.eischet.ews.api.core.ExchangeService#forMailbox(com.eischet.ews.api.core.MailboxContext)}.
+ * Callers get copies of the cached definitions ({@link TimeZoneDefinition#copy()}), so changing a definition does
+ * not affect other callers. The rules of each definition ({@link TimeZoneDefinition#getZoneRules()}) are compiled
+ * when it is stored and shared by all copies, so they are only compiled once.
+ * </p>
+ */
+public class ServerTimeZoneCache {
+
+    /**
+     * The default time to live of a server's time zone list.
+     */
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofHours(12);
+
+    private static final int MAXIMUM_SERVERS = 64;
+
+    private final ExpiringLruCache<String, Map<String, TimeZoneDefinition>> cache;
+
+    /**
+     * Initializes a new instance with the default time to live.
+     */
+    public ServerTimeZoneCache() {
+        this(DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param timeToLive how long the time zone list of a server is reused
+     */
+    public ServerTimeZoneCache(Duration timeToLive) {
+        this.cache = new ExpiringLruCache<>(timeToLive, MAXIMUM_SERVERS);
+    }
+
+    /**
+     * Gets the cached time zones of a server.
+     *
+     * @param server the key of the server, usually its EWS URL and requested version
+     * @return copies of the time zones indexed by id, in the order returned by the server, or null if none are
+     * cached
+     */
+    public Map<String, TimeZoneDefinition> get(String server) {
+        final Map<String, TimeZoneDefinition> cached = cache.get(server);
+        return cached != null ? copy(cached) : null;
+    }
+
+    /**
+     * Stores the time zones of a server.
+     *
+     * @param server    the key of the server
+     * @param timeZones the time zones returned by the server; they are copied, so the caller keeps its instances
+     * @return copies of the time zones indexed by id
+     */
+    public Map<String, TimeZoneDefinition> put(String server, Collection<TimeZoneDefinition> timeZones) {
+        final Map<String, TimeZoneDefinition> byId = new LinkedHashMap<String, TimeZoneDefinition>();
+        for (TimeZoneDefinition timeZone : timeZones) {
+            final TimeZoneDefinition cached = timeZone.copy();
+            try {
+                cached.getZoneRules();
+            } catch (ServiceLocalException e) {
+                // not supported by the compiler; fails again when the rules of a copy are requested
+            }
+            byId.put(cached.getId(), cached);
+        }
+        cache.put(server, byId);
+        return copy(byId);
+    }
+
+    private static Map<String, TimeZoneDefinition> copy(Map<String, TimeZoneDefinition> timeZones) {
+        final Map<String, TimeZoneDefinition> copies = new LinkedHashMap<String, TimeZoneDefinition>();
+        for (Map.Entry<String, TimeZoneDefinition> timeZone : timeZones.entrySet()) {
+            copies.put(timeZone.getKey(), timeZone.getValue().copy());
+        }
+        return Collections.unmodifiableMap(copies);
+    }
+
+    /**
+     * Removes the cached time zones of a server.
+     *
+     * @param server the key of the server
+     */
+    public void invalidate(String server) {
+        cache.remove(server);
+    }
+
+    /**
+     * Removes all cached time zones.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Gets the number of servers with cached time zones, including expired ones not yet removed.
+     *
+     * @return the number of servers
+     */
+    public int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc.availability;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.availability.AvailabilityData;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.core.request.GetUserAvailabilityRequest;
+import com.eischet.ews.api.core.response.AttendeeAvailability;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.misc.ParallelExecution;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Splits a free/busy query into requests the server accepts and merges their results.
+ * <p>
+ * Exchange accepts at most {@link #MAX_ATTENDEES_PER_REQUEST} attendees and a time window of at most
+ * {@link #MAX_TIME_WINDOW} per GetUserAvailability request. Larger queries are split into chunks of attendees and
+ * consecutive time windows, which are requested concurrently; the availability of each attendee is then merged
+ * across the time windows. Time windows are sent as whole days, so the windows are split at midnight.
+ * Only free/busy queries can be split, since suggestions depend on all attendees and the whole time window.
+ * </p>
+ */
+public final class AvailabilityRequestSplitter {
+
+    /**
+     * The maximum number of attendees Exchange accepts per request.
+     */
+    public static final int MAX_ATTENDEES_PER_REQUEST = 100;
+
+    /**
+     * The longest free/busy time window Exchange accepts per request.
+     */
+    public static final Duration MAX_TIME_WINDOW = Duration.ofDays(42);
+
+    private AvailabilityRequestSplitter() {
+    }
+
+    /**
+     * Tells whether a query has to be split, or can be answered from a cache.
+     *
+     * @param attendeeCount the number of attendees
+     * @param timeWindow    the time window
+     * @param requestedData the requested data
+     * @param cache         the free/busy cache, or null
+     * @return true if {@link #execute} should be used instead of a single request
+     */
+    public static boolean isApplicable(int attendeeCount, TimeWindow timeWindow, AvailabilityData requestedData,
+                                       FreeBusyCache cache) {
+        if (requestedData != AvailabilityData.FreeBusy) {
+            return false;
+        }
+        return cache != null || attendeeCount > MAX_ATTENDEES_PER_REQUEST
+                || Duration.between(timeWindow.getStartTime(), timeWindow.getEndTime()).compareTo(MAX_TIME_WINDOW) > 0;
+    }
+
+    /**
+     * Splits a time window into consecutive windows of at most {@link #MAX_TIME_WINDOW}, starting at midnight of
+     * the start day. Empty windows are never returned; a time window which is empty itself is returned unchanged.
+     *
+     * @param timeWindow the time window
+     * @return the windows, in chronological order
+     */
+    public static List<TimeWindow> splitTimeWindow(TimeWindow timeWindow) {
+        final List<TimeWindow> windows = new ArrayList<TimeWindow>();
+        LocalDateTime start = timeWindow.getStartTime().toLocalDate().atStartOfDay();
+        final LocalDateTime end = timeWindow.getEndTime();
+        while (start.isBefore(end)) {
+            final LocalDateTime next = start.plus(MAX_TIME_WINDOW);
+            windows.add(new TimeWindow(start, next.isBefore(end) ? next : end));
+            start = next;
+        }
+        if (windows.isEmpty()) {
+            windows.add(timeWindow);
+        }
+        return windows;
+    }
+
+    /**
+     * Gets free/busy information for any number of attendees and any time window.
+     *
+     * @param service        the service
+     * @param attendees      the attendees
+     * @param timeWindow     the time window
+     * @param options        the options
+     * @param cache          the free/busy cache, or null
+     * @param maxConcurrency the maximum number of concurrent requests
+     * @return the availability of each attendee, in the order of the attendees
+     * @throws Exception if a request fails
+     */
+    public static GetUserAvailabilityResults execute(final ExchangeService service, List<AttendeeInfo> attendees,
+                                                     TimeWindow timeWindow, final AvailabilityOptions options,
+                                                     final FreeBusyCache cache, int maxConcurrency)
+            throws Exception {
+        final List<TimeWindow> windows = splitTimeWindow(timeWindow);
+        final AttendeeAvailability[][] parts = new AttendeeAvailability[attendees.size()][windows.size()];
+        final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        final boolean concurrent = maxConcurrency > 1;
+
+        for (int w = 0; w < windows.size(); w++) {
+            final TimeWindow window = windows.get(w);
+            final List<Integer> missing = new ArrayList<Integer>();
+            for (int a = 0; a < attendees.size(); a++) {
+                parts[a][w] = cache != null ? cache.get(attendees.get(a), window, options) : null;
+                if (parts[a][w] == null) {
+                    missing.add(a);
+                }
+            }
+            for (int from = 0; from < missing.size(); from += MAX_ATTENDEES_PER_REQUEST) {
+                final List<Integer> chunk = missing.subList(from,
+                        Math.min(from + MAX_ATTENDEES_PER_REQUEST, missing.size()));
+                final int windowIndex = w;
+                tasks.add(() -> {
+                    final List<AttendeeInfo> chunkAttendees = new ArrayList<AttendeeInfo>(chunk.size());
+                    for (int index : chunk) {
+                        chunkAttendees.add(attendees.get(index));
+                    }
+                    final GetUserAvailabilityRequest request = new GetUserAvailabilityRequest(
+                            concurrent ? service.forMailbox(service.getMailboxContext()) : service);
+                    request.setAttendees(chunkAttendees);
+                    request.setTimeWindow(window);
+                    request.setRequestedData(AvailabilityData.FreeBusy);
+                    request.setOptions(options);
+                    final ServiceResponseCollection<AttendeeAvailability> responses =
+                            request.execute().getAttendeesAvailability();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        final AttendeeAvailability availability = responses.getResponseAtIndex(i);
+                        parts[chunk.get(i)][windowIndex] = availability;
+                        if (cache != null && availability.getResult() != ServiceResult.Error) {
+                            cache.put(chunkAttendees.get(i), window, options, availability);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        ParallelExecution.invokeAll(tasks, maxConcurrency);
+
+        final ServiceResponseCollection<AttendeeAvailability> merged =
+                new ServiceResponseCollection<AttendeeAvailability>();
+        for (AttendeeAvailability[] attendeeParts : parts) {
+            merged.add(attendeeParts.length == 1 ? attendeeParts[0] : AttendeeAvailability.merge(List.of(attendeeParts)));
+        }
+        final GetUserAvailabilityResults results = new GetUserAvailabilityResults();
+        results.setAttendeesAvailability(merged);
+        return results;
+    }
+}
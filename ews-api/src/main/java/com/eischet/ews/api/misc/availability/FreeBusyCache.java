@@ -0,0 +1,112 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc.availability;
+
+import com.eischet.ews.api.core.response.AttendeeAvailability;
+import com.eischet.ews.api.misc.ExpiringLruCache;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * A short-lived cache of free/busy information, keyed by attendee, time window and free/busy view options.
+ * <p>
+ * Set an instance with {@link com.eischet.ews.api.core.ExchangeService#setFreeBusyCache(FreeBusyCache)} to answer
+ * repeated GetUserAvailability calls for the same attendees and time windows without asking the server again.
+ * Free/busy information changes whenever a meeting is booked, so the time to live should be short, typically
+ * a minute or two. Every caller gets its own copy of a cached response.
+ * </p>
+ */
+public class FreeBusyCache {
+
+    private final ExpiringLruCache<String, AttendeeAvailability> cache;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param timeToLive  how long free/busy information is reused
+     * @param maximumSize the maximum number of attendee and time window combinations kept
+     */
+    public FreeBusyCache(Duration timeToLive, int maximumSize) {
+        this.cache = new ExpiringLruCache<>(timeToLive, maximumSize);
+    }
+
+    /**
+     * Gets cached free/busy information.
+     *
+     * @param attendee   the attendee
+     * @param timeWindow the time window
+     * @param options    the options of the request
+     * @return a copy of the availability, or null if none is cached
+     */
+    public AttendeeAvailability get(AttendeeInfo attendee, TimeWindow timeWindow, AvailabilityOptions options) {
+        final AttendeeAvailability availability = cache.get(key(attendee, timeWindow, options));
+        return availability != null ? availability.copy() : null;
+    }
+
+    /**
+     * Stores free/busy information.
+     *
+     * @param attendee     the attendee
+     * @param timeWindow   the time window
+     * @param options      the options of the request
+     * @param availability the availability returned by the server; a copy is stored
+     */
+    public void put(AttendeeInfo attendee, TimeWindow timeWindow, AvailabilityOptions options,
+                    AttendeeAvailability availability) {
+        cache.put(key(attendee, timeWindow, options), availability.copy());
+    }
+
+    /**
+     * Removes all cached free/busy information of an attendee, e.g. after booking a meeting with them.
+     *
+     * @param smtpAddress the SMTP address of the attendee
+     */
+    public void invalidate(String smtpAddress) {
+        final String prefix = smtpAddress.toLowerCase(Locale.ROOT) + "|";
+        cache.removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Removes all cached free/busy information.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Gets the number of cached entries, including expired ones not yet removed.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    private static String key(AttendeeInfo attendee, TimeWindow timeWindow, AvailabilityOptions options) {
+        return attendee.getSmtpAddress().toLowerCase(Locale.ROOT) + '|' + attendee.getAttendeeType() + '|'
+                + attendee.isExcludeConflicts() + '|' + timeWindow.getStartTime() + '|' + timeWindow.getEndTime()
+                + '|' + options.getRequestedFreeBusyView() + '|' + options.getMergedFreeBusyInterval();
+    }
+}
@@ -0,0 +1,428 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc.id;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.IdFormat;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.response.ConvertIdResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.misc.ExpiringLruCache;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Translates mailbox item and folder ids between formats, batching and caching ConvertId requests.
+ * <p>
+ * Conversions submitted within a short batch window are collected and sent as one ConvertId request per
+ * destination format, so many threads converting single ids cause few requests. Identical conversions which are
+ * pending at the same time share one result. Results are cached in both directions, so converting an id back to
+ * its original format does not need a request either. Conversions between EntryId and HexEntryId, which only
+ * differ in their encoding, are done locally.
+ * </p>
+ * <p>
+ * Instances are thread-safe and must be closed to stop the batching thread.
+ * </p>
+ */
+public class IdTranslator implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(IdTranslator.class.getCanonicalName());
+
+    /**
+     * The default maximum number of ids sent in one request.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+
+    /**
+     * How long cached conversions are kept when no time is given.
+     */
+    public static final Duration DEFAULT_CACHE_TIME_TO_LIVE = Duration.ofDays(1);
+
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final ExchangeService service;
+    private final long batchWindowMillis;
+    private final ExpiringLruCache<String, AlternateId> cache;
+    private final ScheduledExecutorService scheduler;
+    private final Map<IdFormat, Batch> pending = new EnumMap<IdFormat, Batch>(IdFormat.class);
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * The conversions waiting to be sent for one destination format.
+     */
+    private static final class Batch {
+        private final IdFormat destinationFormat;
+        private final Map<String, Conversion> conversions = new LinkedHashMap<String, Conversion>();
+
+        private Batch(IdFormat destinationFormat) {
+            this.destinationFormat = destinationFormat;
+        }
+    }
+
+    private static final class Conversion {
+        private final AlternateId id;
+        private final CompletableFuture<AlternateId> result = new CompletableFuture<AlternateId>();
+
+        private Conversion(AlternateId id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Initializes a new instance which keeps cached conversions for {@link #DEFAULT_CACHE_TIME_TO_LIVE}.
+     *
+     * @param service     the service used to send the requests
+     * @param batchWindow how long a conversion waits for others to be sent with it
+     * @param cacheSize   the maximum number of cached conversions
+     */
+    public IdTranslator(ExchangeService service, Duration batchWindow, int cacheSize) {
+        this(service, batchWindow, cacheSize, DEFAULT_CACHE_TIME_TO_LIVE);
+    }
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service         the service used to send the requests
+     * @param batchWindow     how long a conversion waits for others to be sent with it
+     * @param cacheSize       the maximum number of cached conversions
+     * @param cacheTimeToLive how long cached conversions are kept
+     */
+    public IdTranslator(ExchangeService service, Duration batchWindow, int cacheSize, Duration cacheTimeToLive) {
+        if (service == null) {
+            throw new IllegalArgumentException("service must not be null");
+        }
+        if (batchWindow == null || batchWindow.isNegative()) {
+            throw new IllegalArgumentException("batchWindow must not be negative");
+        }
+        if (cacheTimeToLive == null || cacheTimeToLive.isNegative() || cacheTimeToLive.isZero()) {
+            throw new IllegalArgumentException("cacheTimeToLive must be positive");
+        }
+        this.service = service;
+        this.batchWindowMillis = batchWindow.toMillis();
+        this.cache = new ExpiringLruCache<>(cacheTimeToLive, cacheSize);
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, service.getMaxConcurrentRequests()),
+                runnable -> {
+                    final Thread thread = new Thread(runnable, "ews-id-translator-" + THREAD_NUMBER.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Gets the maximum number of ids sent in one request.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of ids sent in one request. A batch is sent as soon as it is full, without waiting
+     * for the batch window to end.
+     *
+     * @param maxBatchSize the maximum batch size
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Converts an id, waiting for the batch it is sent with.
+     *
+     * @param id                the id to convert
+     * @param destinationFormat the format to convert to
+     * @return the converted id
+     * @throws Exception the exception of the request, or a ServiceResponseException if the id could not be
+     *                   converted
+     */
+    public AlternateId convert(AlternateId id, IdFormat destinationFormat) throws Exception {
+        return await(submit(id, destinationFormat));
+    }
+
+    /**
+     * Converts an id, waiting for the batch it is sent with.
+     *
+     * @param id                the id to convert
+     * @param mailbox           the SMTP address of the mailbox the id belongs to
+     * @param sourceFormat      the format of the id
+     * @param destinationFormat the format to convert to
+     * @return the converted id
+     * @throws Exception the exception of the request, or a ServiceResponseException if the id could not be
+     *                   converted
+     */
+    public String convert(String id, String mailbox, IdFormat sourceFormat, IdFormat destinationFormat)
+            throws Exception {
+        return convert(new AlternateId(sourceFormat, id, mailbox), destinationFormat).getUniqueId();
+    }
+
+    /**
+     * Converts several ids. The ids are added to the pending batches, so they may be sent together with
+     * conversions of other threads.
+     *
+     * @param ids               the ids to convert
+     * @param destinationFormat the format to convert to
+     * @return the converted ids, in the order of the ids
+     * @throws Exception the first exception of a conversion
+     */
+    public List<AlternateId> convertAll(Collection<AlternateId> ids, IdFormat destinationFormat) throws Exception {
+        final List<CompletableFuture<AlternateId>> futures = new ArrayList<CompletableFuture<AlternateId>>();
+        for (AlternateId id : ids) {
+            futures.add(submit(id, destinationFormat));
+        }
+        final List<AlternateId> result = new ArrayList<AlternateId>(futures.size());
+        for (CompletableFuture<AlternateId> future : futures) {
+            result.add(await(future));
+        }
+        return result;
+    }
+
+    /**
+     * Submits a conversion. Local and cached conversions complete immediately, all others when their batch
+     * has been sent.
+     *
+     * @param id                the id to convert
+     * @param destinationFormat the format to convert to
+     * @return the future converted id
+     */
+    public CompletableFuture<AlternateId> submit(AlternateId id, IdFormat destinationFormat) {
+        if (id == null || id.getUniqueId() == null || id.getFormat() == null || destinationFormat == null) {
+            throw new IllegalArgumentException("id, its format and the destination format must not be null");
+        }
+        final AlternateId local = convertLocally(id, destinationFormat);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        final String key = key(id, destinationFormat);
+        final AlternateId cached = cache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(copy(cached));
+        }
+
+        final Batch full;
+        final Conversion conversion;
+        synchronized (pending) {
+            if (scheduler.isShutdown()) {
+                throw new IllegalStateException("The translator has been closed.");
+            }
+            Batch batch = pending.get(destinationFormat);
+            if (batch == null) {
+                batch = new Batch(destinationFormat);
+                pending.put(destinationFormat, batch);
+                final Batch scheduled = batch;
+                scheduler.schedule(() -> flush(scheduled), batchWindowMillis, TimeUnit.MILLISECONDS);
+            }
+            final Conversion existing = batch.conversions.get(key);
+            if (existing != null) {
+                return existing.result;
+            }
+            conversion = new Conversion(copy(id));
+            batch.conversions.put(key, conversion);
+            full = batch.conversions.size() >= maxBatchSize ? batch : null;
+            if (full != null) {
+                // detach the batch right away, so further conversions start a new one
+                pending.remove(destinationFormat);
+            }
+        }
+        if (full != null) {
+            scheduler.execute(() -> send(full));
+        }
+        return conversion.result;
+    }
+
+    /**
+     * Converts an id without asking the server, if the destination format can be derived from the id alone.
+     * This is the case for the same format, and between EntryId (base64) and HexEntryId.
+     *
+     * @param id                the id to convert
+     * @param destinationFormat the format to convert to
+     * @return the converted id, or null if the conversion needs the server
+     */
+    public static AlternateId convertLocally(AlternateId id, IdFormat destinationFormat) {
+        final IdFormat sourceFormat = id.getFormat();
+        final String converted;
+        if (sourceFormat == destinationFormat) {
+            converted = id.getUniqueId();
+        } else if (sourceFormat == IdFormat.EntryId && destinationFormat == IdFormat.HexEntryId) {
+            converted = toHex(Base64.getDecoder().decode(id.getUniqueId()));
+        } else if (sourceFormat == IdFormat.HexEntryId && destinationFormat == IdFormat.EntryId) {
+            converted = Base64.getEncoder().encodeToString(fromHex(id.getUniqueId()));
+        } else {
+            return null;
+        }
+        return new AlternateId(destinationFormat, converted, id.getMailbox(), id.getIsArchive());
+    }
+
+    /**
+     * Sends all pending conversions without waiting for the batch window to end.
+     */
+    public void flush() {
+        final List<Batch> batches;
+        synchronized (pending) {
+            batches = new ArrayList<Batch>(pending.values());
+        }
+        for (Batch batch : batches) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * Removes all cached conversions.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Sends the pending conversions and stops the batching thread. Conversions submitted afterwards are rejected.
+     */
+    @Override
+    public void close() {
+        flush();
+        scheduler.shutdown();
+    }
+
+    /**
+     * Sends a batch, unless it has been sent already.
+     */
+    private void flush(Batch batch) {
+        synchronized (pending) {
+            if (pending.get(batch.destinationFormat) != batch) {
+                return;
+            }
+            pending.remove(batch.destinationFormat);
+        }
+        send(batch);
+    }
+
+    /**
+     * Sends a batch which has been removed from the pending ones.
+     */
+    private void send(Batch batch) {
+        final List<Conversion> conversions = new ArrayList<Conversion>(batch.conversions.values());
+        final List<AlternateIdBase> ids = new ArrayList<AlternateIdBase>(conversions.size());
+        for (Conversion conversion : conversions) {
+            ids.add(conversion.id);
+        }
+        try {
+            final ServiceResponseCollection<ConvertIdResponse> responses =
+                    service.forMailbox(service.getMailboxContext()).convertIds(ids, batch.destinationFormat);
+            for (int i = 0; i < conversions.size(); i++) {
+                final Conversion conversion = conversions.get(i);
+                final ConvertIdResponse response = i < responses.getCount() ? responses.getResponseAtIndex(i) : null;
+                if (response == null) {
+                    conversion.result.completeExceptionally(
+                            new ServiceLocalException("The server did not return a converted id."));
+                } else if (response.getResult() != ServiceResult.Success) {
+                    conversion.result.completeExceptionally(new ServiceResponseException(response));
+                } else if (!(response.getConvertedId() instanceof AlternateId)) {
+                    conversion.result.completeExceptionally(
+                            new ServiceLocalException("The converted id is not a mailbox id."));
+                } else {
+                    final AlternateId converted = (AlternateId) response.getConvertedId();
+                    cache.put(key(conversion.id, batch.destinationFormat), converted);
+                    cache.put(key(converted, conversion.id.getFormat()), conversion.id);
+                    conversion.result.complete(copy(converted));
+                }
+            }
+        } catch (Exception e) {
+            LOG.log(Level.FINE, "ConvertId request for " + conversions.size() + " ids failed", e);
+            for (Conversion conversion : conversions) {
+                conversion.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static AlternateId await(CompletableFuture<AlternateId> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Copies an id, so callers cannot change cached or shared instances.
+     */
+    private static AlternateId copy(AlternateId id) {
+        return new AlternateId(id.getFormat(), id.getUniqueId(), id.getMailbox(), id.getIsArchive());
+    }
+
+    private static String key(AlternateId id, IdFormat destinationFormat) {
+        final String mailbox = id.getMailbox() != null ? id.getMailbox().toLowerCase(Locale.ROOT) : "";
+        return id.getFormat() + "|" + destinationFormat + "|" + mailbox + "|" + id.getIsArchive() + "|"
+                + id.getUniqueId();
+    }
+
+    private static String toHex(byte[] bytes) {
+        final char[] digits = "0123456789ABCDEF".toCharArray();
+        final char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[2 * i] = digits[(bytes[i] >> 4) & 0xF];
+            hex[2 * i + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Invalid HexEntryId: " + hex);
+        }
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(2 * i), 16);
+            final int low = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid HexEntryId: " + hex);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
@@ -107,6 +107,17 @@ public final class GetEventsResults {
     public GetEventsResults() {
     }
 
+    /**
+     * Initializes a new instance which was not read from the server, e.g. in tests.
+     *
+     * @param newWatermark        the watermark after the events
+     * @param moreEventsAvailable whether more events are available
+     */
+    GetEventsResults(String newWatermark, boolean moreEventsAvailable) {
+        this.newWatermark = newWatermark;
+        this.moreEventsAvailable = moreEventsAvailable;
+    }
+
     /**
      * Loads from XML.
      *
@@ -0,0 +1,437 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.notification;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.MailboxContext;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.notification.EventType;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.misc.ImpersonatedUserId;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.sync.ISyncStateStore;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Polls many pull subscriptions with an adaptive interval.
+ * <p>
+ * Each registered subscription is polled again right away while the server reports more events, after the minimum
+ * interval when the last poll returned events, and with an interval doubling up to the maximum while it stays idle.
+ * Every interval is varied by up to 20% and the first polls are spread over the minimum interval, so that many
+ * subscriptions do not poll in lockstep. A small pool of threads serves all subscriptions; each subscription is
+ * polled by one thread at a time, using its own view of the service created with
+ * {@link ExchangeService#forMailbox(MailboxContext)}.
+ * </p>
+ * <p>
+ * The watermark of each subscription is stored in an {@link ISyncStateStore} after the delegate processed the
+ * events. Subscriptions are created by the poller, starting from the stored watermark, and created again when the
+ * server reports that they expired. If the delegate throws, the subscription is recreated from the last stored
+ * watermark, so the events are delivered again. If the server rejects a stored watermark, the subscription starts
+ * from the current state and a warning is logged, since events may have been missed.
+ * </p>
+ */
+public class PullNotificationPoller implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(PullNotificationPoller.class.getCanonicalName());
+
+    /**
+     * The interval used while events arrive.
+     */
+    public static final Duration DEFAULT_MIN_INTERVAL = Duration.ofSeconds(5);
+
+    /**
+     * The longest interval used for idle subscriptions.
+     */
+    public static final Duration DEFAULT_MAX_INTERVAL = Duration.ofMinutes(5);
+
+    /**
+     * The subscription timeout in minutes: the server drops a subscription not polled for that long.
+     */
+    public static final int DEFAULT_TIMEOUT = 30;
+
+    private static final String WATERMARK_PREFIX = "pull:";
+
+    public interface IPullNotificationDelegate {
+        /**
+         * Represents a delegate that is invoked with the events of a poll. The watermark is stored only after
+         * the delegate returned normally.
+         *
+         * @param sender the poller
+         * @param key    the key the subscription was registered with
+         * @param events the events, never empty
+         * @throws Exception to have the events delivered again
+         */
+        void pullNotificationDelegate(Object sender, String key, List<NotificationEvent> events) throws Exception;
+    }
+
+    private final ExchangeService service;
+    private final ISyncStateStore store;
+    private final IPullNotificationDelegate delegate;
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final Map<String, Poll> polls = new ConcurrentHashMap<>();
+    private volatile Duration minInterval = DEFAULT_MIN_INTERVAL;
+    private volatile Duration maxInterval = DEFAULT_MAX_INTERVAL;
+    private volatile int timeout = DEFAULT_TIMEOUT;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service            the service to poll with
+     * @param store              the store for watermarks
+     * @param delegate           the delegate receiving the events; called from a worker thread
+     * @param maxConcurrentPolls the maximum number of polls running at the same time
+     */
+    public PullNotificationPoller(ExchangeService service, ISyncStateStore store, IPullNotificationDelegate delegate,
+                                  int maxConcurrentPolls) {
+        if (service == null || store == null || delegate == null) {
+            throw new IllegalArgumentException("service, store and delegate must not be null");
+        }
+        if (maxConcurrentPolls < 1) {
+            throw new IllegalArgumentException("maxConcurrentPolls must be at least 1");
+        }
+        this.service = service;
+        this.store = store;
+        this.delegate = delegate;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.scheduler = new ScheduledThreadPoolExecutor(maxConcurrentPolls, runnable -> {
+            final Thread thread = new Thread(runnable, "ews-pull-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Gets the interval used while events arrive.
+     *
+     * @return the minimum interval
+     */
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Gets the longest interval used for idle subscriptions.
+     *
+     * @return the maximum interval
+     */
+    public Duration getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * Sets the poll intervals. The maximum interval must be shorter than the subscription timeout.
+     *
+     * @param minInterval the interval used while events arrive
+     * @param maxInterval the longest interval used for idle subscriptions
+     */
+    public void setIntervals(Duration minInterval, Duration maxInterval) {
+        if (minInterval.isNegative() || minInterval.isZero() || maxInterval.compareTo(minInterval) < 0) {
+            throw new IllegalArgumentException("intervals must be positive and minInterval must not exceed maxInterval");
+        }
+        if (maxInterval.compareTo(Duration.ofMinutes(timeout)) >= 0) {
+            throw new IllegalArgumentException("maxInterval must be shorter than the subscription timeout");
+        }
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+    }
+
+    /**
+     * Gets the timeout of the subscriptions created from now on.
+     *
+     * @return the timeout in minutes
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the timeout of the subscriptions created from now on. It must be longer than the maximum interval.
+     *
+     * @param timeout the timeout in minutes, 1 to 1440
+     */
+    public void setTimeout(int timeout) {
+        if (timeout < 1 || timeout > 1440) {
+            throw new IllegalArgumentException("timeout must be between 1 and 1440 minutes");
+        }
+        if (maxInterval.compareTo(Duration.ofMinutes(timeout)) >= 0) {
+            throw new IllegalArgumentException("timeout must be longer than maxInterval");
+        }
+        this.timeout = timeout;
+    }
+
+    /**
+     * Starts polling a subscription. The subscription is created on the first poll.
+     *
+     * @param key        a key identifying the subscription, also used to store its watermark
+     * @param context    the mailbox context to subscribe in, or null for the context of the service
+     * @param folderIds  the folders to subscribe to, or null for all folders
+     * @param eventTypes the event types to subscribe to
+     */
+    public void add(String key, MailboxContext context, Collection<FolderId> folderIds, EventType... eventTypes) {
+        final MailboxContext mailboxContext = context != null ? context : service.getMailboxContext();
+        final Poll poll = new Poll(key, service.forMailbox(mailboxContext), getMailboxKey(mailboxContext),
+                folderIds != null ? new ArrayList<>(folderIds) : null, eventTypes);
+        if (polls.putIfAbsent(key, poll) != null) {
+            throw new IllegalArgumentException("a subscription with key " + key + " has already been added");
+        }
+        poll.schedule(ThreadLocalRandom.current().nextLong(Math.max(1, minInterval.toMillis())));
+    }
+
+    /**
+     * Stops polling a subscription, unsubscribes it and deletes its stored watermark.
+     *
+     * @param key the key the subscription was added with
+     * @return true if the subscription was known
+     */
+    public boolean remove(String key) {
+        final Poll poll = polls.remove(key);
+        if (poll == null) {
+            return false;
+        }
+        poll.cancel();
+        return true;
+    }
+
+    /**
+     * Gets the number of subscriptions being polled.
+     *
+     * @return the number of subscriptions
+     */
+    public int size() {
+        return polls.size();
+    }
+
+    /**
+     * Gets the current poll interval of a subscription, before variation.
+     *
+     * @param key the key the subscription was added with
+     * @return the interval, or null if the subscription is unknown
+     */
+    public Duration getInterval(String key) {
+        final Poll poll = polls.get(key);
+        return poll != null ? poll.interval : null;
+    }
+
+    /**
+     * Stops polling. Subscriptions are not unsubscribed; they expire on the server after their timeout, and their
+     * watermarks stay stored.
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private static String getMailboxKey(MailboxContext context) {
+        final ImpersonatedUserId impersonatedUserId = context.getImpersonatedUserId();
+        if (impersonatedUserId != null && impersonatedUserId.getId() != null) {
+            return impersonatedUserId.getId().toLowerCase(Locale.ROOT);
+        }
+        if (context.getAnchorMailbox() != null) {
+            return context.getAnchorMailbox().toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    private static boolean isSubscriptionGone(ServiceError error) {
+        return error == ServiceError.ErrorSubscriptionNotFound
+                || error == ServiceError.ErrorExpiredSubscription
+                || error == ServiceError.ErrorInvalidSubscription
+                || error == ServiceError.ErrorSubscriptionUnsubscribed
+                || error == ServiceError.ErrorInvalidPullSubscriptionId;
+    }
+
+    private static long vary(Duration interval) {
+        return (long) (interval.toMillis() * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+
+    private final class Poll implements Runnable {
+        private final String key;
+        private final ExchangeService service;
+        private final String mailbox;
+        private final String folder;
+        private final List<FolderId> folderIds;
+        private final EventType[] eventTypes;
+        private volatile Duration interval = minInterval;
+        private volatile boolean cancelled;
+        private ScheduledFuture<?> future;
+        private volatile PullSubscription subscription;
+        private String storedWatermark;
+
+        private Poll(String key, ExchangeService service, String mailbox, List<FolderId> folderIds,
+                     EventType[] eventTypes) {
+            this.key = key;
+            this.service = service;
+            this.mailbox = mailbox;
+            this.folder = WATERMARK_PREFIX + key;
+            this.folderIds = folderIds;
+            this.eventTypes = eventTypes;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            long delay;
+            try {
+                delay = poll();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "polling subscription " + key + " failed", e);
+                interval = longer(interval);
+                delay = vary(interval);
+            }
+            schedule(delay);
+        }
+
+        private synchronized void schedule(long delay) {
+            if (!cancelled && !scheduler.isShutdown()) {
+                future = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void cancel() {
+            final PullSubscription current;
+            synchronized (this) {
+                cancelled = true;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                current = subscription;
+                try {
+                    store.delete(mailbox, folder);
+                } catch (Exception e) {
+                    LOG.log(Level.WARNING, "deleting the watermark of " + key + " failed", e);
+                }
+            }
+            if (current != null) {
+                unsubscribe(current);
+            }
+        }
+
+        /**
+         * Ends a subscription on the server, if possible; otherwise it expires by its timeout.
+         */
+        private void unsubscribe(PullSubscription current) {
+            try {
+                current.unsubscribe();
+            } catch (Exception e) {
+                LOG.log(Level.FINE, "unsubscribing " + key + " failed", e);
+            }
+        }
+
+        private long poll() throws Exception {
+            if (subscription == null) {
+                subscribe();
+            }
+            final GetEventsResults results;
+            try {
+                results = subscription.getEvents();
+            } catch (ServiceResponseException e) {
+                if (!isSubscriptionGone(e.getErrorCode())) {
+                    throw e;
+                }
+                LOG.info("subscription " + key + " is gone (" + e.getErrorCode() + "), subscribing again");
+                subscription = null;
+                return 0;
+            }
+            final Collection<NotificationEvent> events = results.getAllEvents();
+            if (!events.isEmpty()) {
+                try {
+                    delegate.pullNotificationDelegate(PullNotificationPoller.this, key, new ArrayList<>(events));
+                } catch (Exception e) {
+                    // the subscription has moved past the events; start again from the stored watermark
+                    final PullSubscription failed = subscription;
+                    subscription = null;
+                    unsubscribe(failed);
+                    throw e;
+                }
+            }
+            final String watermark = subscription.getWaterMark();
+            if (watermark != null && !Objects.equals(watermark, storedWatermark)) {
+                synchronized (this) {
+                    if (cancelled) {
+                        return 0;
+                    }
+                    store.save(mailbox, folder, watermark);
+                }
+                storedWatermark = watermark;
+            }
+            if (results.isMoreEventsAvailable()) {
+                interval = minInterval;
+                return 0;
+            }
+            interval = events.isEmpty() ? longer(interval) : minInterval;
+            return vary(interval);
+        }
+
+        private void subscribe() throws Exception {
+            final String watermark = store.load(mailbox, folder);
+            try {
+                subscription = subscribe(watermark);
+            } catch (ServiceResponseException e) {
+                if (watermark == null || e.getErrorCode() != ServiceError.ErrorInvalidWatermark) {
+                    throw e;
+                }
+                LOG.warning("watermark of subscription " + key + " was rejected, events may have been missed");
+                store.delete(mailbox, folder);
+                subscription = subscribe(null);
+            }
+            storedWatermark = watermark;
+            synchronized (this) {
+                if (cancelled) {
+                    subscription.unsubscribe();
+                }
+            }
+        }
+
+        private PullSubscription subscribe(String watermark) throws Exception {
+            if (folderIds == null) {
+                return service.subscribeToPullNotificationsOnAllFolders(timeout, watermark, eventTypes);
+            }
+            return service.subscribeToPullNotifications(folderIds, timeout, watermark, eventTypes);
+        }
+
+        private Duration longer(Duration current) {
+            final Duration doubled = current.multipliedBy(2);
+            return doubled.compareTo(maxInterval) > 0 ? maxInterval : doubled;
+        }
+    }
+}
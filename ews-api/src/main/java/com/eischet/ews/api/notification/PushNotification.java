@@ -0,0 +1,98 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.notification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A notification pushed by Exchange to a {@link PushNotificationReceiver}.
+ */
+public final class PushNotification {
+
+    private final String subscriptionId;
+    private final String previousWatermark;
+    private final String watermark;
+    private final boolean moreEventsAvailable;
+    private final List<NotificationEvent> events;
+
+    /**
+     * Initializes a new instance from parsed results.
+     *
+     * @param results the results
+     */
+    PushNotification(GetEventsResults results) {
+        this.subscriptionId = results.getSubscriptionId();
+        this.previousWatermark = results.getPreviousWatermark();
+        this.watermark = results.getNewWatermark();
+        this.moreEventsAvailable = results.isMoreEventsAvailable();
+        this.events = Collections.unmodifiableList(new ArrayList<>(results.getAllEvents()));
+    }
+
+    /**
+     * Gets the id of the subscription the notification belongs to.
+     *
+     * @return the subscription id
+     */
+    public String getSubscriptionId() {
+        return subscriptionId;
+    }
+
+    /**
+     * Gets the watermark the notification continues from.
+     *
+     * @return the previous watermark
+     */
+    public String getPreviousWatermark() {
+        return previousWatermark;
+    }
+
+    /**
+     * Gets the watermark of the last event, which can be used to resubscribe without missing events.
+     *
+     * @return the watermark
+     */
+    public String getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Gets whether the server has more events, which it will push right after this notification.
+     *
+     * @return true if more events are available
+     */
+    public boolean isMoreEventsAvailable() {
+        return moreEventsAvailable;
+    }
+
+    /**
+     * Gets the events. Status events (heartbeats) are not included.
+     *
+     * @return the events
+     */
+    public List<NotificationEvent> getEvents() {
+        return events;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.notification;
+
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.EwsUtilities;
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.XmlElementNames;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.core.response.GetEventsResponse;
+import com.eischet.ews.api.security.XmlNodeType;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receives the SendNotification callbacks of push subscriptions.
+ * <p>
+ * Exchange expects a quick answer to every callback and backs off, and eventually drops the subscription, if
+ * the subscriber is slow. The receiver therefore only parses the notification and answers with a
+ * SendNotificationResult right away; the events are put on a bounded queue and handed to the registered
+ * delegates by a separate dispatcher thread. If the queue is full, the notification is dropped and counted,
+ * and the subscriber can catch up from the last watermark it processed.
+ * </p>
+ * <p>
+ * {@link #start(InetSocketAddress, String)} serves the callbacks with the HTTP server built into the JDK. To use
+ * another HTTP server, pass the request bodies to {@link #handleNotification(InputStream)} and send back the
+ * returned XML with status 200 and content type text/xml. The built-in server rejects bodies larger than
+ * {@link #setMaximumBodySize(int)} before parsing them, since the callback URL cannot be authenticated; other servers
+ * should enforce a similar limit.
+ * </p>
+ */
+public class PushNotificationReceiver implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(PushNotificationReceiver.class.getCanonicalName());
+
+    private static final String CONTENT_TYPE = "text/xml; charset=utf-8";
+
+    /**
+     * The default maximum size of a callback body accepted by the built-in HTTP server, in bytes.
+     */
+    public static final int DEFAULT_MAXIMUM_BODY_SIZE = 1024 * 1024;
+
+    private static final byte[] RESPONSE_OK = createResponse("OK");
+    private static final byte[] RESPONSE_UNSUBSCRIBE = createResponse("Unsubscribe");
+
+    public interface IPushNotificationDelegate {
+        /**
+         * Represents a delegate that is invoked on the dispatcher thread for each received notification.
+         *
+         * @param sender       the receiver
+         * @param notification the notification
+         */
+        void pushNotificationDelegate(Object sender, PushNotification notification);
+    }
+
+    private final ExchangeService service;
+    private final BlockingQueue<PushNotification> queue;
+    private final List<IPushNotificationDelegate> onNotification = new CopyOnWriteArrayList<>();
+    private final Set<String> unsubscribed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong receivedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread dispatcher;
+    private volatile boolean closed;
+    private volatile int maximumBodySize = DEFAULT_MAXIMUM_BODY_SIZE;
+    private HttpServer server;
+
+    /**
+     * Initializes a new instance and starts its dispatcher thread.
+     *
+     * @param service       the service used to parse the notifications, e.g. for its time zone
+     * @param queueCapacity the maximum number of notifications waiting for dispatch
+     */
+    public PushNotificationReceiver(ExchangeService service, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        }
+        this.service = service;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.dispatcher = new Thread(this::dispatch, "ews-push-notification-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Adds a delegate invoked for each notification.
+     *
+     * @param delegate the delegate
+     */
+    public void addOnNotification(IPushNotificationDelegate delegate) {
+        onNotification.add(delegate);
+    }
+
+    /**
+     * Removes a delegate.
+     *
+     * @param delegate the delegate
+     */
+    public void removeNotification(IPushNotificationDelegate delegate) {
+        onNotification.remove(delegate);
+    }
+
+    /**
+     * Asks the server to end a subscription: the next callback for it is answered with Unsubscribe instead of OK.
+     *
+     * @param subscriptionId the subscription id
+     */
+    public void unsubscribe(String subscriptionId) {
+        unsubscribed.add(subscriptionId);
+    }
+
+    /**
+     * Gets the maximum size of a callback body accepted by the built-in HTTP server.
+     *
+     * @return the maximum size in bytes
+     */
+    public int getMaximumBodySize() {
+        return maximumBodySize;
+    }
+
+    /**
+     * Sets the maximum size of a callback body accepted by the built-in HTTP server. Larger requests are answered
+     * with status 413 without being parsed.
+     *
+     * @param maximumBodySize the maximum size in bytes
+     */
+    public void setMaximumBodySize(int maximumBodySize) {
+        if (maximumBodySize < 1) {
+            throw new IllegalArgumentException("maximumBodySize must be positive");
+        }
+        this.maximumBodySize = maximumBodySize;
+    }
+
+    /**
+     * Starts serving callbacks with the HTTP server built into the JDK.
+     *
+     * @param address the address to listen on; port 0 picks a free port, see {@link #getPort()}
+     * @param path    the path of the callback URL passed to subscribeToPushNotifications, e.g. "/ews"
+     * @throws IOException if the server cannot be started
+     */
+    public synchronized void start(InetSocketAddress address, String path) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("the receiver has already been started");
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext(path, this::handleExchange);
+        server.start();
+    }
+
+    /**
+     * Gets the port the HTTP server listens on.
+     *
+     * @return the port, or -1 if the receiver has not been started
+     */
+    public synchronized int getPort() {
+        return server != null ? server.getAddress().getPort() : -1;
+    }
+
+    /**
+     * Parses a SendNotification request, queues its events and returns the answer for the server.
+     *
+     * @param body the body of the callback request
+     * @return the SendNotificationResult SOAP message
+     * @throws Exception if the request is not a valid SendNotification message
+     */
+    public byte[] handleNotification(InputStream body) throws Exception {
+        boolean unsubscribe = false;
+        for (PushNotification notification : parse(body)) {
+            receivedCount.incrementAndGet();
+            if (notification.getSubscriptionId() != null && unsubscribed.contains(notification.getSubscriptionId())) {
+                unsubscribe = true;
+                continue;
+            }
+            if (notification.getEvents().isEmpty()) {
+                continue;
+            }
+            if (!queue.offer(notification)) {
+                droppedCount.incrementAndGet();
+                LOG.warning("push notification queue is full, dropping notification for subscription "
+                        + notification.getSubscriptionId() + " at watermark " + notification.getPreviousWatermark());
+            }
+        }
+        return unsubscribe ? RESPONSE_UNSUBSCRIBE.clone() : RESPONSE_OK.clone();
+    }
+
+    /**
+     * Gets the number of notifications received, including heartbeats.
+     *
+     * @return the notification count
+     */
+    public long getReceivedCount() {
+        return receivedCount.get();
+    }
+
+    /**
+     * Gets the number of notifications dropped because the queue was full.
+     *
+     * @return the dropped count
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Gets the number of notifications waiting for dispatch.
+     *
+     * @return the queue size
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Stops the HTTP server, if started, and the dispatcher thread. Queued notifications are discarded.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (server != null) {
+                server.stop(0);
+                server = null;
+            }
+        }
+        dispatcher.interrupt();
+    }
+
+    /**
+     * Reads the notifications of a SendNotification message.
+     *
+     * @param body the message
+     * @return the notifications
+     * @throws Exception if the message cannot be parsed
+     */
+    List<PushNotification> parse(InputStream body) throws Exception {
+        final EwsServiceXmlReader reader = new EwsServiceXmlReader(body, service);
+        final List<PushNotification> notifications = new ArrayList<>();
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        reader.readStartElement(XmlNamespace.Soap, XmlElementNames.SOAPEnvelopeElementName);
+        do {
+            reader.read();
+            if (reader.isStartElement(XmlNamespace.Messages, XmlElementNames.SendNotificationResponseMessage)) {
+                final GetEventsResponse response = new GetEventsResponse();
+                response.loadFromXml(reader, XmlElementNames.SendNotificationResponseMessage);
+                if (response.getResult() == ServiceResult.Success || response.getResult() == ServiceResult.Warning) {
+                    notifications.add(new PushNotification(response.getResults()));
+                } else {
+                    LOG.warning("push notification with error: " + response.getErrorMessage());
+                }
+            }
+        } while (!reader.isEndElement(XmlNamespace.Soap, XmlElementNames.SOAPBodyElementName));
+        return notifications;
+    }
+
+    private static boolean isLongerThan(String contentLength, int limit) {
+        try {
+            return Long.parseLong(contentLength.trim()) > limit;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final int limit = maximumBodySize;
+            final String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (contentLength != null && isLongerThan(contentLength, limit)) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            final byte[] response;
+            try (InputStream in = exchange.getRequestBody()) {
+                final byte[] body = in.readNBytes(limit < Integer.MAX_VALUE ? limit + 1 : limit);
+                if (body.length > limit) {
+                    exchange.sendResponseHeaders(413, -1);
+                    return;
+                }
+                response = handleNotification(new ByteArrayInputStream(body));
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "cannot parse push notification", e);
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            final PushNotification notification;
+            try {
+                notification = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            for (IPushNotificationDelegate delegate : onNotification) {
+                try {
+                    delegate.pushNotificationDelegate(this, notification);
+                } catch (RuntimeException e) {
+                    LOG.log(Level.SEVERE, "push notification delegate failed", e);
+                }
+            }
+        }
+    }
+
+    private static byte[] createResponse(String status) {
+        return ("<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<soap:Envelope xmlns:soap=\"" + EwsUtilities.EwsSoapNamespace + "\">"
+                + "<soap:Body>"
+                + "<" + XmlElementNames.SendNotificationResult + " xmlns=\"" + EwsUtilities.EwsMessagesNamespace + "\">"
+                + "<" + XmlElementNames.SubscriptionStatus + ">" + status + "</" + XmlElementNames.SubscriptionStatus + ">"
+                + "</" + XmlElementNames.SendNotificationResult + ">"
+                + "</soap:Body>"
+                + "</soap:Envelope>").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -35,6 +35,9 @@ import com.eischet.ews.api.core.service.item.Item;
 import com.eischet.ews.api.util.IOUtils;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * Represents a file attachment.
@@ -176,15 +179,8 @@ public final class FileAttachment extends Attachment {
         writer.writeStartElement(XmlNamespace.Types, XmlElementNames.Content);
 
         if (!(this.fileName == null || this.fileName.isEmpty())) {
-            File fileStream = new File(this.fileName);
-            FileInputStream fis = null;
-            try {
-                fis = new FileInputStream(fileStream);
-                writer.writeBase64ElementValue(fis);
-            } finally {
-                if (fis != null) {
-                    fis.close();
-                }
+            try (FileChannel channel = FileChannel.open(Paths.get(this.fileName), StandardOpenOption.READ)) {
+                writer.writeBase64ElementValue(channel);
             }
 
         } else if (this.contentStream != null) {
@@ -26,10 +26,14 @@ package com.eischet.ews.api.property.complex;
 import com.eischet.ews.api.core.EwsServiceXmlReader;
 import com.eischet.ews.api.core.EwsServiceXmlWriter;
 import com.eischet.ews.api.core.XmlAttributeNames;
-import com.eischet.ews.api.core.exception.service.local.ServiceXmlDeserializationException;
 import com.eischet.ews.api.core.exception.service.local.ServiceXmlSerializationException;
 
 import javax.xml.stream.XMLStreamException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Base64;
 
 /**
@@ -47,6 +51,16 @@ public final class MimeContent extends ComplexProperty {
      */
     private byte[] content;
 
+    /**
+     * The number of bytes written to the stream of an IMimeContentHandler, or -1.
+     */
+    private long streamedLength = -1;
+
+    /**
+     * The file the content is read from when writing, or null.
+     */
+    private Path file;
+
     /**
      * Initializes a new instance of the class.
      */
@@ -65,6 +79,22 @@ public final class MimeContent extends ComplexProperty {
         this.content = content;
     }
 
+    /**
+     * Initializes a new instance of the class whose content is read from a file when the item is saved. The file
+     * is encoded while the request is written, so it is never loaded into memory as a whole.
+     *
+     * @param characterSet the character set
+     * @param file         the file containing the MIME content
+     */
+    public MimeContent(String characterSet, Path file) {
+        this();
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        this.characterSet = characterSet;
+        this.file = file;
+    }
+
     /**
      * Reads attribute from XML.
      *
@@ -82,13 +112,20 @@ public final class MimeContent extends ComplexProperty {
      * Reads text value from XML.
      *
      * @param reader the reader
-     * @throws XMLStreamException                 the XML stream exception
-     * @throws ServiceXmlDeserializationException the service xml deserialization exception
+     * @throws Exception the exception
      */
     @Override
     public void readTextValueFromXml(EwsServiceXmlReader reader)
-            throws XMLStreamException, ServiceXmlDeserializationException {
-        this.content = Base64.getMimeDecoder().decode(reader.readValue());
+            throws Exception {
+        final OutputStream stream = reader.getMimeContentOutputStream(this.characterSet);
+        if (stream != null) {
+            try (OutputStream out = stream) {
+                this.streamedLength = reader.readBase64Value(out);
+            }
+            this.content = null;
+        } else {
+            this.content = Base64.getMimeDecoder().decode(reader.readValue());
+        }
     }
 
     /**
@@ -109,10 +146,15 @@ public final class MimeContent extends ComplexProperty {
      *
      * @param writer the writer
      * @throws XMLStreamException the XML stream exception
+     * @throws IOException        if the content file cannot be read
      */
     public void writeElementsToXml(EwsServiceXmlWriter writer)
-            throws XMLStreamException {
-        if (this.content != null && this.content.length > 0) {
+            throws XMLStreamException, IOException {
+        if (this.file != null) {
+            try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.READ)) {
+                writer.writeBase64ElementValue(channel);
+            }
+        } else if (this.content != null && this.content.length > 0) {
             writer.writeBase64ElementValue(this.content);
         }
     }
@@ -144,6 +186,25 @@ public final class MimeContent extends ComplexProperty {
         return this.content;
     }
 
+    /**
+     * Gets the file the content is read from.
+     *
+     * @return the file, or null if the content is held in memory
+     */
+    public Path getFile() {
+        return this.file;
+    }
+
+    /**
+     * Gets the number of bytes written to the stream of an {@link com.eischet.ews.api.core.IMimeContentHandler}.
+     * The content itself is not loaded in that case.
+     *
+     * @return the number of bytes, or -1 if the content was not streamed
+     */
+    public long getStreamedLength() {
+        return this.streamedLength;
+    }
+
     /**
      * Sets the content.
      *
@@ -0,0 +1,501 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.property.complex.recurrence;
+
+import com.eischet.ews.api.core.enumeration.property.time.DayOfTheWeek;
+import com.eischet.ews.api.core.enumeration.property.time.DayOfTheWeekIndex;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.exception.service.local.ServiceValidationException;
+import com.eischet.ews.api.core.service.item.Appointment;
+import com.eischet.ews.api.property.complex.DeletedOccurrenceInfo;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.OccurrenceInfo;
+import com.eischet.ews.api.property.complex.recurrence.pattern.Recurrence;
+import com.eischet.ews.api.property.complex.time.TimeZoneDefinition;
+import com.eischet.ews.api.util.TimeZoneUtils;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Computes the occurrences of a recurring series locally, without a CalendarView request.
+ * <p>
+ * The recurrence pattern is evaluated in the time zone of the series, so occurrences keep their wall clock time
+ * across daylight saving time changes, exactly like Exchange does. Modified occurrences are returned with their
+ * changed times and deleted occurrences are skipped; both still count towards the number of occurrences of a
+ * numbered recurrence. Occurrences are generated lazily, so open-ended series can be queried for any range.
+ * </p>
+ * <p>
+ * All times passed to and returned by this class are UTC, like the times returned by EWS. Regeneration patterns
+ * (used by tasks) depend on when an occurrence was completed and cannot be expanded.
+ * </p>
+ */
+public class RecurrenceExpander {
+
+    private final Recurrence recurrence;
+    private final ZoneRules zoneRules;
+    private final LocalTime localStartTime;
+    private final Duration duration;
+    private final Set<LocalDateTime> deletedOccurrences = new HashSet<LocalDateTime>();
+    private final List<RecurrenceOccurrence> modifiedOccurrences = new ArrayList<RecurrenceOccurrence>();
+    private final Set<LocalDateTime> modifiedOriginalStarts = new HashSet<LocalDateTime>();
+    private DayOfWeek firstDayOfWeek = DayOfWeek.SUNDAY;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param recurrence the recurrence pattern of the series
+     * @param start      the start of the first occurrence (UTC)
+     * @param end        the end of the first occurrence (UTC)
+     * @param zoneRules  the rules of the time zone the series is defined in
+     * @throws ServiceLocalException if the pattern is a regeneration pattern
+     */
+    public RecurrenceExpander(Recurrence recurrence, LocalDateTime start, LocalDateTime end, ZoneRules zoneRules)
+            throws ServiceLocalException {
+        if (recurrence.isRegenerationPattern()) {
+            throw new ServiceLocalException("Regeneration patterns cannot be expanded.");
+        }
+        this.recurrence = recurrence;
+        this.zoneRules = zoneRules;
+        this.localStartTime = toLocal(start).toLocalTime();
+        this.duration = Duration.between(start, end);
+        if (recurrence instanceof Recurrence.WeeklyPattern) {
+            try {
+                final Calendar calendar = ((Recurrence.WeeklyPattern) recurrence).getFirstDayOfWeek();
+                this.firstDayOfWeek = DayOfWeek.SUNDAY.plus(calendar.getFirstDayOfWeek() - Calendar.SUNDAY);
+            } catch (ServiceValidationException e) {
+                // not set, keep the default
+            }
+        }
+    }
+
+    /**
+     * Creates an expander for a recurring master, including its modified and deleted occurrences.
+     * The appointment must have been loaded with Start, End, Recurrence, StartTimeZone, ModifiedOccurrences and
+     * DeletedOccurrences.
+     *
+     * @param master the recurring master
+     * @return a new expander
+     * @throws ServiceLocalException if the appointment is not a recurring master or its time zone is unknown
+     */
+    public static RecurrenceExpander forRecurringMaster(Appointment master) throws ServiceLocalException {
+        final Recurrence recurrence = master.getRecurrence();
+        if (recurrence == null) {
+            throw new ServiceLocalException("The appointment has no recurrence pattern.");
+        }
+        final RecurrenceExpander expander = new RecurrenceExpander(recurrence, master.getStart(), master.getEnd(),
+                getZoneRules(master.getStartTimeZone()));
+        if (master.getModifiedOccurrences() != null) {
+            for (OccurrenceInfo occurrence : master.getModifiedOccurrences()) {
+                expander.addModifiedOccurrence(occurrence.getOriginalStart(), occurrence.getStart(),
+                        occurrence.getEnd(), occurrence.getItemId());
+            }
+        }
+        if (master.getDeletedOccurrences() != null) {
+            for (DeletedOccurrenceInfo occurrence : master.getDeletedOccurrences()) {
+                expander.addDeletedOccurrence(occurrence.getOriginalStart());
+            }
+        }
+        return expander;
+    }
+
+    /**
+     * Gets the rules of a time zone definition. Definitions with periods and transitions, as returned by the
+     * server, are compiled; definitions which only carry an id are looked up in the time zone database.
+     *
+     * @param timeZone the time zone definition
+     * @return the rules
+     * @throws ServiceLocalException if the time zone is not known
+     */
+    public static ZoneRules getZoneRules(TimeZoneDefinition timeZone) throws ServiceLocalException {
+        if (timeZone == null) {
+            return ZoneOffset.UTC.getRules();
+        }
+        if (!timeZone.getPeriods().isEmpty()) {
+            return timeZone.getZoneRules();
+        }
+        final ZoneId zoneId = TimeZoneUtils.getZoneIdForMicrosoftTimeZoneName(timeZone.getId());
+        if (zoneId == null) {
+            throw new ServiceLocalException("Unknown time zone: " + timeZone.getId());
+        }
+        return zoneId.getRules();
+    }
+
+    /**
+     * Registers a modified occurrence.
+     *
+     * @param originalStart the start of the occurrence according to the pattern (UTC)
+     * @param start         the changed start (UTC)
+     * @param end           the changed end (UTC)
+     * @param itemId        the id of the occurrence
+     */
+    public void addModifiedOccurrence(LocalDateTime originalStart, LocalDateTime start, LocalDateTime end,
+                                      ItemId itemId) {
+        final RecurrenceOccurrence occurrence = new RecurrenceOccurrence(originalStart, start, end, itemId);
+        int index = modifiedOccurrences.size();
+        while (index > 0 && modifiedOccurrences.get(index - 1).getStart().isAfter(start)) {
+            index--;
+        }
+        modifiedOccurrences.add(index, occurrence);
+        modifiedOriginalStarts.add(originalStart);
+    }
+
+    /**
+     * Registers a deleted occurrence.
+     *
+     * @param originalStart the start of the occurrence according to the pattern (UTC)
+     */
+    public void addDeletedOccurrence(LocalDateTime originalStart) {
+        deletedOccurrences.add(originalStart);
+    }
+
+    /**
+     * Gets the first day of the week, which determines which weeks a weekly pattern with an interval
+     * greater than one skips.
+     *
+     * @return the first day of the week
+     */
+    public DayOfWeek getFirstDayOfWeek() {
+        return firstDayOfWeek;
+    }
+
+    /**
+     * Sets the first day of the week.
+     *
+     * @param firstDayOfWeek the first day of the week
+     */
+    public void setFirstDayOfWeek(DayOfWeek firstDayOfWeek) {
+        this.firstDayOfWeek = firstDayOfWeek;
+    }
+
+    /**
+     * Gets all occurrences overlapping a time range.
+     *
+     * @param from the start of the range (UTC)
+     * @param to   the end of the range (UTC), exclusive
+     * @return the occurrences, ordered by start
+     * @throws ServiceLocalException if the pattern is incomplete
+     */
+    public List<RecurrenceOccurrence> getOccurrences(LocalDateTime from, LocalDateTime to)
+            throws ServiceLocalException {
+        final List<RecurrenceOccurrence> result = new ArrayList<RecurrenceOccurrence>();
+        final Iterator<RecurrenceOccurrence> it = iterator(from);
+        while (it.hasNext()) {
+            final RecurrenceOccurrence occurrence = it.next();
+            if (!occurrence.getStart().isBefore(to)) {
+                break;
+            }
+            result.add(occurrence);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the next occurrences ending after a point in time.
+     *
+     * @param from  the point in time (UTC)
+     * @param count the maximum number of occurrences
+     * @return the occurrences, ordered by start
+     * @throws ServiceLocalException if the pattern is incomplete
+     */
+    public List<RecurrenceOccurrence> getNextOccurrences(LocalDateTime from, int count)
+            throws ServiceLocalException {
+        final List<RecurrenceOccurrence> result = new ArrayList<RecurrenceOccurrence>(Math.min(count, 1024));
+        final Iterator<RecurrenceOccurrence> it = iterator(from);
+        while (result.size() < count && it.hasNext()) {
+            result.add(it.next());
+        }
+        return result;
+    }
+
+    /**
+     * Iterates over all occurrences ending after a point in time, ordered by start. The iterator is endless
+     * for series without an end.
+     *
+     * @param from the point in time (UTC)
+     * @return an iterator
+     * @throws ServiceLocalException if the pattern is incomplete
+     */
+    public Iterator<RecurrenceOccurrence> iterator(final LocalDateTime from) throws ServiceLocalException {
+        final Iterator<LocalDate> dates = patternDates();
+        final Iterator<RecurrenceOccurrence> modified = modifiedOccurrences.iterator();
+        return new Iterator<RecurrenceOccurrence>() {
+            private RecurrenceOccurrence nextRegular = advanceRegular();
+            private RecurrenceOccurrence nextModified = advanceModified();
+
+            @Override
+            public boolean hasNext() {
+                return nextRegular != null || nextModified != null;
+            }
+
+            @Override
+            public RecurrenceOccurrence next() {
+                final RecurrenceOccurrence result;
+                if (nextRegular == null && nextModified == null) {
+                    throw new NoSuchElementException();
+                } else if (nextModified == null
+                        || (nextRegular != null && !nextRegular.getStart().isAfter(nextModified.getStart()))) {
+                    result = nextRegular;
+                    nextRegular = advanceRegular();
+                } else {
+                    result = nextModified;
+                    nextModified = advanceModified();
+                }
+                return result;
+            }
+
+            private RecurrenceOccurrence advanceRegular() {
+                while (dates.hasNext()) {
+                    final LocalDateTime start = toUtc(dates.next().atTime(localStartTime));
+                    final LocalDateTime end = start.plus(duration);
+                    if (end.isAfter(from) && !deletedOccurrences.contains(start)
+                            && !modifiedOriginalStarts.contains(start)) {
+                        return new RecurrenceOccurrence(start, start, end, null);
+                    }
+                }
+                return null;
+            }
+
+            private RecurrenceOccurrence advanceModified() {
+                while (modified.hasNext()) {
+                    final RecurrenceOccurrence occurrence = modified.next();
+                    if (occurrence.getEnd().isAfter(from)) {
+                        return occurrence;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Iterates over the local dates of all occurrences of the pattern, honouring the end of the series.
+     */
+    private Iterator<LocalDate> patternDates() throws ServiceLocalException {
+        final LocalDate startDate = recurrence.getStartDate();
+        final Integer numberOfOccurrences = recurrence.getNumberOfOccurrences();
+        final LocalDate endDate = recurrence.getEndDate();
+        final DateGenerator generator = createGenerator(startDate);
+        return new Iterator<LocalDate>() {
+            private int count;
+            private LocalDate next = fetch();
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public LocalDate next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final LocalDate result = next;
+                next = fetch();
+                return result;
+            }
+
+            private LocalDate fetch() {
+                if (numberOfOccurrences != null && count >= numberOfOccurrences) {
+                    return null;
+                }
+                LocalDate date = generator.next();
+                while (date.isBefore(startDate)) {
+                    date = generator.next();
+                }
+                if (endDate != null && date.isAfter(endDate)) {
+                    return null;
+                }
+                count++;
+                return date;
+            }
+        };
+    }
+
+    /**
+     * Produces the candidate dates of a pattern in ascending order, possibly including dates before the start date.
+     */
+    private interface DateGenerator {
+        LocalDate next();
+    }
+
+    private DateGenerator createGenerator(final LocalDate startDate) throws ServiceLocalException {
+        if (recurrence instanceof Recurrence.DailyPattern) {
+            final int interval = ((Recurrence.DailyPattern) recurrence).getInterval();
+            return new DateGenerator() {
+                private LocalDate date = startDate;
+
+                @Override
+                public LocalDate next() {
+                    final LocalDate result = date;
+                    date = date.plusDays(interval);
+                    return result;
+                }
+            };
+        } else if (recurrence instanceof Recurrence.WeeklyPattern) {
+            final Recurrence.WeeklyPattern pattern = (Recurrence.WeeklyPattern) recurrence;
+            final int interval = pattern.getInterval();
+            final List<Integer> offsets = new ArrayList<Integer>();
+            for (int i = 0; i < 7; i++) {
+                if (matches(firstDayOfWeek.plus(i), pattern.getDaysOfTheWeek())) {
+                    offsets.add(i);
+                }
+            }
+            if (offsets.isEmpty()) {
+                throw new ServiceLocalException("The weekly pattern has no days of the week.");
+            }
+            return new DateGenerator() {
+                private LocalDate week = startDate.with(TemporalAdjusters.previousOrSame(firstDayOfWeek));
+                private int index;
+
+                @Override
+                public LocalDate next() {
+                    final LocalDate result = week.plusDays(offsets.get(index++));
+                    if (index == offsets.size()) {
+                        index = 0;
+                        week = week.plusWeeks(interval);
+                    }
+                    return result;
+                }
+            };
+        } else if (recurrence instanceof Recurrence.MonthlyPattern) {
+            final int interval = ((Recurrence.MonthlyPattern) recurrence).getInterval();
+            final int dayOfMonth = ((Recurrence.MonthlyPattern) recurrence).getDayOfMonth();
+            return monthly(startDate, interval, month -> month.withDayOfMonth(Math.min(dayOfMonth,
+                    month.lengthOfMonth())));
+        } else if (recurrence instanceof Recurrence.RelativeMonthlyPattern) {
+            final Recurrence.RelativeMonthlyPattern pattern = (Recurrence.RelativeMonthlyPattern) recurrence;
+            final DayOfTheWeek dayOfTheWeek = pattern.getDayOfTheWeek();
+            final DayOfTheWeekIndex index = pattern.getDayOfTheWeekIndex();
+            return monthly(startDate, pattern.getInterval(), month -> relativeDay(month, dayOfTheWeek, index));
+        } else if (recurrence instanceof Recurrence.YearlyPattern) {
+            final Recurrence.YearlyPattern pattern = (Recurrence.YearlyPattern) recurrence;
+            final int month = pattern.getMonth().ordinal() + 1;
+            final int dayOfMonth = pattern.getDayOfMonth();
+            return monthly(startDate.withMonth(month), 12, first -> first.withDayOfMonth(Math.min(dayOfMonth,
+                    first.lengthOfMonth())));
+        } else if (recurrence instanceof Recurrence.RelativeYearlyPattern) {
+            final Recurrence.RelativeYearlyPattern pattern = (Recurrence.RelativeYearlyPattern) recurrence;
+            final int month = pattern.getMonth().ordinal() + 1;
+            final DayOfTheWeek dayOfTheWeek = pattern.getDayOfTheWeek();
+            final DayOfTheWeekIndex index = pattern.getDayOfTheWeekIndex();
+            return monthly(startDate.withMonth(month), 12, first -> relativeDay(first, dayOfTheWeek, index));
+        }
+        throw new ServiceLocalException("Unsupported recurrence pattern: " + recurrence.getClass().getSimpleName());
+    }
+
+    private interface MonthDay {
+        LocalDate dayIn(LocalDate firstOfMonth);
+    }
+
+    private static DateGenerator monthly(final LocalDate startDate, final int interval, final MonthDay day) {
+        return new DateGenerator() {
+            private LocalDate month = startDate.withDayOfMonth(1);
+
+            @Override
+            public LocalDate next() {
+                final LocalDate result = day.dayIn(month);
+                month = month.plusMonths(interval);
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Finds the first, second, third, fourth or last matching day in a month.
+     */
+    static LocalDate relativeDay(LocalDate firstOfMonth, DayOfTheWeek dayOfTheWeek, DayOfTheWeekIndex index) {
+        if (index == DayOfTheWeekIndex.Last) {
+            LocalDate date = firstOfMonth.with(TemporalAdjusters.lastDayOfMonth());
+            while (!matches(date.getDayOfWeek(), dayOfTheWeek)) {
+                date = date.minusDays(1);
+            }
+            return date;
+        }
+        LocalDate date = firstOfMonth;
+        int found = -1;
+        while (true) {
+            if (matches(date.getDayOfWeek(), dayOfTheWeek) && ++found == index.ordinal()) {
+                return date;
+            }
+            date = date.plusDays(1);
+        }
+    }
+
+    private static boolean matches(DayOfWeek day, DayOfTheWeekCollection days) {
+        for (DayOfTheWeek dayOfTheWeek : days) {
+            if (matches(day, dayOfTheWeek)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(DayOfWeek day, DayOfTheWeek dayOfTheWeek) {
+        switch (dayOfTheWeek) {
+            case Day:
+                return true;
+            case Weekday:
+                return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY;
+            case WeekendDay:
+                return day == DayOfWeek.SATURDAY || day == DayOfWeek.SUNDAY;
+            default:
+                return day.name().equalsIgnoreCase(dayOfTheWeek.name());
+        }
+    }
+
+    private LocalDateTime toLocal(LocalDateTime utc) {
+        return utc.plusSeconds(zoneRules.getOffset(utc.toInstant(ZoneOffset.UTC)).getTotalSeconds());
+    }
+
+    /**
+     * Converts a wall clock time to UTC. Times in a gap are moved forward by the length of the gap, and
+     * ambiguous times use the earlier offset, like java.time.ZonedDateTime.
+     */
+    private LocalDateTime toUtc(LocalDateTime local) {
+        final List<ZoneOffset> offsets = zoneRules.getValidOffsets(local);
+        if (!offsets.isEmpty()) {
+            return local.minusSeconds(offsets.get(0).getTotalSeconds());
+        }
+        final ZoneOffsetTransition gap = zoneRules.getTransition(local);
+        return local.plus(gap.getDuration().getSeconds(), ChronoUnit.SECONDS)
+                .minusSeconds(gap.getOffsetAfter().getTotalSeconds());
+    }
+}
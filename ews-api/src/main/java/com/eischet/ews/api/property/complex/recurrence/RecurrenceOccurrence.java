@@ -0,0 +1,97 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.property.complex.recurrence;
+
+import com.eischet.ews.api.property.complex.ItemId;
+
+import java.time.LocalDateTime;
+
+/**
+ * An occurrence of a recurring series, as computed by a {@link RecurrenceExpander}.
+ * All times are in UTC, like the times returned by EWS.
+ */
+public final class RecurrenceOccurrence {
+
+    private final LocalDateTime originalStart;
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+    private final ItemId itemId;
+
+    RecurrenceOccurrence(LocalDateTime originalStart, LocalDateTime start, LocalDateTime end, ItemId itemId) {
+        this.originalStart = originalStart;
+        this.start = start;
+        this.end = end;
+        this.itemId = itemId;
+    }
+
+    /**
+     * Gets the start of the occurrence as defined by the recurrence pattern.
+     *
+     * @return the original start
+     */
+    public LocalDateTime getOriginalStart() {
+        return originalStart;
+    }
+
+    /**
+     * Gets the start of the occurrence.
+     *
+     * @return the start
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the end of the occurrence.
+     *
+     * @return the end
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    /**
+     * Gets the id of a modified occurrence.
+     *
+     * @return the item id of the exception, or null for an unmodified occurrence
+     */
+    public ItemId getItemId() {
+        return itemId;
+    }
+
+    /**
+     * Tells whether the occurrence was modified, i.e. is an exception of the series.
+     *
+     * @return true for a modified occurrence
+     */
+    public boolean isModified() {
+        return itemId != null;
+    }
+
+    @Override
+    public String toString() {
+        return start + " - " + end + (isModified() ? " (modified, originally " + originalStart + ")" : "");
+    }
+}
@@ -1134,7 +1134,7 @@ public abstract class Recurrence extends ComplexProperty {
                 writer.writeElementValue(
                         XmlNamespace.Types,
                         XmlElementNames.FirstDayOfWeek,
-                        this.firstDayOfWeek);
+                        DayOfTheWeek.values()[this.firstDayOfWeek.getFirstDayOfWeek() - Calendar.SUNDAY]);
             }
 
         }
@@ -1158,10 +1158,13 @@ public abstract class Recurrence extends ComplexProperty {
                             reader.getLocalName());
                     return true;
                 } else if (reader.getLocalName().equals(XmlElementNames.FirstDayOfWeek)) {
-                    this.firstDayOfWeek = reader.
-                            readElementValue(Calendar.class,
-                                    XmlNamespace.Types,
-                                    XmlElementNames.FirstDayOfWeek);
+                    // the day is sent by name, and kept as the first day of the week of a calendar
+                    DayOfTheWeek day = reader.readElementValue(DayOfTheWeek.class, XmlNamespace.Types,
+                            XmlElementNames.FirstDayOfWeek);
+                    if (day != null && day.ordinal() <= DayOfTheWeek.Saturday.ordinal()) {
+                        this.firstDayOfWeek = Calendar.getInstance();
+                        this.firstDayOfWeek.setFirstDayOfWeek(Calendar.SUNDAY + day.ordinal());
+                    }
                     return true;
                 } else {
 
@@ -1194,11 +1197,22 @@ public abstract class Recurrence extends ComplexProperty {
             return this.daysOfTheWeek;
         }
 
+        /**
+         * Gets the first day of the week, which is the first day of the week of the returned calendar.
+         *
+         * @return the calendar
+         * @throws ServiceValidationException if the first day of the week is not set
+         */
         public Calendar getFirstDayOfWeek() throws ServiceValidationException {
             return this.getFieldValueOrThrowIfNull(Calendar.class,
                     this.firstDayOfWeek, "FirstDayOfWeek");
         }
 
+        /**
+         * Sets the first day of the week to the first day of the week of a calendar.
+         *
+         * @param value the calendar
+         */
         public void setFirstDayOfWeek(Calendar value) {
             if (this.canSetFieldValue(this.firstDayOfWeek, value)) {
                 this.firstDayOfWeek = value;
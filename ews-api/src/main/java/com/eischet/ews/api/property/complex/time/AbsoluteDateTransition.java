@@ -129,4 +129,17 @@ public class AbsoluteDateTransition extends TimeZoneTransition {
     protected void setDateTime(LocalDateTime dateTime) {
         this.dateTime = dateTime;
     }
+
+    @Override
+    TimeZoneTransition copyFor(TimeZoneDefinition definition) {
+        final AbsoluteDateTransition copy = new AbsoluteDateTransition(definition);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    @Override
+    void copyFrom(TimeZoneTransition source) {
+        super.copyFrom(source);
+        this.dateTime = ((AbsoluteDateTransition) source).dateTime;
+    }
 }
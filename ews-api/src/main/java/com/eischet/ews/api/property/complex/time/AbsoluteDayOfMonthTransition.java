@@ -125,4 +125,17 @@ class AbsoluteDayOfMonthTransition extends AbsoluteMonthTransition {
     protected int getDayOfMonth() {
         return this.dayOfMonth;
     }
+
+    @Override
+    TimeZoneTransition copyFor(TimeZoneDefinition definition) {
+        final AbsoluteDayOfMonthTransition copy = new AbsoluteDayOfMonthTransition(definition);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    @Override
+    void copyFrom(TimeZoneTransition source) {
+        super.copyFrom(source);
+        this.dayOfMonth = ((AbsoluteDayOfMonthTransition) source).dayOfMonth;
+    }
 }
@@ -136,4 +136,10 @@ abstract class AbsoluteMonthTransition extends TimeZoneTransition {
         return this.month;
     }
 
+    @Override
+    void copyFrom(TimeZoneTransition source) {
+        super.copyFrom(source);
+        this.timeOffset = ((AbsoluteMonthTransition) source).timeOffset;
+        this.month = ((AbsoluteMonthTransition) source).month;
+    }
 }
@@ -145,4 +145,18 @@ class RelativeDayOfMonthTransition extends AbsoluteMonthTransition {
     protected int getWeekIndex() {
         return this.weekIndex;
     }
+
+    @Override
+    TimeZoneTransition copyFor(TimeZoneDefinition definition) {
+        final RelativeDayOfMonthTransition copy = new RelativeDayOfMonthTransition(definition);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    @Override
+    void copyFrom(TimeZoneTransition source) {
+        super.copyFrom(source);
+        this.dayOfTheWeek = ((RelativeDayOfMonthTransition) source).dayOfTheWeek;
+        this.weekIndex = ((RelativeDayOfMonthTransition) source).weekIndex;
+    }
 }
@@ -35,6 +35,8 @@ import com.eischet.ews.api.core.exception.service.local.ServiceXmlSerializationE
 import com.eischet.ews.api.property.complex.ComplexProperty;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
 import java.util.*;
 
 /**
@@ -95,6 +97,11 @@ public class TimeZoneDefinition extends ComplexProperty implements Comparator<Ti
     private final List<TimeZoneTransition> transitions =
             new ArrayList<TimeZoneTransition>();
 
+    /**
+     * The compiled transitions, created on first use.
+     */
+    private volatile ZoneRules zoneRules;
+
     /**
      * Compares the transitions.
      *
@@ -260,7 +267,8 @@ public class TimeZoneDefinition extends ComplexProperty implements Comparator<Ti
      */
     public void loadFromXml(EwsServiceXmlReader reader) throws Exception {
         this.loadFromXml(reader, XmlElementNames.TimeZoneDefinition);
-        Collections.sort(this.transitions, new TimeZoneDefinition());
+        Collections.sort(this.transitions, this);
+        this.zoneRules = null;
     }
 
     /**
@@ -290,9 +298,8 @@ public class TimeZoneDefinition extends ComplexProperty implements Comparator<Ti
             if (this.transitionGroups.size() > 0) {
                 writer.writeStartElement(XmlNamespace.Types,
                         XmlElementNames.TransitionsGroups);
-                for (int i = 0; i < this.transitionGroups.size(); i++) {
-                    Object[] key = this.transitionGroups.keySet().toArray();
-                    this.transitionGroups.get(key[i]).writeToXml(writer);
+                for (TimeZoneTransitionGroup transitionGroup : this.transitionGroups.values()) {
+                    transitionGroup.writeToXml(writer);
                 }
                 writer.writeEndElement(); // TransitionGroups
             }
@@ -418,6 +425,82 @@ public class TimeZoneDefinition extends ComplexProperty implements Comparator<Ti
         return this.transitionGroups;
     }
 
+    /**
+     * Gets the transitions between the transition groups of this time zone definition, ordered by date.
+     *
+     * @return the transitions
+     */
+    public List<TimeZoneTransition> getTransitions() {
+        return this.transitions;
+    }
+
+    /**
+     * Creates an independent copy of this definition. Changing the copy does not affect this definition; the
+     * compiled rules are shared, since they cannot be changed.
+     *
+     * @return the copy
+     */
+    public TimeZoneDefinition copy() {
+        final TimeZoneDefinition copy = new TimeZoneDefinition();
+        copy.name = this.name;
+        copy.id = this.id;
+        for (Map.Entry<String, TimeZonePeriod> period : this.periods.entrySet()) {
+            copy.periods.put(period.getKey(), period.getValue().copy());
+        }
+        // create all groups first, since transitions may target any of them
+        for (Map.Entry<String, TimeZoneTransitionGroup> group : this.transitionGroups.entrySet()) {
+            copy.transitionGroups.put(group.getKey(), new TimeZoneTransitionGroup(copy, group.getValue().getId()));
+        }
+        for (Map.Entry<String, TimeZoneTransitionGroup> group : this.transitionGroups.entrySet()) {
+            copy.transitionGroups.get(group.getKey()).copyTransitionsFrom(group.getValue());
+        }
+        for (TimeZoneTransition transition : this.transitions) {
+            copy.transitions.add(transition.copyFor(copy));
+        }
+        copy.zoneRules = this.zoneRules;
+        return copy;
+    }
+
+    /**
+     * Gets the rules of this time zone. The periods and transitions are compiled into a sorted transition table
+     * on the first call, so later offset lookups are a binary search. Call {@link #invalidateZoneRules()} after
+     * changing the periods or transitions.
+     * <p>
+     * Date and time properties are written and read in UTC, so requests never need these rules; they are meant
+     * for calculations on the client, such as those of
+     * {@link com.eischet.ews.api.property.complex.recurrence.RecurrenceExpander}.
+     * </p>
+     *
+     * @return the rules
+     * @throws ServiceLocalException if the definition is incomplete or uses unsupported transitions
+     */
+    public ZoneRules getZoneRules() throws ServiceLocalException {
+        ZoneRules rules = this.zoneRules;
+        if (rules == null) {
+            rules = TimeZoneRulesCompiler.compile(this);
+            this.zoneRules = rules;
+        }
+        return rules;
+    }
+
+    /**
+     * Discards the compiled rules, so they are compiled again on the next call to {@link #getZoneRules()}.
+     */
+    public void invalidateZoneRules() {
+        this.zoneRules = null;
+    }
+
+    /**
+     * Gets the offset from UTC of this time zone at a point in time.
+     *
+     * @param utcDateTime the point in time (UTC)
+     * @return the offset
+     * @throws ServiceLocalException if the definition is incomplete or uses unsupported transitions
+     */
+    public ZoneOffset getOffset(LocalDateTime utcDateTime) throws ServiceLocalException {
+        return getZoneRules().getOffset(utcDateTime.toInstant(ZoneOffset.UTC));
+    }
+
     /**
      * Writes to XML.
      *
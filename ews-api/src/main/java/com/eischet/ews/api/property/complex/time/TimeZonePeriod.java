@@ -188,4 +188,16 @@ public class TimeZonePeriod extends ComplexProperty {
         this.id = id;
     }
 
+    /**
+     * Creates a copy of this period.
+     *
+     * @return the copy
+     */
+    TimeZonePeriod copy() {
+        final TimeZonePeriod copy = new TimeZonePeriod();
+        copy.bias = this.bias;
+        copy.name = this.name;
+        copy.id = this.id;
+        return copy;
+    }
 }
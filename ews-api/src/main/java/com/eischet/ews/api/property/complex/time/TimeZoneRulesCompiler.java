@@ -0,0 +1,279 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.property.complex.time;
+
+import com.eischet.ews.api.core.enumeration.property.time.DayOfTheWeek;
+import com.eischet.ews.api.core.exception.service.local.InvalidOrUnsupportedTimeZoneDefinitionException;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneOffsetTransitionRule;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compiles a TimeZoneDefinition into java.time ZoneRules.
+ * <p>
+ * The transitions of an EWS time zone are stored as a list of eras (the transitions of the definition), each of
+ * which points to a group with either a fixed period or a pair of yearly recurring transitions. Evaluating that
+ * structure means walking the eras and computing the recurring transitions of a year for every lookup. The
+ * compiled rules instead hold a sorted table of all transitions up to the last era, which ZoneRules searches
+ * with a binary search, and the recurring transitions of the last era for the years after it.
+ * </p>
+ */
+final class TimeZoneRulesCompiler {
+
+    /**
+     * The first year for which the recurring transitions of the first era are listed. Earlier instants use the
+     * offset in effect at the start of this year.
+     */
+    static final int FIRST_YEAR = 1900;
+
+    private static final Comparator<ZoneOffsetTransition> BY_INSTANT = new Comparator<ZoneOffsetTransition>() {
+        @Override
+        public int compare(ZoneOffsetTransition x, ZoneOffsetTransition y) {
+            return x.getInstant().compareTo(y.getInstant());
+        }
+    };
+
+    private TimeZoneRulesCompiler() {
+    }
+
+    /**
+     * Compiles the rules of a time zone definition.
+     *
+     * @param definition the definition
+     * @return the rules
+     * @throws ServiceLocalException if the definition is incomplete or uses unsupported transitions
+     */
+    static ZoneRules compile(TimeZoneDefinition definition) throws ServiceLocalException {
+        final List<TimeZoneTransition> eras = definition.getTransitions();
+        if (eras.isEmpty()) {
+            if (definition.getPeriods().size() == 1) {
+                return ZoneOffset.ofTotalSeconds(offsetOf(definition.getPeriods().values().iterator().next()))
+                        .getRules();
+            }
+            throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+        }
+
+        final List<ZoneOffsetTransition> standardTransitions = new ArrayList<ZoneOffsetTransition>();
+        final List<ZoneOffsetTransition> transitions = new ArrayList<ZoneOffsetTransition>();
+        ZoneOffset baseStandard = null;
+        ZoneOffset baseWall = null;
+        ZoneOffset standard = null;
+        ZoneOffset wall = null;
+        List<ZoneOffsetTransitionRule> rules = Collections.emptyList();
+
+        for (int i = 0; i < eras.size(); i++) {
+            final TimeZoneTransition era = eras.get(i);
+            final LocalDateTime eraStart = era instanceof AbsoluteDateTransition
+                    ? ((AbsoluteDateTransition) era).getDateTime() : null;
+            final LocalDateTime eraEnd = i + 1 < eras.size() && eras.get(i + 1) instanceof AbsoluteDateTransition
+                    ? ((AbsoluteDateTransition) eras.get(i + 1)).getDateTime() : null;
+            final TimeZoneTransitionGroup group = era.getTargetGroup();
+            if (group == null || (i > 0 && eraStart == null)) {
+                throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+            }
+            if (i == 0 && eraStart != null) {
+                // there is no offset in effect before an absolute first transition to convert its time with
+                throw new InvalidOrUnsupportedTimeZoneDefinitionException(
+                        "The first transition of time zone " + definition.getId() + " must not have a date.");
+            }
+
+            final ZoneOffset eraStandard = ZoneOffset.ofTotalSeconds(standardOffsetOf(group));
+            rules = rulesOf(group, eraStandard);
+            final int firstYear = eraStart != null ? eraStart.getYear() : FIRST_YEAR;
+            final int lastYear = eraEnd != null ? eraEnd.getYear() : Math.max(firstYear, FIRST_YEAR);
+
+            // the instant the era starts, and the offset in effect at that instant
+            final long eraStartSecond = eraStart != null ? eraStart.toEpochSecond(wall) : Long.MIN_VALUE;
+            final ZoneOffset eraWall;
+            if (rules.isEmpty()) {
+                eraWall = eraStandard;
+            } else if (eraStart != null) {
+                eraWall = offsetAt(rules, eraStartSecond);
+            } else {
+                eraWall = offsetAt(rules, LocalDateTime.of(firstYear, 1, 1, 0, 0).toEpochSecond(eraStandard));
+            }
+
+            if (eraStart == null) {
+                baseStandard = eraStandard;
+                baseWall = eraWall;
+            } else {
+                if (!eraStandard.equals(standard)) {
+                    standardTransitions.add(ZoneOffsetTransition.of(eraStart, standard, eraStandard));
+                }
+                if (!eraWall.equals(wall)) {
+                    transitions.add(ZoneOffsetTransition.of(eraStart, wall, eraWall));
+                }
+            }
+            standard = eraStandard;
+            wall = eraWall;
+
+            final List<ZoneOffsetTransition> yearTransitions = new ArrayList<ZoneOffsetTransition>(2);
+            for (int year = firstYear; year <= lastYear && !rules.isEmpty(); year++) {
+                yearTransitions.clear();
+                for (ZoneOffsetTransitionRule rule : rules) {
+                    yearTransitions.add(rule.createTransition(year));
+                }
+                Collections.sort(yearTransitions, BY_INSTANT);
+                for (ZoneOffsetTransition transition : yearTransitions) {
+                    if (transition.toEpochSecond() <= eraStartSecond
+                            || (eraEnd != null && !transition.getDateTimeBefore().isBefore(eraEnd))) {
+                        continue;
+                    }
+                    if (!transition.getOffsetAfter().equals(wall)) {
+                        transitions.add(ZoneOffsetTransition.of(transition.getDateTimeBefore(), wall,
+                                transition.getOffsetAfter()));
+                        wall = transition.getOffsetAfter();
+                    }
+                }
+            }
+        }
+
+        return ZoneRules.of(baseStandard, baseWall, standardTransitions, transitions, rules);
+    }
+
+    /**
+     * Gets the offset a pair of recurring transitions yields at an instant.
+     */
+    private static ZoneOffset offsetAt(List<ZoneOffsetTransitionRule> rules, long epochSecond) {
+        final int year = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).getYear();
+        ZoneOffsetTransition latest = null;
+        for (int y = year - 1; y <= year + 1; y++) {
+            for (ZoneOffsetTransitionRule rule : rules) {
+                final ZoneOffsetTransition transition = rule.createTransition(y);
+                if (transition.toEpochSecond() <= epochSecond
+                        && (latest == null || transition.toEpochSecond() > latest.toEpochSecond())) {
+                    latest = transition;
+                }
+            }
+        }
+        return latest != null ? latest.getOffsetAfter() : rules.get(0).getOffsetBefore();
+    }
+
+    /**
+     * Gets the offset of the standard period of a group, in seconds.
+     */
+    private static int standardOffsetOf(TimeZoneTransitionGroup group) throws ServiceLocalException {
+        final List<TimeZoneTransition> transitions = group.getTransitions();
+        if (transitions.size() == 1) {
+            return offsetOf(transitions.get(0).getTargetPeriod());
+        }
+        for (TimeZoneTransition transition : transitions) {
+            if (transition.getTargetPeriod() != null && transition.getTargetPeriod().isStandardPeriod()) {
+                return offsetOf(transition.getTargetPeriod());
+            }
+        }
+        // no period is marked as standard, so assume the one with the smaller offset
+        return Math.min(offsetOf(transitions.get(0).getTargetPeriod()),
+                offsetOf(transitions.get(1).getTargetPeriod()));
+    }
+
+    /**
+     * Converts the recurring transitions of a group, or returns an empty list for a group with a fixed period.
+     */
+    private static List<ZoneOffsetTransitionRule> rulesOf(TimeZoneTransitionGroup group, ZoneOffset standard)
+            throws ServiceLocalException {
+        final List<TimeZoneTransition> transitions = group.getTransitions();
+        if (transitions.size() == 1) {
+            return Collections.emptyList();
+        }
+        if (transitions.size() != 2) {
+            throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+        }
+        final List<ZoneOffsetTransitionRule> rules = new ArrayList<ZoneOffsetTransitionRule>(2);
+        for (int i = 0; i < 2; i++) {
+            final ZoneOffset before = ZoneOffset.ofTotalSeconds(offsetOf(transitions.get(1 - i).getTargetPeriod()));
+            final ZoneOffset after = ZoneOffset.ofTotalSeconds(offsetOf(transitions.get(i).getTargetPeriod()));
+            rules.add(ruleOf(transitions.get(i), standard, before, after));
+        }
+        return rules;
+    }
+
+    private static ZoneOffsetTransitionRule ruleOf(TimeZoneTransition transition, ZoneOffset standard,
+                                                   ZoneOffset before, ZoneOffset after)
+            throws ServiceLocalException {
+        if (!(transition instanceof AbsoluteMonthTransition)) {
+            throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+        }
+        final AbsoluteMonthTransition recurring = (AbsoluteMonthTransition) transition;
+        final Month month = Month.of(recurring.getMonth());
+        final long offsetSeconds = recurring.getTimeOffset() != null
+                ? recurring.getTimeOffset().getTotalMilliseconds() / 1000 : 0;
+        final boolean endOfDay = offsetSeconds >= 86400;
+        final LocalTime time = endOfDay ? LocalTime.MIDNIGHT : LocalTime.ofSecondOfDay(Math.max(0, offsetSeconds));
+
+        final int dayOfMonthIndicator;
+        final DayOfWeek dayOfWeek;
+        if (recurring instanceof RelativeDayOfMonthTransition) {
+            final RelativeDayOfMonthTransition relative = (RelativeDayOfMonthTransition) recurring;
+            dayOfWeek = toDayOfWeek(relative.getDayOfTheWeek());
+            final int weekIndex = relative.getWeekIndex();
+            if (weekIndex == -1 || weekIndex == 5) {
+                dayOfMonthIndicator = -1;
+            } else if (weekIndex >= 1 && weekIndex <= 4) {
+                dayOfMonthIndicator = 1 + 7 * (weekIndex - 1);
+            } else {
+                throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+            }
+        } else if (recurring instanceof AbsoluteDayOfMonthTransition) {
+            dayOfWeek = null;
+            dayOfMonthIndicator = ((AbsoluteDayOfMonthTransition) recurring).getDayOfMonth();
+        } else {
+            throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+        }
+        return ZoneOffsetTransitionRule.of(month, dayOfMonthIndicator, dayOfWeek, time, endOfDay,
+                ZoneOffsetTransitionRule.TimeDefinition.WALL, standard, before, after);
+    }
+
+    private static DayOfWeek toDayOfWeek(DayOfTheWeek dayOfTheWeek) throws ServiceLocalException {
+        if (dayOfTheWeek != null) {
+            for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+                if (dayOfWeek.name().equalsIgnoreCase(dayOfTheWeek.name())) {
+                    return dayOfWeek;
+                }
+            }
+        }
+        throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+    }
+
+    /**
+     * Gets the UTC offset of a period in seconds. EWS stores the bias, which has the opposite sign.
+     */
+    private static int offsetOf(TimeZonePeriod period) throws ServiceLocalException {
+        if (period == null || period.getBias() == null) {
+            throw new InvalidOrUnsupportedTimeZoneDefinitionException();
+        }
+        return (int) (-period.getBias().getTotalMilliseconds() / 1000);
+    }
+}
@@ -242,4 +242,30 @@ public class TimeZoneTransition extends ComplexProperty {
         return this.targetGroup;
     }
 
+    /**
+     * Creates a copy of this transition which belongs to another time zone definition. The copy targets the
+     * period or group with the same id in that definition.
+     *
+     * @param definition the definition the copy belongs to
+     * @return the copy
+     */
+    TimeZoneTransition copyFor(TimeZoneDefinition definition) {
+        final TimeZoneTransition copy = new TimeZoneTransition(definition);
+        copy.copyFrom(this);
+        return copy;
+    }
+
+    /**
+     * Copies the settings of another transition of the same type. Subclasses copy their own fields.
+     *
+     * @param source the transition to copy
+     */
+    void copyFrom(TimeZoneTransition source) {
+        if (source.targetPeriod != null) {
+            this.targetPeriod = this.timeZoneDefinition.getPeriods().get(source.targetPeriod.getId());
+        }
+        if (source.targetGroup != null) {
+            this.targetGroup = this.timeZoneDefinition.getTransitionGroups().get(source.targetGroup.getId());
+        }
+    }
 }
@@ -423,4 +423,15 @@ public class TimeZoneTransitionGroup extends ComplexProperty {
     public List<TimeZoneTransition> getTransitions() {
         return this.transitions;
     }
+
+    /**
+     * Copies the transitions of another group into this one, which belongs to another time zone definition.
+     *
+     * @param source the group to copy
+     */
+    void copyTransitionsFrom(TimeZoneTransitionGroup source) {
+        for (TimeZoneTransition transition : source.transitions) {
+            this.transitions.add(transition.copyFor(this.timeZoneDefinition));
+        }
+    }
 }
@@ -30,6 +30,7 @@ import com.eischet.ews.api.core.enumeration.property.MapiPropertyType;
 import com.eischet.ews.api.core.exception.service.local.ServiceXmlSerializationException;
 import com.eischet.ews.api.misc.MapiTypeConverter;
 
+import java.util.Objects;
 import java.util.UUID;
 
 /**
@@ -67,6 +68,16 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
      */
     private MapiPropertyType mapiType;
 
+    /**
+     * The printable name, computed on first use.
+     */
+    private String printableName;
+
+    /**
+     * The hash code, computed on first use; 0 if not computed yet.
+     */
+    private int hashCode;
+
     /**
      * The Constant FieldFormat.
      */
@@ -341,6 +352,8 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
 
         this.mapiType = reader.readAttributeValue(MapiPropertyType.class,
                 XmlAttributeNames.PropertyType);
+        this.printableName = null;
+        this.hashCode = 0;
     }
 
 
@@ -357,6 +370,9 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
             return true;
         }
         if (obj instanceof ExtendedPropertyDefinition) {
+            if (this.hashCode() != obj.hashCode()) {
+                return false;
+            }
             return ExtendedPropertyDefinition.isEqualTo(this,
                     (ExtendedPropertyDefinition) obj);
         } else {
@@ -371,7 +387,13 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
      */
     @Override
     public int hashCode() {
-        return this.getPrintableName().hashCode();
+        int result = this.hashCode;
+        if (result == 0) {
+            result = Objects.hash(this.getId(), this.getMapiType(), this.getTag(), this.getName(),
+                    this.getPropertySet(), this.propertySetId);
+            this.hashCode = result;
+        }
+        return result;
     }
 
     /**
@@ -381,6 +403,9 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
      */
     @Override
     public String getPrintableName() {
+        if (this.printableName != null) {
+            return this.printableName;
+        }
         StringBuilder sb = new StringBuilder();
         sb.append("{");
         sb.append(formatField(NameFieldName, this.getName()));
@@ -390,7 +415,8 @@ public final class ExtendedPropertyDefinition extends PropertyDefinitionBase {
         sb.append(formatField(PropertySetIdFieldName, this.getPropertySetId()));
         sb.append(formatField(TagFieldName, this.getTag()));
         sb.append("}");
-        return sb.toString();
+        this.printableName = sb.toString();
+        return this.printableName;
     }
 
     /**
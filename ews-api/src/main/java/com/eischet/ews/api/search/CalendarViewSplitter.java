@@ -0,0 +1,325 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.search;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.IAction;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.service.item.Appointment;
+import com.eischet.ews.api.core.service.schema.AppointmentSchema;
+import com.eischet.ews.api.misc.ParallelExecution;
+import com.eischet.ews.api.property.complex.FolderId;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Reads all appointments of a calendar folder in a date range of any size.
+ * <p>
+ * A CalendarView returns at most {@link #getMaxItemsPerSlice()} occurrences (and the server enforces its own limit),
+ * so large ranges of busy calendars cannot be read with one request. This class splits the range into slices
+ * which are requested concurrently. A slice that returns more items than allowed is bisected and both halves are
+ * requested again, until every slice fits. Appointments spanning several slices are returned only once, and
+ * appointments are delivered in start order as soon as all earlier slices are complete.
+ * </p>
+ * <p>
+ * The property set must include {@link AppointmentSchema#Start} and {@link AppointmentSchema#End}, which are
+ * added if missing.
+ * </p>
+ */
+public class CalendarViewSplitter {
+
+    /**
+     * The default maximum number of items requested per slice; Exchange does not return more than 1000 by default.
+     */
+    public static final int DEFAULT_MAX_ITEMS_PER_SLICE = 1000;
+
+    private static final Duration MINIMUM_SLICE = Duration.ofMinutes(1);
+
+    private final ExchangeService service;
+    private final FolderId folderId;
+    private PropertySet propertySet;
+    private int maxItemsPerSlice = DEFAULT_MAX_ITEMS_PER_SLICE;
+    private int maxConcurrency;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service  the service
+     * @param folderId the calendar folder
+     */
+    public CalendarViewSplitter(ExchangeService service, FolderId folderId) {
+        this.service = service;
+        this.folderId = folderId;
+        this.maxConcurrency = service.getMaxConcurrentRequests();
+    }
+
+    /**
+     * Gets the property set requested for the appointments.
+     *
+     * @return the property set, or null for the first class properties
+     */
+    public PropertySet getPropertySet() {
+        return propertySet;
+    }
+
+    /**
+     * Sets the property set requested for the appointments.
+     *
+     * @param propertySet the property set, or null for the first class properties
+     */
+    public void setPropertySet(PropertySet propertySet) {
+        this.propertySet = propertySet;
+    }
+
+    /**
+     * Gets the maximum number of items requested per slice.
+     *
+     * @return the maximum number of items per slice
+     */
+    public int getMaxItemsPerSlice() {
+        return maxItemsPerSlice;
+    }
+
+    /**
+     * Sets the maximum number of items requested per slice.
+     *
+     * @param maxItemsPerSlice the maximum number of items per slice
+     */
+    public void setMaxItemsPerSlice(int maxItemsPerSlice) {
+        if (maxItemsPerSlice < 1) {
+            throw new IllegalArgumentException("maxItemsPerSlice must be at least 1");
+        }
+        this.maxItemsPerSlice = maxItemsPerSlice;
+    }
+
+    /**
+     * Gets the maximum number of slices requested at the same time.
+     *
+     * @return the maximum concurrency, by default the one of the service
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of slices requested at the same time. The range is initially split into
+     * this many slices.
+     *
+     * @param maxConcurrency the maximum concurrency
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Gets all appointments in a date range.
+     *
+     * @param startDate the start of the range
+     * @param endDate   the end of the range
+     * @return the appointments, ordered by start
+     * @throws Exception if a request fails
+     */
+    public List<Appointment> findAppointments(LocalDateTime startDate, LocalDateTime endDate) throws Exception {
+        final List<Appointment> appointments = new ArrayList<Appointment>();
+        findAppointments(startDate, endDate, appointments::add);
+        return appointments;
+    }
+
+    /**
+     * Gets all appointments in a date range and passes them to a callback in start order, as soon as all
+     * earlier slices have been read.
+     *
+     * @param startDate the start of the range
+     * @param endDate   the end of the range
+     * @param consumer  the callback, called from the calling thread
+     * @return the number of appointments
+     * @throws Exception if a request fails
+     */
+    public int findAppointments(LocalDateTime startDate, LocalDateTime endDate, IAction<Appointment> consumer)
+            throws Exception {
+        if (!endDate.isAfter(startDate)) {
+            throw new IllegalArgumentException("endDate must be after startDate");
+        }
+        final PropertySet requestedProperties = getRequestedPropertySet();
+        final TreeMap<LocalDateTime, Slice> slices = new TreeMap<LocalDateTime, Slice>();
+        final Map<String, LocalDateTime> delivered = new HashMap<String, LocalDateTime>();
+        final CompletionService<Slice> completion = ParallelExecution.newCompletionService();
+        final Deque<Slice> waiting = new ArrayDeque<Slice>();
+        final Set<Future<Slice>> running = new HashSet<Future<Slice>>();
+        int count = 0;
+        try {
+            final long step = Math.max(1, Duration.between(startDate, endDate).getSeconds() / maxConcurrency);
+            LocalDateTime sliceStart = startDate;
+            while (sliceStart.isBefore(endDate)) {
+                LocalDateTime sliceEnd = sliceStart.plusSeconds(step);
+                if (sliceEnd.isAfter(endDate) || slices.size() == maxConcurrency - 1) {
+                    sliceEnd = endDate;
+                }
+                final Slice slice = new Slice(sliceStart, sliceEnd);
+                slices.put(slice.start, slice);
+                waiting.add(slice);
+                sliceStart = sliceEnd;
+            }
+            submitWaiting(completion, waiting, running, requestedProperties);
+
+            while (!running.isEmpty()) {
+                final Future<Slice> future = completion.take();
+                running.remove(future);
+                final Slice slice;
+                try {
+                    slice = future.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                if (slice.appointments == null) {
+                    if (Duration.between(slice.start, slice.end).compareTo(MINIMUM_SLICE) <= 0) {
+                        throw new ServiceLocalException("More than " + maxItemsPerSlice
+                                + " appointments start between " + slice.start + " and " + slice.end);
+                    }
+                    final LocalDateTime middle = slice.start.plusSeconds(
+                            Duration.between(slice.start, slice.end).getSeconds() / 2).truncatedTo(ChronoUnit.SECONDS);
+                    final Slice first = new Slice(slice.start, middle);
+                    final Slice second = new Slice(middle, slice.end);
+                    slices.put(first.start, first);
+                    slices.put(second.start, second);
+                    // the earlier half is needed first to deliver appointments in start order
+                    waiting.addFirst(second);
+                    waiting.addFirst(first);
+                    submitWaiting(completion, waiting, running, requestedProperties);
+                    continue;
+                }
+                submitWaiting(completion, waiting, running, requestedProperties);
+                while (!slices.isEmpty() && slices.firstEntry().getValue().appointments != null) {
+                    final Slice first = slices.pollFirstEntry().getValue();
+                    for (Appointment appointment : first.appointments) {
+                        final String id = appointment.getId().getUniqueId();
+                        if (!delivered.containsKey(id)) {
+                            delivered.put(id, appointment.getEnd());
+                            consumer.action(appointment);
+                            count++;
+                        }
+                    }
+                    // later slices only contain appointments ending after their start
+                    delivered.values().removeIf(end -> end == null || end.isBefore(first.end));
+                }
+            }
+            return count;
+        } finally {
+            for (Future<Slice> future : running) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Starts waiting slices until {@link #getMaxConcurrency()} slices are being requested.
+     */
+    private void submitWaiting(CompletionService<Slice> completion, Deque<Slice> waiting,
+                               Set<Future<Slice>> running, PropertySet requestedProperties) {
+        while (!waiting.isEmpty() && running.size() < maxConcurrency) {
+            running.add(submit(completion, waiting.poll(), requestedProperties));
+        }
+    }
+
+    private Future<Slice> submit(CompletionService<Slice> completion, final Slice slice,
+                                 final PropertySet requestedProperties) {
+        final ExchangeService sliceService = maxConcurrency > 1
+                ? service.forMailbox(service.getMailboxContext()) : service;
+        return completion.submit(() -> {
+            final CalendarView view = new CalendarView(slice.start, slice.end, maxItemsPerSlice);
+            view.setPropertySet(requestedProperties);
+            final FindItemsResults<Appointment> results;
+            try {
+                results = sliceService.findAppointments(folderId, view);
+            } catch (ServiceResponseException e) {
+                if (e.getErrorCode() == ServiceError.ErrorCalendarViewRangeTooBig
+                        || e.getErrorCode() == ServiceError.ErrorExceededFindCountLimit) {
+                    return slice;
+                }
+                throw e;
+            }
+            if (!results.isMoreAvailable()) {
+                final List<Appointment> appointments = new ArrayList<Appointment>(results.getItems());
+                appointments.sort(Comparator.comparing(CalendarViewSplitter::getStart));
+                slice.appointments = appointments;
+            }
+            return slice;
+        });
+    }
+
+    private PropertySet getRequestedPropertySet() throws Exception {
+        if (propertySet == null) {
+            return null;
+        }
+        final PropertySet requested = new PropertySet(propertySet.getBasePropertySet(), propertySet.iterator());
+        requested.setRequestedBodyType(propertySet.getRequestedBodyType());
+        if (!requested.contains(AppointmentSchema.Start)) {
+            requested.add(AppointmentSchema.Start);
+        }
+        if (!requested.contains(AppointmentSchema.End)) {
+            requested.add(AppointmentSchema.End);
+        }
+        return requested;
+    }
+
+    private static LocalDateTime getStart(Appointment appointment) {
+        try {
+            return appointment.getStart();
+        } catch (ServiceLocalException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Slice {
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private volatile List<Appointment> appointments;
+
+        private Slice(LocalDateTime start, LocalDateTime end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
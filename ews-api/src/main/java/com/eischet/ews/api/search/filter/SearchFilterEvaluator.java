@@ -0,0 +1,417 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.search.filter;
+
+import com.eischet.ews.api.core.PropertyBag;
+import com.eischet.ews.api.core.enumeration.search.ComparisonMode;
+import com.eischet.ews.api.core.enumeration.search.ContainmentMode;
+import com.eischet.ews.api.core.enumeration.search.LogicalOperator;
+import com.eischet.ews.api.core.exception.misc.ArgumentException;
+import com.eischet.ews.api.core.service.ServiceObject;
+import com.eischet.ews.api.core.service.schema.ServiceObjectSchema;
+import com.eischet.ews.api.misc.OutParam;
+import com.eischet.ews.api.property.complex.EmailAddress;
+import com.eischet.ews.api.property.complex.ExtendedPropertyCollection;
+import com.eischet.ews.api.property.definition.ExtendedPropertyDefinition;
+import com.eischet.ews.api.property.definition.PropertyDefinition;
+import com.eischet.ews.api.property.definition.PropertyDefinitionBase;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiFunction;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Evaluates search filters locally, against the properties already loaded into items or folders, so a filter can
+ * be applied to cached or streamed objects without a round trip.
+ * <p>
+ * {@link #compile(SearchFilter)} turns a filter tree into a predicate once; the filter can be changed afterwards
+ * without affecting the predicate. The semantics follow those of restrictions on the server:
+ * </p>
+ * <ul>
+ * <li>a property that is not loaded counts as not set; every filter on it except {@link SearchFilter.Not} is
+ * false, including IsNotEqualTo and ExcludesBitmask,</li>
+ * <li>on multi-valued properties, such as Categories, a filter is true if it is true for any of the values,</li>
+ * <li>strings are compared ignoring case by the relational filters; ContainsSubstring uses its ContainmentMode
+ * and ComparisonMode, where a word is a run of letters and digits,</li>
+ * <li>numbers are compared by value regardless of their type, enumeration values by their order, email
+ * addresses by their address, and values given as strings are converted to the type of the property.</li>
+ * </ul>
+ * <p>
+ * Only properties which are loaded can be evaluated, so the objects should be loaded with a property set that
+ * contains all properties the filter refers to. Indexed properties are not supported.
+ * </p>
+ */
+public final class SearchFilterEvaluator {
+
+    private static final Pattern NON_SPACING_MARKS = Pattern.compile("\\p{Mn}+");
+
+    private SearchFilterEvaluator() {
+    }
+
+    /**
+     * Compiles a search filter into a predicate over the property bag of an item or folder.
+     *
+     * @param filter the filter
+     * @return the predicate
+     * @throws IllegalArgumentException if the filter is incomplete or refers to a property or filter type which
+     *                                  cannot be evaluated locally
+     */
+    public static Predicate<PropertyBag> compile(SearchFilter filter) {
+        return compile(filter, SearchFilterEvaluator::getValue);
+    }
+
+    /**
+     * Compiles a search filter into a predicate over any kind of object holding property values, such as the
+     * entries of a local index.
+     *
+     * @param filter the filter
+     * @param values gives the value of a property of an object, or null if it is not set
+     * @param <T>    the type of object
+     * @return the predicate
+     * @throws IllegalArgumentException if the filter is incomplete or refers to a property or filter type which
+     *                                  cannot be evaluated locally
+     */
+    public static <T> Predicate<T> compile(SearchFilter filter, BiFunction<T, PropertyDefinitionBase, Object> values) {
+        if (filter == null || values == null) {
+            throw new IllegalArgumentException("filter and values must not be null");
+        }
+        if (filter instanceof SearchFilter.SearchFilterCollection) {
+            final SearchFilter.SearchFilterCollection collection = (SearchFilter.SearchFilterCollection) filter;
+            final List<Predicate<T>> operands = new ArrayList<>();
+            for (SearchFilter operand : collection) {
+                operands.add(compile(operand, values));
+            }
+            if (collection.getLogicalOperator() == LogicalOperator.Or) {
+                return target -> operands.stream().anyMatch(operand -> operand.test(target));
+            }
+            return target -> operands.stream().allMatch(operand -> operand.test(target));
+        } else if (filter instanceof SearchFilter.Not) {
+            final SearchFilter inner = ((SearchFilter.Not) filter).getSearchFilter();
+            if (inner == null) {
+                throw new IllegalArgumentException("Not filter without a search filter");
+            }
+            return compile(inner, values).negate();
+        } else if (filter instanceof SearchFilter.Exists) {
+            final PropertyDefinitionBase property = propertyOf((SearchFilter.PropertyBasedFilter) filter);
+            return target -> values.apply(target, property) != null;
+        } else if (filter instanceof SearchFilter.ExcludesBitmask) {
+            final PropertyDefinitionBase property = propertyOf((SearchFilter.PropertyBasedFilter) filter);
+            final long bitmask = ((SearchFilter.ExcludesBitmask) filter).getBitmask();
+            return target -> anyValue(values.apply(target, property), value -> value instanceof Number
+                    && (((Number) value).longValue() & bitmask) == 0);
+        } else if (filter instanceof SearchFilter.ContainsSubstring) {
+            return compileContainsSubstring((SearchFilter.ContainsSubstring) filter, values);
+        } else if (filter instanceof SearchFilter.RelationalFilter) {
+            return compileRelational((SearchFilter.RelationalFilter) filter, values);
+        }
+        throw new IllegalArgumentException("cannot evaluate " + filter.getClass().getName() + " locally");
+    }
+
+    /**
+     * Checks whether an item or folder matches a search filter. Use {@link #compile(SearchFilter)} when the same
+     * filter is applied to many objects.
+     *
+     * @param filter        the filter
+     * @param serviceObject the item or folder
+     * @return true if the object matches
+     */
+    public static boolean matches(SearchFilter filter, ServiceObject serviceObject) {
+        return compile(filter).test(serviceObject.getPropertyBag());
+    }
+
+    /**
+     * Gets the value of a property from a property bag.
+     *
+     * @param bag      the property bag
+     * @param property the property, a schema property or an extended property
+     * @return the value, or null if the property is not loaded
+     */
+    public static Object getValue(PropertyBag bag, PropertyDefinitionBase property) {
+        final OutParam<Object> value = new OutParam<>();
+        if (property instanceof ExtendedPropertyDefinition) {
+            if (!bag.tryGetValue(ServiceObjectSchema.extendedProperties, value) || value.getParam() == null) {
+                return null;
+            }
+            final ExtendedPropertyCollection extendedProperties = (ExtendedPropertyCollection) value.getParam();
+            try {
+                return extendedProperties.tryGetValue(Object.class, (ExtendedPropertyDefinition) property, value)
+                        ? value.getParam() : null;
+            } catch (ArgumentException e) {
+                return null;
+            }
+        }
+        return bag.tryGetValue((PropertyDefinition) property, value) ? value.getParam() : null;
+    }
+
+    private static PropertyDefinitionBase propertyOf(SearchFilter.PropertyBasedFilter filter) {
+        return checkProperty(filter.getPropertyDefinition());
+    }
+
+    private static PropertyDefinitionBase checkProperty(PropertyDefinitionBase property) {
+        if (property == null) {
+            throw new IllegalArgumentException("search filter without a property definition");
+        }
+        if (!(property instanceof ExtendedPropertyDefinition) && !(property instanceof PropertyDefinition)) {
+            throw new IllegalArgumentException("cannot evaluate " + property.getPrintableName() + " locally");
+        }
+        return property;
+    }
+
+    private static <T> Predicate<T> compileRelational(SearchFilter.RelationalFilter filter,
+                                                      BiFunction<T, PropertyDefinitionBase, Object> values) {
+        final PropertyDefinitionBase property = propertyOf(filter);
+        final IntPredicate relation;
+        if (filter instanceof SearchFilter.IsEqualTo) {
+            relation = comparison -> comparison == 0;
+        } else if (filter instanceof SearchFilter.IsNotEqualTo) {
+            relation = comparison -> comparison != 0;
+        } else if (filter instanceof SearchFilter.IsGreaterThan) {
+            relation = comparison -> comparison > 0;
+        } else if (filter instanceof SearchFilter.IsGreaterThanOrEqualTo) {
+            relation = comparison -> comparison >= 0;
+        } else if (filter instanceof SearchFilter.IsLessThan) {
+            relation = comparison -> comparison < 0;
+        } else if (filter instanceof SearchFilter.IsLessThanOrEqualTo) {
+            relation = comparison -> comparison <= 0;
+        } else {
+            throw new IllegalArgumentException("cannot evaluate " + filter.getClass().getName() + " locally");
+        }
+        if (filter.getOtherPropertyDefinition() != null) {
+            final PropertyDefinitionBase other = checkProperty(filter.getOtherPropertyDefinition());
+            return target -> {
+                final Object otherValue = values.apply(target, other);
+                return otherValue != null && anyValue(values.apply(target, property),
+                        value -> anyValue(otherValue, right -> satisfies(relation, value, right)));
+            };
+        }
+        final Object constant = filter.getValue();
+        if (constant == null) {
+            throw new IllegalArgumentException("relational filter without a value or other property");
+        }
+        return target -> anyValue(values.apply(target, property), value -> satisfies(relation, value, constant));
+    }
+
+    private static boolean satisfies(IntPredicate relation, Object left, Object right) {
+        final Integer comparison = compareValues(left, right);
+        return comparison != null && relation.test(comparison);
+    }
+
+    /**
+     * Compares a property value with a value of a filter, the way relational filters do.
+     *
+     * @param left  the property value
+     * @param right the value to compare with, possibly a string to be converted to the type of the property value
+     * @return the comparison, or null if the values cannot be compared
+     */
+    public static Integer compareValues(Object left, Object right) {
+        left = toScalar(left);
+        right = toScalar(right);
+        if (left == null || right == null) {
+            return null;
+        }
+        if (left instanceof Number) {
+            final BigDecimal number = toNumber(right);
+            return number != null ? toNumber(left).compareTo(number) : null;
+        }
+        if (left instanceof Boolean) {
+            final Boolean bool = right instanceof Boolean ? (Boolean) right
+                    : right instanceof String ? Boolean.valueOf(((String) right).trim()) : null;
+            return bool != null ? ((Boolean) left).compareTo(bool) : null;
+        }
+        if (left instanceof LocalDateTime) {
+            final LocalDateTime dateTime = toDateTime(right);
+            return dateTime != null ? ((LocalDateTime) left).compareTo(dateTime) : null;
+        }
+        if (left instanceof Enum) {
+            final Enum<?> constant = (Enum<?>) left;
+            for (Object candidate : constant.getDeclaringClass().getEnumConstants()) {
+                if (candidate.equals(right) || (right instanceof String
+                        && ((Enum<?>) candidate).name().equalsIgnoreCase(((String) right).trim()))) {
+                    return Integer.compare(constant.ordinal(), ((Enum<?>) candidate).ordinal());
+                }
+            }
+            return null;
+        }
+        if (left instanceof byte[]) {
+            return right instanceof byte[] && Arrays.equals((byte[]) left, (byte[]) right) ? 0 : null;
+        }
+        if (left instanceof String || right instanceof String) {
+            return Integer.signum(String.CASE_INSENSITIVE_ORDER.compare(left.toString(), right.toString()));
+        }
+        if (left instanceof Comparable && left.getClass().isInstance(right)) {
+            @SuppressWarnings("unchecked") final Comparable<Object> comparable = (Comparable<Object>) left;
+            return Integer.signum(comparable.compareTo(right));
+        }
+        return left.equals(right) ? 0 : null;
+    }
+
+    private static BigDecimal toNumber(Object value) {
+        try {
+            if (value instanceof BigDecimal) {
+                return (BigDecimal) value;
+            }
+            if (value instanceof Number || value instanceof String) {
+                return new BigDecimal(value.toString().trim());
+            }
+        } catch (NumberFormatException e) {
+            // not a number
+        }
+        return null;
+    }
+
+    private static LocalDateTime toDateTime(Object value) {
+        if (value instanceof LocalDateTime) {
+            return (LocalDateTime) value;
+        }
+        if (value instanceof String) {
+            final String text = ((String) value).trim();
+            try {
+                return LocalDateTime.parse(text);
+            } catch (DateTimeParseException e) {
+                try {
+                    return OffsetDateTime.parse(text).withOffsetSameInstant(ZoneOffset.UTC).toLocalDateTime();
+                } catch (DateTimeParseException e2) {
+                    return null;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static <T> Predicate<T> compileContainsSubstring(SearchFilter.ContainsSubstring filter,
+                                                             BiFunction<T, PropertyDefinitionBase, Object> values) {
+        final PropertyDefinitionBase property = propertyOf(filter);
+        if (filter.getValue() == null) {
+            throw new IllegalArgumentException("ContainsSubstring filter without a value");
+        }
+        final ComparisonMode comparisonMode = filter.getComparisonMode();
+        final ContainmentMode containmentMode = filter.getContainmentMode();
+        final String needle = normalize(filter.getValue(), comparisonMode);
+        return target -> anyValue(values.apply(target, property), value -> !(value instanceof byte[])
+                && contains(normalize(value.toString(), comparisonMode), needle, containmentMode));
+    }
+
+    /**
+     * Checks whether a normalized string contains a normalized value the way a containment mode asks for.
+     */
+    static boolean contains(String text, String value, ContainmentMode containmentMode) {
+        if (value.isEmpty()) {
+            return containmentMode != ContainmentMode.FullString || text.isEmpty();
+        }
+        switch (containmentMode) {
+            case FullString:
+                return text.equals(value);
+            case Prefixed:
+                return text.startsWith(value);
+            case PrefixOnWords:
+            case ExactPhrase:
+                for (int from = text.indexOf(value); from >= 0; from = text.indexOf(value, from + 1)) {
+                    final int end = from + value.length();
+                    if (isWordStart(text, from)
+                            && (containmentMode == ContainmentMode.PrefixOnWords || isWordEnd(text, end))) {
+                        return true;
+                    }
+                }
+                return false;
+            case Substring:
+            default:
+                return text.contains(value);
+        }
+    }
+
+    private static boolean isWordStart(String text, int index) {
+        return index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1));
+    }
+
+    private static boolean isWordEnd(String text, int index) {
+        return index == text.length() || !Character.isLetterOrDigit(text.charAt(index));
+    }
+
+    static String normalize(String text, ComparisonMode comparisonMode) {
+        String result = text;
+        if (comparisonMode == ComparisonMode.IgnoreNonSpacingCharacters
+                || comparisonMode == ComparisonMode.IgnoreCaseAndNonSpacingCharacters) {
+            result = NON_SPACING_MARKS.matcher(Normalizer.normalize(result, Normalizer.Form.NFD)).replaceAll("");
+        }
+        if (comparisonMode == ComparisonMode.IgnoreCase
+                || comparisonMode == ComparisonMode.IgnoreCaseAndNonSpacingCharacters) {
+            result = result.toLowerCase(Locale.ROOT);
+        }
+        return result;
+    }
+
+    /**
+     * Applies a test to a value, or to each element of a multi-valued one.
+     */
+    private static boolean anyValue(Object value, Predicate<Object> test) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Iterable) {
+            for (Object element : (Iterable<?>) value) {
+                final Object scalar = toScalar(element);
+                if (scalar != null && test.test(scalar)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (value.getClass().isArray() && !(value instanceof byte[])) {
+            for (int i = 0; i < Array.getLength(value); i++) {
+                final Object scalar = toScalar(Array.get(value, i));
+                if (scalar != null && test.test(scalar)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        final Object scalar = toScalar(value);
+        return scalar != null && test.test(scalar);
+    }
+
+    /**
+     * Gets the value a filter compares a property value by: the address of an email address, as on the server,
+     * or the value itself.
+     *
+     * @param value the property value, or an element of a multi-valued one
+     * @return the value to compare
+     */
+    public static Object toScalar(Object value) {
+        if (value instanceof EmailAddress) {
+            return ((EmailAddress) value).getAddress();
+        }
+        return value;
+    }
+}
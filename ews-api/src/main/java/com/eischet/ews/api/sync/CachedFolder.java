@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.property.complex.FolderId;
+
+import java.util.List;
+
+/**
+ * An immutable snapshot of a folder in a {@link FolderHierarchyCache}.
+ */
+public final class CachedFolder {
+
+    private final String uniqueId;
+    private final String changeKey;
+    private final String parentUniqueId;
+    private final String displayName;
+    private final String folderClass;
+    private final List<String> path;
+
+    CachedFolder(String uniqueId, String changeKey, String parentUniqueId, String displayName, String folderClass,
+                 List<String> path) {
+        this.uniqueId = uniqueId;
+        this.changeKey = changeKey;
+        this.parentUniqueId = parentUniqueId;
+        this.displayName = displayName;
+        this.folderClass = folderClass;
+        this.path = List.copyOf(path);
+    }
+
+    /**
+     * Gets the unique id of the folder.
+     *
+     * @return the unique id
+     */
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    /**
+     * Gets the change key of the folder at the time it was last synchronized.
+     *
+     * @return the change key, or null
+     */
+    public String getChangeKey() {
+        return changeKey;
+    }
+
+    /**
+     * Gets the unique id of the parent folder.
+     *
+     * @return the unique id of the parent folder, or null
+     */
+    public String getParentUniqueId() {
+        return parentUniqueId;
+    }
+
+    /**
+     * Gets the display name of the folder.
+     *
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * Gets the folder class, e.g. IPF.Note.
+     *
+     * @return the folder class, or null
+     */
+    public String getFolderClass() {
+        return folderClass;
+    }
+
+    /**
+     * Gets the display names of the folder and all its ancestors below the root of the hierarchy,
+     * starting with the top level folder.
+     *
+     * @return the path, which cannot be modified
+     */
+    public List<String> getPath() {
+        return path;
+    }
+
+    /**
+     * Creates a folder id for this folder.
+     *
+     * @return a new folder id
+     * @throws Exception if the id is invalid
+     */
+    public FolderId toFolderId() throws Exception {
+        final FolderId folderId = new FolderId(uniqueId);
+        folderId.setChangeKey(changeKey);
+        return folderId;
+    }
+
+    CachedFolder withPath(List<String> path) {
+        return new CachedFolder(uniqueId, changeKey, parentUniqueId, displayName, folderClass, path);
+    }
+
+    @Override
+    public String toString() {
+        return "/" + String.join("/", path) + " (" + uniqueId + ")";
+    }
+}
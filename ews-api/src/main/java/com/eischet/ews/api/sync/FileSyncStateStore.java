@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A sync state store that keeps one file per folder in a directory.
+ * <p>
+ * File names are derived from a SHA-256 hash of mailbox and folder key, so arbitrary keys can be used.
+ * New sync states are written to a temporary file in the same directory which then replaces the old file
+ * by an atomic rename, so a crash never leaves a truncated sync state behind.
+ * </p>
+ */
+public class FileSyncStateStore implements ISyncStateStore {
+
+    private static final String SUFFIX = ".syncstate";
+
+    private final Path directory;
+
+    /**
+     * Initializes a new instance, creating the directory if necessary.
+     *
+     * @param directory the directory to store the sync states in
+     * @throws IOException if the directory cannot be created
+     */
+    public FileSyncStateStore(Path directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory must not be null");
+        }
+        this.directory = Files.createDirectories(directory);
+    }
+
+    /**
+     * Gets the directory the sync states are stored in.
+     *
+     * @return the directory
+     */
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String load(String mailbox, String folder) throws IOException {
+        try {
+            return new String(Files.readAllBytes(fileFor(mailbox, folder)), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void save(String mailbox, String folder, String syncState) throws IOException {
+        final Path target = fileFor(mailbox, folder);
+        final Path temp = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, syncState.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void delete(String mailbox, String folder) throws IOException {
+        Files.deleteIfExists(fileFor(mailbox, folder));
+    }
+
+    private Path fileFor(String mailbox, String folder) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        final byte[] hash = digest.digest((mailbox + '\n' + folder).getBytes(StandardCharsets.UTF_8));
+        final StringBuilder name = new StringBuilder(hash.length * 2 + SUFFIX.length());
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return directory.resolve(name.append(SUFFIX).toString());
+    }
+}
@@ -0,0 +1,538 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.property.BasePropertySet;
+import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.service.folder.Folder;
+import com.eischet.ews.api.core.service.schema.FolderSchema;
+import com.eischet.ews.api.property.complex.FolderId;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Logger;
+
+/**
+ * An in-memory copy of the folder hierarchy of a mailbox, kept current with SyncFolderHierarchy.
+ * <p>
+ * The first {@link #refresh()} loads the whole hierarchy; later calls only fetch the changes since the previous
+ * call. Folders can then be looked up by unique id, by display name path and by well-known name without calling
+ * EWS. Well-known folder names are resolved with one GetFolder request each the first time they are used.
+ * The cache can also be fed by a {@link SyncEngine}, since it is an {@link ISyncChangeHandler} itself, and it can
+ * be written to and read from a stream together with its sync state, so a restarted process only needs to fetch
+ * the changes since the cache was saved.
+ * </p>
+ * <p>
+ * Paths are matched case-insensitively, like folder names in Exchange. Folders whose paths differ only by case are
+ * all kept; a lookup then prefers the one whose path matches exactly. Instances are thread-safe.
+ * </p>
+ */
+public class FolderHierarchyCache implements ISyncChangeHandler<FolderChange> {
+
+    private static final Logger LOG = Logger.getLogger(FolderHierarchyCache.class.getCanonicalName());
+
+    /**
+     * The properties requested for each folder.
+     */
+    public static final PropertySet PROPERTY_SET = new PropertySet(BasePropertySet.IdOnly,
+            FolderSchema.ParentFolderId, FolderSchema.DisplayName, FolderSchema.FolderClass);
+
+    private static final int FORMAT_VERSION = 1;
+    private static final char PATH_SEPARATOR = '/';
+
+    private final ExchangeService service;
+    private final FolderId rootFolderId;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, CachedFolder> folders = new HashMap<>();
+    private final Map<String, Set<String>> children = new HashMap<>();
+    private final Map<String, Set<String>> paths = new HashMap<>();
+    private final Map<WellKnownFolderName, String> wellKnownFolders = new EnumMap<>(WellKnownFolderName.class);
+    private String syncState;
+
+    /**
+     * Initializes a new, empty instance.
+     *
+     * @param service      the service used to synchronize the hierarchy
+     * @param rootFolderId the root of the hierarchy, or null for the root of the mailbox of the service
+     */
+    public FolderHierarchyCache(ExchangeService service, FolderId rootFolderId) {
+        this.service = service;
+        this.rootFolderId = rootFolderId;
+    }
+
+    /**
+     * Fetches all changes since the last refresh, or the whole hierarchy on the first call.
+     *
+     * @return the number of changes applied
+     * @throws Exception if a request fails
+     */
+    public int refresh() throws Exception {
+        int count = 0;
+        boolean restarted = false;
+        while (true) {
+            final String currentState = getSyncState();
+            final ChangeCollection<FolderChange> changes;
+            try {
+                changes = service.syncFolderHierarchy(rootFolderId, PROPERTY_SET, currentState);
+            } catch (ServiceResponseException e) {
+                if (e.getErrorCode() != ServiceError.ErrorInvalidSyncStateData || currentState == null || restarted) {
+                    throw e;
+                }
+                LOG.warning("folder hierarchy sync state was rejected, reloading the hierarchy");
+                clear();
+                restarted = true;
+                continue;
+            }
+            handleChanges(SyncEngine.getFolderKey(rootFolderId), changes);
+            count += changes.getCount();
+            if (!changes.getMoreChangesAvailable()) {
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Applies a page of changes and remembers its sync state.
+     *
+     * @param folderKey the key of the synchronized folder; not used
+     * @param changes   the changes
+     * @throws Exception if a change does not contain the properties of {@link #PROPERTY_SET}
+     */
+    @Override
+    public void handleChanges(String folderKey, ChangeCollection<FolderChange> changes) throws Exception {
+        lock.writeLock().lock();
+        try {
+            for (FolderChange change : changes) {
+                switch (change.getChangeType()) {
+                    case Create:
+                    case Update:
+                        final Folder folder = change.getFolder();
+                        final FolderId parentId = folder.getParentFolderId();
+                        put(folder.getId().getUniqueId(), folder.getId().getChangeKey(),
+                                parentId != null ? parentId.getUniqueId() : null,
+                                folder.getDisplayName(), folder.getFolderClass());
+                        break;
+                    case Delete:
+                        remove(change.getFolderId().getUniqueId());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (changes.getSyncState() != null) {
+                syncState = changes.getSyncState();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the sync state of the cache.
+     *
+     * @return the sync state, or null if the cache has not been loaded yet
+     */
+    public String getSyncState() {
+        lock.readLock().lock();
+        try {
+            return syncState;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a folder by its unique id.
+     *
+     * @param uniqueId the unique id
+     * @return the folder, or null if it is not part of the hierarchy
+     */
+    public CachedFolder getFolder(String uniqueId) {
+        lock.readLock().lock();
+        try {
+            return folders.get(uniqueId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets a folder by its id, which may also be a well-known folder id.
+     *
+     * @param folderId the folder id
+     * @return the folder, or null if it is not part of the hierarchy
+     * @throws Exception if a well-known folder name has to be resolved and the request fails
+     */
+    public CachedFolder getFolder(FolderId folderId) throws Exception {
+        if (folderId.getFolderName() != null) {
+            return getFolder(folderId.getFolderName());
+        }
+        return getFolder(folderId.getUniqueId());
+    }
+
+    /**
+     * Gets a well-known folder. The first lookup of each name sends a GetFolder request.
+     *
+     * @param folderName the well-known folder name
+     * @return the folder, or null if it is not part of the hierarchy
+     * @throws Exception if the request fails
+     */
+    public CachedFolder getFolder(WellKnownFolderName folderName) throws Exception {
+        String uniqueId;
+        lock.readLock().lock();
+        try {
+            uniqueId = wellKnownFolders.get(folderName);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (uniqueId == null) {
+            final FolderId id = new FolderId(folderName, rootFolderId != null ? rootFolderId.getMailbox() : null);
+            uniqueId = service.bindToFolder(id, PropertySet.IdOnly).getId().getUniqueId();
+            lock.writeLock().lock();
+            try {
+                wellKnownFolders.put(folderName, uniqueId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return getFolder(uniqueId);
+    }
+
+    /**
+     * Gets a folder by the display names of its ancestors and itself, separated by slashes, e.g. "Inbox/Projects".
+     * A leading slash is ignored. Use {@link #getFolderByPath(List)} for display names containing slashes.
+     *
+     * @param path the path
+     * @return the folder, or null if there is no such folder
+     */
+    public CachedFolder getFolderByPath(String path) {
+        String trimmed = path;
+        if (!trimmed.isEmpty() && trimmed.charAt(0) == PATH_SEPARATOR) {
+            trimmed = trimmed.substring(1);
+        }
+        return getFolderByPath(Arrays.asList(trimmed.split(String.valueOf(PATH_SEPARATOR), -1)));
+    }
+
+    /**
+     * Gets a folder by the display names of its ancestors and itself. If several folders match case-insensitively,
+     * the one whose path matches exactly is returned, or else the one added first.
+     *
+     * @param path the display names, starting with the top level folder
+     * @return the folder, or null if there is no such folder
+     */
+    public CachedFolder getFolderByPath(List<String> path) {
+        lock.readLock().lock();
+        try {
+            final Set<String> uniqueIds = paths.get(pathKey(path));
+            if (uniqueIds == null) {
+                return null;
+            }
+            CachedFolder match = null;
+            for (String uniqueId : uniqueIds) {
+                final CachedFolder folder = folders.get(uniqueId);
+                if (folder.getPath().equals(path)) {
+                    return folder;
+                }
+                if (match == null) {
+                    match = folder;
+                }
+            }
+            return match;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the direct subfolders of a folder.
+     *
+     * @param uniqueId the unique id of the parent folder
+     * @return the subfolders, in no particular order
+     */
+    public List<CachedFolder> getChildren(String uniqueId) {
+        lock.readLock().lock();
+        try {
+            final Set<String> ids = children.get(uniqueId);
+            if (ids == null) {
+                return Collections.emptyList();
+            }
+            final List<CachedFolder> result = new ArrayList<>(ids.size());
+            for (String id : ids) {
+                final CachedFolder folder = folders.get(id);
+                if (folder != null) {
+                    result.add(folder);
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets all folders of the hierarchy.
+     *
+     * @return a snapshot of all folders, in no particular order
+     */
+    public List<CachedFolder> getFolders() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(folders.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the number of folders in the hierarchy.
+     *
+     * @return the number of folders
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return folders.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all folders and the sync state, so the next refresh loads the whole hierarchy again.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            folders.clear();
+            children.clear();
+            paths.clear();
+            wellKnownFolders.clear();
+            syncState = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the folders, resolved well-known folder names and the sync state to a stream.
+     *
+     * @param out the stream; it is not closed
+     * @throws IOException if writing fails
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(out);
+        lock.readLock().lock();
+        try {
+            data.writeInt(FORMAT_VERSION);
+            writeString(data, syncState);
+            data.writeInt(wellKnownFolders.size());
+            for (Map.Entry<WellKnownFolderName, String> entry : wellKnownFolders.entrySet()) {
+                writeString(data, entry.getKey().name());
+                writeString(data, entry.getValue());
+            }
+            data.writeInt(folders.size());
+            for (CachedFolder folder : folders.values()) {
+                writeString(data, folder.getUniqueId());
+                writeString(data, folder.getChangeKey());
+                writeString(data, folder.getParentUniqueId());
+                writeString(data, folder.getDisplayName());
+                writeString(data, folder.getFolderClass());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        data.flush();
+    }
+
+    /**
+     * Replaces the content of the cache with what was written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream; it is not closed
+     * @throws IOException if reading fails or the data is not valid
+     */
+    public void readFrom(InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != FORMAT_VERSION) {
+            throw new IOException("unsupported folder hierarchy cache format");
+        }
+        lock.writeLock().lock();
+        try {
+            clear();
+            syncState = readString(data);
+            final int wellKnownCount = data.readInt();
+            for (int i = 0; i < wellKnownCount; i++) {
+                final String name = readString(data);
+                final String uniqueId = readString(data);
+                try {
+                    wellKnownFolders.put(WellKnownFolderName.valueOf(name), uniqueId);
+                } catch (IllegalArgumentException e) {
+                    // a name unknown to this version is resolved again when needed
+                }
+            }
+            final int folderCount = data.readInt();
+            for (int i = 0; i < folderCount; i++) {
+                put(readString(data), readString(data), readString(data), readString(data), readString(data));
+            }
+        } catch (IOException | RuntimeException e) {
+            clear();
+            throw e;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds or updates a folder. Must be called with the write lock held.
+     */
+    void put(String uniqueId, String changeKey, String parentUniqueId, String displayName, String folderClass) {
+        final CachedFolder previous = folders.get(uniqueId);
+        if (previous != null && previous.getParentUniqueId() != null
+                && !previous.getParentUniqueId().equals(parentUniqueId)) {
+            final Set<String> siblings = children.get(previous.getParentUniqueId());
+            if (siblings != null) {
+                siblings.remove(uniqueId);
+            }
+        }
+        if (parentUniqueId != null) {
+            children.computeIfAbsent(parentUniqueId, key -> new LinkedHashSet<>()).add(uniqueId);
+        }
+        final String name = displayName != null ? displayName : "";
+        folders.put(uniqueId, new CachedFolder(uniqueId, changeKey, parentUniqueId, name, folderClass,
+                previous != null ? previous.getPath() : Collections.singletonList(name)));
+        if (previous == null || !name.equals(previous.getDisplayName())
+                || !String.valueOf(parentUniqueId).equals(String.valueOf(previous.getParentUniqueId()))) {
+            updatePaths(uniqueId);
+        }
+    }
+
+    /**
+     * Removes a folder and all its subfolders. Must be called with the write lock held.
+     */
+    void remove(String uniqueId) {
+        final CachedFolder removed = folders.get(uniqueId);
+        if (removed != null && removed.getParentUniqueId() != null) {
+            final Set<String> siblings = children.get(removed.getParentUniqueId());
+            if (siblings != null) {
+                siblings.remove(uniqueId);
+            }
+        }
+        final Deque<String> pending = new ArrayDeque<>();
+        pending.push(uniqueId);
+        while (!pending.isEmpty()) {
+            final String id = pending.pop();
+            final CachedFolder folder = folders.remove(id);
+            if (folder != null) {
+                removePath(folder.getPath(), id);
+            }
+            final Set<String> subfolders = children.remove(id);
+            if (subfolders != null) {
+                subfolders.forEach(pending::push);
+            }
+        }
+        wellKnownFolders.values().removeIf(uniqueId::equals);
+    }
+
+    /**
+     * Recomputes the paths of a folder and all its subfolders.
+     */
+    private void updatePaths(String uniqueId) {
+        final Deque<String> pending = new ArrayDeque<>();
+        pending.push(uniqueId);
+        while (!pending.isEmpty()) {
+            final String id = pending.pop();
+            final CachedFolder folder = folders.get(id);
+            if (folder == null) {
+                continue;
+            }
+            final CachedFolder parent = folder.getParentUniqueId() != null
+                    ? folders.get(folder.getParentUniqueId()) : null;
+            final List<String> path = new ArrayList<>(parent != null ? parent.getPath().size() + 1 : 1);
+            if (parent != null) {
+                path.addAll(parent.getPath());
+            }
+            path.add(folder.getDisplayName());
+            removePath(folder.getPath(), id);
+            folders.put(id, folder.withPath(path));
+            paths.computeIfAbsent(pathKey(path), key -> new LinkedHashSet<>()).add(id);
+            final Set<String> subfolders = children.get(id);
+            if (subfolders != null) {
+                subfolders.forEach(pending::push);
+            }
+        }
+    }
+
+    private void removePath(List<String> path, String uniqueId) {
+        final String key = pathKey(path);
+        final Set<String> uniqueIds = paths.get(key);
+        if (uniqueIds != null && uniqueIds.remove(uniqueId) && uniqueIds.isEmpty()) {
+            paths.remove(key);
+        }
+    }
+
+    private static String pathKey(List<String> path) {
+        return String.join("\n", path).toLowerCase(Locale.ROOT);
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        if (value == null) {
+            data.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        final int length = data.readInt();
+        if (length < 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+/**
+ * Receives the changes of a synchronized folder, one page at a time.
+ * <p>
+ * The sync state of a page is stored only after the handler returned, so a page may be delivered again if
+ * the process stops in between. Handlers should therefore apply changes idempotently.
+ * </p>
+ *
+ * @param <TChange> the type of change
+ */
+public interface ISyncChangeHandler<TChange extends Change> {
+
+    /**
+     * Processes a page of changes.
+     *
+     * @param folderKey the key of the synchronized folder, as used for the sync state store
+     * @param changes   the changes; may be empty
+     * @throws Exception to stop the synchronization without storing the sync state of this page
+     */
+    void handleChanges(String folderKey, ChangeCollection<TChange> changes) throws Exception;
+}
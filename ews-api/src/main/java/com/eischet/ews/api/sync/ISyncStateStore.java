@@ -0,0 +1,66 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import java.io.IOException;
+
+/**
+ * Persists the sync state of synchronized folders, keyed by mailbox and folder.
+ * <p>
+ * Implementations must make {@link #save(String, String, String)} atomic: after a crash, {@link #load(String, String)}
+ * returns either the previous or the new sync state, never a partially written one. Implementations used with
+ * {@link SyncEngine} must be thread-safe.
+ * </p>
+ */
+public interface ISyncStateStore {
+
+    /**
+     * Loads the sync state of a folder.
+     *
+     * @param mailbox the mailbox key, an empty string for the mailbox of the authenticated user
+     * @param folder  the folder key
+     * @return the sync state, or null if the folder has not been synchronized yet
+     * @throws IOException if the store cannot be read
+     */
+    String load(String mailbox, String folder) throws IOException;
+
+    /**
+     * Saves the sync state of a folder, replacing the previous one.
+     *
+     * @param mailbox   the mailbox key, an empty string for the mailbox of the authenticated user
+     * @param folder    the folder key
+     * @param syncState the sync state
+     * @throws IOException if the store cannot be written
+     */
+    void save(String mailbox, String folder, String syncState) throws IOException;
+
+    /**
+     * Removes the sync state of a folder, so that the next synchronization starts from scratch.
+     *
+     * @param mailbox the mailbox key, an empty string for the mailbox of the authenticated user
+     * @param folder  the folder key
+     * @throws IOException if the store cannot be written
+     */
+    void delete(String mailbox, String folder) throws IOException;
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A sync state store that keeps the sync states in memory only, e.g. for tests or short-lived processes.
+ */
+public class InMemorySyncStateStore implements ISyncStateStore {
+
+    private final Map<String, String> states = new ConcurrentHashMap<>();
+
+    @Override
+    public String load(String mailbox, String folder) {
+        return states.get(key(mailbox, folder));
+    }
+
+    @Override
+    public void save(String mailbox, String folder, String syncState) {
+        states.put(key(mailbox, folder), syncState);
+    }
+
+    @Override
+    public void delete(String mailbox, String folder) {
+        states.remove(key(mailbox, folder));
+    }
+
+    /**
+     * Gets the number of stored sync states.
+     *
+     * @return the number of folders with a sync state
+     */
+    public int size() {
+        return states.size();
+    }
+
+    private static String key(String mailbox, String folder) {
+        return mailbox + '\n' + folder;
+    }
+}
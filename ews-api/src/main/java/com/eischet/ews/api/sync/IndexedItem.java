@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.definition.PropertyDefinition;
+
+import java.util.Map;
+
+/**
+ * An immutable snapshot of an item in a {@link LocalItemIndex}: its id, the folder it was synchronized from and
+ * the values of the indexed properties.
+ */
+public final class IndexedItem {
+
+    private final String uniqueId;
+    private final String changeKey;
+    private final String folderKey;
+    private final Map<PropertyDefinition, Integer> positions;
+    private final Object[] values;
+
+    IndexedItem(String uniqueId, String changeKey, String folderKey, Map<PropertyDefinition, Integer> positions,
+                Object[] values) {
+        this.uniqueId = uniqueId;
+        this.changeKey = changeKey;
+        this.folderKey = folderKey;
+        this.positions = positions;
+        this.values = values;
+    }
+
+    /**
+     * Gets the unique id of the item.
+     *
+     * @return the unique id
+     */
+    public String getUniqueId() {
+        return uniqueId;
+    }
+
+    /**
+     * Gets the change key of the item at the time it was last synchronized.
+     *
+     * @return the change key, or null
+     */
+    public String getChangeKey() {
+        return changeKey;
+    }
+
+    /**
+     * Gets the key of the folder the item was synchronized from, as used for the sync state store.
+     *
+     * @return the folder key
+     */
+    public String getFolderKey() {
+        return folderKey;
+    }
+
+    /**
+     * Gets the value of a property.
+     *
+     * @param property the property
+     * @return the value, or null if it is not set or not stored by the index
+     */
+    public Object getValue(PropertyDefinition property) {
+        final Integer position = positions.get(property);
+        return position != null ? values[position] : null;
+    }
+
+    /**
+     * Creates an item id to bind to the item.
+     *
+     * @return a new item id
+     * @throws Exception if the id is invalid
+     */
+    public ItemId toItemId() throws Exception {
+        final ItemId itemId = new ItemId(uniqueId);
+        itemId.setChangeKey(changeKey);
+        return itemId;
+    }
+
+    Object[] getValues() {
+        return values;
+    }
+
+    IndexedItem withValue(int position, Object value) {
+        final Object[] copy = values.clone();
+        copy[position] = value;
+        return new IndexedItem(uniqueId, changeKey, folderKey, positions, copy);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedItem{" + uniqueId + " in " + folderKey + "}";
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.sync;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A page of items found in a {@link LocalItemIndex}, like the results of a FindItem request.
+ */
+public final class IndexedItemsResults implements Iterable<IndexedItem> {
+
+    private final List<IndexedItem> items;
+    private final int totalCount;
+    private final Integer nextPageOffset;
+
+    IndexedItemsResults(List<IndexedItem> items, int totalCount, Integer nextPageOffset) {
+        this.items = List.copyOf(items);
+        this.totalCount = totalCount;
+        this.nextPageOffset = nextPageOffset;
+    }
+
+    /**
+     * Gets the items of the page.
+     *
+     * @return the items
+     */
+    public List<IndexedItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Gets the number of items matching the query, on all pages.
+     *
+     * @return the total count
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Gets the offset of the next page.
+     *
+     * @return the offset, or null if this is the last page
+     */
+    public Integer getNextPageOffset() {
+        return nextPageOffset;
+    }
+
+    /**
+     * Checks whether there are more items after this page.
+     *
+     * @return true if there are more items
+     */
+    public boolean isMoreAvailable() {
+        return nextPageOffset != null;
+    }
+
+    @Override
+    public Iterator<IndexedItem> iterator() {
+        return items.iterator();
+    }
+}
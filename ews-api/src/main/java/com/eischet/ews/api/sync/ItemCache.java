@@ -0,0 +1,292 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.MailboxContext;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.response.GetItemResponse;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.misc.ExpiringLruCache;
+import com.eischet.ews.api.notification.ItemEvent;
+import com.eischet.ews.api.notification.NotificationEvent;
+import com.eischet.ews.api.property.complex.ItemId;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of loaded items, keyed by mailbox context and unique id and validated by ChangeKey.
+ * <p>
+ * Each entry holds the XML of the item as it was loaded, the ChangeKey it had at that time and the property set it
+ * was loaded with. Entries are scoped by the {@link MailboxContext} of the service which loaded them, so a view
+ * acting as another user never sees an item it has not been allowed to load itself. A lookup only hits if the same properties are requested and the entry is known to be current: either the
+ * caller passes the ChangeKey it expects and it matches, or the caller passes no ChangeKey and the cache is told to
+ * trust its invalidations with {@link #setTrustInvalidations(boolean)}. The latter is only safe when every change
+ * of the cached items reaches the cache, i.e. when it is fed by a subscription through
+ * {@link #handleEvents(Iterable)} or by a {@link SyncEngine}, since it is an {@link ISyncChangeHandler} itself.
+ * </p>
+ * <p>
+ * Every hit reads a new item instance bound to the calling service, so callers may modify and update what they get.
+ * Notifications and sync changes remove an item for all mailbox contexts. Instances are thread-safe.
+ * </p>
+ */
+public class ItemCache implements ISyncChangeHandler<ItemChange> {
+
+    private final ExpiringLruCache<Key, Entry> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean trustInvalidations;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param timeToLive  how long an item is kept after it was loaded
+     * @param maximumSize the maximum number of items kept
+     */
+    public ItemCache(Duration timeToLive, int maximumSize) {
+        this.entries = new ExpiringLruCache<>(timeToLive, maximumSize);
+    }
+
+    /**
+     * Gets whether lookups without a ChangeKey are answered from the cache.
+     *
+     * @return true if the cache trusts that it receives all changes of the cached items
+     */
+    public boolean getTrustInvalidations() {
+        return trustInvalidations;
+    }
+
+    /**
+     * Sets whether lookups without a ChangeKey are answered from the cache. Only enable this if the cache is fed
+     * with the notifications or sync changes of all folders the cached items live in.
+     *
+     * @param trustInvalidations true to answer lookups without a ChangeKey from the cache
+     */
+    public void setTrustInvalidations(boolean trustInvalidations) {
+        this.trustInvalidations = trustInvalidations;
+    }
+
+    /**
+     * Gets a cached item, if it is known to be current and was loaded in the mailbox context of the service.
+     *
+     * @param service     the service asking; the item is bound to it
+     * @param itemId      the item id; its ChangeKey, if any, must match the cached one
+     * @param propertySet the properties requested
+     * @return a new instance of the cached item, or null if it has to be loaded
+     * @throws Exception if the cached XML cannot be read
+     */
+    public Item get(ExchangeService service, ItemId itemId, PropertySet propertySet) throws Exception {
+        final String uniqueId = itemId.getUniqueId();
+        final Entry entry = uniqueId != null ? entries.get(new Key(service.getMailboxContext(), uniqueId)) : null;
+        if (entry != null && entry.propertySetKey.equals(propertySet.getCacheKey())) {
+            final String changeKey = itemId.getChangeKey();
+            if (changeKey != null && !changeKey.isEmpty() ? changeKey.equals(entry.changeKey) : trustInvalidations) {
+                hits.incrementAndGet();
+                return GetItemResponse.readItemXml(service, entry.itemXml, propertySet);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a loaded item for the mailbox context of the service which loaded it.
+     *
+     * @param service     the service which loaded the item
+     * @param item        the item
+     * @param itemXml     the XML the item was read from, see {@link GetItemResponse#getItemXml()}
+     * @param propertySet the properties the item was loaded with
+     * @throws ServiceLocalException if the id of the item cannot be read
+     */
+    public void put(ExchangeService service, Item item, byte[] itemXml, PropertySet propertySet)
+            throws ServiceLocalException {
+        final ItemId id = item.getId();
+        if (id == null || id.getUniqueId() == null || itemXml == null) {
+            return;
+        }
+        entries.put(new Key(service.getMailboxContext(), id.getUniqueId()),
+                new Entry(itemXml, id.getChangeKey(), propertySet.getCacheKey()));
+    }
+
+    /**
+     * Removes an item from the cache, for all mailbox contexts.
+     *
+     * @param uniqueId the unique id of the item
+     */
+    public void invalidate(String uniqueId) {
+        if (uniqueId != null) {
+            entries.removeIf(key -> key.uniqueId.equals(uniqueId));
+        }
+    }
+
+    /**
+     * Removes an item from the cache.
+     *
+     * @param itemId the item id
+     */
+    public void invalidate(ItemId itemId) {
+        if (itemId != null) {
+            invalidate(itemId.getUniqueId());
+        }
+    }
+
+    /**
+     * Removes the items affected by a notification. Folder events are ignored.
+     *
+     * @param event the event received from a subscription
+     */
+    public void handleEvent(NotificationEvent event) {
+        if (event instanceof ItemEvent) {
+            final ItemEvent itemEvent = (ItemEvent) event;
+            invalidate(itemEvent.getItemId());
+            invalidate(itemEvent.getOldItemId());
+        }
+    }
+
+    /**
+     * Removes the items affected by notifications, e.g. the events of GetEventsResults or of a streaming
+     * subscription.
+     *
+     * @param events the events
+     */
+    public void handleEvents(Iterable<? extends NotificationEvent> events) {
+        for (NotificationEvent event : events) {
+            handleEvent(event);
+        }
+    }
+
+    /**
+     * Removes the items which were deleted, or changed since they were cached.
+     *
+     * @param folderKey the key of the synchronized folder; not used
+     * @param changes   the changes
+     * @throws Exception if the id of a change cannot be read
+     */
+    @Override
+    public void handleChanges(String folderKey, ChangeCollection<ItemChange> changes) throws Exception {
+        final Set<String> removed = new HashSet<>();
+        final Map<String, String> changeKeys = new HashMap<>();
+        for (ItemChange change : changes) {
+            final ItemId id = change.getItemId();
+            if (id == null || id.getUniqueId() == null) {
+                continue;
+            }
+            switch (change.getChangeType()) {
+                case Create:
+                case Update:
+                    changeKeys.put(id.getUniqueId(), id.getChangeKey());
+                    break;
+                default:
+                    // deleted, or the read flag changed without a new ChangeKey being reported
+                    removed.add(id.getUniqueId());
+                    break;
+            }
+        }
+        if (!removed.isEmpty() || !changeKeys.isEmpty()) {
+            entries.removeEntriesIf((key, entry) -> removed.contains(key.uniqueId)
+                    || changeKeys.containsKey(key.uniqueId)
+                    && !Objects.equals(entry.changeKey, changeKeys.get(key.uniqueId)));
+        }
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups which had to be loaded.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of cached items, including expired ones not purged yet.
+     *
+     * @return the number of items
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    private static final class Key {
+        private final MailboxContext mailboxContext;
+        private final String uniqueId;
+
+        private Key(MailboxContext mailboxContext, String uniqueId) {
+            this.mailboxContext = mailboxContext;
+            this.uniqueId = uniqueId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) o;
+            return mailboxContext.equals(other.mailboxContext) && uniqueId.equals(other.uniqueId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mailboxContext, uniqueId);
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] itemXml;
+        private final String changeKey;
+        private final String propertySetKey;
+
+        private Entry(byte[] itemXml, String changeKey, String propertySetKey) {
+            this.itemXml = itemXml;
+            this.changeKey = changeKey;
+            this.propertySetKey = propertySetKey;
+        }
+    }
+}
@@ -0,0 +1,675 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.property.BasePropertySet;
+import com.eischet.ews.api.core.enumeration.search.LogicalOperator;
+import com.eischet.ews.api.core.enumeration.search.OffsetBasePoint;
+import com.eischet.ews.api.core.enumeration.search.SortDirection;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.core.service.schema.EmailMessageSchema;
+import com.eischet.ews.api.misc.OutParam;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.ServiceId;
+import com.eischet.ews.api.property.definition.PropertyDefinition;
+import com.eischet.ews.api.property.definition.PropertyDefinitionBase;
+import com.eischet.ews.api.search.ItemView;
+import com.eischet.ews.api.search.filter.SearchFilter;
+import com.eischet.ews.api.search.filter.SearchFilterEvaluator;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * A local index over the items of synchronized folders, answering FindItem-style queries without a round trip.
+ * <p>
+ * The index stores the values of a fixed set of properties for each item; synchronize the folders with
+ * {@link #getPropertySet()} and pass the index as handler to {@link SyncEngine#syncFolderItems}, so creations,
+ * updates, deletions and read flag changes are applied as they arrive. Queries are evaluated with
+ * {@link SearchFilterEvaluator}, so they follow the semantics of the server. Hash indexes speed up IsEqualTo
+ * filters and sorted indexes also range filters, on their own or as part of an And or Or collection; other
+ * filters are answered by a scan.
+ * </p>
+ * <p>
+ * The values are kept on the heap in one array per item, and the index is not persisted. Pair it with an
+ * {@link InMemorySyncStateStore}, or another store that is reset together with the index, so the folders are
+ * synchronized from the start when the index is empty. Instances are thread-safe.
+ * </p>
+ */
+public class LocalItemIndex implements ISyncChangeHandler<ItemChange> {
+
+    private final List<PropertyDefinition> properties;
+    private final Map<PropertyDefinition, Integer> positions = new HashMap<>();
+    private final Map<String, IndexedItem> items = new LinkedHashMap<>();
+    private final Map<String, Set<String>> folders = new HashMap<>();
+    private final Map<PropertyDefinition, ValueIndex> indexes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param properties the properties to store for each item; only these can be used in queries
+     */
+    public LocalItemIndex(Collection<? extends PropertyDefinition> properties) {
+        if (properties == null || properties.isEmpty()) {
+            throw new IllegalArgumentException("properties must not be empty");
+        }
+        this.properties = List.copyOf(properties);
+        for (PropertyDefinition property : this.properties) {
+            positions.putIfAbsent(property, positions.size());
+        }
+    }
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param properties the properties to store for each item; only these can be used in queries
+     */
+    public LocalItemIndex(PropertyDefinition... properties) {
+        this(List.of(properties));
+    }
+
+    /**
+     * Gets the property set to synchronize the folders with, so all stored properties are loaded.
+     *
+     * @return a new property set
+     */
+    public PropertySet getPropertySet() {
+        return new PropertySet(BasePropertySet.IdOnly, properties.toArray(new PropertyDefinitionBase[0]));
+    }
+
+    /**
+     * Adds a hash index on a stored property, which answers IsEqualTo filters on it.
+     *
+     * @param property the property
+     */
+    public void addHashIndex(PropertyDefinition property) {
+        addIndex(property, false);
+    }
+
+    /**
+     * Adds a sorted index on a stored property, which answers IsEqualTo as well as IsGreaterThan, IsLessThan
+     * and similar filters on it.
+     *
+     * @param property the property
+     */
+    public void addSortedIndex(PropertyDefinition property) {
+        addIndex(property, true);
+    }
+
+    /**
+     * Applies a page of synchronized changes.
+     *
+     * @param folderKey the key of the synchronized folder
+     * @param changes   the changes
+     * @throws Exception if an id cannot be read
+     */
+    @Override
+    public void handleChanges(String folderKey, ChangeCollection<ItemChange> changes) throws Exception {
+        for (ItemChange change : changes) {
+            switch (change.getChangeType()) {
+                case Create:
+                case Update:
+                    if (change.getItem() != null) {
+                        put(folderKey, change.getItem());
+                    }
+                    break;
+                case Delete:
+                    remove(folderKey, change.getItemId().getUniqueId());
+                    break;
+                case ReadFlagChange:
+                    setRead(change.getItemId().getUniqueId(), change.getIsRead());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces an item.
+     *
+     * @param folderKey the key of the folder the item is in
+     * @param item      the item, loaded with the stored properties
+     * @throws ServiceLocalException if the item has no id
+     */
+    public void put(String folderKey, Item item) throws ServiceLocalException {
+        final ItemId id = item.getId();
+        if (id == null) {
+            throw new IllegalArgumentException("item must have an id");
+        }
+        final Object[] values = new Object[positions.size()];
+        final OutParam<Object> value = new OutParam<>();
+        for (Map.Entry<PropertyDefinition, Integer> position : positions.entrySet()) {
+            if (item.getPropertyBag().tryGetValue(position.getKey(), value)) {
+                values[position.getValue()] = snapshot(value.getParam());
+            }
+        }
+        final IndexedItem indexed = new IndexedItem(id.getUniqueId(), id.getChangeKey(), folderKey, positions,
+                values);
+        lock.writeLock().lock();
+        try {
+            removeEntry(indexed.getUniqueId());
+            addEntry(indexed);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes an item.
+     *
+     * @param uniqueId the unique id of the item
+     * @return true if the item was in the index
+     */
+    public boolean remove(String uniqueId) {
+        lock.writeLock().lock();
+        try {
+            return removeEntry(uniqueId) != null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all items of a folder.
+     *
+     * @param folderKey the key of the folder
+     */
+    public void removeFolder(String folderKey) {
+        lock.writeLock().lock();
+        try {
+            final Set<String> ids = folders.get(folderKey);
+            if (ids != null) {
+                for (String uniqueId : new ArrayList<>(ids)) {
+                    removeEntry(uniqueId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets an item.
+     *
+     * @param uniqueId the unique id of the item
+     * @return the item, or null if it is not in the index
+     */
+    public IndexedItem get(String uniqueId) {
+        lock.readLock().lock();
+        try {
+            return items.get(uniqueId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds items, like FindItem does on the server.
+     *
+     * @param folderKey the key of the folder to search, or null to search all folders
+     * @param filter    the filter, or null to find all items; may only refer to stored properties
+     * @param view      the page to return and its order; the order may only refer to stored properties. Items
+     *                  which are equal in the order are sorted by id.
+     * @return the page of items
+     */
+    public IndexedItemsResults find(String folderKey, SearchFilter filter, ItemView view) {
+        if (view == null) {
+            throw new IllegalArgumentException("view must not be null");
+        }
+        final Predicate<IndexedItem> predicate;
+        if (filter != null) {
+            checkProperties(filter);
+            predicate = SearchFilterEvaluator.compile(filter,
+                    (item, property) -> item.getValue((PropertyDefinition) property));
+        } else {
+            predicate = item -> true;
+        }
+        final Comparator<IndexedItem> order = getOrder(view);
+
+        final List<IndexedItem> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            final Set<String> folder = folderKey != null ? folders.getOrDefault(folderKey, Set.of()) : null;
+            final Set<String> candidates = filter != null ? candidates(filter) : null;
+            if (candidates == null && folder == null) {
+                for (IndexedItem item : items.values()) {
+                    if (predicate.test(item)) {
+                        matches.add(item);
+                    }
+                }
+            } else {
+                final boolean fromCandidates = folder == null || (candidates != null && candidates.size() < folder.size());
+                for (String uniqueId : fromCandidates ? candidates : folder) {
+                    final IndexedItem item = items.get(uniqueId);
+                    if (item != null && (folderKey == null || folderKey.equals(item.getFolderKey()))
+                            && predicate.test(item)) {
+                        matches.add(item);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        matches.sort(order);
+
+        final int total = matches.size();
+        final int from;
+        final int to;
+        if (view.getOffsetBasePoint() == OffsetBasePoint.End) {
+            to = Math.max(0, total - view.getOffset());
+            from = Math.max(0, to - view.getPageSize());
+        } else {
+            from = Math.min(total, view.getOffset());
+            to = Math.min(total, from + view.getPageSize());
+        }
+        final boolean more = view.getOffsetBasePoint() == OffsetBasePoint.End ? from > 0 : to < total;
+        final Integer nextPageOffset = more ? (view.getOffsetBasePoint() == OffsetBasePoint.End
+                ? total - from : to) : null;
+        return new IndexedItemsResults(matches.subList(from, to), total, nextPageOffset);
+    }
+
+    /**
+     * Gets the number of items in the index.
+     *
+     * @return the number of items
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all items.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            items.clear();
+            folders.clear();
+            for (ValueIndex index : indexes.values()) {
+                index.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addIndex(PropertyDefinition property, boolean sorted) {
+        final Integer position = positions.get(property);
+        if (position == null) {
+            throw new IllegalArgumentException(property.getPrintableName() + " is not stored by this index");
+        }
+        lock.writeLock().lock();
+        try {
+            final ValueIndex existing = indexes.get(property);
+            if (existing != null && (existing.sorted || !sorted)) {
+                return;
+            }
+            final ValueIndex index = new ValueIndex(position, sorted);
+            for (IndexedItem item : items.values()) {
+                index.add(item);
+            }
+            indexes.put(property, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setRead(String uniqueId, boolean isRead) {
+        final Integer position = positions.get(EmailMessageSchema.IsRead);
+        if (position == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            final IndexedItem item = removeEntry(uniqueId);
+            if (item != null) {
+                addEntry(item.withValue(position, isRead));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String folderKey, String uniqueId) {
+        lock.writeLock().lock();
+        try {
+            final IndexedItem item = items.get(uniqueId);
+            // an item moved to another folder may already have been synchronized there
+            if (item != null && (folderKey == null || folderKey.equals(item.getFolderKey()))) {
+                removeEntry(uniqueId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addEntry(IndexedItem item) {
+        items.put(item.getUniqueId(), item);
+        folders.computeIfAbsent(item.getFolderKey(), key -> new HashSet<>()).add(item.getUniqueId());
+        for (ValueIndex index : indexes.values()) {
+            index.add(item);
+        }
+    }
+
+    private IndexedItem removeEntry(String uniqueId) {
+        final IndexedItem item = items.remove(uniqueId);
+        if (item != null) {
+            final Set<String> folder = folders.get(item.getFolderKey());
+            if (folder != null) {
+                folder.remove(uniqueId);
+                if (folder.isEmpty()) {
+                    folders.remove(item.getFolderKey());
+                }
+            }
+            for (ValueIndex index : indexes.values()) {
+                index.remove(item);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Gets the ids of the items which may match a filter, using the indexes.
+     *
+     * @return the candidates, or null if the indexes cannot narrow the filter down
+     */
+    private Set<String> candidates(SearchFilter filter) {
+        if (filter instanceof SearchFilter.SearchFilterCollection) {
+            final SearchFilter.SearchFilterCollection collection = (SearchFilter.SearchFilterCollection) filter;
+            Set<String> result = null;
+            if (collection.getLogicalOperator() == LogicalOperator.Or) {
+                result = new HashSet<>();
+                for (SearchFilter operand : collection) {
+                    final Set<String> candidates = candidates(operand);
+                    if (candidates == null) {
+                        return null;
+                    }
+                    result.addAll(candidates);
+                }
+                return result;
+            }
+            for (SearchFilter operand : collection) {
+                final Set<String> candidates = candidates(operand);
+                if (candidates != null && (result == null || candidates.size() < result.size())) {
+                    result = candidates;
+                }
+            }
+            return result;
+        }
+        if (!(filter instanceof SearchFilter.RelationalFilter)) {
+            return null;
+        }
+        final SearchFilter.RelationalFilter relational = (SearchFilter.RelationalFilter) filter;
+        final ValueIndex index = indexes.get(relational.getPropertyDefinition());
+        if (index == null || relational.getOtherPropertyDefinition() != null) {
+            return null;
+        }
+        final Object key = indexKey(relational.getValue());
+        if (key == null || !index.canLookUp(key)) {
+            return null;
+        }
+        if (filter instanceof SearchFilter.IsEqualTo) {
+            return index.get(key);
+        } else if (!index.sorted) {
+            return null;
+        } else if (filter instanceof SearchFilter.IsGreaterThan) {
+            return index.range(key, false, null, false);
+        } else if (filter instanceof SearchFilter.IsGreaterThanOrEqualTo) {
+            return index.range(key, true, null, false);
+        } else if (filter instanceof SearchFilter.IsLessThan) {
+            return index.range(null, false, key, false);
+        } else if (filter instanceof SearchFilter.IsLessThanOrEqualTo) {
+            return index.range(null, false, key, true);
+        }
+        return null;
+    }
+
+    private void checkProperties(SearchFilter filter) {
+        if (filter instanceof SearchFilter.SearchFilterCollection) {
+            for (SearchFilter operand : (SearchFilter.SearchFilterCollection) filter) {
+                checkProperties(operand);
+            }
+        } else if (filter instanceof SearchFilter.Not) {
+            if (((SearchFilter.Not) filter).getSearchFilter() != null) {
+                checkProperties(((SearchFilter.Not) filter).getSearchFilter());
+            }
+        } else if (filter instanceof SearchFilter.PropertyBasedFilter) {
+            checkStored(((SearchFilter.PropertyBasedFilter) filter).getPropertyDefinition());
+            if (filter instanceof SearchFilter.RelationalFilter
+                    && ((SearchFilter.RelationalFilter) filter).getOtherPropertyDefinition() != null) {
+                checkStored(((SearchFilter.RelationalFilter) filter).getOtherPropertyDefinition());
+            }
+        }
+    }
+
+    private void checkStored(PropertyDefinitionBase property) {
+        if (property != null && !positions.containsKey(property)) {
+            throw new IllegalArgumentException(property.getPrintableName() + " is not stored by this index");
+        }
+    }
+
+    private Comparator<IndexedItem> getOrder(ItemView view) {
+        Comparator<IndexedItem> order = null;
+        for (Map<PropertyDefinitionBase, SortDirection> orderBy : view.getOrderBy()) {
+            for (Map.Entry<PropertyDefinitionBase, SortDirection> entry : orderBy.entrySet()) {
+                checkStored(entry.getKey());
+                final int position = positions.get(entry.getKey());
+                Comparator<Object> values = Comparator.nullsLast(LocalItemIndex::compareKeys);
+                if (entry.getValue() == SortDirection.Descending) {
+                    values = Comparator.nullsLast(values.reversed());
+                }
+                final Comparator<IndexedItem> next = Comparator.comparing(
+                        item -> indexKey(firstValue(item.getValues()[position])), values);
+                order = order == null ? next : order.thenComparing(next);
+            }
+        }
+        // ties are broken by id, so the pages of a result do not overlap even though the candidates are unordered
+        final Comparator<IndexedItem> byId = Comparator.comparing(IndexedItem::getUniqueId);
+        return order == null ? byId : order.thenComparing(byId);
+    }
+
+    /**
+     * Copies multi-valued properties, so later changes to the item do not affect the index.
+     */
+    private static Object snapshot(Object value) {
+        if (value instanceof Iterable) {
+            final List<Object> copy = new ArrayList<>();
+            for (Object element : (Iterable<?>) value) {
+                if (element != null) {
+                    copy.add(element);
+                }
+            }
+            return List.copyOf(copy);
+        }
+        if (value != null && value.getClass().isArray() && !(value instanceof byte[])) {
+            final List<Object> copy = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (Array.get(value, i) != null) {
+                    copy.add(Array.get(value, i));
+                }
+            }
+            return List.copyOf(copy);
+        }
+        return value;
+    }
+
+    private static Object firstValue(Object value) {
+        if (value instanceof List) {
+            return ((List<?>) value).isEmpty() ? null : ((List<?>) value).get(0);
+        }
+        return value;
+    }
+
+    /**
+     * Gets the key a value is indexed by. Keys are equal exactly when {@link SearchFilterEvaluator} considers the
+     * values equal: numbers by value, strings ignoring case, ids by their unique id.
+     *
+     * @return the key, or null if the value cannot be indexed
+     */
+    static Object indexKey(Object value) {
+        final Object scalar = SearchFilterEvaluator.toScalar(value);
+        if (scalar instanceof Number) {
+            try {
+                return new BigDecimal(scalar.toString()).stripTrailingZeros();
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        if (scalar instanceof String) {
+            final String text = (String) scalar;
+            final StringBuilder folded = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                // the same folding as String.CASE_INSENSITIVE_ORDER
+                folded.append(Character.toLowerCase(Character.toUpperCase(text.charAt(i))));
+            }
+            return folded.toString();
+        }
+        if (scalar instanceof Comparable || scalar instanceof ServiceId) {
+            return scalar;
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compareKeys(Object left, Object right) {
+        if (left.getClass() != right.getClass() || !(left instanceof Comparable)) {
+            return left.getClass().getName().compareTo(right.getClass().getName());
+        }
+        return ((Comparable<Object>) left).compareTo(right);
+    }
+
+    /**
+     * A hash or sorted index of the values of one property.
+     */
+    private static final class ValueIndex {
+
+        private final int position;
+        private final boolean sorted;
+        private final Map<Object, Set<String>> keys;
+        private Class<?> keyClass;
+        private boolean complete = true;
+
+        ValueIndex(int position, boolean sorted) {
+            this.position = position;
+            this.sorted = sorted;
+            this.keys = sorted ? new TreeMap<>(LocalItemIndex::compareKeys) : new HashMap<>();
+        }
+
+        void add(IndexedItem item) {
+            for (Object key : keysOf(item)) {
+                if (key == null || (keyClass != null && key.getClass() != keyClass)
+                        || (sorted && !(key instanceof Comparable))) {
+                    // the index can no longer find all items with a value, so it is not used any more
+                    complete = false;
+                    continue;
+                }
+                keyClass = key.getClass();
+                keys.computeIfAbsent(key, k -> new HashSet<>()).add(item.getUniqueId());
+            }
+        }
+
+        void remove(IndexedItem item) {
+            for (Object key : keysOf(item)) {
+                if (key == null) {
+                    continue;
+                }
+                final Set<String> ids = keys.get(key);
+                if (ids != null && key.getClass() == keyClass) {
+                    ids.remove(item.getUniqueId());
+                    if (ids.isEmpty()) {
+                        keys.remove(key);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            keys.clear();
+            keyClass = null;
+            complete = true;
+        }
+
+        boolean canLookUp(Object key) {
+            return complete && (keyClass == null || key.getClass() == keyClass);
+        }
+
+        Set<String> get(Object key) {
+            final Set<String> ids = keys.get(key);
+            return ids != null ? new HashSet<>(ids) : new HashSet<>();
+        }
+
+        Set<String> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            NavigableMap<Object, Set<String>> range = (NavigableMap<Object, Set<String>>) keys;
+            if (from != null) {
+                range = range.tailMap(from, fromInclusive);
+            }
+            if (to != null) {
+                range = range.headMap(to, toInclusive);
+            }
+            final Set<String> result = new HashSet<>();
+            for (Set<String> ids : range.values()) {
+                result.addAll(ids);
+            }
+            return result;
+        }
+
+        private List<Object> keysOf(IndexedItem item) {
+            final Object value = item.getValues()[position];
+            if (value == null) {
+                return List.of();
+            }
+            final List<Object> result = new ArrayList<>();
+            if (value instanceof List) {
+                for (Object element : (List<?>) value) {
+                    result.add(indexKey(element));
+                }
+            } else {
+                result.add(indexKey(value));
+            }
+            return result;
+        }
+    }
+}
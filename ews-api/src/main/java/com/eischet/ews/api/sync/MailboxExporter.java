@@ -0,0 +1,444 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.SyncFolderItemsScope;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.misc.ParallelExecution;
+import com.eischet.ews.api.misc.ServerBusyRetrier;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.property.complex.ItemId;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Exports the items of a mailbox as MIME files, one directory per folder.
+ * <p>
+ * The folder hierarchy is loaded with a {@link FolderHierarchyCache}. The items of each folder are enumerated with
+ * SyncFolderItems through a {@link SyncEngine}, one page of ids at a time. Each page is split into batches whose
+ * MIME content is fetched concurrently with {@link ExchangeService#writeMimeContents} and streamed straight into
+ * files, so memory use does not depend on the size of the messages. The sync state of a folder is stored in the
+ * checkpoint store once all items of a page are on disk, so an interrupted export resumes with the next page, and
+ * running the export again later only writes the items created or changed since.
+ * </p>
+ * <p>
+ * Each item is written to a file named after a hash of its unique id, first to a temporary file which is then
+ * renamed, so a file either holds a complete message or does not exist. Changed items overwrite their file;
+ * deleted items are not removed from the export, and items deleted before they are fetched are skipped. Items the
+ * server is busy with are retried after a pause; if the server stays busy, the export stops, so it can be resumed
+ * later. If any other item of a page fails, the page is not checkpointed and the export of the folder stops, so
+ * the page is fetched again by the next run; {@link #exportMailbox(FolderId)} goes on with the next folder.
+ * </p>
+ */
+public class MailboxExporter implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(MailboxExporter.class.getCanonicalName());
+
+    /**
+     * The number of items fetched with one GetItem request when none is given.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * The extension of the exported files.
+     */
+    public static final String FILE_EXTENSION = ".eml";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final ExchangeService service;
+    private final SyncEngine engine;
+    private final Path directory;
+    private final AtomicLong exportedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final ServerBusyRetrier retrier = new ServerBusyRetrier("GetItem");
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    private volatile int concurrency;
+    private volatile Predicate<CachedFolder> folderFilter = folder -> true;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service     the service to export from
+     * @param checkpoints the store for the sync state of each exported folder; use one store per export target,
+     *                    since the folders are keyed like for {@link SyncEngine}
+     * @param directory   the directory the folder directories are created in
+     */
+    public MailboxExporter(ExchangeService service, ISyncStateStore checkpoints, Path directory) {
+        if (service == null || checkpoints == null || directory == null) {
+            throw new IllegalArgumentException("service, checkpoints and directory must not be null");
+        }
+        this.service = service;
+        this.engine = new SyncEngine(service, checkpoints, 1);
+        this.directory = directory;
+        this.concurrency = Math.max(1, service.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Gets the number of items fetched with one GetItem request.
+     *
+     * @return the batch size
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of items fetched with one GetItem request.
+     *
+     * @param batchSize the batch size, at least 1
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the maximum number of GetItem requests running at the same time.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the maximum number of GetItem requests running at the same time. The default is the maximum number of
+     * concurrent requests of the service.
+     *
+     * @param concurrency the concurrency, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Gets the number of times items are retried after the server reported that it is busy.
+     *
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries() {
+        return retrier.getMaxRetries();
+    }
+
+    /**
+     * Sets the number of times items are retried after the server reported that it is busy.
+     *
+     * @param maxRetries the maximum number of retries, 0 to stop at the first busy error
+     */
+    public void setMaxRetries(int maxRetries) {
+        retrier.setMaxRetries(maxRetries);
+    }
+
+    /**
+     * Sets which folders {@link #exportMailbox(FolderId)} exports. By default all folders are exported.
+     *
+     * @param folderFilter the filter
+     */
+    public void setFolderFilter(Predicate<CachedFolder> folderFilter) {
+        this.folderFilter = folderFilter != null ? folderFilter : folder -> true;
+    }
+
+    /**
+     * Exports all folders below a root folder, each into the directory given by
+     * {@link #getFolderDirectories(Collection)}.
+     *
+     * @param rootFolderId the root folder, e.g. the well-known MsgFolderRoot, or null for the root of the mailbox
+     * @return the number of items written
+     * @throws Exception if loading the hierarchy fails, the server stays busy or writing files fails
+     */
+    public long exportMailbox(FolderId rootFolderId) throws Exception {
+        final FolderHierarchyCache hierarchy = new FolderHierarchyCache(service, rootFolderId);
+        hierarchy.refresh();
+        final List<CachedFolder> folders = hierarchy.getFolders();
+        final Map<String, Path> directories = getFolderDirectories(folders);
+        long count = 0;
+        for (CachedFolder folder : folders) {
+            if (!folderFilter.test(folder)) {
+                continue;
+            }
+            try {
+                count += exportFolder(folder.toFolderId(), directories.get(folder.getUniqueId()));
+            } catch (ServiceResponseException e) {
+                if (e.getErrorCode() == ServiceError.ErrorServerBusy) {
+                    throw e;
+                }
+                LOG.log(Level.WARNING, "cannot export folder " + folder, e);
+            } catch (ServiceLocalException e) {
+                LOG.log(Level.WARNING, "cannot export folder " + folder, e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Exports the items of a folder, continuing from its last checkpoint.
+     *
+     * @param folderId the folder
+     * @param target   the directory the files are written to; it is created if necessary
+     * @return the number of items written
+     * @throws Exception if a request or writing files fails, the server stays busy, or items of a page failed;
+     *                   pages written completely stay checkpointed
+     */
+    public long exportFolder(FolderId folderId, Path target) throws Exception {
+        Files.createDirectories(target);
+        final AtomicLong count = new AtomicLong();
+        engine.syncFolderItems(folderId, PropertySet.IdOnly, SyncEngine.DEFAULT_MAX_CHANGES_RETURNED,
+                SyncFolderItemsScope.NormalItems, (folderKey, changes) -> count.addAndGet(exportChanges(changes, target)));
+        return count.get();
+    }
+
+    /**
+     * Gets the directory a folder is exported to: the display names of its path, with characters that are not
+     * allowed in file names replaced. Folders whose names only differ by case or by replaced characters get the
+     * same directory; use {@link #getFolderDirectories(Collection)} for the folders of a whole hierarchy.
+     *
+     * @param folder the folder
+     * @return the directory
+     */
+    public Path getFolderDirectory(CachedFolder folder) {
+        Path result = directory;
+        for (String name : folder.getPath()) {
+            result = result.resolve(toFileName(name));
+        }
+        return result;
+    }
+
+    /**
+     * Gets the directories the folders of a hierarchy are exported to, which are unique even on file systems which
+     * ignore case. Like {@link #getFolderDirectory(CachedFolder)}, but where sibling folders end up with the same
+     * name, all but the one with the lowest unique id get a suffix derived from their unique id, so the directory
+     * of a folder stays the same from one export to the next.
+     *
+     * @param folders the folders of the hierarchy
+     * @return the directory by the unique id of the folder
+     */
+    public Map<String, Path> getFolderDirectories(Collection<CachedFolder> folders) {
+        final List<CachedFolder> sorted = new ArrayList<>(folders);
+        sorted.sort(Comparator.<CachedFolder>comparingInt(folder -> folder.getPath().size())
+                .thenComparing(CachedFolder::getUniqueId));
+        final Map<String, Path> directories = new HashMap<>();
+        final Set<String> used = new HashSet<>();
+        for (CachedFolder folder : sorted) {
+            Path parent = directories.get(folder.getParentUniqueId());
+            if (parent == null) {
+                parent = getFolderDirectory(folder).getParent();
+            }
+            String name = toFileName(folder.getDisplayName());
+            if (!used.add(parent.resolve(name).toString().toLowerCase(Locale.ROOT))) {
+                name = name + "~" + getFileName(folder.getUniqueId()).substring(0, 8);
+                used.add(parent.resolve(name).toString().toLowerCase(Locale.ROOT));
+            }
+            directories.put(folder.getUniqueId(), parent.resolve(name));
+        }
+        return directories;
+    }
+
+    /**
+     * Gets the name of the file an item is exported to.
+     *
+     * @param uniqueId the unique id of the item
+     * @return the file name
+     */
+    public static String getFileName(String uniqueId) {
+        try {
+            final byte[] hash = MessageDigest.getInstance("SHA-1").digest(uniqueId.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder name = new StringBuilder(hash.length * 2 + FILE_EXTENSION.length());
+            for (byte b : hash) {
+                name.append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+            }
+            return name.append(FILE_EXTENSION).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the number of items written since this instance was created.
+     *
+     * @return the exported count
+     */
+    public long getExportedCount() {
+        return exportedCount.get();
+    }
+
+    /**
+     * Gets the number of items which could not be exported since this instance was created.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Releases the worker threads.
+     */
+    @Override
+    public void close() {
+        engine.close();
+    }
+
+    private long exportChanges(ChangeCollection<ItemChange> changes, Path target) throws Exception {
+        final List<ItemId> itemIds = new ArrayList<>();
+        for (ItemChange change : changes) {
+            switch (change.getChangeType()) {
+                case Create:
+                case Update:
+                    itemIds.add(change.getItemId());
+                    break;
+                default:
+                    break;
+            }
+        }
+        final int size = batchSize;
+        final List<Callable<List<Boolean>>> tasks = new ArrayList<>();
+        for (int start = 0; start < itemIds.size(); start += size) {
+            final List<ItemId> batch = itemIds.subList(start, Math.min(itemIds.size(), start + size));
+            tasks.add(() -> exportBatch(service.forMailbox(service.getMailboxContext()), batch, target));
+        }
+        long count = 0;
+        int failed = 0;
+        for (List<Boolean> batch : ParallelExecution.invokeAll(tasks, concurrency)) {
+            for (Boolean written : batch) {
+                if (written == null) {
+                    failed++;
+                } else if (written) {
+                    count++;
+                }
+            }
+        }
+        if (failed > 0) {
+            // the sync state is not stored, so the next export fetches the page again
+            throw new ServiceLocalException(failed + " items could not be exported to " + target
+                    + ", the page is exported again next time");
+        }
+        return count;
+    }
+
+    /**
+     * Exports a batch of items.
+     *
+     * @return per item, true if it was written, false if it no longer exists, or null if it failed
+     */
+    private List<Boolean> exportBatch(ExchangeService view, List<ItemId> batch, Path target) throws Exception {
+        // the temporary files of the items of the last attempt, until they are moved
+        final Map<ItemId, Path> temporaryFiles = new IdentityHashMap<>();
+        final AtomicReference<ServiceResponseException> busy = new AtomicReference<>();
+        try {
+            final List<Boolean> results = retrier.execute(batch, ids -> {
+                try {
+                    return view.writeMimeContents(ids, (itemIndex, characterSet) -> {
+                        final Path file = Files.createTempFile(target, ".export-", ".tmp");
+                        temporaryFiles.put(ids.get(itemIndex), file);
+                        return new BufferedOutputStream(Files.newOutputStream(file));
+                    });
+                } catch (ServiceResponseException e) {
+                    busy.set(e);
+                    throw e;
+                }
+            }, (itemId, position, response, errorCode, errorMessage) -> {
+                final Path file = temporaryFiles.remove(itemId);
+                if (errorCode == null && errorMessage == null && file != null) {
+                    move(file, target.resolve(getFileName(itemId.getUniqueId())));
+                    return true;
+                }
+                if (errorCode == ServiceError.ErrorItemNotFound) {
+                    return false;
+                }
+                if (errorCode == ServiceError.ErrorServerBusy) {
+                    // still busy after all retries: stop, so the export can be resumed later
+                    throw response != null ? new ServiceResponseException(response) : busy.get();
+                }
+                failedCount.incrementAndGet();
+                LOG.warning("cannot export item " + itemId.getUniqueId() + ": " + errorCode + " " + errorMessage);
+                return null;
+            });
+            for (Boolean written : results) {
+                if (Boolean.TRUE.equals(written)) {
+                    exportedCount.incrementAndGet();
+                }
+            }
+            return results;
+        } finally {
+            for (Path file : temporaryFiles.values()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String toFileName(String displayName) {
+        final StringBuilder name = new StringBuilder(displayName.length());
+        for (int i = 0; i < displayName.length(); i++) {
+            final char c = displayName.charAt(i);
+            name.append(c < 0x20 || "\\/:*?\"<>|".indexOf(c) >= 0 ? '_' : c);
+        }
+        while (name.length() > 0 && (name.charAt(name.length() - 1) == '.' || name.charAt(name.length() - 1) == ' ')) {
+            name.setLength(name.length() - 1);
+        }
+        return name.length() > 0 ? name.toString() : "_";
+    }
+}
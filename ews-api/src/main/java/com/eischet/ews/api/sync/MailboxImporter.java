@@ -0,0 +1,503 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.property.MapiPropertyType;
+import com.eischet.ews.api.core.enumeration.service.MessageDisposition;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.misc.ParallelExecution;
+import com.eischet.ews.api.misc.ServerBusyRetrier;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.MimeContent;
+import com.eischet.ews.api.property.definition.ExtendedPropertyDefinition;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Imports MIME files into a folder as email messages.
+ * <p>
+ * The files are grouped into batches bounded by both the number of messages and their total size, and each batch
+ * is created with a single CreateItem request. The content of the files is base64 encoded while the request is
+ * written (see {@link MimeContent#MimeContent(String, Path)}), so a message is never held in memory as a whole
+ * beyond what the transport buffers. Batches run concurrently on per-thread views of the service.
+ * </p>
+ * <p>
+ * When the server reports that it is busy, all batches pause for the back off time it asks for (or an
+ * exponentially growing delay if it gives none), and the affected messages are retried. The outcome of every
+ * message is returned as an {@link ImportResult}; if a journal file is set, it is also appended to that file as
+ * soon as its batch is done, and files recorded there as imported are skipped, so an interrupted import can simply
+ * be run again.
+ * </p>
+ * <p>
+ * MIME has no read state, so the messages are created as read unless {@link #setMarkAsRead(boolean)} says
+ * otherwise.
+ * </p>
+ */
+public class MailboxImporter implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(MailboxImporter.class.getCanonicalName());
+
+    /**
+     * The maximum number of messages created with one CreateItem request when none is given.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+    /**
+     * The maximum total size of the MIME files in one CreateItem request when none is given. Base64 adds a third
+     * on top of this.
+     */
+    public static final long DEFAULT_MAX_BATCH_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * The number of times messages are retried after the server reported that it is busy, when none is given.
+     */
+    public static final int DEFAULT_MAX_RETRIES = ServerBusyRetrier.DEFAULT_MAX_RETRIES;
+
+    /**
+     * PidTagMessageFlags; without it, messages created from MIME show up as unsent drafts. Setting it clears
+     * MSGFLAG_UNSENT.
+     */
+    static final ExtendedPropertyDefinition MESSAGE_FLAGS = new ExtendedPropertyDefinition(0x0E07,
+            MapiPropertyType.Integer);
+
+    /**
+     * The MSGFLAG_READ value of PidTagMessageFlags.
+     */
+    private static final int MESSAGE_FLAG_READ = 0x1;
+
+    private static final String JOURNAL_OK = "OK";
+    private static final String JOURNAL_FAILED = "FAILED";
+
+    private final ExchangeService service;
+    private final AtomicLong importedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final Set<String> journaled = Collections.synchronizedSet(new HashSet<>());
+    private final ServerBusyRetrier retrier = new ServerBusyRetrier("CreateItem");
+    private volatile int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private volatile long maxBatchBytes = DEFAULT_MAX_BATCH_BYTES;
+    private volatile int concurrency;
+    private volatile String characterSet;
+    private volatile boolean markAsRead = true;
+    private BufferedWriter journal;
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service the service to import into
+     */
+    public MailboxImporter(ExchangeService service) {
+        if (service == null) {
+            throw new IllegalArgumentException("service must not be null");
+        }
+        this.service = service;
+        this.concurrency = Math.max(1, service.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Gets the maximum number of messages created with one CreateItem request.
+     *
+     * @return the maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of messages created with one CreateItem request.
+     *
+     * @param maxBatchSize the maximum batch size, at least 1
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be at least 1");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Gets the maximum total size of the files imported with one CreateItem request.
+     *
+     * @return the maximum batch size in bytes
+     */
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * Sets the maximum total size of the files imported with one CreateItem request. A file larger than this is
+     * imported with a request of its own. Keep the encoded request below the maximum request size of the server.
+     *
+     * @param maxBatchBytes the maximum batch size in bytes, at least 1
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("maxBatchBytes must be at least 1");
+        }
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    /**
+     * Gets the number of times messages are retried after the server reported that it is busy.
+     *
+     * @return the maximum number of retries
+     */
+    public int getMaxRetries() {
+        return retrier.getMaxRetries();
+    }
+
+    /**
+     * Sets the number of times messages are retried after the server reported that it is busy.
+     *
+     * @param maxRetries the maximum number of retries, 0 to not retry
+     */
+    public void setMaxRetries(int maxRetries) {
+        retrier.setMaxRetries(maxRetries);
+    }
+
+    /**
+     * Gets the maximum number of CreateItem requests running at the same time.
+     *
+     * @return the concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Sets the maximum number of CreateItem requests running at the same time. The default is the maximum number
+     * of concurrent requests of the service.
+     *
+     * @param concurrency the concurrency, at least 1
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be at least 1");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the character set sent with the MIME content.
+     *
+     * @param characterSet the character set, or null to let the server use the one declared in the messages
+     */
+    public void setCharacterSet(String characterSet) {
+        this.characterSet = characterSet;
+    }
+
+    /**
+     * Gets whether the messages are created as read.
+     *
+     * @return true if the messages are marked as read
+     */
+    public boolean getMarkAsRead() {
+        return markAsRead;
+    }
+
+    /**
+     * Sets whether the messages are created as read. The default is true, since most imports restore messages
+     * which have been read already; use false to import them as unread.
+     *
+     * @param markAsRead true to mark the messages as read
+     */
+    public void setMarkAsRead(boolean markAsRead) {
+        this.markAsRead = markAsRead;
+    }
+
+    /**
+     * Sets the journal file the outcome of each message is appended to. Files recorded in an existing journal as
+     * imported are skipped by later imports; failed ones are tried again.
+     *
+     * @param file the journal file; it is created if it does not exist
+     * @throws IOException if the journal cannot be read or opened
+     */
+    public synchronized void setJournal(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file must not be null");
+        }
+        closeJournal();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                final String[] fields = line.split("\t", 3);
+                if (fields.length >= 2 && JOURNAL_OK.equals(fields[0])) {
+                    journaled.add(fields[1]);
+                }
+            }
+        }
+        journal = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Imports all files with the extension {@link MailboxExporter#FILE_EXTENSION} in a directory, in the order of
+     * their names.
+     *
+     * @param directory      the directory
+     * @param parentFolderId the folder the messages are created in
+     * @return the outcome of each file that was not already imported according to the journal
+     * @throws Exception if the directory cannot be listed or the journal cannot be written
+     */
+    public List<ImportResult> importDirectory(Path directory, FolderId parentFolderId) throws Exception {
+        final List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + MailboxExporter.FILE_EXTENSION)) {
+            for (Path file : stream) {
+                if (Files.isRegularFile(file)) {
+                    files.add(file);
+                }
+            }
+        }
+        Collections.sort(files);
+        return importFiles(files, parentFolderId);
+    }
+
+    /**
+     * Imports MIME files as email messages.
+     *
+     * @param files          the files
+     * @param parentFolderId the folder the messages are created in
+     * @return the outcome of each file that was not already imported according to the journal, in the order of
+     * the files
+     * @throws Exception if the journal cannot be written
+     */
+    public List<ImportResult> importFiles(List<Path> files, FolderId parentFolderId) throws Exception {
+        if (files == null || parentFolderId == null) {
+            throw new IllegalArgumentException("files and parentFolderId must not be null");
+        }
+        final List<Callable<List<ImportResult>>> tasks = new ArrayList<>();
+        final List<ImportResult> unreadable = new ArrayList<>();
+        List<Path> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (Path file : files) {
+            if (journaled.contains(file.toString())) {
+                continue;
+            }
+            final long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                unreadable.add(record(new ImportResult(file, null, null, e.toString())));
+                continue;
+            }
+            if (!batch.isEmpty() && (batch.size() >= maxBatchSize || batchBytes + size > maxBatchBytes)) {
+                tasks.add(newTask(batch, parentFolderId));
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(file);
+            batchBytes += size;
+        }
+        if (!batch.isEmpty()) {
+            tasks.add(newTask(batch, parentFolderId));
+        }
+        final List<ImportResult> results = new ArrayList<>(unreadable);
+        flushJournal();
+        for (List<ImportResult> batchResults : ParallelExecution.invokeAll(tasks, concurrency)) {
+            results.addAll(batchResults);
+        }
+        return results;
+    }
+
+    /**
+     * Gets the number of messages created since this instance was created.
+     *
+     * @return the imported count
+     */
+    public long getImportedCount() {
+        return importedCount.get();
+    }
+
+    /**
+     * Gets the number of files which could not be imported since this instance was created.
+     *
+     * @return the failed count
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Closes the journal.
+     *
+     * @throws IOException if the journal cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closeJournal();
+    }
+
+    private Callable<List<ImportResult>> newTask(List<Path> batch, FolderId parentFolderId) {
+        return () -> importBatch(service.forMailbox(service.getMailboxContext()), batch, parentFolderId);
+    }
+
+    private List<ImportResult> importBatch(ExchangeService view, List<Path> batch, FolderId parentFolderId)
+            throws Exception {
+        // the messages of the last attempt, which receive the ids of the created items
+        final List<Item> items = new ArrayList<>();
+        final int messageFlags = markAsRead ? MESSAGE_FLAG_READ : 0;
+        final List<ImportResult> results = retrier.execute(batch, files -> {
+            items.clear();
+            for (Path file : files) {
+                final EmailMessage message = new EmailMessage(view);
+                message.setMimeContent(new MimeContent(characterSet, file));
+                message.setExtendedProperty(MESSAGE_FLAGS, messageFlags);
+                items.add(message);
+            }
+            return view.createItems(items, parentFolderId, MessageDisposition.SaveOnly, null);
+        }, (file, position, response, errorCode, errorMessage) -> new ImportResult(file,
+                errorCode == null && errorMessage == null ? items.get(position).getId() : null, errorCode,
+                errorMessage));
+        for (ImportResult result : results) {
+            record(result);
+        }
+        // the created messages must be in the journal before anything else happens, or a rerun creates them again
+        flushJournal();
+        return results;
+    }
+
+    private ImportResult record(ImportResult result) throws IOException {
+        if (result.isSuccess()) {
+            importedCount.incrementAndGet();
+        } else {
+            failedCount.incrementAndGet();
+            LOG.warning("cannot import " + result.getFile() + ": " + result.getErrorCode() + " "
+                    + result.getErrorMessage());
+        }
+        synchronized (this) {
+            if (journal != null) {
+                final String detail = result.isSuccess()
+                        ? (result.getItemId() != null ? result.getItemId().getUniqueId() : "")
+                        : result.getErrorCode() + " " + result.getErrorMessage();
+                journal.write((result.isSuccess() ? JOURNAL_OK : JOURNAL_FAILED) + "\t" + result.getFile() + "\t"
+                        + detail.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+                journal.newLine();
+            }
+        }
+        if (result.isSuccess()) {
+            journaled.add(result.getFile().toString());
+        }
+        return result;
+    }
+
+    private synchronized void flushJournal() throws IOException {
+        if (journal != null) {
+            journal.flush();
+        }
+    }
+
+    private void closeJournal() throws IOException {
+        if (journal != null) {
+            try {
+                journal.close();
+            } finally {
+                journal = null;
+            }
+        }
+    }
+
+    /**
+     * The outcome of importing one file.
+     */
+    public static final class ImportResult {
+
+        private final Path file;
+        private final ItemId itemId;
+        private final ServiceError errorCode;
+        private final String errorMessage;
+
+        ImportResult(Path file, ItemId itemId, ServiceError errorCode, String errorMessage) {
+            this.file = file;
+            this.itemId = itemId;
+            this.errorCode = errorCode;
+            this.errorMessage = errorMessage;
+        }
+
+        /**
+         * Gets the imported file.
+         *
+         * @return the file
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Gets the id of the created message.
+         *
+         * @return the item id, or null if the import failed
+         */
+        public ItemId getItemId() {
+            return itemId;
+        }
+
+        /**
+         * Gets the error reported by the server.
+         *
+         * @return the error code, or null if the import succeeded or failed locally
+         */
+        public ServiceError getErrorCode() {
+            return errorCode;
+        }
+
+        /**
+         * Gets the error message.
+         *
+         * @return the message, or null if the import succeeded
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+
+        /**
+         * Checks whether the message was created.
+         *
+         * @return true on success
+         */
+        public boolean isSuccess() {
+            return errorCode == null && errorMessage == null;
+        }
+
+        @Override
+        public String toString() {
+            return file + (isSuccess() ? ": OK" : ": " + errorCode + " " + errorMessage);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.MailboxContext;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.SyncFolderItemsScope;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.misc.ImpersonatedUserId;
+import com.eischet.ews.api.property.complex.FolderId;
+
+import java.io.Closeable;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Runs SyncFolderItems and SyncFolderHierarchy to completion and persists the sync state after every page.
+ * <p>
+ * Each synchronization loads the last sync state of the folder from an {@link ISyncStateStore}, requests pages of
+ * changes until the server reports no more changes, hands every page to an {@link ISyncChangeHandler} and then
+ * stores the new sync state. A restarted process therefore continues from the last completed page instead of
+ * synchronizing the folder from scratch. If the server rejects a stored sync state as invalid, it is discarded
+ * and the folder is synchronized from scratch.
+ * </p>
+ * <p>
+ * Sync states are stored by the unique id of the folder. A well-known folder name is resolved to the id with one
+ * GetFolder request per mailbox the first time it is used, so a folder referenced by name and by id shares one
+ * sync state, and, once the name has been resolved, one pending synchronization. The submit methods resolve names
+ * in the worker thread.
+ * </p>
+ * <p>
+ * Many folders can be synchronized concurrently with the submit methods, which run at most the configured number
+ * of synchronizations at a time. A folder that is already queued or running is not queued again; the pending
+ * future is returned instead. Each concurrent synchronization uses its own view of the service created with
+ * {@link ExchangeService#forMailbox(MailboxContext)}, so the service passed in is never used by two threads.
+ * </p>
+ */
+public class SyncEngine implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(SyncEngine.class.getCanonicalName());
+
+    /**
+     * The page size used when none is given; the maximum allowed by Exchange is 512.
+     */
+    public static final int DEFAULT_MAX_CHANGES_RETURNED = 512;
+
+    private static final String HIERARCHY_PREFIX = "hierarchy:";
+    private static final String ROOT_FOLDER_KEY = "root";
+
+    private final ExchangeService service;
+    private final ISyncStateStore store;
+    private final ExecutorService executor;
+    private final Map<String, Future<Integer>> pending = new ConcurrentHashMap<>();
+    private final Map<String, String> wellKnownFolderIds = new ConcurrentHashMap<>();
+
+    /**
+     * Initializes a new instance.
+     *
+     * @param service            the service to synchronize with
+     * @param store              the store for sync states
+     * @param maxConcurrentSyncs the maximum number of folders synchronized at the same time
+     */
+    public SyncEngine(ExchangeService service, ISyncStateStore store, int maxConcurrentSyncs) {
+        if (service == null || store == null) {
+            throw new IllegalArgumentException("service and store must not be null");
+        }
+        if (maxConcurrentSyncs < 1) {
+            throw new IllegalArgumentException("maxConcurrentSyncs must be at least 1");
+        }
+        this.service = service;
+        this.store = store;
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxConcurrentSyncs, runnable -> {
+            final Thread thread = new Thread(runnable, "ews-sync-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the sync state store.
+     *
+     * @return the store
+     */
+    public ISyncStateStore getStore() {
+        return store;
+    }
+
+    /**
+     * Synchronizes the items of a folder in the calling thread until no more changes are available.
+     *
+     * @param folderId           the folder to synchronize
+     * @param propertySet        the properties to return for changed items
+     * @param maxChangesReturned the page size, at most 512
+     * @param syncScope          the sync scope
+     * @param handler            the handler receiving each page of changes
+     * @return the number of changes processed
+     * @throws Exception if a request or the handler fails; sync states of completed pages are kept
+     */
+    public int syncFolderItems(FolderId folderId, PropertySet propertySet, int maxChangesReturned,
+                               SyncFolderItemsScope syncScope, ISyncChangeHandler<ItemChange> handler)
+            throws Exception {
+        return syncFolderItems(service, folderId, propertySet, maxChangesReturned, syncScope, handler);
+    }
+
+    /**
+     * Queues the synchronization of the items of a folder.
+     *
+     * @param folderId           the folder to synchronize
+     * @param propertySet        the properties to return for changed items
+     * @param maxChangesReturned the page size, at most 512
+     * @param syncScope          the sync scope
+     * @param handler            the handler receiving each page of changes; called from a worker thread
+     * @return a future for the number of changes processed
+     */
+    public Future<Integer> submitFolderItems(final FolderId folderId, final PropertySet propertySet,
+                                             final int maxChangesReturned, final SyncFolderItemsScope syncScope,
+                                             final ISyncChangeHandler<ItemChange> handler) {
+        return submit(getMailboxKey(folderId), getResolvedFolderKey(folderId), () -> syncFolderItems(
+                service.forMailbox(service.getMailboxContext()), folderId, propertySet, maxChangesReturned,
+                syncScope, handler));
+    }
+
+    /**
+     * Synchronizes the folder hierarchy below a folder in the calling thread until no more changes are available.
+     *
+     * @param folderId    the root of the hierarchy, or null for the root of the mailbox
+     * @param propertySet the properties to return for changed folders
+     * @param handler     the handler receiving each page of changes
+     * @return the number of changes processed
+     * @throws Exception if a request or the handler fails; sync states of completed pages are kept
+     */
+    public int syncFolderHierarchy(FolderId folderId, PropertySet propertySet,
+                                   ISyncChangeHandler<FolderChange> handler) throws Exception {
+        return syncFolderHierarchy(service, folderId, propertySet, handler);
+    }
+
+    /**
+     * Queues the synchronization of the folder hierarchy below a folder.
+     *
+     * @param folderId    the root of the hierarchy, or null for the root of the mailbox
+     * @param propertySet the properties to return for changed folders
+     * @param handler     the handler receiving each page of changes; called from a worker thread
+     * @return a future for the number of changes processed
+     */
+    public Future<Integer> submitFolderHierarchy(final FolderId folderId, final PropertySet propertySet,
+                                                 final ISyncChangeHandler<FolderChange> handler) {
+        final String folder = HIERARCHY_PREFIX + getResolvedFolderKey(folderId);
+        return submit(getMailboxKey(folderId), folder, () -> syncFolderHierarchy(
+                service.forMailbox(service.getMailboxContext()), folderId, propertySet, handler));
+    }
+
+    /**
+     * Gets the number of synchronizations that are queued or running.
+     *
+     * @return the number of pending synchronizations
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Stops the worker threads. Running synchronizations are interrupted; their completed pages stay stored.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the key under which the sync state of a folder's mailbox is stored: the mailbox of the folder id if
+     * it has one, otherwise the impersonated user or anchor mailbox of the service, otherwise an empty string.
+     *
+     * @param folderId the folder id, or null for the root folder
+     * @return the mailbox key
+     */
+    public String getMailboxKey(FolderId folderId) {
+        if (folderId != null && folderId.getMailbox() != null && folderId.getMailbox().getAddress() != null) {
+            return folderId.getMailbox().getAddress().toLowerCase(Locale.ROOT);
+        }
+        final MailboxContext context = service.getMailboxContext();
+        final ImpersonatedUserId impersonatedUserId = context.getImpersonatedUserId();
+        if (impersonatedUserId != null && impersonatedUserId.getId() != null) {
+            return impersonatedUserId.getId().toLowerCase(Locale.ROOT);
+        }
+        if (context.getAnchorMailbox() != null) {
+            return context.getAnchorMailbox().toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    /**
+     * Gets the key under which the sync state of a folder is stored: its unique id. Well-known folder names are
+     * resolved to the id with a GetFolder request the first time they are used in a mailbox.
+     *
+     * @param folderId the folder id, or null for the root folder
+     * @return the folder key
+     * @throws Exception if a well-known folder cannot be resolved
+     */
+    public String resolveFolderKey(FolderId folderId) throws Exception {
+        return resolveFolderKey(service, folderId);
+    }
+
+    /**
+     * Gets the key of a folder without resolving well-known folder names: the unique id, or the well-known
+     * folder name for well-known folders.
+     *
+     * @param folderId the folder id, or null for the root folder
+     * @return the folder key
+     */
+    public static String getFolderKey(FolderId folderId) {
+        if (folderId == null) {
+            return ROOT_FOLDER_KEY;
+        }
+        if (folderId.getFolderName() != null) {
+            return folderId.getFolderName().name();
+        }
+        return folderId.getUniqueId();
+    }
+
+    /**
+     * Gets the key of a folder without sending a request: the unique id if a well-known name has been resolved
+     * before, otherwise the key of {@link #getFolderKey(FolderId)}.
+     */
+    private String getResolvedFolderKey(FolderId folderId) {
+        if (folderId == null || folderId.getFolderName() == null) {
+            return getFolderKey(folderId);
+        }
+        final String uniqueId = wellKnownFolderIds.get(getMailboxKey(folderId) + '\n'
+                + folderId.getFolderName().name());
+        return uniqueId != null ? uniqueId : getFolderKey(folderId);
+    }
+
+    private String resolveFolderKey(ExchangeService service, FolderId folderId) throws Exception {
+        if (folderId == null || folderId.getFolderName() == null) {
+            return getFolderKey(folderId);
+        }
+        final String key = getMailboxKey(folderId) + '\n' + folderId.getFolderName().name();
+        String uniqueId = wellKnownFolderIds.get(key);
+        if (uniqueId == null) {
+            uniqueId = service.bindToFolder(folderId, PropertySet.IdOnly).getId().getUniqueId();
+            wellKnownFolderIds.put(key, uniqueId);
+        }
+        return uniqueId;
+    }
+
+    private Future<Integer> submit(String mailbox, String folder, Callable<Integer> sync) {
+        final String key = mailbox + '\n' + folder;
+        final FutureTask<Integer> task = new FutureTask<Integer>(sync) {
+            @Override
+            protected void done() {
+                pending.remove(key, this);
+            }
+        };
+        final Future<Integer> existing = pending.putIfAbsent(key, task);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(task);
+        } catch (RuntimeException e) {
+            pending.remove(key, task);
+            throw e;
+        }
+        return task;
+    }
+
+    private int syncFolderItems(ExchangeService service, FolderId folderId, PropertySet propertySet,
+                                int maxChangesReturned, SyncFolderItemsScope syncScope,
+                                ISyncChangeHandler<ItemChange> handler) throws Exception {
+        final String mailbox = getMailboxKey(folderId);
+        final String folder = resolveFolderKey(service, folderId);
+        return run(mailbox, folder, handler,
+                syncState -> service.syncFolderItems(folderId, propertySet, null, maxChangesReturned, syncScope,
+                        syncState));
+    }
+
+    private int syncFolderHierarchy(ExchangeService service, FolderId folderId, PropertySet propertySet,
+                                    ISyncChangeHandler<FolderChange> handler) throws Exception {
+        final String mailbox = getMailboxKey(folderId);
+        final String folder = HIERARCHY_PREFIX + resolveFolderKey(service, folderId);
+        return run(mailbox, folder, handler,
+                syncState -> service.syncFolderHierarchy(folderId, propertySet, syncState));
+    }
+
+    private interface PageRequest<TChange extends Change> {
+        ChangeCollection<TChange> next(String syncState) throws Exception;
+    }
+
+    private <TChange extends Change> int run(String mailbox, String folder, ISyncChangeHandler<TChange> handler,
+                                             PageRequest<TChange> request) throws Exception {
+        String syncState = store.load(mailbox, folder);
+        boolean restarted = false;
+        int count = 0;
+        while (true) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("synchronization of " + folder + " was interrupted");
+            }
+            final ChangeCollection<TChange> changes;
+            try {
+                changes = request.next(syncState);
+            } catch (ServiceResponseException e) {
+                if (e.getErrorCode() != ServiceError.ErrorInvalidSyncStateData || syncState == null || restarted) {
+                    throw e;
+                }
+                LOG.warning("sync state of " + folder + " in mailbox '" + mailbox
+                        + "' was rejected, synchronizing from scratch");
+                store.delete(mailbox, folder);
+                syncState = null;
+                restarted = true;
+                continue;
+            }
+            handler.handleChanges(folder, changes);
+            count += changes.getCount();
+            if (changes.getSyncState() != null) {
+                syncState = changes.getSyncState();
+                store.save(mailbox, folder, syncState);
+            }
+            if (!changes.getMoreChangesAvailable()) {
+                return count;
+            }
+        }
+    }
+}
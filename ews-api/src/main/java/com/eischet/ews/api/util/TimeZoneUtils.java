@@ -23,9 +23,12 @@
 
 package com.eischet.ews.api.util;
 
+import java.time.DateTimeException;
+import java.time.ZoneId;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.TreeMap;
 
 /**
  * Miscellany timezone functions
@@ -35,6 +38,9 @@ public final class TimeZoneUtils {
     // A map of olson name > Microsoft Name.
     private static final Map<String, String> olsonTimeZoneToMs = createOlsonTimeZoneToMsMap();
 
+    // A map of Microsoft name > one Olson name with the same rules.
+    private static final Map<String, String> msTimeZoneToOlson = createMsToOlsonTimeZoneMap();
+
 
     private TimeZoneUtils() {
         throw new UnsupportedOperationException();
@@ -56,6 +62,36 @@ public final class TimeZoneUtils {
         return olsonTimeZoneToMs.get(id);
     }
 
+    /**
+     * Convert a Microsoft TimeZone identifier to a Java time zone. Several Olson zones map to the same
+     * Microsoft zone; one of them is returned, preferring region zones over Etc/ zones.
+     *
+     * @param microsoftTimeZoneName a microsoft timezone identifier (ala Eastern Standard Time)
+     * @return the Java time zone, or null if the identifier is unknown
+     */
+    public static ZoneId getZoneIdForMicrosoftTimeZoneName(final String microsoftTimeZoneName) {
+        final String olsonId = microsoftTimeZoneName != null ? msTimeZoneToOlson.get(microsoftTimeZoneName) : null;
+        return olsonId != null ? ZoneId.of(olsonId) : null;
+    }
+
+    private static Map<String, String> createMsToOlsonTimeZoneMap() {
+        final Map<String, String> map = new HashMap<String, String>();
+        // iterate in a stable order, so the chosen zone does not depend on hashing
+        for (Map.Entry<String, String> entry : new TreeMap<String, String>(olsonTimeZoneToMs).entrySet()) {
+            final String current = map.get(entry.getValue());
+            if (current != null && !(current.startsWith("Etc/") && !entry.getKey().startsWith("Etc/"))) {
+                continue;
+            }
+            try {
+                ZoneId.of(entry.getKey());
+                map.put(entry.getValue(), entry.getKey());
+            } catch (DateTimeException e) {
+                // not known to this JVM
+            }
+        }
+        return map;
+    }
+
     // TODO: Still Missing Europe/Kirov, America/Nuuk, Europe/Ulyanovsk,
     public static Map<String, String> createOlsonTimeZoneToMsMap() {
         final Map<String, String> map = new HashMap<String, String>();
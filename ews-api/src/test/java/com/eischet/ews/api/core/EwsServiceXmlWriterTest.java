@@ -0,0 +1,96 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.BaseTest;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Base64;
+import java.util.Random;
+
+public class EwsServiceXmlWriterTest extends BaseTest {
+
+    @Test
+    public void testStreamIsEncodedInChunks() throws Exception {
+        byte[] data = randomBytes(500_001);
+        String xml = write(writer -> Assert.assertEquals(data.length,
+                writer.writeBase64ElementValue(new ByteArrayInputStream(data))));
+        Assert.assertArrayEquals(data, decode(xml));
+    }
+
+    @Test
+    public void testMappedAndBufferedFilesAreEncodedAlike() throws Exception {
+        for (int length : new int[]{10_000, (int) EwsServiceXmlWriter.MAPPED_FILE_THRESHOLD + 12_345}) {
+            byte[] data = randomBytes(length);
+            Path file = Files.createTempFile("attachment", ".bin");
+            try {
+                Files.write(file, data);
+                String fromChannel;
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    fromChannel = write(writer -> Assert.assertEquals(length, writer.writeBase64ElementValue(channel)));
+                    Assert.assertEquals(length, channel.position());
+                }
+                String fromStream = write(writer -> writer.writeBase64ElementValue(new ByteArrayInputStream(data)));
+
+                Assert.assertEquals(fromStream, fromChannel);
+                Assert.assertArrayEquals(data, decode(fromChannel));
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private interface WriterAction {
+        void write(EwsServiceXmlWriter writer) throws Exception;
+    }
+
+    private String write(WriterAction action) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EwsServiceXmlWriter writer = new EwsServiceXmlWriter(exchangeServiceMock, output);
+        writer.writeStartElement(XmlNamespace.NotSpecified, "Content");
+        action.write(writer);
+        writer.writeEndElement();
+        writer.flush();
+        return output.toString(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] decode(String xml) {
+        String value = xml.substring(xml.indexOf('>') + 1, xml.lastIndexOf('<')).replace("&#xd;", "\r");
+        return Base64.getMimeDecoder().decode(value);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
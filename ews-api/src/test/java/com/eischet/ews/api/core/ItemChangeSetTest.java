@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.property.BodyType;
+import com.eischet.ews.api.core.enumeration.property.MapiPropertyType;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.core.service.schema.EmailMessageSchema;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.EmailAddress;
+import com.eischet.ews.api.property.complex.EmailAddressCollection;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.MessageBody;
+import com.eischet.ews.api.property.complex.StringList;
+import com.eischet.ews.api.property.definition.ExtendedPropertyDefinition;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ItemChangeSetTest {
+
+    @Test
+    public void testUpdatesAreWrittenLikeThoseOfAnItem() throws Exception {
+        ExchangeService service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+        ExtendedPropertyDefinition retentionFlags = new ExtendedPropertyDefinition(0x301D, MapiPropertyType.Integer);
+
+        EmailMessage message = new EmailMessage(service);
+        message.getPropertyBag().getProperties().put(ItemSchema.Id, new ItemId("AAMk"));
+        message.setCategories(new StringList(List.of("Retention", "Q&A")));
+        message.setIsRead(true);
+        message.setExtendedProperty(retentionFlags, 7);
+        message.getPropertyBag().setObjectFromPropertyDefinition(ItemSchema.InReplyTo, null);
+        String expected = write(service, writer -> message.getPropertyBag().writeToXmlForUpdate(writer));
+
+        ItemChangeSet changes = new ItemChangeSet(EmailMessage.class)
+                .set(ItemSchema.Categories, new StringList(List.of("Retention", "Q&A")))
+                .set(EmailMessageSchema.IsRead, true)
+                .set(retentionFlags, 7)
+                .delete(ItemSchema.InReplyTo);
+        WriterAction itemChange = writer -> {
+            writer.writeStartElement(XmlNamespace.Types, XmlElementNames.ItemChange);
+            new ItemId("AAMk").writeToXml(writer);
+            changes.writeUpdatesToXml(writer);
+            writer.writeEndElement();
+        };
+        assertEquals(expected, write(service, itemChange));
+        // the second item reuses the serialized updates
+        assertEquals(expected, write(service, itemChange));
+    }
+
+    @Test
+    public void testExtendedPropertiesCanBeDeleted() throws Exception {
+        ExchangeService service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+        ItemChangeSet changes = new ItemChangeSet()
+                .delete(new ExtendedPropertyDefinition(0x301D, MapiPropertyType.Integer));
+        String xml = write(service, changes::writeUpdatesToXml);
+        assertTrue(xml, xml.contains("<t:Updates><t:DeleteItemField><t:ExtendedFieldURI PropertyTag=\"12317\""));
+    }
+
+    @Test
+    public void testEquality() throws Exception {
+        ItemChangeSet changes = new ItemChangeSet().set(ItemSchema.Categories, new StringList(List.of("A")))
+                .set(ItemSchema.Subject, "x");
+        assertEquals(changes, new ItemChangeSet().set(ItemSchema.Categories, new StringList(List.of("A")))
+                .set(ItemSchema.Subject, "x"));
+        assertEquals(changes.hashCode(), new ItemChangeSet().set(ItemSchema.Categories, new StringList(List.of("A")))
+                .set(ItemSchema.Subject, "x").hashCode());
+        assertNotEquals(changes, new ItemChangeSet().set(ItemSchema.Categories, new StringList(List.of("B")))
+                .set(ItemSchema.Subject, "x"));
+        assertNotEquals(changes, new ItemChangeSet(EmailMessage.class)
+                .set(ItemSchema.Categories, new StringList(List.of("A"))).set(ItemSchema.Subject, "x"));
+        try {
+            new ItemChangeSet().set(ItemSchema.DateTimeReceived, "2024-01-01T00:00:00Z");
+            fail("read-only properties cannot be changed");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testComplexValuesAreComparedByTheirXml() throws Exception {
+        ItemChangeSet changes = new ItemChangeSet(EmailMessage.class)
+                .set(ItemSchema.Body, new MessageBody(BodyType.HTML, "<p>moved</p>"))
+                .set(EmailMessageSchema.From, new EmailAddress("Archive", "archive@example.com"))
+                .set(EmailMessageSchema.ToRecipients, new EmailAddressCollection());
+        ItemChangeSet same = new ItemChangeSet(EmailMessage.class)
+                .set(ItemSchema.Body, new MessageBody(BodyType.HTML, "<p>moved</p>"))
+                .set(EmailMessageSchema.From, new EmailAddress("Archive", "archive@example.com"))
+                .set(EmailMessageSchema.ToRecipients, new EmailAddressCollection());
+        assertEquals(changes, same);
+        assertEquals(changes.hashCode(), same.hashCode());
+        assertNotEquals(changes, new ItemChangeSet(EmailMessage.class)
+                .set(ItemSchema.Body, new MessageBody(BodyType.Text, "<p>moved</p>"))
+                .set(EmailMessageSchema.From, new EmailAddress("Archive", "archive@example.com"))
+                .set(EmailMessageSchema.ToRecipients, new EmailAddressCollection()));
+    }
+
+    @Test
+    public void testValuesAreCopiedWhenSet() throws Exception {
+        ExchangeService service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+        StringList categories = new StringList(List.of("Retention"));
+        ItemChangeSet changes = new ItemChangeSet().set(ItemSchema.Categories, categories);
+        String expected = write(service, changes::writeUpdatesToXml);
+
+        categories.add("Changed");
+        assertEquals(expected, write(service, changes::writeUpdatesToXml));
+        assertEquals(new ItemChangeSet().set(ItemSchema.Categories, new StringList(List.of("Retention"))), changes);
+        assertNotSame(categories, changes.getChanges().get(ItemSchema.Categories));
+    }
+
+    private interface WriterAction {
+        void write(EwsServiceXmlWriter writer) throws Exception;
+    }
+
+    private static String write(ExchangeService service, WriterAction action) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, output);
+        writer.writeStartElement(XmlNamespace.Messages, XmlElementNames.ItemChanges);
+        action.write(writer);
+        writer.writeEndElement();
+        writer.flush();
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
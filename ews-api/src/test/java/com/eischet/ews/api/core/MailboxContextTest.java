@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.EWSConstants;
+import com.eischet.ews.api.core.enumeration.misc.ConnectingIdType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.net.URI;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class MailboxContextTest {
+
+    @Test
+    public void testForMailboxSharesSettings() throws Exception {
+        ExchangeService service = new ExchangeService(null);
+        service.setUrl(new URI("https://example.com/EWS/Exchange.asmx"));
+        service.getHttpHeaders().put("X-Custom", "1");
+
+        ExchangeService mailbox = service.forMailbox(MailboxContext.forSmtpAddress("user@example.com")
+                .withPreferredCulture(Locale.GERMANY));
+
+        assertEquals(service.getUrl(), mailbox.getUrl());
+        assertSame(service.getHttpHeaders(), mailbox.getHttpHeaders());
+        assertEquals(ConnectingIdType.SmtpAddress, mailbox.getImpersonatedUserId().getIdType());
+        assertEquals("user@example.com", mailbox.getImpersonatedUserId().getId());
+        assertEquals(Locale.GERMANY, mailbox.getPreferredCulture());
+        assertNull(service.getImpersonatedUserId());
+    }
+
+    @Test
+    public void testAnchorMailboxHeaderIsNotShared() {
+        ExchangeService service = new ExchangeService(null);
+        service.getHttpHeaders().put("X-Custom", "1");
+
+        ExchangeService mailbox = service.forMailbox(MailboxContext.forSmtpAddress("user@example.com"));
+
+        assertEquals("user@example.com", mailbox.getRequestHttpHeaders().get(EWSConstants.ANCHOR_MAILBOX_HEADER));
+        assertEquals("1", mailbox.getRequestHttpHeaders().get("X-Custom"));
+        assertFalse(service.getHttpHeaders().containsKey(EWSConstants.ANCHOR_MAILBOX_HEADER));
+        assertFalse(service.getRequestHttpHeaders().containsKey(EWSConstants.ANCHOR_MAILBOX_HEADER));
+    }
+
+    @Test
+    public void testContextIsImmutable() {
+        MailboxContext context = MailboxContext.forSmtpAddress("user@example.com");
+        context.getImpersonatedUserId().setId("other@example.com");
+
+        assertEquals("user@example.com", context.getImpersonatedUserId().getId());
+        assertEquals(context, MailboxContext.forSmtpAddress("user@example.com"));
+    }
+}
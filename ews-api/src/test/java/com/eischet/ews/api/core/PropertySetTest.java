@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core;
+
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.property.BasePropertySet;
+import com.eischet.ews.api.core.enumeration.property.BodyType;
+import com.eischet.ews.api.core.enumeration.property.DefaultExtendedPropertySet;
+import com.eischet.ews.api.core.enumeration.property.MapiPropertyType;
+import com.eischet.ews.api.core.enumeration.service.ServiceObjectType;
+import com.eischet.ews.api.core.service.schema.AppointmentSchema;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.definition.ExtendedPropertyDefinition;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class PropertySetTest {
+
+    private static final UUID PROPERTY_SET_ID = UUID.fromString("00062008-0000-0000-C000-000000000046");
+
+    @Test
+    public void testReadOnlyPropertySetIsSerializedLikeMutableOne() throws Exception {
+        PropertySet mutable = new PropertySet(BasePropertySet.IdOnly, ItemSchema.Subject, AppointmentSchema.StartTimeZone,
+                retentionTag(MapiPropertyType.String), new ExtendedPropertyDefinition(DefaultExtendedPropertySet.Common, 0x8514,
+                MapiPropertyType.Boolean));
+        mutable.setRequestedBodyType(BodyType.Text);
+        mutable.setConvertHtmlCodePageToUTF8(true);
+        PropertySet frozen = mutable.freeze();
+
+        for (ExchangeVersion version : new ExchangeVersion[]{ExchangeVersion.Exchange2007_SP1,
+                ExchangeVersion.Exchange2010_SP2}) {
+            ExchangeService service = new ExchangeService(null, version);
+            for (ServiceObjectType type : new ServiceObjectType[]{ServiceObjectType.Item, ServiceObjectType.Folder}) {
+                String expected = write(service, mutable, type);
+                assertEquals(expected, write(service, frozen, type));
+                // the second request uses the cached shape
+                assertEquals(expected, write(service, frozen, type));
+            }
+        }
+        assertTrue(write(new ExchangeService(null, ExchangeVersion.Exchange2007_SP1), frozen, ServiceObjectType.Item)
+                .contains("MeetingTimeZone"));
+        assertTrue(write(new ExchangeService(null, ExchangeVersion.Exchange2010_SP2), frozen, ServiceObjectType.Item)
+                .contains("RetentionTag &amp; Policy"));
+    }
+
+    @Test
+    public void testFreeze() throws Exception {
+        PropertySet mutable = new PropertySet(BasePropertySet.FirstClassProperties, ItemSchema.Subject);
+        PropertySet frozen = mutable.freeze();
+        assertTrue(frozen.isReadOnly());
+        assertFalse(mutable.isReadOnly());
+        assertSame(frozen, frozen.freeze());
+        assertEquals(mutable.getCacheKey(), frozen.getCacheKey());
+        try {
+            frozen.add(ItemSchema.Size);
+            fail("read-only property sets cannot be changed");
+        } catch (UnsupportedOperationException expected) {
+        }
+        mutable.add(ItemSchema.Size);
+        assertFalse(frozen.contains(ItemSchema.Size));
+    }
+
+    @Test
+    public void testExtendedPropertyDefinitionEquality() throws Exception {
+        ExtendedPropertyDefinition retentionTag = retentionTag(MapiPropertyType.String);
+        ExtendedPropertyDefinition same = retentionTag(MapiPropertyType.String);
+        assertEquals(retentionTag, same);
+        assertEquals(retentionTag.hashCode(), same.hashCode());
+        assertEquals(retentionTag.getPrintableName(), same.getPrintableName());
+        assertNotEquals(retentionTag, retentionTag(MapiPropertyType.Integer));
+        assertTrue(new PropertySet(retentionTag).freeze().contains(same));
+    }
+
+    private static ExtendedPropertyDefinition retentionTag(MapiPropertyType type) throws Exception {
+        return new ExtendedPropertyDefinition(PROPERTY_SET_ID, "RetentionTag & Policy", type);
+    }
+
+    private static String write(ExchangeService service, PropertySet propertySet, ServiceObjectType type)
+            throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        EwsServiceXmlWriter writer = new EwsServiceXmlWriter(service, output);
+        writer.writeStartElement(XmlNamespace.Messages, "GetItem");
+        propertySet.writeToXml(writer, type);
+        writer.writeElementValue(XmlNamespace.Messages, "After", "x");
+        writer.writeEndElement();
+        writer.flush();
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core.response;
+
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.EwsUtilities;
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.availability.FreeBusyViewType;
+import com.eischet.ews.api.core.enumeration.property.LegacyFreeBusyStatus;
+import com.eischet.ews.api.misc.availability.AttendeeInfo;
+import com.eischet.ews.api.misc.availability.AvailabilityOptions;
+import com.eischet.ews.api.misc.availability.FreeBusyCache;
+import com.eischet.ews.api.misc.availability.TimeWindow;
+import com.eischet.ews.api.property.complex.availability.CalendarEvent;
+import com.eischet.ews.api.security.XmlNodeType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class AttendeeAvailabilityTest {
+
+    private static final String MEETING = "2022-02-11T23:00:00|2022-02-12T01:00:00|Busy";
+    private static final String LUNCH = "2022-02-11T12:00:00|2022-02-11T13:00:00|Busy";
+    private static final String BREAKFAST = "2022-02-12T08:00:00|2022-02-12T09:00:00|Tentative";
+
+    @Test
+    public void testOnlyEventsCrossingTheBoundaryAreMergedOnce() throws Exception {
+        // two distinct lunches with the same times in the first window, and two meetings crossing the boundary
+        AttendeeAvailability first = availability(LUNCH, LUNCH, MEETING, MEETING);
+        AttendeeAvailability second = availability(MEETING, MEETING, BREAKFAST);
+
+        AttendeeAvailability merged = AttendeeAvailability.merge(List.of(first, second));
+        assertEquals(List.of(LUNCH, LUNCH, MEETING, MEETING, BREAKFAST), keys(merged));
+    }
+
+    @Test
+    public void testEventsSpanningSeveralWindowsAreMergedOnce() throws Exception {
+        AttendeeAvailability merged = AttendeeAvailability.merge(List.of(availability(LUNCH, MEETING),
+                availability(MEETING), availability(MEETING, BREAKFAST)));
+        assertEquals(List.of(LUNCH, MEETING, BREAKFAST), keys(merged));
+    }
+
+    @Test
+    public void testFreeBusyCacheReturnsCopies() throws Exception {
+        FreeBusyCache cache = new FreeBusyCache(Duration.ofMinutes(1), 10);
+        AttendeeInfo attendee = new AttendeeInfo("user@example.com");
+        TimeWindow window = new TimeWindow(LocalDateTime.of(2022, 2, 11, 0, 0), LocalDateTime.of(2022, 2, 13, 0, 0));
+        AvailabilityOptions options = new AvailabilityOptions();
+        AttendeeAvailability stored = availability(LUNCH);
+        cache.put(attendee, window, options, stored);
+        stored.getCalendarEvents().clear();
+
+        AttendeeAvailability cached = cache.get(attendee, window, options);
+        assertEquals(List.of(LUNCH), keys(cached));
+        cached.getCalendarEvents().clear();
+        cached.getMergedFreeBusyStatus().add(LegacyFreeBusyStatus.OOF);
+        assertEquals(List.of(LUNCH), keys(cache.get(attendee, window, options)));
+        assertTrue(cache.get(attendee, window, options).getMergedFreeBusyStatus().isEmpty());
+    }
+
+    /**
+     * Reads a FreeBusy view with events given as start|end|status.
+     */
+    private static AttendeeAvailability availability(String... events) throws Exception {
+        StringBuilder xml = new StringBuilder("<m:FreeBusyView xmlns:m=\"" + EwsUtilities.EwsMessagesNamespace
+                + "\" xmlns:t=\"" + EwsUtilities.EwsTypesNamespace + "\"><t:FreeBusyViewType>FreeBusy"
+                + "</t:FreeBusyViewType><t:CalendarEventArray>");
+        for (String event : events) {
+            String[] fields = event.split("\\|");
+            xml.append("<t:CalendarEvent><t:StartTime>").append(fields[0]).append("</t:StartTime><t:EndTime>")
+                    .append(fields[1]).append("</t:EndTime><t:BusyType>").append(fields[2])
+                    .append("</t:BusyType></t:CalendarEvent>");
+        }
+        xml.append("</t:CalendarEventArray></m:FreeBusyView>");
+        EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)), new ExchangeService(null));
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        AttendeeAvailability availability = ServiceResponses.success(new AttendeeAvailability());
+        availability.loadFreeBusyViewFromXml(reader, FreeBusyViewType.FreeBusy);
+        return availability;
+    }
+
+    private static List<String> keys(AttendeeAvailability availability) {
+        List<String> keys = new ArrayList<>();
+        for (CalendarEvent event : availability.getCalendarEvents()) {
+            keys.add(event.getStartTime() + ":00|" + event.getEndTime() + ":00|" + event.getFreeBusyStatus());
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.core.response;
+
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.misc.id.AlternateIdBase;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Canned service responses for tests which mock the requests of an ExchangeService.
+ */
+public final class ServiceResponses {
+
+    private ServiceResponses() {
+    }
+
+    /**
+     * Marks a response as successful.
+     *
+     * @param response the response
+     * @param <T>      the type of the response
+     * @return the response
+     */
+    public static <T extends ServiceResponse> T success(T response) {
+        response.setOutcome(ServiceResult.Success, null, null, Collections.emptyMap());
+        return response;
+    }
+
+    /**
+     * Creates a successful response.
+     *
+     * @return the response
+     */
+    public static ServiceResponse success() {
+        return success(new ServiceResponse());
+    }
+
+    /**
+     * Marks a response as failed.
+     *
+     * @param response  the response
+     * @param errorCode the error
+     * @param <T>       the type of the response
+     * @return the response
+     */
+    public static <T extends ServiceResponse> T error(T response, ServiceError errorCode) {
+        response.setOutcome(ServiceResult.Error, errorCode, null, Collections.emptyMap());
+        return response;
+    }
+
+    /**
+     * Marks a response as failed because the server is busy.
+     *
+     * @param response      the response
+     * @param backOffMillis the BackOffMilliseconds the server asks for
+     * @param <T>           the type of the response
+     * @return the response
+     */
+    public static <T extends ServiceResponse> T serverBusy(T response, long backOffMillis) {
+        response.setOutcome(ServiceResult.Error, ServiceError.ErrorServerBusy, null,
+                Map.of("BackOffMilliseconds", String.valueOf(backOffMillis)));
+        return response;
+    }
+
+    /**
+     * Answers for an id the way the batch tests expect: "missing" is not found, "busy" is answered with
+     * ErrorServerBusy as long as busyResponses is positive, and everything else succeeds.
+     *
+     * @param response      the response
+     * @param id            the id the response is for
+     * @param busyResponses the number of busy responses left, counted down
+     * @param <T>           the type of the response
+     * @return the response
+     */
+    public static <T extends ServiceResponse> T forId(T response, String id, AtomicInteger busyResponses) {
+        if ("missing".equals(id)) {
+            return error(response, ServiceError.ErrorItemNotFound);
+        } else if ("busy".equals(id) && busyResponses.getAndDecrement() > 0) {
+            return serverBusy(response, 10);
+        } else {
+            return success(response);
+        }
+    }
+
+    /**
+     * Creates a successful ConvertId response.
+     *
+     * @param convertedId the converted id
+     * @return the response
+     */
+    public static ConvertIdResponse converted(AlternateIdBase convertedId) {
+        return success(new ConvertIdResponse(convertedId));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.http;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class AuthenticationMetricsTest {
+
+    @Test
+    public void testCountersAreIndependentAndReset() {
+        AuthenticationMetrics metrics = new AuthenticationMetrics();
+        metrics.requestSent();
+        metrics.requestSent();
+        metrics.challengeReceived();
+        metrics.preemptiveAuthenticationSent();
+        metrics.preemptiveAuthenticationSent();
+        metrics.preemptiveAuthenticationSent();
+
+        assertEquals(2, metrics.getRequestCount());
+        assertEquals(1, metrics.getHandshakeCount());
+        assertEquals(3, metrics.getPreemptiveAuthenticationCount());
+        assertEquals("requests=2, handshakes=1, preemptive=3", metrics.toString());
+
+        metrics.reset();
+        assertEquals(0, metrics.getRequestCount());
+        assertEquals(0, metrics.getHandshakeCount());
+        assertEquals(0, metrics.getPreemptiveAuthenticationCount());
+    }
+
+    @Test
+    public void testConcurrentUpdatesAreNotLost() throws Exception {
+        AuthenticationMetrics metrics = new AuthenticationMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    metrics.requestSent();
+                    metrics.challengeReceived();
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(4000, metrics.getRequestCount());
+        assertEquals(4000, metrics.getHandshakeCount());
+    }
+}
@@ -0,0 +1,54 @@
+package com.eischet.ews.api.http;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class MailboxAffinityCookiesTest {
+
+    @Test
+    public void testParseCookie() {
+        assertEquals("BE1~1942062522", MailboxAffinityCookies.parseBackEndOverrideCookie(
+                "X-BackEndOverrideCookie=BE1~1942062522; path=/; secure; HttpOnly"));
+        assertEquals("BE2~123", MailboxAffinityCookies.parseBackEndOverrideCookie(
+                "exchangecookie=abc; path=/,X-BackEndOverrideCookie=BE2~123; path=/"));
+        assertNull(MailboxAffinityCookies.parseBackEndOverrideCookie("exchangecookie=abc; path=/"));
+        assertNull(MailboxAffinityCookies.parseBackEndOverrideCookie(
+                "other=X-BackEndOverrideCookie=nope; path=/"));
+    }
+
+    @Test
+    public void testCookiesAreTrackedPerAnchor() {
+        MailboxAffinityCookies cookies = new MailboxAffinityCookies();
+        cookies.update("a@example.com",
+                Collections.singletonMap("Set-Cookie", "X-BackEndOverrideCookie=BE1~1; path=/"));
+        cookies.update("b@example.com",
+                Collections.singletonMap("set-cookie", "X-BackEndOverrideCookie=BE2~2; path=/"));
+
+        assertEquals("X-BackEndOverrideCookie=BE1~1", cookies.getCookieHeader("A@example.com"));
+        assertEquals("BE2~2", cookies.getCookie("b@example.com"));
+        assertNull(cookies.getCookie("c@example.com"));
+
+        cookies.update("a@example.com",
+                Collections.singletonMap("Set-Cookie", "X-BackEndOverrideCookie=; path=/"));
+        assertNull(cookies.getCookie("a@example.com"));
+        assertEquals(1, cookies.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedCookiesAreForgotten() {
+        MailboxAffinityCookies cookies = new MailboxAffinityCookies(Duration.ofHours(1), 2);
+        for (String anchor : new String[]{"a@example.com", "b@example.com", "c@example.com"}) {
+            cookies.update(anchor, Collections.singletonMap("Set-Cookie", "X-BackEndOverrideCookie=" + anchor));
+        }
+        assertEquals(2, cookies.size());
+        assertNull(cookies.getCookie("a@example.com"));
+        assertEquals("c@example.com", cookies.getCookie("c@example.com"));
+    }
+}
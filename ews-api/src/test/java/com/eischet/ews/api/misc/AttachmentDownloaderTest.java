@@ -0,0 +1,197 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.IFileAttachmentContentHandler;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.response.GetAttachmentResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.property.complex.Attachment;
+import com.eischet.ews.api.property.complex.FileAttachment;
+import com.eischet.ews.api.security.XmlNodeType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class AttachmentDownloaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testSmallAttachmentsAreBatchedAndLargeOnesFetchedAlone() throws Exception {
+        List<FileAttachment> attachments = List.of(attachment("s1", 100), attachment("s2", 100),
+                attachment("large", 5000), attachment("s3", 100), attachment("missing", 100));
+        List<List<String>> requests = new ArrayList<>();
+        ExchangeService service = mockService(requests);
+
+        Map<String, ByteArrayOutputStream> streams = new ConcurrentHashMap<>();
+        AttachmentDownloader downloader = new AttachmentDownloader(service);
+        downloader.setSmallAttachmentSize(1000);
+        downloader.setMaxBatchSize(2);
+        List<AttachmentDownloader.DownloadResult> results = downloader.download(attachments,
+                id -> streams.computeIfAbsent(id, key -> new ByteArrayOutputStream()));
+
+        assertEquals(5, results.size());
+        assertSame(attachments.get(2), results.get(2).getAttachment());
+        assertTrue(results.get(2).isSuccess());
+        assertEquals(ServiceError.ErrorItemNotFound, results.get(4).getErrorCode());
+        assertEquals("content of large", streams.get("large").toString(StandardCharsets.UTF_8));
+        assertEquals(4, downloader.getDownloadedCount());
+        assertEquals(1, downloader.getFailedCount());
+        assertEquals(3, requests.size());
+        assertTrue(requests.contains(List.of("s1", "s2")));
+        assertTrue(requests.contains(List.of("large")));
+        assertTrue(requests.contains(List.of("s3", "missing")));
+        assertEquals(0, downloader.getInFlightBytes());
+    }
+
+    @Test
+    public void testInFlightBytesStayWithinBudget() throws Exception {
+        List<FileAttachment> attachments = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            attachments.add(attachment("a" + i, 400));
+        }
+        AtomicLong inFlight = new AtomicLong();
+        AtomicLong peak = new AtomicLong();
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(8);
+        when(service.writeAttachmentContents(any(), any())).thenAnswer(invocation -> {
+            Iterable<? extends Attachment> batch = invocation.getArgument(0);
+            long bytes = 0;
+            for (Attachment attachment : batch) {
+                bytes += attachment.getSize();
+            }
+            peak.accumulateAndGet(inFlight.addAndGet(bytes), Math::max);
+            Thread.sleep(20);
+            inFlight.addAndGet(-bytes);
+            return responses(batch);
+        });
+
+        AttachmentDownloader downloader = new AttachmentDownloader(service);
+        downloader.setSmallAttachmentSize(0);
+        downloader.setMaxInFlightBytes(1000);
+        downloader.download(attachments, id -> new ByteArrayOutputStream());
+
+        assertTrue("peak " + peak.get(), peak.get() <= 1000);
+        assertEquals(12, downloader.getDownloadedCount());
+    }
+
+    @Test
+    public void testAttachmentsAreMovedToTheirFiles() throws Exception {
+        List<FileAttachment> attachments = List.of(attachment("one", 10), attachment("missing", 10));
+        ExchangeService service = mockService(new ArrayList<>());
+        Path directory = temporaryFolder.getRoot().toPath();
+
+        AttachmentDownloader downloader = new AttachmentDownloader(service);
+        List<AttachmentDownloader.DownloadResult> results = downloader.downloadToFiles(attachments,
+                attachment -> directory.resolve(attachment.getId() + ".bin"));
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertEquals("content of one",
+                new String(Files.readAllBytes(directory.resolve("one.bin")), StandardCharsets.UTF_8));
+        // no partial or temporary files are left behind
+        assertEquals(1, directory.toFile().list().length);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ExchangeService mockService(List<List<String>> requests) throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(2);
+        when(service.writeAttachmentContents(any(), any())).thenAnswer(invocation -> {
+            Iterable<? extends Attachment> batch = invocation.getArgument(0);
+            IFileAttachmentContentHandler handler = invocation.getArgument(1);
+            List<String> ids = new ArrayList<>();
+            for (Attachment attachment : batch) {
+                ids.add(attachment.getId());
+                if (!"missing".equals(attachment.getId())) {
+                    OutputStream out = handler.getOutputStream(attachment.getId());
+                    out.write(("content of " + attachment.getId()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            synchronized (requests) {
+                requests.add(ids);
+            }
+            return responses(batch);
+        });
+        return service;
+    }
+
+    private static ServiceResponseCollection<GetAttachmentResponse> responses(Iterable<? extends Attachment> batch)
+            throws Exception {
+        ServiceResponseCollection<GetAttachmentResponse> responses = new ServiceResponseCollection<>();
+        for (Attachment attachment : batch) {
+            GetAttachmentResponse response = new GetAttachmentResponse(attachment);
+            if ("missing".equals(attachment.getId())) {
+                responses.add(ServiceResponses.error(response, ServiceError.ErrorItemNotFound));
+            } else {
+                responses.add(ServiceResponses.success(response));
+            }
+        }
+        return responses;
+    }
+
+    /**
+     * Creates an attachment the way GetItem returns it, with id and size but without content.
+     */
+    private static FileAttachment attachment(String id, int size) throws Exception {
+        ExchangeService service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+        EmailMessage message = new EmailMessage(service);
+        FileAttachment attachment = message.getAttachments().addFileAttachment(id, new byte[0]);
+        String xml = "<t:FileAttachment xmlns:t=\"" + XmlNamespace.Types.getNameSpaceUri() + "\">"
+                + "<t:AttachmentId Id=\"" + id + "\"/><t:Name>" + id + "</t:Name>"
+                + "<t:Size>" + size + "</t:Size></t:FileAttachment>";
+        EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), service);
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        reader.readStartElement(XmlNamespace.Types, "FileAttachment");
+        attachment.loadFromXml(reader, XmlNamespace.Types, "FileAttachment");
+        return attachment;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.ItemChangeSet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.service.ConflictResolutionMode;
+import com.eischet.ews.api.core.enumeration.service.MessageDisposition;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import com.eischet.ews.api.core.response.UpdateItemResponse;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.core.service.schema.EmailMessageSchema;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.StringList;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class BulkItemUpdaterTest {
+
+    @Test
+    public void testEqualChangeSetsAreCoalescedAndBatched() throws Exception {
+        List<Request> requests = new ArrayList<>();
+        ExchangeService service = mockService(requests, new AtomicInteger());
+
+        Map<ItemId, ItemChangeSet> changes = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            // separately built, but equal change sets
+            changes.put(new ItemId("tag" + i), new ItemChangeSet()
+                    .set(ItemSchema.Categories, new StringList(List.of("Retention"))));
+        }
+        changes.put(new ItemId("read"), new ItemChangeSet(EmailMessage.class).set(EmailMessageSchema.IsRead, true));
+        changes.put(new ItemId("missing"), new ItemChangeSet(EmailMessage.class).set(EmailMessageSchema.IsRead, true));
+
+        BulkItemUpdater updater = new BulkItemUpdater(service);
+        updater.setMaxBatchSize(2);
+        List<BulkItemUpdater.UpdateResult> results = updater.update(changes);
+
+        assertEquals(7, results.size());
+        assertEquals("tag3", results.get(3).getItemId().getUniqueId());
+        assertTrue(results.get(3).isSuccess());
+        assertNotNull(results.get(3).getResponse());
+        assertEquals(ServiceError.ErrorItemNotFound, results.get(6).getErrorCode());
+        assertEquals(6, updater.getUpdatedCount());
+        assertEquals(1, updater.getFailedCount());
+
+        assertEquals(4, requests.size());
+        List<List<String>> batches = new ArrayList<>();
+        for (Request request : requests) {
+            batches.add(request.ids);
+            assertEquals(ConflictResolutionMode.AlwaysOverwrite, request.conflictResolution);
+            assertEquals(MessageDisposition.SaveOnly, request.messageDisposition);
+        }
+        assertTrue(batches.contains(List.of("tag0", "tag1")));
+        assertTrue(batches.contains(List.of("tag2", "tag3")));
+        assertTrue(batches.contains(List.of("tag4")));
+        assertTrue(batches.contains(List.of("read", "missing")));
+    }
+
+    @Test
+    public void testBusyItemsAreRetried() throws Exception {
+        List<Request> requests = new ArrayList<>();
+        AtomicInteger busyResponses = new AtomicInteger(1);
+        ExchangeService service = mockService(requests, busyResponses);
+
+        List<ItemId> itemIds = List.of(new ItemId("a"), new ItemId("busy"), new ItemId("b"), new ItemId("a"));
+        BulkItemUpdater updater = new BulkItemUpdater(service);
+        List<BulkItemUpdater.UpdateResult> results = updater.update(itemIds,
+                new ItemChangeSet().set(ItemSchema.Subject, "Archived"));
+
+        assertEquals(4, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertSame(itemIds.get(i), results.get(i).getItemId());
+            assertTrue(results.get(i).isSuccess());
+        }
+        assertEquals(2, requests.size());
+        assertEquals(List.of("busy"), requests.get(1).ids);
+    }
+
+    @Test
+    public void testEmptyChangeSetsAreRejected() throws Exception {
+        BulkItemUpdater updater = new BulkItemUpdater(mockService(new ArrayList<>(), new AtomicInteger()));
+        try {
+            updater.update(List.of(new ItemId("a")), new ItemChangeSet());
+            fail("empty change sets cannot be applied");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static ExchangeService mockService(List<Request> requests, AtomicInteger busyResponses)
+            throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(2);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.updateItems(anyCollection(), any(ItemChangeSet.class), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    Collection<ItemId> itemIds = invocation.getArgument(0);
+                    Request request = new Request();
+                    request.conflictResolution = invocation.getArgument(2);
+                    request.messageDisposition = invocation.getArgument(3);
+                    ServiceResponseCollection<UpdateItemResponse> responses = new ServiceResponseCollection<>();
+                    for (ItemId itemId : itemIds) {
+                        request.ids.add(itemId.getUniqueId());
+                        Item item = new Item(new ExchangeService(null));
+                        item.getPropertyBag().getProperties().put(ItemSchema.Id, itemId);
+                        responses.add(ServiceResponses.forId(new UpdateItemResponse(item), itemId.getUniqueId(),
+                                busyResponses));
+                    }
+                    synchronized (requests) {
+                        requests.add(request);
+                    }
+                    return responses;
+                });
+        return service;
+    }
+
+    private static final class Request {
+        final List<String> ids = new ArrayList<>();
+        ConflictResolutionMode conflictResolution;
+        MessageDisposition messageDisposition;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.ConversationActionType;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
+import com.eischet.ews.api.core.enumeration.service.DeleteMode;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import com.eischet.ews.api.http.ExchangeHttpClient;
+import com.eischet.ews.api.property.complex.ConversationId;
+import com.eischet.ews.api.property.complex.FolderId;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class ConversationActionExecutorTest {
+
+    @Test
+    public void testConversationsAreBatchedInOrder() throws Exception {
+        List<List<ConversationAction>> requests = new ArrayList<>();
+        ExchangeService service = mockService(requests, new AtomicInteger());
+
+        LocalDateTime lastSync = LocalDateTime.of(2024, 3, 1, 12, 0);
+        Map<ConversationId, LocalDateTime> conversations = new LinkedHashMap<>();
+        for (int i = 0; i < 5; i++) {
+            conversations.put(new ConversationId("c" + i), i == 0 ? null : lastSync);
+        }
+        conversations.put(new ConversationId("missing"), lastSync);
+
+        ConversationActionExecutor executor = new ConversationActionExecutor(service);
+        executor.setMaxBatchSize(4);
+        List<ConversationActionExecutor.ConversationActionResult> results = executor.deleteItems(conversations,
+                new FolderId(WellKnownFolderName.Inbox), DeleteMode.MoveToDeletedItems);
+
+        assertEquals(6, results.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("c" + i, results.get(i).getConversationId().getUniqueId());
+            assertTrue(results.get(i).isSuccess());
+        }
+        assertEquals(ServiceError.ErrorItemNotFound, results.get(5).getErrorCode());
+        assertEquals(5, executor.getAppliedCount());
+        assertEquals(1, executor.getFailedCount());
+
+        assertEquals(2, requests.size());
+        List<ConversationAction> actions = new ArrayList<>();
+        for (List<ConversationAction> request : requests) {
+            assertTrue(request.size() <= 4);
+            actions.addAll(request);
+        }
+        assertEquals(6, actions.size());
+        // one action per conversation, not one shared instance
+        assertEquals(6, actions.stream().distinct().count());
+        for (ConversationAction action : actions) {
+            assertEquals(ConversationActionType.Delete, action.getAction());
+            assertEquals(DeleteMode.MoveToDeletedItems, action.getDeleteType());
+            assertNotNull(action.getContextFolderId());
+            String id = action.getConversationId().getUniqueId();
+            assertEquals("c0".equals(id) ? null : lastSync, action.getConversationLastSyncTime());
+        }
+    }
+
+    @Test
+    public void testBusyConversationsAreRetried() throws Exception {
+        List<List<ConversationAction>> requests = new ArrayList<>();
+        ExchangeService service = mockService(requests, new AtomicInteger(1));
+
+        List<ConversationId> conversationIds = List.of(new ConversationId("a"), new ConversationId("busy"),
+                new ConversationId("b"));
+        ConversationActionExecutor executor = new ConversationActionExecutor(service);
+        executor.setProcessRightAway(true);
+        List<ConversationActionExecutor.ConversationActionResult> results =
+                executor.enableAlwaysMove(conversationIds, new FolderId(WellKnownFolderName.JunkEmail));
+
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertSame(conversationIds.get(i), results.get(i).getConversationId());
+            assertTrue(results.get(i).isSuccess());
+        }
+        assertEquals(2, requests.size());
+        assertEquals(1, requests.get(1).size());
+        ConversationAction retried = requests.get(1).get(0);
+        assertEquals("busy", retried.getConversationId().getUniqueId());
+        assertEquals(ConversationActionType.AlwaysMove, retried.getAction());
+        assertTrue(retried.getProcessRightAway());
+        assertNotNull(retried.getDestinationFolderId());
+    }
+
+    @Test
+    public void testMissingDestinationIsRejected() throws Exception {
+        ConversationActionExecutor executor = new ConversationActionExecutor(
+                mockService(new ArrayList<>(), new AtomicInteger()));
+        try {
+            executor.moveItems(Map.of(new ConversationId("a"), LocalDateTime.now()), null, null);
+            fail("moving needs a destination folder");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testAlwaysActionsSendOneActionPerConversation() throws Exception {
+        String responseMessage = "<m:ApplyConversationActionResponseMessage ResponseClass=\"Success\">"
+                + "<m:ResponseCode>NoError</m:ResponseCode></m:ApplyConversationActionResponseMessage>";
+        String response = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                + "<s:Envelope xmlns:s=\"http://schemas.xmlsoap.org/soap/envelope/\"><s:Header/><s:Body>"
+                + "<m:ApplyConversationActionResponse"
+                + " xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+                + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+                + "<m:ResponseMessages>" + responseMessage + responseMessage + "</m:ResponseMessages>"
+                + "</m:ApplyConversationActionResponse></s:Body></s:Envelope>";
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        ExchangeHttpClient.Request request = mock(ExchangeHttpClient.Request.class);
+        when(request.getOutputStream()).thenReturn(sent);
+        when(request.executeRequest()).thenReturn(200);
+        when(request.getResponseCode()).thenReturn(200);
+        when(request.getResponseHeaders()).thenReturn(Collections.emptyMap());
+        when(request.getResponseContentType()).thenReturn("text/xml; charset=utf-8");
+        when(request.getInputStream())
+                .thenReturn(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+        ExchangeHttpClient client = mock(ExchangeHttpClient.class);
+        when(client.createRequest()).thenReturn(request);
+        ExchangeService service = new ExchangeService(client, ExchangeVersion.Exchange2010_SP1);
+        service.setUrl(new URI("https://mail.example.com/EWS/Exchange.asmx"));
+
+        ServiceResponseCollection<ServiceResponse> responses = service.enableAlwaysDeleteItemsInConversations(
+                List.of(new ConversationId("first"), new ConversationId("second")), false);
+
+        assertEquals(2, responses.getCount());
+        // every action refers to its own conversation
+        String xml = sent.toString(StandardCharsets.UTF_8);
+        int first = xml.indexOf("<t:ConversationId Id=\"first\"");
+        int second = xml.indexOf("<t:ConversationId Id=\"second\"");
+        assertTrue(xml, first >= 0 && second > first);
+    }
+
+    private static ExchangeService mockService(List<List<ConversationAction>> requests, AtomicInteger busyResponses)
+            throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(2);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.applyConversationActions(anyCollection())).thenAnswer(invocation -> {
+            Collection<ConversationAction> actions = invocation.getArgument(0);
+            ServiceResponseCollection<ServiceResponse> responses = new ServiceResponseCollection<>();
+            for (ConversationAction action : actions) {
+                responses.add(ServiceResponses.forId(new ServiceResponse(), action.getConversationId().getUniqueId(),
+                        busyResponses));
+            }
+            synchronized (requests) {
+                requests.add(new ArrayList<>(actions));
+            }
+            return responses;
+        });
+        return service;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.property.MailboxType;
+import com.eischet.ews.api.core.enumeration.search.ResolveNameSearchLocation;
+import com.eischet.ews.api.property.complex.EmailAddress;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class NameResolverTest {
+
+    @Test
+    public void testResolveNamesDeduplicatesAndCaches() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(4);
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.resolveName(anyString(), any(ResolveNameSearchLocation.class), eq(false)))
+                .thenAnswer(invocation -> new NameResolutionCollection(service));
+        NameResolver resolver = new NameResolver(service, Duration.ofMinutes(5), 100);
+
+        Map<String, NameResolutionCollection> result = resolver.resolveNames(Arrays.asList("alice", "Bob", "ALICE"));
+        assertEquals(3, result.size());
+        assertSame(result.get("alice"), result.get("ALICE"));
+        // served from the cache, as a copy of its own
+        assertNotSame(result.get("Bob"), resolver.resolveName("bob"));
+
+        verify(service, times(1)).resolveName(eq("alice"), any(ResolveNameSearchLocation.class), eq(false));
+        verify(service, times(1)).resolveName(eq("Bob"), any(ResolveNameSearchLocation.class), eq(false));
+    }
+
+    @Test
+    public void testRecursiveExpansionStopsAtCycles() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(1);
+        // all@ contains sales@ and dave; sales@ contains all@ again, erin and dave
+        when(service.expandGroup(argThat((EmailAddress a) -> a != null && "all@example.com".equals(a.getAddress()))))
+                .thenReturn(members(group("sales@example.com"), person("dave@example.com")));
+        when(service.expandGroup(argThat((EmailAddress a) -> a != null && "sales@example.com".equals(a.getAddress()))))
+                .thenReturn(members(group("all@example.com"), person("erin@example.com"), person("DAVE@example.com")));
+        NameResolver resolver = new NameResolver(service, Duration.ofMinutes(5), 100);
+
+        List<EmailAddress> members = resolver.expandGroupRecursively("all@example.com");
+        assertEquals(2, members.size());
+        assertEquals("dave@example.com", members.get(0).getAddress());
+        assertEquals("erin@example.com", members.get(1).getAddress());
+
+        resolver.expandGroupRecursively("sales@example.com");
+        verify(service, times(2)).expandGroup(any(EmailAddress.class));
+    }
+
+    @Test
+    public void testCallersGetCopiesOfCachedResults() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.expandGroup(any(EmailAddress.class))).thenReturn(members(person("dave@example.com")));
+        NameResolver resolver = new NameResolver(service, Duration.ofMinutes(5), 100);
+
+        ExpandGroupResults first = resolver.expandGroup("all@example.com");
+        first.getMembers().iterator().next().setAddress("changed@example.com");
+        first.getMembers().clear();
+
+        ExpandGroupResults second = resolver.expandGroup("all@example.com");
+        assertEquals(1, second.getCount());
+        assertEquals("dave@example.com", second.getMembers().iterator().next().getAddress());
+        assertEquals(MailboxType.Mailbox, second.getMembers().iterator().next().getMailboxType());
+        verify(service, times(1)).expandGroup(any(EmailAddress.class));
+    }
+
+    @Test(timeout = 10000)
+    public void testConcurrentMissesSendOneRequest() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch answer = new CountDownLatch(1);
+        when(service.expandGroup(any(EmailAddress.class))).thenAnswer(invocation -> {
+            requested.countDown();
+            answer.await();
+            return members(person("dave@example.com"));
+        });
+        NameResolver resolver = new NameResolver(service, Duration.ofMinutes(5), 100);
+
+        AtomicReference<ExpandGroupResults> firstResult = new AtomicReference<>();
+        AtomicReference<ExpandGroupResults> secondResult = new AtomicReference<>();
+        Thread first = new Thread(() -> firstResult.set(expand(resolver)));
+        first.start();
+        assertTrue(requested.await(5, TimeUnit.SECONDS));
+        Thread second = new Thread(() -> secondResult.set(expand(resolver)));
+        second.start();
+        // the second caller waits for the lookup of the first one
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.sleep(5);
+        }
+        answer.countDown();
+        first.join();
+        second.join();
+
+        verify(service, times(1)).expandGroup(any(EmailAddress.class));
+        assertEquals(1, firstResult.get().getCount());
+        assertEquals(1, secondResult.get().getCount());
+        assertNotSame(firstResult.get(), secondResult.get());
+    }
+
+    private static ExpandGroupResults expand(NameResolver resolver) {
+        try {
+            return resolver.expandGroup("all@example.com");
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ExpandGroupResults members(EmailAddress... addresses) {
+        ExpandGroupResults results = new ExpandGroupResults();
+        results.getMembers().addAll(Arrays.asList(addresses));
+        return results;
+    }
+
+    private static EmailAddress group(String address) {
+        EmailAddress group = new EmailAddress(address);
+        group.setMailboxType(MailboxType.PublicGroup);
+        return group;
+    }
+
+    private static EmailAddress person(String address) {
+        EmailAddress person = new EmailAddress(address);
+        person.setMailboxType(MailboxType.Mailbox);
+        return person;
+    }
+}
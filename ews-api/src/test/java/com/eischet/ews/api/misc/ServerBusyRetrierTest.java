@@ -0,0 +1,130 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.misc;
+
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ServerBusyRetrierTest {
+
+    @Test
+    public void testBackOff() {
+        assertEquals(250, ServerBusyRetrier.getBackOff(ServiceResponses.serverBusy(new ServiceResponse(), 250), 3));
+        assertEquals(1000, ServerBusyRetrier.getBackOff(null, 0));
+        assertEquals(4000, ServerBusyRetrier.getBackOff(ServiceResponses.error(new ServiceResponse(),
+                ServiceError.ErrorServerBusy), 2));
+        // capped at five minutes, whatever the server asks for
+        assertEquals(300000, ServerBusyRetrier.getBackOff(null, 30));
+        assertEquals(300000, ServerBusyRetrier.getBackOff(ServiceResponses.serverBusy(new ServiceResponse(),
+                3600000), 0));
+    }
+
+    @Test
+    public void testBusyElementsAreRetried() throws Exception {
+        List<List<String>> calls = new ArrayList<>();
+        AtomicInteger busyResponses = new AtomicInteger(2);
+        List<String> results = new ServerBusyRetrier("Test").execute(List.of("a", "busy", "missing"),
+                elements -> respond(calls, elements, busyResponses), ServerBusyRetrierTest::result);
+
+        assertEquals(List.of("a", "busy", "ErrorItemNotFound"), results);
+        // only the busy element is sent again, the one not found is final
+        assertEquals(List.of(List.of("a", "busy", "missing"), List.of("busy"), List.of("busy")), calls);
+    }
+
+    @Test
+    public void testRetriesGiveUp() throws Exception {
+        List<List<String>> calls = new ArrayList<>();
+        ServerBusyRetrier retrier = new ServerBusyRetrier("Test");
+        retrier.setMaxRetries(1);
+        List<String> results = retrier.execute(List.of("a", "busy"),
+                elements -> respond(calls, elements, new AtomicInteger(Integer.MAX_VALUE)),
+                ServerBusyRetrierTest::result);
+
+        assertEquals(List.of("a", "ErrorServerBusy"), results);
+        assertEquals(2, calls.size());
+        try {
+            retrier.setMaxRetries(-1);
+            fail("negative retries are rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testFailedRequestsArePassedThrough() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        ServerBusyRetrier retrier = new ServerBusyRetrier("Test");
+        List<String> results = retrier.execute(List.of("a", "b"), elements -> {
+            if (calls.incrementAndGet() == 1) {
+                // the whole request is busy the first time
+                throw new ServiceResponseException(ServiceResponses.serverBusy(new ServiceResponse(), 10));
+            }
+            throw new ServiceResponseException(ServiceResponses.error(new ServiceResponse(),
+                    ServiceError.ErrorAccessDenied));
+        }, ServerBusyRetrierTest::result);
+
+        assertEquals(List.of("ErrorAccessDenied", "ErrorAccessDenied"), results);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testExceptionsOfTheResultFactoryAreThrown() throws Exception {
+        try {
+            new ServerBusyRetrier("Test").execute(List.of("a"),
+                    elements -> respond(new ArrayList<>(), elements, new AtomicInteger()),
+                    (element, position, response, errorCode, errorMessage) -> {
+                        throw new IllegalStateException("cannot record " + element);
+                    });
+            fail("the exception of the result factory must be thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("cannot record a", e.getMessage());
+        }
+    }
+
+    private static ServiceResponseCollection<ServiceResponse> respond(List<List<String>> calls, List<String> elements,
+                                                                      AtomicInteger busyResponses) {
+        calls.add(new ArrayList<>(elements));
+        ServiceResponseCollection<ServiceResponse> responses = new ServiceResponseCollection<>();
+        for (String element : elements) {
+            responses.add(ServiceResponses.forId(new ServiceResponse(), element, busyResponses));
+        }
+        return responses;
+    }
+
+    private static String result(String element, int position, ServiceResponse response, ServiceError errorCode,
+                                 String errorMessage) {
+        return errorCode != null ? errorCode.name() : element;
+    }
+}
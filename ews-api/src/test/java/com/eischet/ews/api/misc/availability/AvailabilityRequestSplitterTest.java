@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc.availability;
+
+import com.eischet.ews.api.core.enumeration.availability.AvailabilityData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class AvailabilityRequestSplitterTest {
+
+    @Test
+    public void testShortWindowIsNotSplit() {
+        TimeWindow window = new TimeWindow(LocalDateTime.of(2022, 3, 1, 9, 0), LocalDateTime.of(2022, 3, 8, 0, 0));
+        List<TimeWindow> windows = AvailabilityRequestSplitter.splitTimeWindow(window);
+        assertEquals(1, windows.size());
+        assertEquals(LocalDateTime.of(2022, 3, 1, 0, 0), windows.get(0).getStartTime());
+        assertEquals(window.getEndTime(), windows.get(0).getEndTime());
+        assertFalse(AvailabilityRequestSplitter.isApplicable(100, window, AvailabilityData.FreeBusy, null));
+        assertTrue(AvailabilityRequestSplitter.isApplicable(101, window, AvailabilityData.FreeBusy, null));
+        assertFalse(AvailabilityRequestSplitter.isApplicable(101, window, AvailabilityData.FreeBusyAndSuggestions,
+                null));
+    }
+
+    @Test
+    public void testNoEmptyWindowsAreCreated() {
+        LocalDateTime midnight = LocalDateTime.of(2022, 1, 1, 0, 0);
+        List<TimeWindow> windows = AvailabilityRequestSplitter.splitTimeWindow(
+                new TimeWindow(midnight, midnight.plusDays(84)));
+        assertEquals(2, windows.size());
+        assertEquals(midnight.plusDays(84), windows.get(1).getEndTime());
+
+        TimeWindow empty = new TimeWindow(midnight, midnight);
+        assertEquals(List.of(empty), AvailabilityRequestSplitter.splitTimeWindow(empty));
+    }
+
+    @Test
+    public void testLongWindowIsSplitIntoConsecutiveWindows() {
+        LocalDateTime start = LocalDateTime.of(2022, 1, 1, 0, 0);
+        TimeWindow window = new TimeWindow(start, start.plusDays(100));
+        assertTrue(AvailabilityRequestSplitter.isApplicable(1, window, AvailabilityData.FreeBusy, null));
+
+        List<TimeWindow> windows = AvailabilityRequestSplitter.splitTimeWindow(window);
+        assertEquals(3, windows.size());
+        assertEquals(start, windows.get(0).getStartTime());
+        for (int i = 1; i < windows.size(); i++) {
+            assertEquals(windows.get(i - 1).getEndTime(), windows.get(i).getStartTime());
+        }
+        assertEquals(start.plusDays(100), windows.get(2).getEndTime());
+        for (TimeWindow part : windows) {
+            assertTrue(Duration.between(part.getStartTime(), part.getEndTime())
+                    .compareTo(AvailabilityRequestSplitter.MAX_TIME_WINDOW) <= 0);
+        }
+    }
+}
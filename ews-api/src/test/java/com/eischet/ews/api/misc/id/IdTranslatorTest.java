@@ -0,0 +1,192 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.misc.id;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.IdFormat;
+import com.eischet.ews.api.core.response.ConvertIdResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class IdTranslatorTest {
+
+    @Test
+    public void testEntryIdAndHexEntryIdAreConvertedLocally() {
+        AlternateId entryId = new AlternateId(IdFormat.EntryId, "AAECA/8=", "user@example.com");
+        AlternateId hex = IdTranslator.convertLocally(entryId, IdFormat.HexEntryId);
+        assertEquals("00010203FF", hex.getUniqueId());
+        assertEquals("user@example.com", hex.getMailbox());
+        assertEquals("AAECA/8=", IdTranslator.convertLocally(hex, IdFormat.EntryId).getUniqueId());
+        assertNull(IdTranslator.convertLocally(entryId, IdFormat.EwsId));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testConcurrentConversionsAreBatchedAndCachedBothWays() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(1);
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.convertIds(any(Iterable.class), eq(IdFormat.EwsId))).thenAnswer(invocation -> {
+            ServiceResponseCollection<ConvertIdResponse> responses = new ServiceResponseCollection<>();
+            for (AlternateIdBase id : (Iterable<AlternateIdBase>) invocation.getArgument(0)) {
+                AlternateId source = (AlternateId) id;
+                responses.add(ServiceResponses.converted(new AlternateId(IdFormat.EwsId, "ews-" + source.getUniqueId(),
+                        source.getMailbox())));
+            }
+            return responses;
+        });
+
+        try (IdTranslator translator = new IdTranslator(service, Duration.ofSeconds(10), 100)) {
+            List<CompletableFuture<AlternateId>> futures = new ArrayList<>();
+            for (String id : Arrays.asList("1", "2", "3", "2")) {
+                futures.add(translator.submit(new AlternateId(IdFormat.OwaId, id, "user@example.com"),
+                        IdFormat.EwsId));
+            }
+            translator.flush();
+            assertEquals("ews-1", futures.get(0).get().getUniqueId());
+            assertEquals("ews-2", futures.get(3).get().getUniqueId());
+            verify(service, times(1)).convertIds(any(Iterable.class), eq(IdFormat.EwsId));
+
+            // cached in both directions
+            assertEquals("ews-3", translator.convert("3", "USER@example.com", IdFormat.OwaId, IdFormat.EwsId));
+            assertEquals("2", translator.convert("ews-2", "user@example.com", IdFormat.EwsId, IdFormat.OwaId));
+            verify(service, times(1)).convertIds(any(Iterable.class), any(IdFormat.class));
+            verify(service, never()).convertIds(any(Iterable.class), eq(IdFormat.OwaId));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFullBatchIsSentWithoutWaiting() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(1);
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.convertIds(any(Iterable.class), eq(IdFormat.EwsId))).thenAnswer(invocation -> {
+            ServiceResponseCollection<ConvertIdResponse> responses = new ServiceResponseCollection<>();
+            for (AlternateIdBase id : (Iterable<AlternateIdBase>) invocation.getArgument(0)) {
+                responses.add(ServiceResponses.converted(new AlternateId(IdFormat.EwsId, "x" + ((AlternateId) id).getUniqueId(),
+                        "user@example.com")));
+            }
+            return responses;
+        });
+
+        try (IdTranslator translator = new IdTranslator(service, Duration.ofHours(1), 100)) {
+            translator.setMaxBatchSize(2);
+            List<AlternateId> converted = translator.convertAll(Arrays.asList(
+                    new AlternateId(IdFormat.StoreId, "a", "user@example.com"),
+                    new AlternateId(IdFormat.StoreId, "b", "user@example.com")), IdFormat.EwsId);
+            assertEquals("xa", converted.get(0).getUniqueId());
+            assertEquals("xb", converted.get(1).getUniqueId());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFullBatchIsDetachedWhileTheRequestIsBlocked() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(1);
+        when(service.forMailbox(any())).thenReturn(service);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+        when(service.convertIds(any(Iterable.class), eq(IdFormat.EwsId))).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            ServiceResponseCollection<ConvertIdResponse> responses = new ServiceResponseCollection<>();
+            for (AlternateIdBase id : (Iterable<AlternateIdBase>) invocation.getArgument(0)) {
+                responses.add(ServiceResponses.converted(new AlternateId(IdFormat.EwsId, "x" + ((AlternateId) id).getUniqueId(),
+                        "user@example.com")));
+            }
+            batchSizes.add(responses.getCount());
+            return responses;
+        });
+
+        try (IdTranslator translator = new IdTranslator(service, Duration.ofHours(1), 100)) {
+            translator.setMaxBatchSize(2);
+            List<CompletableFuture<AlternateId>> futures = new ArrayList<>();
+            for (String id : Arrays.asList("a", "b", "c", "d", "e")) {
+                futures.add(translator.submit(new AlternateId(IdFormat.StoreId, id, "user@example.com"),
+                        IdFormat.EwsId));
+            }
+            release.countDown();
+            translator.flush();
+            for (CompletableFuture<AlternateId> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            // no batch grew past the maximum while the first one was blocked
+            List<Integer> sorted = new ArrayList<>(batchSizes);
+            Collections.sort(sorted);
+            assertEquals(Arrays.asList(1, 2, 2), sorted);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testCachedConversionsExpire() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMaxConcurrentRequests()).thenReturn(1);
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.convertIds(any(Iterable.class), eq(IdFormat.EwsId))).thenAnswer(invocation -> {
+            ServiceResponseCollection<ConvertIdResponse> responses = new ServiceResponseCollection<>();
+            responses.add(ServiceResponses.converted(new AlternateId(IdFormat.EwsId, "x", "user@example.com")));
+            return responses;
+        });
+
+        try (IdTranslator translator = new IdTranslator(service, Duration.ZERO, 100, Duration.ofMillis(50))) {
+            assertEquals("x", translator.convert("a", "user@example.com", IdFormat.StoreId, IdFormat.EwsId));
+            assertEquals("x", translator.convert("a", "user@example.com", IdFormat.StoreId, IdFormat.EwsId));
+            verify(service, times(1)).convertIds(any(Iterable.class), eq(IdFormat.EwsId));
+            Thread.sleep(100);
+            assertEquals("x", translator.convert("a", "user@example.com", IdFormat.StoreId, IdFormat.EwsId));
+            verify(service, times(2)).convertIds(any(Iterable.class), eq(IdFormat.EwsId));
+        }
+        try {
+            new IdTranslator(service, Duration.ZERO, 100, Duration.ZERO);
+            fail("the time to live must be positive");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.notification;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.notification.EventType;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.sync.InMemorySyncStateStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(JUnit4.class)
+public class PullNotificationPollerTest {
+
+    private ExchangeService service;
+    private InMemorySyncStateStore store;
+    private PullNotificationPoller poller;
+    private final BlockingQueue<List<NotificationEvent>> received = new LinkedBlockingQueue<>();
+    private volatile boolean failNextDelivery;
+
+    @Before
+    public void setUp() throws Exception {
+        service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.subscribeToPullNotificationsOnAllFolders(anyInt(), any(), any()))
+                .thenAnswer(invocation -> subscription("sub", invocation.getArgument(1)));
+        store = new InMemorySyncStateStore();
+        poller = new PullNotificationPoller(service, store, (sender, key, events) -> {
+            if (failNextDelivery) {
+                failNextDelivery = false;
+                throw new IllegalStateException("delivery failed");
+            }
+            received.add(events);
+        }, 2);
+        poller.setIntervals(Duration.ofMillis(10), Duration.ofMillis(80));
+    }
+
+    @After
+    public void tearDown() {
+        poller.close();
+    }
+
+    @Test
+    public void testEventsAreDeliveredAndWatermarkIsStored() throws Exception {
+        when(service.getEvents(eq("sub"), any()))
+                .thenReturn(results("wm1", true, true))
+                .thenReturn(results("wm2", false, true))
+                .thenReturn(results("wm3", false, false));
+        poller.add("mailbox", null, null, EventType.NewMail);
+
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        verify(service, timeout(5000).atLeast(4)).getEvents(eq("sub"), any());
+        assertEquals("wm3", store.load("", "pull:mailbox"));
+        // the interval backs off once no more events arrive
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!poller.getInterval("mailbox").equals(poller.getMaxInterval()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(poller.getMaxInterval(), poller.getInterval("mailbox"));
+    }
+
+    @Test
+    public void testExpiredSubscriptionIsRecreatedFromStoredWatermark() throws Exception {
+        store.save("", "pull:mailbox", "stored");
+        ServiceResponse gone = mock(ServiceResponse.class);
+        when(gone.getErrorCode()).thenReturn(ServiceError.ErrorSubscriptionNotFound);
+        when(service.getEvents(eq("sub"), any()))
+                .thenThrow(new ServiceResponseException(gone))
+                .thenReturn(results("wm1", false, true));
+        poller.add("mailbox", null, null, EventType.NewMail);
+
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        verify(service, atLeast(2)).subscribeToPullNotificationsOnAllFolders(anyInt(), eq("stored"), any());
+    }
+
+    @Test
+    public void testFailedDeliveryUnsubscribesAndResubscribesFromStoredWatermark() throws Exception {
+        store.save("", "pull:mailbox", "stored");
+        failNextDelivery = true;
+        when(service.getEvents(eq("sub"), any())).thenReturn(results("wm1", false, true));
+        poller.add("mailbox", null, null, EventType.NewMail);
+
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        verify(service).unsubscribe("sub");
+        verify(service, atLeast(2)).subscribeToPullNotificationsOnAllFolders(anyInt(), eq("stored"), any());
+    }
+
+    @Test
+    public void testRemoveUnsubscribesAndDeletesWatermark() throws Exception {
+        when(service.getEvents(eq("sub"), any())).thenReturn(results("wm1", false, true));
+        poller.add("mailbox", null, null, EventType.NewMail);
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        assertTrue(poller.remove("mailbox"));
+        verify(service, timeout(5000)).unsubscribe("sub");
+        assertEquals(0, poller.size());
+        assertEquals(null, store.load("", "pull:mailbox"));
+        verify(service, atLeast(1)).subscribeToPullNotificationsOnAllFolders(anyInt(), isNull(), any());
+    }
+
+    private PullSubscription subscription(String id, String watermark) throws Exception {
+        PullSubscription subscription = new PullSubscription(service);
+        subscription.setId(id);
+        subscription.setWaterMark(watermark);
+        return subscription;
+    }
+
+    private static GetEventsResults results(String watermark, boolean more, boolean withEvent) {
+        GetEventsResults results = new GetEventsResults(watermark, more);
+        if (withEvent) {
+            results.getAllEvents().add(new ItemEvent(EventType.NewMail, LocalDateTime.now()));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.notification;
+
+import com.eischet.ews.api.BaseTest;
+import com.eischet.ews.api.core.enumeration.notification.EventType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class PushNotificationReceiverTest extends BaseTest {
+
+    private static final String NEW_MAIL =
+            "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                    + "<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">"
+                    + "<soap:Header><t:RequestServerVersion xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\" Version=\"Exchange2010_SP1\"/></soap:Header>"
+                    + "<soap:Body>"
+                    + "<m:SendNotification xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+                    + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+                    + "<m:ResponseMessages>"
+                    + "<m:SendNotificationResponseMessage ResponseClass=\"Success\">"
+                    + "<m:ResponseCode>NoError</m:ResponseCode>"
+                    + "<m:Notification>"
+                    + "<t:SubscriptionId>%s</t:SubscriptionId>"
+                    + "<t:PreviousWatermark>wm0</t:PreviousWatermark>"
+                    + "<t:MoreEvents>false</t:MoreEvents>"
+                    + "<t:NewMailEvent>"
+                    + "<t:Watermark>wm1</t:Watermark>"
+                    + "<t:TimeStamp>2024-01-01T10:00:00Z</t:TimeStamp>"
+                    + "<t:ItemId Id=\"item1\" ChangeKey=\"ck1\"/>"
+                    + "<t:ParentFolderId Id=\"inbox\" ChangeKey=\"ck2\"/>"
+                    + "</t:NewMailEvent>"
+                    + "</m:Notification>"
+                    + "</m:SendNotificationResponseMessage>"
+                    + "</m:ResponseMessages>"
+                    + "</m:SendNotification>"
+                    + "</soap:Body>"
+                    + "</soap:Envelope>";
+
+    private PushNotificationReceiver receiver;
+    private final BlockingQueue<PushNotification> received = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() {
+        receiver = new PushNotificationReceiver(exchangeServiceMock, 10);
+        receiver.addOnNotification((sender, notification) -> received.add(notification));
+    }
+
+    @After
+    public void tearDown() {
+        receiver.close();
+    }
+
+    @Test
+    public void testNotificationIsAcknowledgedAndDispatched() throws Exception {
+        String response = new String(receiver.handleNotification(stream(String.format(NEW_MAIL, "sub1"))),
+                StandardCharsets.UTF_8);
+        assertTrue(response.contains("<SubscriptionStatus>OK</SubscriptionStatus>"));
+
+        PushNotification notification = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(notification);
+        assertEquals("sub1", notification.getSubscriptionId());
+        assertEquals("wm0", notification.getPreviousWatermark());
+        assertEquals("wm1", notification.getWatermark());
+        assertFalse(notification.isMoreEventsAvailable());
+        assertEquals(1, notification.getEvents().size());
+        ItemEvent event = (ItemEvent) notification.getEvents().get(0);
+        assertEquals(EventType.NewMail, event.getEventType());
+        assertEquals("item1", event.getItemId().getUniqueId());
+    }
+
+    @Test
+    public void testUnsubscribedSubscriptionIsRejected() throws Exception {
+        receiver.unsubscribe("sub2");
+        String response = new String(receiver.handleNotification(stream(String.format(NEW_MAIL, "sub2"))),
+                StandardCharsets.UTF_8);
+        assertTrue(response.contains("<SubscriptionStatus>Unsubscribe</SubscriptionStatus>"));
+        assertEquals(1, receiver.getReceivedCount());
+        assertEquals(0, receiver.getQueueSize());
+    }
+
+    @Test
+    public void testHttpCallback() throws Exception {
+        receiver.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "/ews");
+        URL url = new URL("http://127.0.0.1:" + receiver.getPort() + "/ews");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(String.format(NEW_MAIL, "sub3").getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream in = connection.getInputStream()) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).contains(">OK<"));
+        }
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOversizedCallbackIsRejected() throws Exception {
+        receiver.setMaximumBodySize(100);
+        receiver.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), "/ews");
+        URL url = new URL("http://127.0.0.1:" + receiver.getPort() + "/ews");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(0);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(String.format(NEW_MAIL, "sub4").getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(413, connection.getResponseCode());
+        assertEquals(0, receiver.getReceivedCount());
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.property.complex;
+
+import com.eischet.ews.api.BaseTest;
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.EwsServiceXmlWriter;
+import com.eischet.ews.api.core.XmlElementNames;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.security.XmlNodeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MimeContentTest extends BaseTest {
+
+    private static final String TYPES = "xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\"";
+
+    @Test
+    public void testContentIsStreamedToHandler() throws Exception {
+        byte[] mime = randomBytes(300_000);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        AtomicBoolean closed = new AtomicBoolean();
+        EwsServiceXmlReader reader = reader(mime);
+        reader.setMimeContentHandler((itemIndex, characterSet) -> {
+            Assert.assertEquals(3, itemIndex);
+            Assert.assertEquals("UTF-8", characterSet);
+            return new ByteArrayOutputStream() {
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    target.write(b, off, len);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    closed.set(true);
+                }
+            };
+        }, 3);
+
+        MimeContent content = new MimeContent();
+        content.loadFromXml(reader, XmlNamespace.Types, XmlElementNames.MimeContent);
+
+        Assert.assertArrayEquals(mime, target.toByteArray());
+        Assert.assertTrue(closed.get());
+        Assert.assertNull(content.getContent());
+        Assert.assertEquals(mime.length, content.getStreamedLength());
+        Assert.assertEquals("UTF-8", content.getCharacterSet());
+    }
+
+    @Test
+    public void testContentIsLoadedWithoutHandler() throws Exception {
+        byte[] mime = randomBytes(10_000);
+        MimeContent content = new MimeContent();
+        content.loadFromXml(reader(mime), XmlNamespace.Types, XmlElementNames.MimeContent);
+
+        Assert.assertArrayEquals(mime, content.getContent());
+        Assert.assertEquals(-1, content.getStreamedLength());
+    }
+
+    @Test
+    public void testBase64ElementValueIsDecodedToStream() throws Exception {
+        byte[] data = randomBytes(70_001);
+        String xml = "<t:Content " + TYPES + ">" + Base64.getMimeEncoder().encodeToString(data) + "</t:Content>";
+        EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), exchangeServiceMock);
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        reader.readStartElement(XmlNamespace.Types, XmlElementNames.Content);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        reader.readBase64ElementValue(out);
+
+        Assert.assertArrayEquals(data, out.toByteArray());
+        Assert.assertTrue(reader.isEndElement(XmlNamespace.Types, XmlElementNames.Content));
+    }
+
+    @Test
+    public void testFileContentIsEncodedWhileWriting() throws Exception {
+        byte[] mime = randomBytes(200_003);
+        Path file = Files.createTempFile("mime", ".eml");
+        try {
+            Files.write(file, mime);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            EwsServiceXmlWriter writer = new EwsServiceXmlWriter(exchangeServiceMock, output);
+            writer.writeStartDocument();
+            writer.writeStartElement(XmlNamespace.Types, XmlElementNames.MimeContent);
+            writer.writeAttributeValue("xmlns:" + XmlNamespace.Types.getNameSpacePrefix(),
+                    XmlNamespace.Types.getNameSpaceUri());
+            new MimeContent("UTF-8", file).writeElementsToXml(writer);
+            writer.writeEndElement();
+            writer.flush();
+
+            EwsServiceXmlReader reader = new EwsServiceXmlReader(new ByteArrayInputStream(output.toByteArray()),
+                    exchangeServiceMock);
+            reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+            reader.readStartElement(XmlNamespace.Types, XmlElementNames.MimeContent);
+            MimeContent content = new MimeContent();
+            content.loadFromXml(reader, XmlNamespace.Types, XmlElementNames.MimeContent);
+
+            Assert.assertArrayEquals(mime, content.getContent());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private EwsServiceXmlReader reader(byte[] mime) throws Exception {
+        String xml = "<t:MimeContent " + TYPES + " CharacterSet=\"UTF-8\">"
+                + Base64.getMimeEncoder().encodeToString(mime) + "</t:MimeContent>";
+        EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), exchangeServiceMock);
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        reader.readStartElement(XmlNamespace.Types, XmlElementNames.MimeContent);
+        return reader;
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+}
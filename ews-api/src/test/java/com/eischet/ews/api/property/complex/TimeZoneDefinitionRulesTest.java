@@ -0,0 +1,182 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.property.complex;
+
+import com.eischet.ews.api.BaseTest;
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.XmlElementNames;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.exception.service.local.InvalidOrUnsupportedTimeZoneDefinitionException;
+import com.eischet.ews.api.misc.ServerTimeZoneCache;
+import com.eischet.ews.api.property.complex.time.TimeZoneDefinition;
+import com.eischet.ews.api.security.XmlNodeType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.List;
+
+public class TimeZoneDefinitionRulesTest extends BaseTest {
+
+    private static final String TYPES = "xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\"";
+
+    private static final String W_EUROPE = "<t:TimeZoneDefinition " + TYPES
+            + " Name=\"(UTC+01:00) Amsterdam, Berlin\" Id=\"W. Europe Standard Time\">"
+            + "<t:Periods>"
+            + "<t:Period Bias=\"-PT1H\" Name=\"Standard\" Id=\"Std\"/>"
+            + "<t:Period Bias=\"-PT2H\" Name=\"Daylight\" Id=\"Dlt\"/>"
+            + "</t:Periods>"
+            + "<t:TransitionsGroups><t:TransitionsGroup Id=\"0\">"
+            + "<t:RecurringDayTransition><t:To Kind=\"Period\">Dlt</t:To><t:TimeOffset>PT2H</t:TimeOffset>"
+            + "<t:Month>3</t:Month><t:DayOfWeek>Sunday</t:DayOfWeek><t:Occurrence>-1</t:Occurrence>"
+            + "</t:RecurringDayTransition>"
+            + "<t:RecurringDayTransition><t:To Kind=\"Period\">Std</t:To><t:TimeOffset>PT3H</t:TimeOffset>"
+            + "<t:Month>10</t:Month><t:DayOfWeek>Sunday</t:DayOfWeek><t:Occurrence>-1</t:Occurrence>"
+            + "</t:RecurringDayTransition>"
+            + "</t:TransitionsGroup></t:TransitionsGroups>"
+            + "<t:Transitions><t:Transition><t:To Kind=\"Group\">0</t:To></t:Transition></t:Transitions>"
+            + "</t:TimeZoneDefinition>";
+
+    /**
+     * A zone without daylight saving time until 2010, with DST from 2010 on.
+     */
+    private static final String TWO_ERAS = "<t:TimeZoneDefinition " + TYPES + " Name=\"Test\" Id=\"Test\">"
+            + "<t:Periods>"
+            + "<t:Period Bias=\"-PT3H\" Name=\"Standard\" Id=\"Old\"/>"
+            + "<t:Period Bias=\"-PT2H\" Name=\"Standard\" Id=\"Std\"/>"
+            + "<t:Period Bias=\"-PT3H\" Name=\"Daylight\" Id=\"Dlt\"/>"
+            + "</t:Periods>"
+            + "<t:TransitionsGroups>"
+            + "<t:TransitionsGroup Id=\"0\"><t:Transition><t:To Kind=\"Period\">Old</t:To></t:Transition>"
+            + "</t:TransitionsGroup>"
+            + "<t:TransitionsGroup Id=\"1\">"
+            + "<t:RecurringDayTransition><t:To Kind=\"Period\">Dlt</t:To><t:TimeOffset>PT2H</t:TimeOffset>"
+            + "<t:Month>3</t:Month><t:DayOfWeek>Sunday</t:DayOfWeek><t:Occurrence>2</t:Occurrence>"
+            + "</t:RecurringDayTransition>"
+            + "<t:RecurringDateTransition><t:To Kind=\"Period\">Std</t:To><t:TimeOffset>PT3H</t:TimeOffset>"
+            + "<t:Month>10</t:Month><t:Day>15</t:Day>"
+            + "</t:RecurringDateTransition>"
+            + "</t:TransitionsGroup>"
+            + "</t:TransitionsGroups>"
+            + "<t:Transitions><t:Transition><t:To Kind=\"Group\">0</t:To></t:Transition>"
+            + "<t:AbsoluteDateTransition><t:To Kind=\"Group\">1</t:To>"
+            + "<t:DateTime>2010-01-01T00:00:00</t:DateTime></t:AbsoluteDateTransition>"
+            + "</t:Transitions>"
+            + "</t:TimeZoneDefinition>";
+
+    @Test
+    public void testRecurringTransitionsMatchTimeZoneDatabase() throws Exception {
+        TimeZoneDefinition definition = load(W_EUROPE);
+        ZoneRules expected = ZoneId.of("Europe/Berlin").getRules();
+
+        ZoneRules rules = definition.getZoneRules();
+        Assert.assertSame(rules, definition.getZoneRules());
+        for (Instant instant = Instant.parse("1996-01-01T00:00:00Z");
+             instant.isBefore(Instant.parse("2040-01-01T00:00:00Z")); instant = instant.plusSeconds(3 * 3600)) {
+            Assert.assertEquals(instant.toString(), expected.getOffset(instant), rules.getOffset(instant));
+        }
+    }
+
+    @Test
+    public void testEras() throws Exception {
+        TimeZoneDefinition definition = load(TWO_ERAS);
+
+        Assert.assertEquals(ZoneOffset.ofHours(3), definition.getOffset(LocalDateTime.of(2005, 7, 1, 12, 0)));
+        Assert.assertEquals(ZoneOffset.ofHours(3), definition.getOffset(LocalDateTime.of(2009, 12, 31, 20, 0)));
+        // the new era starts in standard time
+        Assert.assertEquals(ZoneOffset.ofHours(2), definition.getOffset(LocalDateTime.of(2010, 1, 1, 12, 0)));
+        // second Sunday of March 2010 is the 14th, 02:00 local
+        Assert.assertEquals(ZoneOffset.ofHours(2), definition.getOffset(LocalDateTime.of(2010, 3, 13, 23, 59)));
+        Assert.assertEquals(ZoneOffset.ofHours(3), definition.getOffset(LocalDateTime.of(2010, 3, 14, 0, 0)));
+        // October 15th, 03:00 local daylight time
+        Assert.assertEquals(ZoneOffset.ofHours(3), definition.getOffset(LocalDateTime.of(2031, 10, 14, 23, 59)));
+        Assert.assertEquals(ZoneOffset.ofHours(2), definition.getOffset(LocalDateTime.of(2031, 10, 15, 0, 0)));
+    }
+
+    @Test
+    public void testCopiesAreIndependent() throws Exception {
+        TimeZoneDefinition definition = load(TWO_ERAS);
+        TimeZoneDefinition copy = definition.copy();
+        Assert.assertEquals(definition.getId(), copy.getId());
+        Assert.assertNotSame(definition.getTransitions(), copy.getTransitions());
+        Assert.assertNotSame(definition.getTransitionGroups().get("1"), copy.getTransitionGroups().get("1"));
+        Assert.assertSame(copy.getTransitionGroups().get("1"), copy.getTransitions().get(1).getTargetGroup());
+
+        // recompiling the copy yields the same offsets, so all transitions were copied
+        copy.invalidateZoneRules();
+        for (LocalDateTime time = LocalDateTime.of(2005, 1, 1, 0, 0); time.getYear() < 2035; time = time.plusHours(7)) {
+            Assert.assertEquals(time.toString(), definition.getOffset(time), copy.getOffset(time));
+        }
+
+        copy.setId("Changed");
+        copy.getTransitionGroups().get("1").getTransitions().clear();
+        copy.getPeriods().clear();
+        Assert.assertEquals("Test", definition.getId());
+        Assert.assertEquals(2, definition.getTransitionGroups().get("1").getTransitions().size());
+        Assert.assertEquals(3, definition.getPeriods().size());
+    }
+
+    @Test
+    public void testServerTimeZoneCacheHandsOutCopies() throws Exception {
+        ServerTimeZoneCache cache = new ServerTimeZoneCache();
+        TimeZoneDefinition definition = load(W_EUROPE);
+        cache.put("server", List.of(definition));
+        TimeZoneDefinition first = cache.get("server").get("W. Europe Standard Time");
+        first.setId("Changed");
+        TimeZoneDefinition second = cache.get("server").get("W. Europe Standard Time");
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals("W. Europe Standard Time", second.getId());
+        // the rules are compiled once and shared
+        Assert.assertSame(first.getZoneRules(), second.getZoneRules());
+    }
+
+    @Test
+    public void testAbsoluteFirstTransitionIsRejected() throws Exception {
+        TimeZoneDefinition definition = load(TWO_ERAS.replace(
+                "<t:Transitions><t:Transition><t:To Kind=\"Group\">0</t:To></t:Transition>",
+                "<t:Transitions><t:AbsoluteDateTransition><t:To Kind=\"Group\">0</t:To>"
+                        + "<t:DateTime>2000-01-01T00:00:00</t:DateTime></t:AbsoluteDateTransition>"));
+        try {
+            definition.getZoneRules();
+            Assert.fail("an absolute first transition has no offset before it");
+        } catch (InvalidOrUnsupportedTimeZoneDefinitionException expected) {
+        }
+    }
+
+    private TimeZoneDefinition load(String xml) throws Exception {
+        EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), exchangeServiceMock);
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        reader.readStartElement(XmlNamespace.Types, XmlElementNames.TimeZoneDefinition);
+        TimeZoneDefinition definition = new TimeZoneDefinition();
+        definition.loadFromXml(reader);
+        return definition;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.property.complex.recurrence;
+
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.property.BasePropertySet;
+import com.eischet.ews.api.core.enumeration.property.time.DayOfTheWeek;
+import com.eischet.ews.api.core.enumeration.property.time.DayOfTheWeekIndex;
+import com.eischet.ews.api.core.response.GetItemResponse;
+import com.eischet.ews.api.core.service.item.Appointment;
+import com.eischet.ews.api.core.service.schema.AppointmentSchema;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.recurrence.pattern.Recurrence;
+import com.eischet.ews.api.security.XmlNodeType;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.InputStream;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class RecurrenceExpanderTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    @Test
+    public void weeklyKeepsLocalTimeAcrossDaylightSavingTime() throws Exception {
+        Recurrence recurrence = new Recurrence.WeeklyPattern(LocalDate.of(2022, 3, 14), 1, DayOfTheWeek.Monday);
+        recurrence.setNumberOfOccurrences(3);
+        RecurrenceExpander expander = new RecurrenceExpander(recurrence, LocalDateTime.of(2022, 3, 14, 8, 0),
+                LocalDateTime.of(2022, 3, 14, 9, 0), BERLIN.getRules());
+
+        List<RecurrenceOccurrence> occurrences = expander.getOccurrences(LocalDateTime.of(2022, 1, 1, 0, 0),
+                LocalDateTime.of(2023, 1, 1, 0, 0));
+
+        assertEquals(3, occurrences.size());
+        assertEquals(LocalDateTime.of(2022, 3, 14, 8, 0), occurrences.get(0).getStart());
+        assertEquals(LocalDateTime.of(2022, 3, 21, 8, 0), occurrences.get(1).getStart());
+        assertEquals(LocalDateTime.of(2022, 3, 28, 7, 0), occurrences.get(2).getStart());
+        assertEquals(LocalDateTime.of(2022, 3, 28, 8, 0), occurrences.get(2).getEnd());
+    }
+
+    @Test
+    public void monthlyClampsToEndOfMonth() throws Exception {
+        Recurrence recurrence = new Recurrence.MonthlyPattern(LocalDate.of(2022, 1, 31), 1, 31);
+        recurrence.setNumberOfOccurrences(4);
+        RecurrenceExpander expander = new RecurrenceExpander(recurrence, LocalDateTime.of(2022, 1, 31, 12, 0),
+                LocalDateTime.of(2022, 1, 31, 13, 0), ZoneOffset.UTC.getRules());
+
+        List<RecurrenceOccurrence> occurrences = expander.getNextOccurrences(LocalDateTime.of(2022, 1, 1, 0, 0), 10);
+
+        assertEquals(4, occurrences.size());
+        assertEquals(LocalDate.of(2022, 2, 28), occurrences.get(1).getStart().toLocalDate());
+        assertEquals(LocalDate.of(2022, 3, 31), occurrences.get(2).getStart().toLocalDate());
+        assertEquals(LocalDate.of(2022, 4, 30), occurrences.get(3).getStart().toLocalDate());
+    }
+
+    @Test
+    public void relativeMonthlyFindsLastFriday() throws Exception {
+        Recurrence recurrence = new Recurrence.RelativeMonthlyPattern(LocalDate.of(2022, 1, 1), 1,
+                DayOfTheWeek.Friday, DayOfTheWeekIndex.Last);
+        recurrence.setEndDate(LocalDate.of(2022, 3, 31));
+        RecurrenceExpander expander = new RecurrenceExpander(recurrence, LocalDateTime.of(2022, 1, 28, 15, 0),
+                LocalDateTime.of(2022, 1, 28, 16, 0), BERLIN.getRules());
+
+        List<RecurrenceOccurrence> occurrences = expander.getNextOccurrences(LocalDateTime.of(2022, 1, 1, 0, 0), 10);
+
+        assertEquals(3, occurrences.size());
+        assertEquals(LocalDateTime.of(2022, 1, 28, 15, 0), occurrences.get(0).getStart());
+        assertEquals(LocalDateTime.of(2022, 2, 25, 15, 0), occurrences.get(1).getStart());
+        assertEquals(LocalDateTime.of(2022, 3, 25, 15, 0), occurrences.get(2).getStart());
+    }
+
+    @Test
+    public void exceptionsCountTowardsNumberedRange() throws Exception {
+        Recurrence recurrence = new Recurrence.DailyPattern(LocalDate.of(2022, 6, 1), 1);
+        recurrence.setNumberOfOccurrences(5);
+        RecurrenceExpander expander = new RecurrenceExpander(recurrence, LocalDateTime.of(2022, 6, 1, 10, 0),
+                LocalDateTime.of(2022, 6, 1, 11, 0), ZoneOffset.UTC.getRules());
+        expander.addDeletedOccurrence(LocalDateTime.of(2022, 6, 2, 10, 0));
+        ItemId modifiedId = new ItemId("modified");
+        expander.addModifiedOccurrence(LocalDateTime.of(2022, 6, 3, 10, 0), LocalDateTime.of(2022, 6, 10, 12, 0),
+                LocalDateTime.of(2022, 6, 10, 13, 0), modifiedId);
+
+        List<RecurrenceOccurrence> occurrences = expander.getOccurrences(LocalDateTime.of(2022, 6, 1, 0, 0),
+                LocalDateTime.of(2022, 7, 1, 0, 0));
+
+        assertEquals(4, occurrences.size());
+        assertEquals(LocalDateTime.of(2022, 6, 1, 10, 0), occurrences.get(0).getStart());
+        assertEquals(LocalDateTime.of(2022, 6, 4, 10, 0), occurrences.get(1).getStart());
+        assertEquals(LocalDateTime.of(2022, 6, 5, 10, 0), occurrences.get(2).getStart());
+        assertTrue(occurrences.get(3).isModified());
+        assertEquals(modifiedId, occurrences.get(3).getItemId());
+        assertNull(occurrences.get(0).getItemId());
+    }
+
+    @Test
+    public void seriesWithoutEndIsIteratedLazily() throws Exception {
+        Recurrence recurrence = new Recurrence.WeeklyPattern(LocalDate.of(2022, 1, 3), 2, DayOfTheWeek.Weekday);
+        RecurrenceExpander expander = new RecurrenceExpander(recurrence, LocalDateTime.of(2022, 1, 3, 8, 0),
+                LocalDateTime.of(2022, 1, 3, 8, 30), ZoneOffset.UTC.getRules());
+        expander.setFirstDayOfWeek(DayOfWeek.MONDAY);
+
+        Iterator<RecurrenceOccurrence> it = expander.iterator(LocalDateTime.of(2030, 1, 1, 0, 0));
+
+        assertTrue(it.hasNext());
+        LocalDateTime first = it.next().getStart();
+        assertFalse(first.isBefore(LocalDateTime.of(2030, 1, 1, 0, 0)));
+        // every other week, Monday to Friday
+        assertEquals(LocalDate.of(2030, 1, 7), first.toLocalDate());
+    }
+
+    @Test
+    public void recurringMasterFromGetItemResponse() throws Exception {
+        Appointment master = loadRecurringMaster();
+        RecurrenceExpander expander = RecurrenceExpander.forRecurringMaster(master);
+        assertEquals(DayOfWeek.MONDAY, expander.getFirstDayOfWeek());
+
+        List<RecurrenceOccurrence> occurrences = expander.getOccurrences(LocalDateTime.of(2022, 1, 1, 0, 0),
+                LocalDateTime.of(2023, 1, 1, 0, 0));
+
+        // ten occurrences, the one of April 4th is deleted
+        assertEquals(9, occurrences.size());
+        assertEquals(LocalDateTime.of(2022, 3, 7, 8, 0), occurrences.get(0).getStart());
+        assertEquals(LocalDateTime.of(2022, 3, 14, 8, 0), occurrences.get(1).getStart());
+        // moved from 09:00 to 11:00 local time
+        assertTrue(occurrences.get(2).isModified());
+        assertEquals(LocalDateTime.of(2022, 3, 21, 8, 0), occurrences.get(2).getOriginalStart());
+        assertEquals(LocalDateTime.of(2022, 3, 21, 10, 0), occurrences.get(2).getStart());
+        assertNotNull(occurrences.get(2).getItemId());
+        // daylight saving time starts on March 27th
+        assertEquals(LocalDateTime.of(2022, 3, 28, 7, 0), occurrences.get(3).getStart());
+        assertEquals(LocalDateTime.of(2022, 4, 11, 7, 0), occurrences.get(4).getStart());
+        assertEquals(LocalDateTime.of(2022, 5, 9, 7, 30), occurrences.get(8).getEnd());
+    }
+
+    @Test(expected = com.eischet.ews.api.core.exception.service.local.ServiceLocalException.class)
+    public void singleAppointmentIsNotExpanded() throws Exception {
+        Appointment appointment = loadRecurringMaster();
+        appointment.setRecurrence(null);
+        RecurrenceExpander.forRecurringMaster(appointment);
+    }
+
+    /**
+     * Reads the calendar item of a GetItem response captured from Exchange 2016 like the request would.
+     */
+    private static Appointment loadRecurringMaster() throws Exception {
+        ExchangeService service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+        PropertySet propertySet = new PropertySet(BasePropertySet.IdOnly, ItemSchema.Subject,
+                AppointmentSchema.Start, AppointmentSchema.End, AppointmentSchema.AppointmentType,
+                AppointmentSchema.Recurrence, AppointmentSchema.ModifiedOccurrences,
+                AppointmentSchema.DeletedOccurrences, AppointmentSchema.StartTimeZone);
+        GetItemResponse response = new GetItemResponse(null, propertySet);
+        try (InputStream in = RecurrenceExpanderTest.class.getResourceAsStream("GetItemRecurringMaster.xml")) {
+            EwsServiceXmlReader reader = new EwsServiceXmlReader(in, service);
+            reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+            reader.readStartElement(XmlNamespace.Soap, "Envelope");
+            reader.readStartElement(XmlNamespace.Soap, "Header");
+            reader.skipCurrentElement();
+            reader.readStartElement(XmlNamespace.Soap, "Body");
+            reader.readStartElement(XmlNamespace.Messages, "GetItemResponse");
+            reader.readStartElement(XmlNamespace.Messages, "ResponseMessages");
+            response.loadFromXml(reader, "GetItemResponseMessage");
+        }
+        Appointment master = (Appointment) response.getItem();
+        assertEquals("Weekly sync", master.getSubject());
+        return master;
+    }
+}
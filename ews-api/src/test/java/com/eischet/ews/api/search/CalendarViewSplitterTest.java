@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.search;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
+import com.eischet.ews.api.core.service.item.Appointment;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.property.complex.ItemId;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class CalendarViewSplitterTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, 1, 1, 0, 0);
+
+    @Test
+    public void testOverflowingSlicesAreBisectedAndMerged() throws Exception {
+        final List<Appointment> calendar = new ArrayList<>();
+        // a busy first week, a quiet rest of the month and one appointment spanning the whole month
+        for (int i = 0; i < 40; i++) {
+            calendar.add(appointment("busy" + i, START.plusHours(4 * i), START.plusHours(4 * i + 1)));
+        }
+        calendar.add(appointment("quiet", START.plusDays(20), START.plusDays(20).plusHours(1)));
+        calendar.add(appointment("long", START.plusHours(2), START.plusDays(30)));
+
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.findAppointments(any(FolderId.class), any(CalendarView.class))).thenAnswer(invocation -> {
+            requests.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            running.decrementAndGet();
+            CalendarView view = invocation.getArgument(1);
+            FindItemsResults<Appointment> results = new FindItemsResults<>();
+            for (Appointment appointment : calendar) {
+                if (appointment.getStart().isBefore(view.getEndDate())
+                        && appointment.getEnd().isAfter(view.getStartDate())) {
+                    if (results.getItems().size() == view.getMaxItemsReturned()) {
+                        results.setMoreAvailable(true);
+                        break;
+                    }
+                    results.getItems().add(appointment);
+                }
+            }
+            return results;
+        });
+
+        CalendarViewSplitter splitter = new CalendarViewSplitter(service, new FolderId(WellKnownFolderName.Calendar));
+        splitter.setMaxItemsPerSlice(10);
+        splitter.setMaxConcurrency(3);
+        List<Appointment> found = splitter.findAppointments(START, START.plusDays(31));
+
+        assertEquals(calendar.size(), found.size());
+        for (int i = 1; i < found.size(); i++) {
+            assertFalse(found.get(i).getStart().isBefore(found.get(i - 1).getStart()));
+        }
+        assertTrue(requests.get() > 3);
+        // bisected slices wait for a free request instead of exceeding the concurrency
+        assertTrue(maxRunning.get() <= 3);
+    }
+
+    private static Appointment appointment(String id, LocalDateTime start, LocalDateTime end) throws Exception {
+        Appointment appointment = mock(Appointment.class);
+        when(appointment.getId()).thenReturn(new ItemId(id));
+        when(appointment.getStart()).thenReturn(start);
+        when(appointment.getEnd()).thenReturn(end);
+        return appointment;
+    }
+}
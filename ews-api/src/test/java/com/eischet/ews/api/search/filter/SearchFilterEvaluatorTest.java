@@ -0,0 +1,208 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.search.filter;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.PropertyBag;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.property.Importance;
+import com.eischet.ews.api.core.enumeration.property.MapiPropertyType;
+import com.eischet.ews.api.core.enumeration.search.ComparisonMode;
+import com.eischet.ews.api.core.enumeration.search.ContainmentMode;
+import com.eischet.ews.api.core.enumeration.search.LogicalOperator;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.core.service.schema.ContactSchema;
+import com.eischet.ews.api.core.service.schema.EmailMessageSchema;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.StringList;
+import com.eischet.ews.api.property.definition.ExtendedPropertyDefinition;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SearchFilterEvaluatorTest {
+
+    private static final ExtendedPropertyDefinition MESSAGE_FLAGS = new ExtendedPropertyDefinition(0x0E07,
+            MapiPropertyType.Integer);
+
+    private EmailMessage message;
+
+    @Before
+    public void setUp() throws Exception {
+        message = new EmailMessage(new ExchangeService(null, ExchangeVersion.Exchange2010_SP2));
+        message.setSubject("Re: Quarterly Réport 2024");
+        message.setImportance(Importance.High);
+        message.setCategories(new StringList(List.of("Finance", "Red Category")));
+        message.setExtendedProperty(MESSAGE_FLAGS, 0x11);
+        message.getPropertyBag().getProperties().put(ItemSchema.DateTimeReceived, LocalDateTime.of(2024, 3, 1, 12, 0));
+        message.getPropertyBag().getProperties().put(ItemSchema.Size, 2048);
+    }
+
+    @Test
+    public void testRelationalFilters() throws Exception {
+        assertTrue(matches(new SearchFilter.IsEqualTo(ItemSchema.Importance, Importance.High)));
+        assertTrue(matches(new SearchFilter.IsEqualTo(ItemSchema.Importance, "high")));
+        assertTrue(matches(new SearchFilter.IsGreaterThan(ItemSchema.Importance, Importance.Normal)));
+        assertTrue(matches(new SearchFilter.IsEqualTo(ItemSchema.Subject, "re: quarterly réport 2024")));
+        assertTrue(matches(new SearchFilter.IsGreaterThan(ItemSchema.Size, 1024L)));
+        assertTrue(matches(new SearchFilter.IsLessThanOrEqualTo(ItemSchema.Size, "2048")));
+        assertFalse(matches(new SearchFilter.IsLessThan(ItemSchema.Size, 2048.0)));
+        assertTrue(matches(new SearchFilter.IsGreaterThanOrEqualTo(ItemSchema.DateTimeReceived,
+                LocalDateTime.of(2024, 3, 1, 0, 0))));
+        assertTrue(matches(new SearchFilter.IsLessThan(ItemSchema.DateTimeReceived, "2024-03-01T13:00:00Z")));
+        assertTrue(matches(new SearchFilter.IsEqualTo(MESSAGE_FLAGS, 17)));
+        assertTrue(matches(new SearchFilter.IsEqualTo(ItemSchema.Categories, "finance")));
+        assertTrue(matches(new SearchFilter.IsNotEqualTo(ItemSchema.Subject, "other")));
+    }
+
+    @Test
+    public void testMissingPropertiesNeverMatch() throws Exception {
+        assertFalse(matches(new SearchFilter.Exists(EmailMessageSchema.IsRead)));
+        assertFalse(matches(new SearchFilter.IsNotEqualTo(EmailMessageSchema.IsRead, true)));
+        assertFalse(matches(new SearchFilter.IsEqualTo(EmailMessageSchema.IsRead, false)));
+        assertFalse(matches(new SearchFilter.ExcludesBitmask(ItemSchema.Sensitivity, 1)));
+        assertTrue(matches(new SearchFilter.Not(new SearchFilter.IsEqualTo(EmailMessageSchema.IsRead, true))));
+        assertTrue(matches(new SearchFilter.Exists(MESSAGE_FLAGS)));
+    }
+
+    @Test
+    public void testContainsSubstringModes() throws Exception {
+        assertTrue(matches(contains("quarterly", ContainmentMode.Substring, ComparisonMode.IgnoreCase)));
+        assertFalse(matches(contains("quarterly", ContainmentMode.Substring, ComparisonMode.Exact)));
+        assertTrue(matches(contains("Re:", ContainmentMode.Prefixed, ComparisonMode.Exact)));
+        assertFalse(matches(contains("Quarterly", ContainmentMode.Prefixed, ComparisonMode.Exact)));
+        assertTrue(matches(contains("RÉP", ContainmentMode.PrefixOnWords, ComparisonMode.IgnoreCase)));
+        assertFalse(matches(contains("port", ContainmentMode.PrefixOnWords, ComparisonMode.IgnoreCase)));
+        assertTrue(matches(contains("Quarterly Réport", ContainmentMode.ExactPhrase, ComparisonMode.Exact)));
+        assertFalse(matches(contains("Quarterly Rép", ContainmentMode.ExactPhrase, ComparisonMode.Exact)));
+        assertFalse(matches(contains("report", ContainmentMode.Substring, ComparisonMode.IgnoreCase)));
+        assertTrue(matches(contains("report", ContainmentMode.Substring,
+                ComparisonMode.IgnoreCaseAndNonSpacingCharacters)));
+        assertTrue(matches(contains("Report", ContainmentMode.Substring, ComparisonMode.IgnoreNonSpacingCharacters)));
+        assertTrue(matches(new SearchFilter.ContainsSubstring(ItemSchema.Categories, "red",
+                ContainmentMode.PrefixOnWords, ComparisonMode.IgnoreCase)));
+        assertFalse(matches(contains("Re: Quarterly", ContainmentMode.FullString, ComparisonMode.Exact)));
+    }
+
+    @Test
+    public void testBitmaskAndCollections() throws Exception {
+        assertTrue(matches(new SearchFilter.ExcludesBitmask(MESSAGE_FLAGS, 0x4)));
+        assertFalse(matches(new SearchFilter.ExcludesBitmask(MESSAGE_FLAGS, 0x1)));
+        assertTrue(matches(new SearchFilter.SearchFilterCollection(LogicalOperator.And,
+                new SearchFilter.Exists(ItemSchema.Subject),
+                new SearchFilter.SearchFilterCollection(LogicalOperator.Or,
+                        new SearchFilter.IsEqualTo(ItemSchema.Size, 1),
+                        new SearchFilter.IsEqualTo(ItemSchema.Importance, Importance.High)))));
+        assertFalse(matches(new SearchFilter.SearchFilterCollection(LogicalOperator.Or)));
+        assertTrue(matches(new SearchFilter.SearchFilterCollection(LogicalOperator.And)));
+    }
+
+    @Test
+    public void testCompiledPredicateIgnoresLaterChanges() throws Exception {
+        SearchFilter.IsEqualTo filter = new SearchFilter.IsEqualTo(ItemSchema.Size, 2048);
+        Predicate<PropertyBag> predicate = SearchFilterEvaluator.compile(filter);
+        filter.setValue(1);
+        assertTrue(predicate.test(message.getPropertyBag()));
+    }
+
+    @Test
+    public void testContainmentModesAgreeOnRandomStrings() throws Exception {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, 12);
+            String value = random.nextBoolean() ? randomText(random, 4) : slice(random, text);
+            message.setSubject(text);
+            for (ComparisonMode comparisonMode : ComparisonMode.values()) {
+                boolean fullString = matches(contains(value, ContainmentMode.FullString, comparisonMode));
+                boolean prefixed = matches(contains(value, ContainmentMode.Prefixed, comparisonMode));
+                boolean exactPhrase = matches(contains(value, ContainmentMode.ExactPhrase, comparisonMode));
+                boolean prefixOnWords = matches(contains(value, ContainmentMode.PrefixOnWords, comparisonMode));
+                boolean substring = matches(contains(value, ContainmentMode.Substring, comparisonMode));
+                String context = "'" + value + "' in '" + text + "' " + comparisonMode;
+                assertTrue(context, !fullString || (prefixed && exactPhrase));
+                assertTrue(context, !prefixed || prefixOnWords);
+                assertTrue(context, !exactPhrase || prefixOnWords);
+                assertTrue(context, !prefixOnWords || substring);
+                assertEquals(context, substring, text.isEmpty() && value.isEmpty()
+                        || SearchFilterEvaluator.normalize(text, comparisonMode)
+                        .contains(SearchFilterEvaluator.normalize(value, comparisonMode)));
+            }
+            assertTrue(!matches(contains(value, ContainmentMode.Substring, ComparisonMode.Exact))
+                    || matches(contains(value, ContainmentMode.Substring, ComparisonMode.IgnoreCase)));
+        }
+    }
+
+    @Test
+    public void testLogicalOperatorsFollowDeMorgan() throws Exception {
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            message.getPropertyBag().getProperties().put(ItemSchema.Size, random.nextInt(10));
+            SearchFilter a = new SearchFilter.IsGreaterThan(ItemSchema.Size, random.nextInt(10));
+            SearchFilter b = new SearchFilter.IsLessThan(ItemSchema.Size, random.nextInt(10));
+            SearchFilter notAOrNotB = new SearchFilter.SearchFilterCollection(LogicalOperator.Or,
+                    new SearchFilter.Not(a), new SearchFilter.Not(b));
+            SearchFilter notAAndB = new SearchFilter.Not(
+                    new SearchFilter.SearchFilterCollection(LogicalOperator.And, a, b));
+            assertEquals(matches(notAAndB), matches(notAOrNotB));
+            assertEquals(!matches(a), matches(new SearchFilter.Not(a)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIndexedPropertiesAreRejected() {
+        SearchFilterEvaluator.compile(new SearchFilter.Exists(ContactSchema.EmailAddress1));
+    }
+
+    private boolean matches(SearchFilter filter) {
+        return SearchFilterEvaluator.matches(filter, message);
+    }
+
+    private static SearchFilter contains(String value, ContainmentMode containmentMode,
+                                         ComparisonMode comparisonMode) {
+        return new SearchFilter.ContainsSubstring(ItemSchema.Subject, value, containmentMode, comparisonMode);
+    }
+
+    private static String randomText(Random random, int maxLength) {
+        String alphabet = "aAbBéÉ -1.";
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(maxLength + 1);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return text.toString();
+    }
+
+    private static String slice(Random random, String text) {
+        int start = random.nextInt(text.length() + 1);
+        return text.substring(start, start + random.nextInt(text.length() - start + 1));
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class FolderHierarchyCacheTest {
+
+    private FolderHierarchyCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new FolderHierarchyCache(null, null);
+        // children may arrive before their parents
+        cache.put("projects", null, "inbox", "Projects", "IPF.Note");
+        cache.put("alpha", null, "projects", "Alpha", "IPF.Note");
+        cache.put("inbox", null, "root", "Inbox", "IPF.Note");
+        cache.put("sent", null, "root", "Sent Items", "IPF.Note");
+    }
+
+    @Test
+    public void testPathLookup() {
+        assertEquals("alpha", cache.getFolderByPath("/Inbox/Projects/Alpha").getUniqueId());
+        assertEquals("alpha", cache.getFolderByPath("inbox/projects/ALPHA").getUniqueId());
+        assertEquals(List.of("Inbox", "Projects", "Alpha"), cache.getFolder("alpha").getPath());
+        assertNull(cache.getFolderByPath("Projects"));
+        assertEquals(2, cache.getChildren("root").size());
+    }
+
+    @Test
+    public void testRenameAndMoveUpdateSubtree() {
+        cache.put("projects", null, "inbox", "Archive", "IPF.Note");
+        assertNull(cache.getFolderByPath("Inbox/Projects/Alpha"));
+        assertEquals("alpha", cache.getFolderByPath("Inbox/Archive/Alpha").getUniqueId());
+
+        cache.put("projects", null, "sent", "Archive", "IPF.Note");
+        assertEquals("alpha", cache.getFolderByPath("Sent Items/Archive/Alpha").getUniqueId());
+        assertTrue(cache.getChildren("inbox").isEmpty());
+    }
+
+    @Test
+    public void testSiblingsDifferingByCaseAreKept() {
+        cache.put("lower", null, "inbox", "projects", "IPF.Note");
+        cache.put("child", null, "lower", "Beta", "IPF.Note");
+        assertEquals("projects", cache.getFolderByPath("Inbox/Projects").getUniqueId());
+        assertEquals("lower", cache.getFolderByPath("Inbox/projects").getUniqueId());
+        assertEquals("projects", cache.getFolderByPath("INBOX/PROJECTS").getUniqueId());
+        assertEquals("alpha", cache.getFolderByPath("Inbox/Projects/Alpha").getUniqueId());
+        assertEquals("child", cache.getFolderByPath("Inbox/projects/Beta").getUniqueId());
+
+        cache.remove("projects");
+        assertEquals("lower", cache.getFolderByPath("Inbox/Projects").getUniqueId());
+        cache.put("lower", null, "inbox", "Other", "IPF.Note");
+        assertNull(cache.getFolderByPath("Inbox/projects"));
+        assertEquals("child", cache.getFolderByPath("Inbox/Other/Beta").getUniqueId());
+    }
+
+    @Test
+    public void testDeleteRemovesSubtree() {
+        cache.remove("projects");
+        assertNull(cache.getFolder("alpha"));
+        assertNull(cache.getFolderByPath("Inbox/Projects"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cache.writeTo(out);
+        FolderHierarchyCache copy = new FolderHierarchyCache(null, null);
+        copy.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(4, copy.size());
+        assertEquals("alpha", copy.getFolderByPath("Inbox/Projects/Alpha").getUniqueId());
+    }
+}
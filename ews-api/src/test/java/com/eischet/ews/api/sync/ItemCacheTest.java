@@ -0,0 +1,193 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.EwsServiceXmlReader;
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.MailboxContext;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.XmlNamespace;
+import com.eischet.ews.api.core.enumeration.notification.EventType;
+import com.eischet.ews.api.core.enumeration.property.BasePropertySet;
+import com.eischet.ews.api.core.enumeration.sync.ChangeType;
+import com.eischet.ews.api.core.response.GetItemResponse;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.notification.ItemEvent;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.security.XmlNodeType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class ItemCacheTest {
+
+    private static final String RESPONSE = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+            + "<m:GetItemResponseMessage ResponseClass=\"Success\""
+            + " xmlns:m=\"http://schemas.microsoft.com/exchange/services/2006/messages\""
+            + " xmlns:t=\"http://schemas.microsoft.com/exchange/services/2006/types\">"
+            + "<m:ResponseCode>NoError</m:ResponseCode>"
+            + "<m:Items><t:Message><t:ItemId Id=\"A\" ChangeKey=\"1\"/><t:Subject>Hello</t:Subject></t:Message>"
+            + "</m:Items></m:GetItemResponseMessage>";
+
+    private final PropertySet propertySet = new PropertySet(BasePropertySet.IdOnly, ItemSchema.Subject);
+    private final ExchangeService service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+    private ItemCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new ItemCache(Duration.ofMinutes(5), 10);
+        put(service);
+    }
+
+    @Test
+    public void testMatchingChangeKeyHits() throws Exception {
+        final Item hit = cache.get(service, itemId("A", "1"), propertySet);
+        assertNotNull(hit);
+        assertEquals("Hello", hit.getSubject());
+        assertSame(service, hit.getService());
+        assertNull(cache.get(service, itemId("A", "2"), propertySet));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEveryHitIsANewInstance() throws Exception {
+        final Item first = cache.get(service, itemId("A", "1"), propertySet);
+        first.setSubject("Changed");
+        final Item second = cache.get(service, itemId("A", "1"), propertySet);
+        assertNotSame(first, second);
+        assertEquals("Hello", second.getSubject());
+        assertTrue(second instanceof EmailMessage);
+    }
+
+    @Test
+    public void testOtherMailboxContextMisses() throws Exception {
+        final ExchangeService other = service.forMailbox(MailboxContext.forSmtpAddress("other@example.com"));
+        assertNull(cache.get(other, itemId("A", "1"), propertySet));
+
+        put(other);
+        assertEquals(2, cache.size());
+        assertSame(other, cache.get(other, itemId("A", "1"), propertySet).getService());
+
+        cache.invalidate("A");
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testOtherPropertySetMisses() throws Exception {
+        assertNull(cache.get(service, itemId("A", "1"), new PropertySet(BasePropertySet.IdOnly, ItemSchema.Body)));
+        assertNotNull(cache.get(service, itemId("A", "1"), new PropertySet(BasePropertySet.IdOnly, ItemSchema.Subject)));
+    }
+
+    @Test
+    public void testMissingChangeKeyHitsOnlyWhenTrusted() throws Exception {
+        assertNull(cache.get(service, new ItemId("A"), propertySet));
+        cache.setTrustInvalidations(true);
+        assertNotNull(cache.get(service, new ItemId("A"), propertySet));
+    }
+
+    @Test
+    public void testItemEventInvalidates() throws Exception {
+        ItemEvent event = itemEvent(EventType.Modified, itemId("A", "2"));
+        cache.handleEvents(Collections.singletonList(event));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testSyncChangesInvalidate() throws Exception {
+        ChangeCollection<ItemChange> changes = new ChangeCollection<>();
+        changes.add(itemChange(ChangeType.Update, itemId("A", "1")));
+        cache.handleChanges(null, changes);
+        assertEquals(1, cache.size());
+
+        changes = new ChangeCollection<>();
+        changes.add(itemChange(ChangeType.Update, itemId("A", "2")));
+        cache.handleChanges(null, changes);
+        assertEquals(0, cache.size());
+
+        put(service);
+        changes = new ChangeCollection<>();
+        changes.add(itemChange(ChangeType.Delete, new ItemId("A")));
+        cache.handleChanges(null, changes);
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Reads the item like a GetItem request keeping its XML does, and stores it for the service.
+     */
+    private void put(ExchangeService loadingService) throws Exception {
+        final EwsServiceXmlReader reader = new EwsServiceXmlReader(
+                new ByteArrayInputStream(RESPONSE.getBytes(StandardCharsets.UTF_8)), loadingService);
+        reader.read(new XmlNodeType(XmlNodeType.START_DOCUMENT));
+        reader.readStartElement(XmlNamespace.Messages, "GetItemResponseMessage");
+        reader.readElementValue(XmlNamespace.Messages, "ResponseCode");
+        reader.readStartElement(XmlNamespace.Messages, "Items");
+        final byte[] itemXml = reader.readOuterXmlDocument();
+        final Item item = GetItemResponse.readItemXml(loadingService, itemXml, propertySet);
+        cache.put(loadingService, item, itemXml, propertySet);
+    }
+
+    private static ItemId itemId(String uniqueId, String changeKey) throws Exception {
+        ItemId id = new ItemId(uniqueId);
+        id.setChangeKey(changeKey);
+        return id;
+    }
+
+    private static ItemChange itemChange(ChangeType changeType, ItemId id) {
+        ItemChange change = new ItemChange();
+        change.setChangeType(changeType);
+        change.setId(id);
+        return change;
+    }
+
+    private static ItemEvent itemEvent(EventType eventType, ItemId id) throws Exception {
+        Constructor<ItemEvent> constructor = ItemEvent.class.getDeclaredConstructor(EventType.class, LocalDateTime.class);
+        constructor.setAccessible(true);
+        ItemEvent event = constructor.newInstance(eventType, LocalDateTime.now());
+        Field field = ItemEvent.class.getDeclaredField("itemId");
+        field.setAccessible(true);
+        field.set(event, id);
+        return event;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.property.Importance;
+import com.eischet.ews.api.core.enumeration.search.LogicalOperator;
+import com.eischet.ews.api.core.enumeration.search.OffsetBasePoint;
+import com.eischet.ews.api.core.enumeration.search.SortDirection;
+import com.eischet.ews.api.core.enumeration.sync.ChangeType;
+import com.eischet.ews.api.core.service.item.EmailMessage;
+import com.eischet.ews.api.core.service.schema.EmailMessageSchema;
+import com.eischet.ews.api.core.service.schema.ItemSchema;
+import com.eischet.ews.api.property.complex.ItemId;
+import com.eischet.ews.api.property.complex.StringList;
+import com.eischet.ews.api.search.ItemView;
+import com.eischet.ews.api.search.filter.SearchFilter;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class LocalItemIndexTest {
+
+    private ExchangeService service;
+    private LocalItemIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new ExchangeService(null, ExchangeVersion.Exchange2010_SP2);
+        index = new LocalItemIndex(ItemSchema.Subject, ItemSchema.Size, ItemSchema.Importance,
+                ItemSchema.Categories, EmailMessageSchema.IsRead);
+    }
+
+    @Test
+    public void testFindWithIndexesMatchesScan() throws Exception {
+        final LocalItemIndex plain = new LocalItemIndex(ItemSchema.Subject, ItemSchema.Size, ItemSchema.Importance,
+                ItemSchema.Categories, EmailMessageSchema.IsRead);
+        index.addHashIndex(ItemSchema.Subject);
+        index.addSortedIndex(ItemSchema.Size);
+        index.addHashIndex(ItemSchema.Categories);
+        final Random random = new Random(47);
+        for (int i = 0; i < 500; i++) {
+            final EmailMessage message = message("id" + i, "Subject " + (i % 17), random.nextInt(10000),
+                    Importance.values()[i % 3], "Category " + (i % 5));
+            index.put(i % 2 == 0 ? "inbox" : "archive", message);
+            plain.put(i % 2 == 0 ? "inbox" : "archive", message);
+        }
+
+        final List<SearchFilter> filters = List.of(
+                new SearchFilter.IsEqualTo(ItemSchema.Subject, "SUBJECT 3"),
+                new SearchFilter.IsGreaterThanOrEqualTo(ItemSchema.Size, 5000),
+                new SearchFilter.IsLessThan(ItemSchema.Size, 1234.0),
+                new SearchFilter.IsEqualTo(ItemSchema.Categories, "category 2"),
+                new SearchFilter.SearchFilterCollection(LogicalOperator.And,
+                        new SearchFilter.IsEqualTo(ItemSchema.Subject, "subject 5"),
+                        new SearchFilter.IsGreaterThan(ItemSchema.Size, 2500L),
+                        new SearchFilter.IsNotEqualTo(ItemSchema.Importance, Importance.Low)),
+                new SearchFilter.SearchFilterCollection(LogicalOperator.Or,
+                        new SearchFilter.IsEqualTo(ItemSchema.Subject, "subject 1"),
+                        new SearchFilter.IsLessThanOrEqualTo(ItemSchema.Size, 100)),
+                new SearchFilter.IsEqualTo(ItemSchema.Size, "not a number"));
+        final ItemView view = new ItemView(1000);
+        view.getOrderBy().add(ItemSchema.Size, SortDirection.Descending);
+        for (SearchFilter filter : filters) {
+            for (String folder : new String[]{null, "inbox"}) {
+                assertEquals(filter.toString(), ids(plain.find(folder, filter, view)),
+                        ids(index.find(folder, filter, view)));
+            }
+        }
+        assertEquals(250, index.find("archive", null, view).getTotalCount());
+        assertEquals(0, index.find("unknown", null, view).getTotalCount());
+    }
+
+    @Test
+    public void testOrderAndPaging() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            index.put("inbox", message("id" + i, "Subject", i * 10, Importance.Normal, "Blue"));
+        }
+        final ItemView view = new ItemView(4, 2);
+        view.getOrderBy().add(ItemSchema.Size, SortDirection.Descending);
+        IndexedItemsResults results = index.find("inbox", null, view);
+        assertEquals(List.of("id7", "id6", "id5", "id4"), ids(results));
+        assertEquals(10, results.getTotalCount());
+        assertEquals(Integer.valueOf(6), results.getNextPageOffset());
+        assertTrue(results.isMoreAvailable());
+
+        final ItemView fromEnd = new ItemView(4, 0, OffsetBasePoint.End);
+        fromEnd.getOrderBy().add(ItemSchema.Size, SortDirection.Ascending);
+        results = index.find("inbox", null, fromEnd);
+        assertEquals(List.of("id6", "id7", "id8", "id9"), ids(results));
+        assertEquals(Integer.valueOf(4), results.getNextPageOffset());
+
+        results = index.find("inbox", null, new ItemView(20, 8));
+        assertEquals(2, results.getItems().size());
+        assertFalse(results.isMoreAvailable());
+    }
+
+    @Test
+    public void testHandleChanges() throws Exception {
+        index.addHashIndex(ItemSchema.Subject);
+        index.addHashIndex(EmailMessageSchema.IsRead);
+        final ChangeCollection<ItemChange> changes = new ChangeCollection<>();
+        changes.add(change(ChangeType.Create, message("a", "Hello", 10, Importance.Normal, "Blue")));
+        changes.add(change(ChangeType.Create, message("b", "World", 20, Importance.High, "Red")));
+        index.handleChanges("inbox", changes);
+        assertEquals(2, index.size());
+
+        final ChangeCollection<ItemChange> updates = new ChangeCollection<>();
+        updates.add(change(ChangeType.Update, message("a", "Goodbye", 10, Importance.Normal, "Blue")));
+        final ItemChange read = new ItemChange();
+        read.setChangeType(ChangeType.ReadFlagChange);
+        read.setId(new ItemId("b"));
+        read.setIsRead(true);
+        updates.add(read);
+        index.handleChanges("inbox", updates);
+
+        final ItemView view = new ItemView(10);
+        assertEquals(0, index.find(null, new SearchFilter.IsEqualTo(ItemSchema.Subject, "hello"), view).getTotalCount());
+        assertEquals(List.of("a"), ids(index.find(null, new SearchFilter.IsEqualTo(ItemSchema.Subject, "goodbye"), view)));
+        assertEquals(List.of("b"), ids(index.find(null, new SearchFilter.IsEqualTo(EmailMessageSchema.IsRead, true), view)));
+
+        // a deletion reported by another folder does not remove an item moved here
+        final ChangeCollection<ItemChange> deletes = new ChangeCollection<>();
+        final ItemChange delete = new ItemChange();
+        delete.setChangeType(ChangeType.Delete);
+        delete.setId(new ItemId("a"));
+        deletes.add(delete);
+        index.handleChanges("archive", deletes);
+        assertNotNull(index.get("a"));
+        index.handleChanges("inbox", deletes);
+        assertNull(index.get("a"));
+
+        index.removeFolder("inbox");
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testSnapshotAndValidation() throws Exception {
+        final EmailMessage message = message("a", "Hello", 10, Importance.Normal, "Blue");
+        index.put("inbox", message);
+        message.getCategories().add("Red");
+        assertEquals(List.of("Blue"), index.get("a").getValue(ItemSchema.Categories));
+        assertEquals("a", index.get("a").toItemId().getUniqueId());
+
+        try {
+            index.find(null, new SearchFilter.IsEqualTo(ItemSchema.DisplayTo, "x"), new ItemView(10));
+            fail("unstored properties cannot be queried");
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            index.addSortedIndex(ItemSchema.DisplayCc);
+            fail("unstored properties cannot be indexed");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private EmailMessage message(String id, String subject, int size, Importance importance, String category)
+            throws Exception {
+        final EmailMessage message = new EmailMessage(service);
+        message.getPropertyBag().getProperties().put(ItemSchema.Id, new ItemId(id));
+        message.setSubject(subject);
+        message.setImportance(importance);
+        message.setCategories(new StringList(List.of(category)));
+        message.getPropertyBag().getProperties().put(ItemSchema.Size, size);
+        message.getPropertyBag().getProperties().put(EmailMessageSchema.IsRead, false);
+        return message;
+    }
+
+    private static ItemChange change(ChangeType type, EmailMessage message) {
+        final ItemChange change = new ItemChange();
+        change.setChangeType(type);
+        change.setServiceObject(message);
+        return change;
+    }
+
+    private static List<String> ids(IndexedItemsResults results) {
+        final List<String> ids = new ArrayList<>();
+        for (IndexedItem item : results) {
+            ids.add(item.getUniqueId());
+        }
+        return ids;
+    }
+}
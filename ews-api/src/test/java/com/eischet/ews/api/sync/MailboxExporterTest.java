@@ -0,0 +1,236 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.IMimeContentHandler;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
+import com.eischet.ews.api.core.enumeration.service.ServiceResult;
+import com.eischet.ews.api.core.enumeration.sync.ChangeType;
+import com.eischet.ews.api.core.exception.service.local.ServiceLocalException;
+import com.eischet.ews.api.core.exception.service.remote.ServiceResponseException;
+import com.eischet.ews.api.core.response.GetItemResponse;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.property.complex.ItemId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class MailboxExporterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testExportsItemsAndResumesFromCheckpoint() throws Exception {
+        ExchangeService service = mockService();
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), isNull()))
+                .thenReturn(page("s1", "a", "b", "c", "missing"));
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), eq("s1")))
+                .thenReturn(page("s2", "d"));
+        mockMimeContents(service, new AtomicInteger(), new AtomicBoolean());
+
+        InMemorySyncStateStore store = new InMemorySyncStateStore();
+        Path target = temporaryFolder.getRoot().toPath().resolve("Inbox");
+        FolderId inbox = new FolderId(WellKnownFolderName.Inbox);
+        try (MailboxExporter exporter = new MailboxExporter(service, store, temporaryFolder.getRoot().toPath())) {
+            exporter.setBatchSize(2);
+            assertEquals(3, exporter.exportFolder(inbox, target));
+            assertEquals("s1", store.load("", "inbox-id"));
+            assertEquals("Subject: b", read(target.resolve(MailboxExporter.getFileName("b"))));
+            assertEquals(0, exporter.getFailedCount());
+
+            assertEquals(1, exporter.exportFolder(inbox, target));
+            assertEquals("s2", store.load("", "inbox-id"));
+            assertEquals(4, exporter.getExportedCount());
+        }
+        // only the exported messages are left, no temporary files
+        assertEquals(4, target.toFile().list().length);
+    }
+
+    @Test
+    public void testPageWithFailedItemsIsNotCheckpointed() throws Exception {
+        ExchangeService service = mockService();
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), isNull()))
+                .thenReturn(page("s1", "a", "broken"));
+        AtomicBoolean broken = new AtomicBoolean(true);
+        mockMimeContents(service, new AtomicInteger(), broken);
+
+        InMemorySyncStateStore store = new InMemorySyncStateStore();
+        Path target = temporaryFolder.getRoot().toPath().resolve("Inbox");
+        FolderId inbox = new FolderId(WellKnownFolderName.Inbox);
+        try (MailboxExporter exporter = new MailboxExporter(service, store, temporaryFolder.getRoot().toPath())) {
+            try {
+                exporter.exportFolder(inbox, target);
+                fail("a page with a failed item must not be checkpointed");
+            } catch (ServiceLocalException expected) {
+            }
+            assertNull(store.load("", "inbox-id"));
+            assertEquals(1, exporter.getFailedCount());
+            assertTrue(Files.exists(target.resolve(MailboxExporter.getFileName("a"))));
+
+            // the next run fetches the page again
+            broken.set(false);
+            assertEquals(2, exporter.exportFolder(inbox, target));
+            assertEquals("s1", store.load("", "inbox-id"));
+        }
+    }
+
+    @Test
+    public void testBusyItemsAreRetriedAndStopTheExportWhenTheServerStaysBusy() throws Exception {
+        ExchangeService service = mockService();
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), isNull()))
+                .thenReturn(page("s1", "a", "busy"));
+        AtomicInteger busyResponses = new AtomicInteger(1);
+        mockMimeContents(service, busyResponses, new AtomicBoolean());
+
+        InMemorySyncStateStore store = new InMemorySyncStateStore();
+        Path target = temporaryFolder.getRoot().toPath().resolve("Inbox");
+        FolderId inbox = new FolderId(WellKnownFolderName.Inbox);
+        try (MailboxExporter exporter = new MailboxExporter(service, store, temporaryFolder.getRoot().toPath())) {
+            assertEquals(2, exporter.exportFolder(inbox, target));
+            assertEquals("Subject: busy", read(target.resolve(MailboxExporter.getFileName("busy"))));
+
+            store.delete("", "inbox-id");
+            busyResponses.set(1);
+            exporter.setMaxRetries(0);
+            try {
+                exporter.exportFolder(inbox, target);
+                fail("the export must stop while the server is busy");
+            } catch (ServiceResponseException e) {
+                assertEquals(ServiceError.ErrorServerBusy, e.getErrorCode());
+            }
+            assertNull(store.load("", "inbox-id"));
+            assertEquals(0, exporter.getFailedCount());
+        }
+    }
+
+    @Test
+    public void testFolderDirectoriesAreUnique() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath();
+        try (MailboxExporter exporter = new MailboxExporter(new ExchangeService(null), new InMemorySyncStateStore(),
+                root)) {
+            CachedFolder inbox = new CachedFolder("i", "ck", "root", "Inbox", null, List.of("Inbox"));
+            CachedFolder upper = new CachedFolder("b", "ck", "i", "Foo", null, List.of("Inbox", "Foo"));
+            CachedFolder lower = new CachedFolder("c", "ck", "i", "foo", null, List.of("Inbox", "foo"));
+            CachedFolder slash = new CachedFolder("d", "ck", "i", "a/b", null, List.of("Inbox", "a/b"));
+            CachedFolder underscore = new CachedFolder("e", "ck", "i", "a_b", null, List.of("Inbox", "a_b"));
+            CachedFolder child = new CachedFolder("f", "ck", "c", "x", null, List.of("Inbox", "foo", "x"));
+            Map<String, Path> directories = exporter.getFolderDirectories(
+                    List.of(child, underscore, slash, lower, upper, inbox));
+
+            Path lowerDirectory = root.resolve("Inbox").resolve("foo~" + MailboxExporter.getFileName("c")
+                    .substring(0, 8));
+            assertEquals(root.resolve("Inbox"), directories.get("i"));
+            assertEquals(root.resolve("Inbox").resolve("Foo"), directories.get("b"));
+            assertEquals(lowerDirectory, directories.get("c"));
+            assertEquals(root.resolve("Inbox").resolve("a_b"), directories.get("d"));
+            assertEquals(root.resolve("Inbox").resolve("a_b~" + MailboxExporter.getFileName("e").substring(0, 8)),
+                    directories.get("e"));
+            assertEquals(lowerDirectory.resolve("x"), directories.get("f"));
+        }
+    }
+
+    @Test
+    public void testFolderDirectoryIsSanitized() throws Exception {
+        Path root = temporaryFolder.getRoot().toPath();
+        try (MailboxExporter exporter = new MailboxExporter(new ExchangeService(null), new InMemorySyncStateStore(),
+                root)) {
+            CachedFolder folder = new CachedFolder("id", "ck", null, "a/b", null, List.of("Inbox", "a/b", ".."));
+            assertEquals(root.resolve("Inbox").resolve("a_b").resolve("_"), exporter.getFolderDirectory(folder));
+        }
+    }
+
+    private static ExchangeService mockService() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.getMaxConcurrentRequests()).thenReturn(2);
+        SyncEngineTest.mockInbox(service);
+        return service;
+    }
+
+    /**
+     * Answers GetItem with the id as subject; "missing" is not found, "busy" is busy as long as busyResponses is
+     * positive, and "broken" fails as long as broken is set.
+     */
+    private static void mockMimeContents(ExchangeService service, AtomicInteger busyResponses, AtomicBoolean broken)
+            throws Exception {
+        when(service.writeMimeContents(any(), any(IMimeContentHandler.class))).thenAnswer(invocation -> {
+            List<ItemId> ids = invocation.getArgument(0);
+            IMimeContentHandler handler = invocation.getArgument(1);
+            ServiceResponseCollection<GetItemResponse> responses = new ServiceResponseCollection<>();
+            for (int i = 0; i < ids.size(); i++) {
+                String id = ids.get(i).getUniqueId();
+                GetItemResponse response = new GetItemResponse(null, PropertySet.IdOnly);
+                if ("broken".equals(id) && broken.get()) {
+                    ServiceResponses.error(response, ServiceError.ErrorAccessDenied);
+                } else if (ServiceResponses.forId(response, id, busyResponses).getResult() == ServiceResult.Success) {
+                    try (OutputStream out = handler.getOutputStream(i, "UTF-8")) {
+                        out.write(("Subject: " + id).getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                responses.add(response);
+            }
+            return responses;
+        });
+    }
+
+    private static ChangeCollection<ItemChange> page(String syncState, String... ids) throws Exception {
+        ChangeCollection<ItemChange> changes = new ChangeCollection<>();
+        for (String id : ids) {
+            ItemChange change = new ItemChange();
+            change.setChangeType(ChangeType.Create);
+            change.setId(new ItemId(id));
+            changes.add(change);
+        }
+        changes.setSyncState(syncState);
+        return changes;
+    }
+
+    private static String read(Path file) throws Exception {
+        return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.enumeration.misc.ExchangeVersion;
+import com.eischet.ews.api.core.enumeration.misc.error.ServiceError;
+import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
+import com.eischet.ews.api.core.response.ServiceResponse;
+import com.eischet.ews.api.core.response.ServiceResponseCollection;
+import com.eischet.ews.api.core.response.ServiceResponses;
+import com.eischet.ews.api.core.service.item.Item;
+import com.eischet.ews.api.property.complex.FolderId;
+import com.eischet.ews.api.property.complex.MimeContent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class MailboxImporterTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testImportsInBatchesRetriesBusyAndSkipsJournaled() throws Exception {
+        Path directory = temporaryFolder.newFolder("import").toPath();
+        for (String name : new String[]{"a", "b", "busy", "c", "rejected"}) {
+            Files.write(directory.resolve(name + MailboxExporter.FILE_EXTENSION),
+                    ("Subject: " + name).getBytes(StandardCharsets.UTF_8));
+        }
+        Files.write(directory.resolve("ignored.txt"), new byte[1]);
+
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.getMaxConcurrentRequests()).thenReturn(2);
+        when(service.getRequestedServerVersion()).thenReturn(ExchangeVersion.Exchange2010_SP2);
+        List<List<String>> requests = new ArrayList<>();
+        List<String> busyOnce = new ArrayList<>(List.of("busy"));
+        when(service.createItems(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Item> items = invocation.getArgument(0);
+            List<String> names = new ArrayList<>();
+            ServiceResponseCollection<ServiceResponse> responses = new ServiceResponseCollection<>();
+            for (Item item : items) {
+                MimeContent content = item.getMimeContent();
+                String name = content.getFile().getFileName().toString().replace(MailboxExporter.FILE_EXTENSION, "");
+                names.add(name);
+                assertEquals(1, item.getExtendedProperties().getItems().size());
+                if ("rejected".equals(name)) {
+                    responses.add(ServiceResponses.error(new ServiceResponse(),
+                            ServiceError.ErrorMimeContentConversionFailed));
+                } else if (busyOnce.remove(name)) {
+                    responses.add(ServiceResponses.serverBusy(new ServiceResponse(), 10));
+                } else {
+                    responses.add(ServiceResponses.success());
+                }
+            }
+            synchronized (requests) {
+                requests.add(names);
+            }
+            return responses;
+        });
+
+        Path journal = temporaryFolder.getRoot().toPath().resolve("journal.txt");
+        FolderId inbox = new FolderId(WellKnownFolderName.Inbox);
+        try (MailboxImporter importer = new MailboxImporter(service)) {
+            importer.setMaxBatchSize(2);
+            importer.setJournal(journal);
+            List<MailboxImporter.ImportResult> results = importer.importDirectory(directory, inbox);
+
+            assertEquals(5, results.size());
+            assertTrue(results.get(2).isSuccess());
+            assertFalse(results.get(4).isSuccess());
+            assertEquals(ServiceError.ErrorMimeContentConversionFailed, results.get(4).getErrorCode());
+            assertEquals(4, importer.getImportedCount());
+            assertEquals(1, importer.getFailedCount());
+            // three batches plus the retry of the busy message
+            assertEquals(4, requests.size());
+            assertTrue(requests.contains(List.of("busy")));
+        }
+
+        requests.clear();
+        try (MailboxImporter importer = new MailboxImporter(service)) {
+            importer.setJournal(journal);
+            List<MailboxImporter.ImportResult> results = importer.importDirectory(directory, inbox);
+            assertEquals(1, results.size());
+            assertEquals(List.of(List.of("rejected")), requests);
+        }
+    }
+
+    @Test
+    public void testJournalIsWrittenAfterEachBatch() throws Exception {
+        Path directory = temporaryFolder.newFolder("journaled").toPath();
+        List<Path> files = new ArrayList<>();
+        for (String name : new String[]{"a", "b"}) {
+            Path file = directory.resolve(name + MailboxExporter.FILE_EXTENSION);
+            Files.write(file, ("Subject: " + name).getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        Path journal = temporaryFolder.getRoot().toPath().resolve("batches.txt");
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.getRequestedServerVersion()).thenReturn(ExchangeVersion.Exchange2010_SP2);
+        List<String> journalBeforeBatch = new ArrayList<>();
+        List<Object> messageFlags = new ArrayList<>();
+        when(service.createItems(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Item> items = invocation.getArgument(0);
+            journalBeforeBatch.add(new String(Files.readAllBytes(journal), StandardCharsets.UTF_8));
+            ServiceResponseCollection<ServiceResponse> responses = new ServiceResponseCollection<>();
+            for (Item item : items) {
+                messageFlags.add(item.getExtendedProperties().getItems().get(0).getValue());
+                responses.add(ServiceResponses.success());
+            }
+            return responses;
+        });
+
+        try (MailboxImporter importer = new MailboxImporter(service)) {
+            importer.setConcurrency(1);
+            importer.setMaxBatchSize(1);
+            importer.setMarkAsRead(false);
+            importer.setJournal(journal);
+            importer.importFiles(files, new FolderId(WellKnownFolderName.Inbox));
+        }
+        // the first message is in the journal before the second batch is sent
+        assertEquals("", journalBeforeBatch.get(0));
+        assertTrue(journalBeforeBatch.get(1), journalBeforeBatch.get(1).startsWith("OK\t" + files.get(0)));
+        // unread, and no longer a draft
+        assertEquals(List.of(0, 0), messageFlags);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBatchesAreBoundedBySize() throws Exception {
+        Path directory = temporaryFolder.newFolder("sized").toPath();
+        List<Path> files = new ArrayList<>();
+        for (int size : new int[]{40, 40, 40, 200, 10}) {
+            Path file = directory.resolve("m" + files.size() + MailboxExporter.FILE_EXTENSION);
+            Files.write(file, new byte[size]);
+            files.add(file);
+        }
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        when(service.getRequestedServerVersion()).thenReturn(ExchangeVersion.Exchange2010_SP2);
+        List<Integer> batchSizes = new ArrayList<>();
+        when(service.createItems(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Collection<Item> items = invocation.getArgument(0);
+            ServiceResponseCollection<ServiceResponse> responses = new ServiceResponseCollection<>();
+            for (int i = 0; i < items.size(); i++) {
+                responses.add(ServiceResponses.success());
+            }
+            synchronized (batchSizes) {
+                batchSizes.add(items.size());
+            }
+            return responses;
+        });
+
+        try (MailboxImporter importer = new MailboxImporter(service)) {
+            importer.setConcurrency(1);
+            importer.setMaxBatchBytes(100);
+            importer.importFiles(files, new FolderId(WellKnownFolderName.Inbox));
+        }
+        assertEquals(List.of(2, 1, 1, 1), batchSizes);
+    }
+}
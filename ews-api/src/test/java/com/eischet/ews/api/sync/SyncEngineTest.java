@@ -0,0 +1,167 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.api.sync;
+
+import com.eischet.ews.api.core.ExchangeService;
+import com.eischet.ews.api.core.PropertySet;
+import com.eischet.ews.api.core.enumeration.property.WellKnownFolderName;
+import com.eischet.ews.api.core.enumeration.service.SyncFolderItemsScope;
+import com.eischet.ews.api.core.service.folder.Folder;
+import com.eischet.ews.api.core.service.schema.FolderSchema;
+import com.eischet.ews.api.property.complex.FolderId;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@RunWith(JUnit4.class)
+public class SyncEngineTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testFileStoreRoundTrip() throws Exception {
+        FileSyncStateStore store = new FileSyncStateStore(temporaryFolder.getRoot().toPath().resolve("states"));
+        assertNull(store.load("user@example.com", "Inbox"));
+        store.save("user@example.com", "Inbox", "state1");
+        store.save("user@example.com", "Inbox", "state2");
+        store.save("other@example.com", "Inbox", "other");
+        assertEquals("state2", store.load("user@example.com", "Inbox"));
+        assertEquals("other", store.load("other@example.com", "Inbox"));
+        store.delete("user@example.com", "Inbox");
+        assertNull(store.load("user@example.com", "Inbox"));
+        // no temporary files are left behind
+        assertEquals(1, store.getDirectory().toFile().list().length);
+    }
+
+    @Test
+    public void testResumesFromLastCompletedPage() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        mockInbox(service);
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), isNull()))
+                .thenReturn(page("s1", true, 2));
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), eq("s1")))
+                .thenReturn(page("s2", false, 1));
+
+        InMemorySyncStateStore store = new InMemorySyncStateStore();
+        FolderId inbox = new FolderId(WellKnownFolderName.Inbox);
+        List<String> seen = new ArrayList<>();
+        try (SyncEngine engine = new SyncEngine(service, store, 2)) {
+            try {
+                engine.syncFolderItems(inbox, PropertySet.IdOnly, 2, SyncFolderItemsScope.NormalItems,
+                        (folder, changes) -> {
+                            if ("s2".equals(changes.getSyncState())) {
+                                throw new IllegalStateException("crash");
+                            }
+                            seen.add(changes.getSyncState());
+                        });
+                fail("handler failure must be propagated");
+            } catch (IllegalStateException expected) {
+                // the first page is checkpointed, the failed one is not
+            }
+            assertEquals("s1", store.load("", "inbox-id"));
+
+            int count = engine.submitFolderItems(inbox, PropertySet.IdOnly, 2, SyncFolderItemsScope.NormalItems,
+                    (folder, changes) -> seen.add(changes.getSyncState())).get();
+            assertEquals(1, count);
+            assertEquals("s2", store.load("", "inbox-id"));
+            assertEquals(List.of("s1", "s2"), seen);
+        }
+    }
+
+    @Test
+    public void testWellKnownNameAndIdShareOneSyncState() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(service);
+        mockInbox(service);
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), isNull()))
+                .thenReturn(page("s1", false, 1));
+        when(service.syncFolderItems(any(), any(), any(), anyInt(), any(), eq("s1")))
+                .thenReturn(page("s2", false, 1));
+
+        InMemorySyncStateStore store = new InMemorySyncStateStore();
+        try (SyncEngine engine = new SyncEngine(service, store, 1)) {
+            assertEquals("inbox-id", engine.resolveFolderKey(new FolderId(WellKnownFolderName.Inbox)));
+            engine.syncFolderItems(new FolderId(WellKnownFolderName.Inbox), PropertySet.IdOnly, 2,
+                    SyncFolderItemsScope.NormalItems, (folder, changes) -> assertEquals("inbox-id", folder));
+            assertEquals("s1", store.load("", "inbox-id"));
+
+            engine.syncFolderItems(new FolderId("inbox-id"), PropertySet.IdOnly, 2,
+                    SyncFolderItemsScope.NormalItems, (folder, changes) -> assertEquals("inbox-id", folder));
+            assertEquals("s2", store.load("", "inbox-id"));
+        }
+        // the name is resolved once
+        verify(service, times(1)).bindToFolder(any(FolderId.class), any(PropertySet.class));
+    }
+
+    @Test
+    public void testSubmittedNamesAreResolvedByTheWorker() throws Exception {
+        ExchangeService service = mock(ExchangeService.class);
+        ExchangeService view = mock(ExchangeService.class);
+        when(service.getMailboxContext()).thenReturn(new ExchangeService(null).getMailboxContext());
+        when(service.forMailbox(any())).thenReturn(view);
+        mockInbox(view);
+        when(view.syncFolderItems(any(), any(), any(), anyInt(), any(), isNull()))
+                .thenReturn(page("s1", false, 1));
+
+        InMemorySyncStateStore store = new InMemorySyncStateStore();
+        try (SyncEngine engine = new SyncEngine(service, store, 1)) {
+            assertEquals(1, engine.submitFolderItems(new FolderId(WellKnownFolderName.Inbox), PropertySet.IdOnly, 2,
+                    SyncFolderItemsScope.NormalItems, (folder, changes) -> assertEquals("inbox-id", folder))
+                    .get().intValue());
+            assertEquals("s1", store.load("", "inbox-id"));
+        }
+        // the service of the caller is never used by the worker
+        verify(service, never()).bindToFolder(any(FolderId.class), any(PropertySet.class));
+        verify(view, times(1)).bindToFolder(any(FolderId.class), any(PropertySet.class));
+    }
+
+    static void mockInbox(ExchangeService service) throws Exception {
+        Folder inbox = new Folder(new ExchangeService(null));
+        inbox.getPropertyBag().getProperties().put(FolderSchema.Id, new FolderId("inbox-id"));
+        when(service.bindToFolder(any(FolderId.class), any(PropertySet.class))).thenReturn(inbox);
+    }
+
+    private static ChangeCollection<ItemChange> page(String syncState, boolean more, int count) {
+        ChangeCollection<ItemChange> changes = new ChangeCollection<>();
+        for (int i = 0; i < count; i++) {
+            changes.add(new ItemChange());
+        }
+        changes.setSyncState(syncState);
+        changes.setMoreChangesAvailable(more);
+        return changes;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.apache4;
+
+import com.eischet.ews.api.http.MailboxAffinityCookies;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Makes sure that the backend affinity cookie the API sends for the anchor mailbox of a request is not
+ * contradicted by the one in the shared cookie store, which belongs to whichever mailbox received it last.
+ * <p>
+ * The API adds its cookie as a Cookie header of its own before the cookie store is consulted, so it is the
+ * first Cookie header holding nothing but the affinity cookie.
+ * </p>
+ */
+public class AffinityCookieRequestInterceptor implements HttpRequestInterceptor {
+
+    private static final String COOKIE_HEADER = "Cookie";
+    private static final String PREFIX = MailboxAffinityCookies.BACK_END_OVERRIDE_COOKIE + "=";
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        Header[] headers = request.getHeaders(COOKIE_HEADER);
+        if (headers.length < 2) {
+            return;
+        }
+        Header explicit = null;
+        for (Header header : headers) {
+            if (header.getValue().startsWith(PREFIX) && header.getValue().indexOf(';') < 0) {
+                explicit = header;
+                break;
+            }
+        }
+        if (explicit == null) {
+            return;
+        }
+        request.removeHeaders(COOKIE_HEADER);
+        request.addHeader(explicit);
+        for (Header header : headers) {
+            if (header == explicit) {
+                continue;
+            }
+            List<String> kept = new ArrayList<>();
+            for (String cookie : header.getValue().split(";")) {
+                if (!cookie.trim().startsWith(PREFIX)) {
+                    kept.add(cookie.trim());
+                }
+            }
+            if (!kept.isEmpty()) {
+                request.addHeader(COOKIE_HEADER, String.join("; ", kept));
+            }
+        }
+    }
+}
@@ -27,12 +27,14 @@ import com.eischet.ews.api.EWSConstants;
 import com.eischet.ews.api.core.WebProxy;
 import com.eischet.ews.api.core.exception.http.EWSHttpException;
 import com.eischet.ews.api.core.request.HttpWebRequest;
+import com.eischet.ews.api.http.AuthenticationMetrics;
 import com.eischet.ews.api.http.ExchangeHttpClient;
 import com.eischet.ews.api.util.IOUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.NTCredentials;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.AuthenticationStrategy;
 import org.apache.http.client.CookieStore;
 import org.apache.http.client.CredentialsProvider;
@@ -43,14 +45,14 @@ import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.util.EntityUtils;
 
@@ -67,8 +69,16 @@ public class ApacheHttpClient implements ExchangeHttpClient {
 
     protected CloseableHttpClient httpPoolingClient;
 
+    private PoolingHttpClientConnectionManager httpConnectionManager;
+
+    private int maximumConnections = 10;
+
     private int maximumPoolingConnections = 10;
 
+    private final AuthCache authCache = new BasicAuthCache();
+
+    private final AuthenticationMetrics authenticationMetrics = new AuthenticationMetrics();
+
     public int getMaximumPoolingConnections() {
         return maximumPoolingConnections;
     }
@@ -84,12 +94,16 @@ public class ApacheHttpClient implements ExchangeHttpClient {
 
     private void initializeHttpClient() {
         Registry<ConnectionSocketFactory> registry = createConnectionSocketFactoryRegistry();
-        HttpClientConnectionManager httpConnectionManager = new BasicHttpClientConnectionManager(registry);
-        AuthenticationStrategy authStrategy = new CookieProcessingTargetAuthenticationStrategy();
+        httpConnectionManager = new PoolingHttpClientConnectionManager(registry);
+        httpConnectionManager.setMaxTotal(maximumConnections);
+        httpConnectionManager.setDefaultMaxPerRoute(maximumConnections);
+        AuthenticationStrategy authStrategy = new CookieProcessingTargetAuthenticationStrategy(authenticationMetrics);
 
         httpClient = HttpClients.custom()
                 .setConnectionManager(httpConnectionManager)
                 .setTargetAuthenticationStrategy(authStrategy)
+                .setRequestExecutor(new AuthenticationCountingRequestExecutor(authenticationMetrics))
+                .addInterceptorLast(new AffinityCookieRequestInterceptor())
                 .build();
     }
 
@@ -98,11 +112,13 @@ public class ApacheHttpClient implements ExchangeHttpClient {
         PoolingHttpClientConnectionManager httpConnectionManager = new PoolingHttpClientConnectionManager(registry);
         httpConnectionManager.setMaxTotal(maximumPoolingConnections);
         httpConnectionManager.setDefaultMaxPerRoute(maximumPoolingConnections);
-        AuthenticationStrategy authStrategy = new CookieProcessingTargetAuthenticationStrategy();
+        AuthenticationStrategy authStrategy = new CookieProcessingTargetAuthenticationStrategy(authenticationMetrics);
 
         httpPoolingClient = HttpClients.custom()
                 .setConnectionManager(httpConnectionManager)
                 .setTargetAuthenticationStrategy(authStrategy)
+                .setRequestExecutor(new AuthenticationCountingRequestExecutor(authenticationMetrics))
+                .addInterceptorLast(new AffinityCookieRequestInterceptor())
                 .build();
     }
 
@@ -121,6 +137,42 @@ public class ApacheHttpClient implements ExchangeHttpClient {
         this.maximumPoolingConnections = maximumPoolingConnections;
     }
 
+    /**
+     * Gets the maximum number of connections used for regular requests.
+     *
+     * @return Maximum number of connections
+     */
+    public int getMaximumConnections() {
+        return maximumConnections;
+    }
+
+    /**
+     * Sets the maximum number of connections used for regular requests. Connections are kept alive and
+     * bound to the credentials they were authenticated with, so that connection-based schemes like NTLM
+     * don't need a new handshake for every request.
+     * <p>
+     * Default is 10.
+     * </p>
+     *
+     * @param maximumConnections Maximum number of connections
+     */
+    public void setMaximumConnections(int maximumConnections) {
+        if (maximumConnections < 1)
+            throw new IllegalArgumentException("maximumConnections must be 1 or greater");
+        this.maximumConnections = maximumConnections;
+        httpConnectionManager.setMaxTotal(maximumConnections);
+        httpConnectionManager.setDefaultMaxPerRoute(maximumConnections);
+    }
+
+    /**
+     * Gets the authentication counters of this client, e.g. to check how often NTLM handshakes happen.
+     *
+     * @return the authentication metrics
+     */
+    public AuthenticationMetrics getAuthenticationMetrics() {
+        return authenticationMetrics;
+    }
+
     /**
      * Create registry with configured {@link ConnectionSocketFactory} instances.
      * Override this method to change how to work with different schemas.
@@ -178,7 +230,7 @@ public class ApacheHttpClient implements ExchangeHttpClient {
 
     @Override
     public Request createRequest() {
-        HttpClientWebRequest request = new HttpClientWebRequest(httpClient, httpContext);
+        HttpClientWebRequest request = new HttpClientWebRequest(httpClient, httpContext, authCache, authenticationMetrics);
         request.setProxy(getWebProxy());
         return request;
     }
@@ -189,7 +241,8 @@ public class ApacheHttpClient implements ExchangeHttpClient {
             initializeHttpPoolingClient();
         }
 
-        HttpClientWebRequest request = new HttpClientWebRequest(httpPoolingClient, httpContext);
+        HttpClientWebRequest request = new HttpClientWebRequest(httpPoolingClient, httpContext, authCache,
+                authenticationMetrics);
         request.setProxy(getWebProxy());
         return request;
     }
@@ -207,15 +260,38 @@ public class ApacheHttpClient implements ExchangeHttpClient {
         private CloseableHttpResponse response = null;
 
         private final CloseableHttpClient httpClient;
-        private final HttpClientContext httpContext;
+        private final HttpClientContext sharedContext;
+        private final AuthCache authCache;
+        private final AuthenticationMetrics authenticationMetrics;
+
+        /**
+         * The context of this request. It shares the cookie store and the authentication cache of the client,
+         * but carries its own authentication state, so concurrent requests don't interfere.
+         */
+        private HttpClientContext httpContext;
 
 
         /**
          * Instantiates a new http native web request.
          */
         public HttpClientWebRequest(CloseableHttpClient httpClient, HttpClientContext httpContext) {
+            this(httpClient, httpContext, new BasicAuthCache(), new AuthenticationMetrics());
+        }
+
+        /**
+         * Instantiates a new http native web request.
+         *
+         * @param httpClient            the client to execute the request with
+         * @param sharedContext         the context holding the shared cookie store
+         * @param authCache             the authentication cache shared by all requests of the client
+         * @param authenticationMetrics the counters to update
+         */
+        public HttpClientWebRequest(CloseableHttpClient httpClient, HttpClientContext sharedContext,
+                                    AuthCache authCache, AuthenticationMetrics authenticationMetrics) {
             this.httpClient = httpClient;
-            this.httpContext = httpContext;
+            this.sharedContext = sharedContext;
+            this.authCache = authCache;
+            this.authenticationMetrics = authenticationMetrics;
         }
 
         /**
@@ -275,6 +351,9 @@ public class ApacheHttpClient implements ExchangeHttpClient {
                             .setProxyPreferredAuthSchemes(Arrays.asList(AuthSchemes.NTLM, AuthSchemes.BASIC));
 
             CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+            httpContext = HttpClientContext.create();
+            httpContext.setCookieStore(sharedContext.getCookieStore());
+            httpContext.setAuthCache(authCache);
 
             // Add proxy credential if necessary.
             WebProxy proxy = getProxy();
@@ -296,6 +375,16 @@ public class ApacheHttpClient implements ExchangeHttpClient {
             if (isAllowAuthentication() && getUsername() != null) {
                 NTCredentials webServiceCredentials = new NTCredentials(getUsername(), getPassword(), "", getDomain());
                 credentialsProvider.setCredentials(new AuthScope(AuthScope.ANY), webServiceCredentials);
+
+                // Bind the connection to these credentials: the pool hands out connections already
+                // authenticated for the same user, which saves the NTLM handshake, and never
+                // those authenticated for somebody else.
+                httpContext.setUserToken(webServiceCredentials.getUserPrincipal());
+
+                HttpHost target = new HttpHost(getUrl().getHost(), getUrl().getPort(), getUrl().getProtocol());
+                if (isPreAuthenticate() && authCache.get(target) == null) {
+                    authCache.put(target, new BasicScheme());
+                }
             }
 
             httpContext.setCredentialsProvider(credentialsProvider);
@@ -436,6 +525,7 @@ public class ApacheHttpClient implements ExchangeHttpClient {
         @Override
         public int executeRequest() throws EWSHttpException, IOException {
             throwIfRequestIsNull();
+            authenticationMetrics.requestSent();
             response = httpClient.execute(httpPost, httpContext);
             return response.getStatusLine().getStatusCode(); // ?? don't know what is wanted in return
         }
@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.apache4;
+
+import com.eischet.ews.api.http.AuthenticationMetrics;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpException;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AUTH;
+import org.apache.http.auth.AuthProtocolState;
+import org.apache.http.auth.AuthState;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+
+import java.io.IOException;
+
+/**
+ * HttpRequestExecutor that counts the requests which carry credentials without having been challenged. The
+ * Authorization header is only added by the client right before a request is sent, so this is the first place
+ * where it can be seen whether a scheme from the authentication cache was actually used.
+ */
+public class AuthenticationCountingRequestExecutor extends HttpRequestExecutor {
+
+    private final AuthenticationMetrics authenticationMetrics;
+
+    /**
+     * @param authenticationMetrics counters to record each preemptively authenticated request in
+     */
+    public AuthenticationCountingRequestExecutor(AuthenticationMetrics authenticationMetrics) {
+        this.authenticationMetrics = authenticationMetrics;
+    }
+
+    @Override
+    protected HttpResponse doSendRequest(HttpRequest request, HttpClientConnection conn, HttpContext context)
+            throws IOException, HttpException {
+        // while a challenge is answered, the state is CHALLENGED or HANDSHAKE; a scheme taken from the cache
+        // is used without changing it
+        AuthState targetAuthState = HttpClientContext.adapt(context).getTargetAuthState();
+        if (request.containsHeader(AUTH.WWW_AUTH_RESP) && (targetAuthState == null
+                || (targetAuthState.getState() != AuthProtocolState.CHALLENGED
+                && targetAuthState.getState() != AuthProtocolState.HANDSHAKE))) {
+            authenticationMetrics.preemptiveAuthenticationSent();
+        }
+        return super.doSendRequest(request, conn, context);
+    }
+}
@@ -23,6 +23,7 @@
 
 package com.eischet.ews.apache4;
 
+import com.eischet.ews.api.http.AuthenticationMetrics;
 import org.apache.http.*;
 import org.apache.http.auth.MalformedChallengeException;
 import org.apache.http.client.protocol.HttpClientContext;
@@ -42,10 +43,23 @@ import java.util.Map;
 public class CookieProcessingTargetAuthenticationStrategy extends TargetAuthenticationStrategy {
     ResponseProcessCookies responseProcessCookies = new ResponseProcessCookies();
     RequestAddCookies requestAddCookies = new RequestAddCookies();
+    private final AuthenticationMetrics authenticationMetrics;
+
+    public CookieProcessingTargetAuthenticationStrategy() {
+        this(new AuthenticationMetrics());
+    }
+
+    /**
+     * @param authenticationMetrics counters to record each answered challenge in
+     */
+    public CookieProcessingTargetAuthenticationStrategy(AuthenticationMetrics authenticationMetrics) {
+        this.authenticationMetrics = authenticationMetrics;
+    }
 
     @Override
     public Map<String, Header> getChallenges(HttpHost authhost, HttpResponse response, HttpContext context)
             throws MalformedChallengeException {
+        authenticationMetrics.challengeReceived();
         try {
             // Get the request from the context
             HttpClientContext clientContext = HttpClientContext.adapt(context);
@@ -0,0 +1,171 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.apache4;
+
+import com.eischet.ews.api.http.AuthenticationMetrics;
+import com.eischet.ews.api.http.ExchangeHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ApacheHttpClientTest {
+
+    private HttpServer server;
+    private URL url;
+    /**
+     * The Authorization header of each request the server received, "" if there was none.
+     */
+    private final List<String> authorizations = new ArrayList<>();
+    /**
+     * The client port of each request the server received, i.e. the connection it was sent on.
+     */
+    private final List<Integer> ports = new ArrayList<>();
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/EWS/Exchange.asmx", this::handle);
+        server.start();
+        url = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/EWS/Exchange.asmx");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Accepts Basic credentials of any user with the password "pw", and challenges everything else.
+     */
+    private void handle(HttpExchange exchange) throws java.io.IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        synchronized (this) {
+            authorizations.add(authorization == null ? "" : authorization);
+            ports.add(exchange.getRemoteAddress().getPort());
+        }
+        if (authorization == null || !new String(Base64.getDecoder().decode(authorization.substring(6)),
+                StandardCharsets.UTF_8).endsWith(":pw")) {
+            exchange.getResponseHeaders().add("WWW-Authenticate", "Basic realm=\"ews\"");
+            exchange.sendResponseHeaders(401, -1);
+        } else {
+            byte[] body = "<ok/>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private int send(ExchangeHttpClient client, String user, boolean preAuthenticate) throws Exception {
+        ExchangeHttpClient.Request request = client.createRequest();
+        request.setUrl(url);
+        request.setTimeout(10000);
+        request.setPreAuthenticate(preAuthenticate);
+        request.setCredentials("", user, "pw");
+        request.prepareConnection();
+        request.getOutputStream().write("<request/>".getBytes(StandardCharsets.UTF_8));
+        try {
+            int status = request.executeRequest();
+            if (status == 200) {
+                assertEquals("<ok/>", new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            }
+            return status;
+        } finally {
+            request.close();
+        }
+    }
+
+    @Test
+    public void testChallengeIsAnsweredOnceAndCachedForAllRequests() throws Exception {
+        try (ApacheHttpClient client = new ApacheHttpClient()) {
+            AuthenticationMetrics metrics = client.getAuthenticationMetrics();
+            assertEquals(200, send(client, "a", false));
+            assertEquals(List.of("", basic("a")), authorizations);
+            assertEquals(1, metrics.getHandshakeCount());
+            assertEquals(0, metrics.getPreemptiveAuthenticationCount());
+
+            // the scheme is cached for the host, so a new request sends credentials right away
+            assertEquals(200, send(client, "a", false));
+            assertEquals(basic("a"), authorizations.get(2));
+            assertEquals(3, authorizations.size());
+            assertEquals(2, metrics.getRequestCount());
+            assertEquals(1, metrics.getHandshakeCount());
+            assertEquals(1, metrics.getPreemptiveAuthenticationCount());
+        }
+    }
+
+    @Test
+    public void testPreAuthenticationIsCountedWhenTheHeaderIsSent() throws Exception {
+        try (ApacheHttpClient client = new ApacheHttpClient()) {
+            AuthenticationMetrics metrics = client.getAuthenticationMetrics();
+            assertEquals(200, send(client, "a", true));
+            assertEquals(List.of(basic("a")), authorizations);
+            assertEquals(0, metrics.getHandshakeCount());
+            assertEquals(1, metrics.getPreemptiveAuthenticationCount());
+
+            // the scheme is cached now, but there are no credentials to send with it
+            assertEquals(401, send(client, null, false));
+            assertEquals("", authorizations.get(1));
+            assertEquals(1, metrics.getPreemptiveAuthenticationCount());
+        }
+    }
+
+    @Test
+    public void testConnectionsAreBoundToTheUser() throws Exception {
+        try (ApacheHttpClient client = new ApacheHttpClient()) {
+            for (String user : new String[]{"a", "a", "b", "a"}) {
+                assertEquals(200, send(client, user, true));
+            }
+            assertEquals(List.of(basic("a"), basic("a"), basic("b"), basic("a")), authorizations);
+            assertEquals(ports.get(0), ports.get(1));
+            assertNotEquals(ports.get(0), ports.get(2));
+            assertEquals(ports.get(0), ports.get(3));
+        }
+    }
+
+    private static String basic(String user) {
+        return "Basic " + Base64.getEncoder().encodeToString((user + ":pw").getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -24,7 +24,9 @@
 package com.eischet.ews.javaclient;
 
 import com.eischet.ews.api.core.exception.http.EWSHttpException;
+import com.eischet.ews.api.http.AuthenticationMetrics;
 import com.eischet.ews.api.http.ExchangeHttpClient;
+import com.eischet.ews.api.http.MailboxAffinityCookies;
 import com.eischet.ews.api.http.RequestFields;
 
 import java.io.*;
@@ -33,9 +35,14 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -52,6 +59,23 @@ public class JavaClient implements ExchangeHttpClient {
     boolean insecure;
     private CopyOnWriteArrayList<String> cookies = null;
 
+    /**
+     * HTTP clients by configuration. Each client keeps its own connection pool, so it must be reused to keep
+     * connections (and thus TLS sessions) alive between requests.
+     */
+    private final Map<String, HttpClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Hashes of host and user the server has accepted Basic authentication for, so that later requests can
+     * send credentials preemptively instead of waiting for a 401 challenge. Only used when preemptive Basic
+     * authentication is turned off.
+     */
+    private final Set<String> basicAuthenticated = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean preemptiveBasicAuthentication = true;
+
+    private final AuthenticationMetrics authenticationMetrics = new AuthenticationMetrics();
+
     public JavaClient allowCookies() {
         cookies = new CopyOnWriteArrayList<>();
         return this;
@@ -66,6 +90,40 @@ public class JavaClient implements ExchangeHttpClient {
         this.insecure = insecure;
     }
 
+    /**
+     * Checks whether Basic credentials are sent with every request.
+     *
+     * @return true by default
+     */
+    public boolean isPreemptiveBasicAuthentication() {
+        return preemptiveBasicAuthentication;
+    }
+
+    /**
+     * Sets whether Basic credentials are sent with every request, which is the default. When turned off,
+     * credentials are only sent when the service asks for pre-authentication, after a 401 response, or once
+     * the server has accepted them for the same user and host. That keeps credentials off requests which do not
+     * need them, at the cost of an extra round trip for every new user and host.
+     *
+     * @param preemptiveBasicAuthentication false to wait for the server to ask for credentials
+     */
+    public void setPreemptiveBasicAuthentication(final boolean preemptiveBasicAuthentication) {
+        this.preemptiveBasicAuthentication = preemptiveBasicAuthentication;
+    }
+
+    /**
+     * Gets the authentication counters of this client.
+     * <p>
+     * Only Basic authentication is supported; see {@link #setPreemptiveBasicAuthentication(boolean)} for when it
+     * is sent.
+     * </p>
+     *
+     * @return the authentication metrics
+     */
+    public AuthenticationMetrics getAuthenticationMetrics() {
+        return authenticationMetrics;
+    }
+
     @Override
     public Request createRequest() {
         return new JavaRequest();
@@ -78,14 +136,16 @@ public class JavaClient implements ExchangeHttpClient {
 
     @Override
     public void close() throws IOException {
+        clients.clear();
     }
 
     protected class JavaRequest extends RequestFields {
 
         private final ByteArrayOutputStream post = new ByteArrayOutputStream();
-        private HttpResponse<String> response;
+        private HttpResponse<InputStream> response;
         private static final String authHeaderName = "Authorization";
         private String authHeaderContents = null;
+        private String authUser = null;
 
         @Override
         public void prepareConnection() {
@@ -107,8 +167,10 @@ public class JavaClient implements ExchangeHttpClient {
                 setHeader("Accept-Encoding", "gzip,deflate");
             }
 
-            if (authHeaderContents != null) {
+            if (authHeaderContents != null && (preemptiveBasicAuthentication || isPreAuthenticate()
+                    || basicAuthenticated.contains(authKey()))) {
                 setHeader(authHeaderName, authHeaderContents);
+                authenticationMetrics.preemptiveAuthenticationSent();
             }
 
         }
@@ -118,15 +180,38 @@ public class JavaClient implements ExchangeHttpClient {
             // TODO: other modes of Authentication, actually use Cookies, etc.
             if (username == null || username.isEmpty()) {
                 authHeaderContents = null;
+                authUser = null;
             } else {
                 authHeaderContents = "Basic " + Base64.getEncoder()
                         .encodeToString((username + ":" + password).getBytes(StandardCharsets.UTF_8));
+                authUser = username;
+            }
+        }
+
+        /**
+         * Gets the key of the user and host in the set of accepted credentials. It is a hash, so the set holds
+         * neither user names nor passwords.
+         */
+        private String authKey() {
+            final String host = getUrl() != null ? getUrl().getAuthority() : "";
+            try {
+                final byte[] hash = MessageDigest.getInstance("SHA-256")
+                        .digest((host + "|" + authUser).getBytes(StandardCharsets.UTF_8));
+                return Base64.getEncoder().encodeToString(hash);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
             }
         }
 
 
+        /**
+         * Closes the response body, which releases the connection. The response is kept for its code and headers.
+         */
         @Override
         public void close() throws IOException {
+            if (response != null) {
+                response.body().close();
+            }
         }
 
         @Override
@@ -136,23 +221,52 @@ public class JavaClient implements ExchangeHttpClient {
 
         @Override
         public int executeRequest() throws IOException, EWSHttpException {
+            authenticationMetrics.requestSent();
+            final byte[] body = post.toByteArray();
+            int status = send(body);
+            // Basic is the only scheme this client can answer with, so any challenge is answered with it: some
+            // servers and proxies accept Basic without advertising it
+            if (status == 401 && authHeaderContents != null && !getHttpHeaders().containsKey(authHeaderName)) {
+                authenticationMetrics.challengeReceived();
+                setHeader(authHeaderName, authHeaderContents);
+                status = send(body);
+                if (status != 401) {
+                    basicAuthenticated.add(authKey());
+                }
+            } else if (status == 401 && authUser != null) {
+                basicAuthenticated.remove(authKey());
+            }
+            return status;
+        }
+
+        private int send(final byte[] body) throws IOException, EWSHttpException {
             try {
                 final HttpRequest.Builder builder = HttpRequest
                         .newBuilder(getUrl().toURI())
                         .timeout(Duration.ofMillis(getTimeout()))
-                        .POST(HttpRequest.BodyPublishers.ofByteArray(post.toByteArray()));
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(body));
                 getHttpHeaders().forEach(builder::header);
                 if (cookies != null) {
+                    // an affinity cookie set by the API for the anchor mailbox wins over the one last stored
+                    final boolean hasAffinityCookie = getHttpHeaders().containsKey("Cookie")
+                            && getHttpHeaders().get("Cookie").startsWith(MailboxAffinityCookies.BACK_END_OVERRIDE_COOKIE);
                     for (final String cookie : cookies) {
-                        builder.header("Cookie", cookie);
+                        if (!(hasAffinityCookie && cookie.startsWith(MailboxAffinityCookies.BACK_END_OVERRIDE_COOKIE))) {
+                            builder.header("Cookie", cookie);
+                        }
                     }
                 }
                 final HttpRequest request = builder.build();
-                response = buildClient().send(request, HttpResponse.BodyHandlers.ofString());
+                // the body of a challenged response is not read
+                close();
+                // the body is streamed, so large responses such as MIME content are never held in memory
+                response = buildClient().send(request, HttpResponse.BodyHandlers.ofInputStream());
                 setResponseCode(response.statusCode());
                 setResponseContentType(response.headers().firstValue("Content-Type").orElse(null));
-                setResponseText(response.body());
+                // there is no reason phrase in HTTP/2, and the body can only be read once
+                setResponseText("");
                 setContentEncoding(response.headers().firstValue("Content-Encoding").orElse(null));
+                response.headers().map().forEach((name, values) -> setResponseHeader(name, String.join(",", values)));
                 if (cookies != null) {
                     cookies.addAll(response.headers().allValues("Set-Cookie"));
                 }
@@ -166,7 +280,12 @@ public class JavaClient implements ExchangeHttpClient {
         }
 
         private HttpClient buildClient() {
-            // TODO: this should be moved to JavaClient level and reused, but the timeouts are currently stored at Request level...
+            // the connect timeout is stored at request level, so there's one client per timeout and redirect setting
+            final String key = getTimeout() + "|" + isAllowAutoRedirect();
+            return clients.computeIfAbsent(key, k -> newClient());
+        }
+
+        private HttpClient newClient() {
             try {
                 if (insecure) {
                     // They'll eventually go around to fixing this in the JDK, I hope...
@@ -190,12 +309,15 @@ public class JavaClient implements ExchangeHttpClient {
 
         @Override
         public InputStream getInputStream() throws EWSHttpException, IOException {
-            return new ByteArrayInputStream(getResponseText().getBytes(StandardCharsets.UTF_8));
+            return getErrorStream();
         }
 
         @Override
         public InputStream getErrorStream() throws EWSHttpException {
-            return new ByteArrayInputStream(getResponseText().getBytes(StandardCharsets.UTF_8));
+            if (response == null) {
+                throw new EWSHttpException("Connection not established");
+            }
+            return new BufferedInputStream(response.body());
         }
 
     }
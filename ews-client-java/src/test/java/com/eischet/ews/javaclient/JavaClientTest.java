@@ -0,0 +1,165 @@
+/*
+ * The MIT License
+ * Copyright (c) 2022 Eischet Software e.K.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.eischet.ews.javaclient;
+
+import com.eischet.ews.api.http.AuthenticationMetrics;
+import com.eischet.ews.api.http.ExchangeHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class JavaClientTest {
+
+    private static final String CREDENTIALS = "Basic " + Base64.getEncoder()
+            .encodeToString("a:pw".getBytes(StandardCharsets.UTF_8));
+
+    private HttpServer server;
+    private URL url;
+    /**
+     * The Authorization header of each request the server received, "" if there was none.
+     */
+    private final List<String> authorizations = new ArrayList<>();
+    /**
+     * The client port of each request the server received, i.e. the connection it was sent on.
+     */
+    private final List<Integer> ports = new ArrayList<>();
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/EWS/Exchange.asmx", this::handle);
+        server.start();
+        url = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/EWS/Exchange.asmx");
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Accepts the Basic credentials of user "a" and challenges everything else.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.readAllBytes();
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        synchronized (this) {
+            authorizations.add(authorization == null ? "" : authorization);
+            ports.add(exchange.getRemoteAddress().getPort());
+        }
+        if (!CREDENTIALS.equals(authorization)) {
+            exchange.getResponseHeaders().add("WWW-Authenticate", "Basic realm=\"ews\"");
+            exchange.sendResponseHeaders(401, -1);
+        } else {
+            byte[] body = "<ok/>".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+        exchange.close();
+    }
+
+    private int send(ExchangeHttpClient client) throws Exception {
+        ExchangeHttpClient.Request request = client.createRequest();
+        request.setUrl(url);
+        request.setTimeout(10000);
+        request.setContentType("text/xml; charset=utf-8");
+        request.setAccept("text/xml");
+        request.setUserAgent("test");
+        request.setCredentials("", "a", "pw");
+        request.prepareConnection();
+        request.getOutputStream().write("<request/>".getBytes(StandardCharsets.UTF_8));
+        try {
+            int status = request.executeRequest();
+            if (status == 200) {
+                assertEquals("<ok/>", new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+            }
+            return status;
+        } finally {
+            request.close();
+        }
+    }
+
+    @Test
+    public void testBasicCredentialsAreSentPreemptively() throws Exception {
+        try (JavaClient client = new JavaClient()) {
+            assertEquals(200, send(client));
+            assertEquals(List.of(CREDENTIALS), authorizations);
+            AuthenticationMetrics metrics = client.getAuthenticationMetrics();
+            assertEquals(1, metrics.getPreemptiveAuthenticationCount());
+            assertEquals(0, metrics.getHandshakeCount());
+        }
+    }
+
+    @Test
+    public void testAcceptedCredentialsAreRemembered() throws Exception {
+        try (JavaClient client = new JavaClient()) {
+            client.setPreemptiveBasicAuthentication(false);
+            AuthenticationMetrics metrics = client.getAuthenticationMetrics();
+            assertEquals(200, send(client));
+            assertEquals(List.of("", CREDENTIALS), authorizations);
+            assertEquals(1, metrics.getHandshakeCount());
+            assertEquals(0, metrics.getPreemptiveAuthenticationCount());
+
+            assertEquals(200, send(client));
+            assertEquals(List.of("", CREDENTIALS, CREDENTIALS), authorizations);
+            assertEquals(1, metrics.getHandshakeCount());
+            assertEquals(1, metrics.getPreemptiveAuthenticationCount());
+        }
+    }
+
+    @Test
+    public void testConnectionIsReusedBetweenRequests() throws Exception {
+        try (JavaClient client = new JavaClient()) {
+            for (int i = 0; i < 3; i++) {
+                assertEquals(200, send(client));
+            }
+            // one client for the timeout and redirect setting, which keeps its connection alive
+            assertEquals(3, ports.size());
+            assertEquals(ports.get(0), ports.get(1));
+            assertEquals(ports.get(0), ports.get(2));
+        }
+    }
+}